@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.SurfaceView;
+
+import com.example.android.camera2basic.geometry.AspectRatio;
+
+/**
+ * A {@link SurfaceView} that can be adjusted to a specified aspect ratio, like
+ * {@link AutoFitTextureView}.
+ */
+// 可以设置宽高比的SurfaceView
+public class AutoFitSurfaceView extends SurfaceView {
+
+    /**
+     * The aspect ratio in lowest terms, 0:0 for none.
+     */
+    private int mRatioWidth = 0;
+    private int mRatioHeight = 0;
+
+    private final int[] mSize = new int[2];    // 约分和测量用的临时数组，只在主线程使用
+
+    public AutoFitSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public AutoFitSurfaceView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public AutoFitSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    /**
+     * Sets the aspect ratio for this view, see {@link AutoFitTextureView#setAspectRatio}.
+     *
+     * @return Whether a layout pass was requested; false if the ratio is unchanged
+     */
+    // 设置宽高比，约分后与当前的比较，没有变化时不重新布局
+    public boolean setAspectRatio(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Size cannot be negative.");
+        }
+        AspectRatio.reduce(width, height, mSize);
+        if (mSize[0] == mRatioWidth && mSize[1] == mRatioHeight) {
+            return false;
+        }
+        mRatioWidth = mSize[0];
+        mRatioHeight = mSize[1];
+        requestLayout();
+        return true;
+    }
+
+    @Override   // 在可用空间内取符合宽高比的最大尺寸
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        AspectRatio.fit(MeasureSpec.getSize(widthMeasureSpec),
+                MeasureSpec.getSize(heightMeasureSpec), mRatioWidth, mRatioHeight, mSize);
+        setMeasuredDimension(mSize[0], mSize[1]);
+    }
+
+}
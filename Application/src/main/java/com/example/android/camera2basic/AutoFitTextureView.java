@@ -20,15 +20,27 @@ import android.content.Context;
 import android.util.AttributeSet;
 import android.view.TextureView;
 
+import com.example.android.camera2basic.geometry.AspectRatio;
+
 /**
  * A {@link TextureView} that can be adjusted to a specified aspect ratio.
+ *
+ * <p>In center-crop mode the view fills the space it is given and the preview transform crops
+ * the buffer instead, so a new ratio does not need a layout pass.</p>
  */
 // 自定义的TextureView，可以设置宽高比
 public class AutoFitTextureView extends TextureView {
 
+    /**
+     * The aspect ratio in lowest terms, 0:0 for none.
+     */
     private int mRatioWidth = 0;
     private int mRatioHeight = 0;
 
+    private boolean mCenterCrop;
+
+    private final int[] mSize = new int[2];    // 约分和测量用的临时数组，只在主线程使用
+
     public AutoFitTextureView(Context context) {
         this(context, null);
     }
@@ -48,15 +60,42 @@ public class AutoFitTextureView extends TextureView {
      *
      * @param width  Relative horizontal size
      * @param height Relative vertical size
+     * @return Whether a layout pass was requested; false if the ratio is unchanged or the view
+     * is in center-crop mode
      */
-    // 设置宽高比
-    public void setAspectRatio(int width, int height) {
+    // 设置宽高比，约分后与当前的比较，没有变化时不重新布局
+    public boolean setAspectRatio(int width, int height) {
         if (width < 0 || height < 0) {
             throw new IllegalArgumentException("Size cannot be negative.");
         }
-        mRatioWidth = width;
-        mRatioHeight = height;
+        AspectRatio.reduce(width, height, mSize);
+        if (mSize[0] == mRatioWidth && mSize[1] == mRatioHeight) {
+            return false;
+        }
+        mRatioWidth = mSize[0];
+        mRatioHeight = mSize[1];
+        if (mCenterCrop) {
+            return false;   // 裁剪模式下尺寸与宽高比无关
+        }
         requestLayout();
+        return true;
+    }
+
+    /**
+     * Switches between fitting the view to the aspect ratio and filling the available space.
+     * When filling, the preview must be cropped by the transform, see
+     * {@link com.example.android.camera2basic.geometry.PreviewTransformCache#setCenterCrop}.
+     */
+    // 切换居中裁剪模式
+    public void setCenterCrop(boolean centerCrop) {
+        if (centerCrop != mCenterCrop) {
+            mCenterCrop = centerCrop;
+            requestLayout();
+        }
+    }
+
+    public boolean isCenterCrop() {
+        return mCenterCrop;
     }
 
     @Override   // 重写onMeasure()方法，设置宽高比 // 与setAspectRatio的区别是，这里的宽高比是根据屏幕的宽高来计算的
@@ -64,16 +103,13 @@ public class AutoFitTextureView extends TextureView {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         int width = MeasureSpec.getSize(widthMeasureSpec);
         int height = MeasureSpec.getSize(heightMeasureSpec);
-        if (0 == mRatioWidth || 0 == mRatioHeight) {
-            setMeasuredDimension(width, height);
-        } else {
-            if (width < height * mRatioWidth / mRatioHeight) {
-                // 如果宽度小于高度的宽高比，就设置宽度为宽度，高度为宽度乘以宽高比 // 这样就保证了宽高比
-                setMeasuredDimension(width, width * mRatioHeight / mRatioWidth);
-            } else {
-                setMeasuredDimension(height * mRatioWidth / mRatioHeight, height);
-            }
+        if (mCenterCrop) {
+            setMeasuredDimension(width, height);    // 裁剪模式下填满可用空间
+            return;
         }
+        // 在可用空间内取符合宽高比的最大尺寸
+        AspectRatio.fit(width, height, mRatioWidth, mRatioHeight, mSize);
+        setMeasuredDimension(mSize[0], mSize[1]);
     }
 
 }
@@ -17,42 +17,30 @@
 package com.example.android.camera2basic;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
-import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Point;
-import android.graphics.RectF;
-import android.graphics.SurfaceTexture;
-import android.hardware.camera2.CameraAccessException;
-import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.CameraMetadata;
-import android.hardware.camera2.CaptureRequest;
-import android.hardware.camera2.CaptureResult;
-import android.hardware.camera2.TotalCaptureResult;
-import android.hardware.camera2.params.StreamConfigurationMap;
-import android.media.Image;
-import android.media.ImageReader;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
-import android.util.Size;
-import android.util.SparseIntArray;
+import android.view.Display;
 import android.view.LayoutInflater;
 import android.view.Surface;
 import android.view.TextureView;
@@ -60,165 +48,430 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import com.example.android.camera2basic.analysis.AnalysisPipeline;
+import com.example.android.camera2basic.analysis.ExposureStats;
+import com.example.android.camera2basic.analysis.FrameRecorder;
+import com.example.android.camera2basic.analysis.FrameAnalyzer;
+import com.example.android.camera2basic.analysis.LumaHistogramAnalyzer;
+import com.example.android.camera2basic.analysis.MotionAnalyzer;
+import com.example.android.camera2basic.analysis.SharpnessAnalyzer;
+import com.example.android.camera2basic.capture.CaptureController;
+import com.example.android.camera2basic.capture.CaptureStateMachine;
+import com.example.android.camera2basic.capture.ResultLogWriter;
+import com.example.android.camera2basic.capture.SaveQueueSink;
+import com.example.android.camera2basic.capture.SharpnessGate;
+import com.example.android.camera2basic.geometry.OrientationCalculator;
+import com.example.android.camera2basic.geometry.PreviewTransformCache;
+import com.example.android.camera2basic.geometry.Sizes;
+import com.example.android.camera2basic.hal.Resolution;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.HalRequest;
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.metrics.CaptureTelemetry;
+import com.example.android.camera2basic.metrics.EventRecorder;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+import com.example.android.camera2basic.preview.PreviewBackendPolicy;
+import com.example.android.camera2basic.storage.BufferPool;
+import com.example.android.camera2basic.storage.JpegWriter;
+import com.example.android.camera2basic.storage.SaveQueue;
+
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Camera2BasicFragment extends Fragment
         implements View.OnClickListener, ActivityCompat.OnRequestPermissionsResultCallback {
 
-    /**
-     * Conversion from screen rotation to JPEG orientation.
-     */
-    // SparseIntArray是Android提供的一个数据结构，用来代替HashMap<Integer, Integer>，它的作用是当key为int类型时，可以提高查询效率
-    private static final SparseIntArray ORIENTATIONS = new SparseIntArray();
     // REQUEST_CAMERA_PERMISSION 是请求相机权限的请求码
     private static final int REQUEST_CAMERA_PERMISSION = 1;
     // FRAGMENT_DIALOG 是对话框的标识
     private static final String FRAGMENT_DIALOG = "dialog";
 
-    static {
-        ORIENTATIONS.append(Surface.ROTATION_0, 90);    // 将屏幕旋转的角度和JPEG图片的角度对应起来
-        ORIENTATIONS.append(Surface.ROTATION_90, 0);
-        ORIENTATIONS.append(Surface.ROTATION_180, 270);
-        ORIENTATIONS.append(Surface.ROTATION_270, 180);
-    }
-
     /**
      * Tag for the {@link Log}.
      */
     private static final String TAG = "Camera2BasicFragment";   // 日志的标识
 
     /**
-     * Camera state: Showing camera preview.
+     * Async trace section spanning a preview frame from capture start to its result.
      */
-    private static final int STATE_PREVIEW = 0;  // 相机预览状态
+    private static final String TRACE_FRAME = "frame";
 
     /**
-     * Camera state: Waiting for the focus to be locked.
+     * Async trace section spanning a still capture from capture start to the saved file.
      */
-    private static final int STATE_WAITING_LOCK = 1;    // 等待对焦状态
+    private static final String TRACE_STILL = "still";
 
     /**
-     * Camera state: Waiting for the exposure to be precapture state.
+     * Max preview width that is guaranteed by Camera2 API
      */
-    private static final int STATE_WAITING_PRECAPTURE = 2;  // 等待曝光状态
+    private static final int MAX_PREVIEW_WIDTH = 1920;  // 最大预览宽度
 
     /**
-     * Camera state: Waiting for the exposure state to be something other than precapture.
+     * Max preview height that is guaranteed by Camera2 API
      */
-    private static final int STATE_WAITING_NON_PRECAPTURE = 3;  // 等待曝光状态
+    private static final int MAX_PREVIEW_HEIGHT = 1080; // 最大预览高度
 
     /**
-     * Camera state: Picture was taken.
+     * Max number of YUV images the analysis stream may hand out at once. Each analyzer holds at
+     * most the frame it is working on, plus one pending frame shared by all.
      */
-    private static final int STATE_PICTURE_TAKEN = 4;   // 拍照状态
+    private static final int MAX_ANALYSIS_IMAGES = 4;  // 分析ImageReader最多同时持有的图像数
 
     /**
-     * Max preview width that is guaranteed by Camera2 API
+     * Max number of worker threads running {@link FrameAnalyzer}s.
      */
-    private static final int MAX_PREVIEW_WIDTH = 1920;  // 最大预览宽度
+    private static final int MAX_ANALYSIS_THREADS = 2;  // 分析线程池的最大线程数
 
     /**
-     * Max preview height that is guaranteed by Camera2 API
+     * How long {@link #closeCamera()} waits for running analyzers before closing their images.
      */
-    private static final int MAX_PREVIEW_HEIGHT = 1080; // 最大预览高度
+    private static final long ANALYSIS_CLOSE_TIMEOUT_MS = 500;  // 关闭相机时等待分析器结束的时间
 
     /**
-     * {@link TextureView.SurfaceTextureListener} handles several lifecycle events on a 处理多个生命周期事件
-     * {@link TextureView}.
+     * How long {@link #closeCamera()} waits for the background thread to close the camera.
      */
-    private final TextureView.SurfaceTextureListener mSurfaceTextureListener    // TextureView的监听器
-            = new TextureView.SurfaceTextureListener() {
+    private static final long CAMERA_CLOSE_TIMEOUT_MS = 2500;   // 关闭相机时等待后台线程的时间
 
-        @Override   // onSurfaceTextureAvailable的作用是 当TextureView可用时，打开相机
-        public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height) {
-            openCamera(width, height);
-        }
+    /**
+     * How long {@link #onPause()} waits for pending pictures before journaling them.
+     */
+    private static final long SAVE_DRAIN_TIMEOUT_MS = 1000;    // 暂停时等待保存队列排空的时间
 
-        @Override   // onSurfaceTextureSizeChanged的作用是 当TextureView的大小改变时，重新配置TextureView的变换矩阵
-        public void onSurfaceTextureSizeChanged(SurfaceTexture texture, int width, int height) {
-            configureTransform(width, height);
-        }
+    /**
+     * Spill journal of {@link #mSaveQueue}, next to the pictures.
+     */
+    private static final String SAVE_JOURNAL_NAME = "save-journal.bin"; // 保存队列的溢出日志文件名
+
+    /**
+     * Most memory {@link #mBufferPool} keeps in idle buffers, a few full-resolution JPEGs.
+     */
+    private static final long BUFFER_POOL_MAX_BYTES = 16 * 1024 * 1024;    // 缓冲池空闲内存上限
+
+    /**
+     * Sampling distance in pixels of {@link #mLumaAnalyzer}.
+     */
+    private static final int LUMA_SAMPLE_STEP = 4;  // 亮度直方图的采样间隔
+
+    /**
+     * Reduction factor applied to the luma plane by {@link #mSharpnessAnalyzer}.
+     */
+    private static final int SHARPNESS_SCALE = 4;   // 清晰度分析的降采样倍数
+
+    /**
+     * Size of the tile grid scored by {@link #mSharpnessAnalyzer}, in both directions.
+     */
+    private static final int SHARPNESS_TILES = 4;   // 清晰度分析的分块数
+
+    /**
+     * Max number of completed results {@code STATE_WAITING_LOCK} waits for a sharp frame once
+     * focus is locked, before capturing anyway.
+     */
+    private static final int SHARPNESS_GATE_MAX_WAIT = 15;  // 等待清晰帧的最大结果数
+
+    /**
+     * Block grid of {@link #mMotionAnalyzer}, and sample points per block in each direction.
+     */
+    private static final int MOTION_COLUMNS = 16;   // 运动检测的块列数
+    private static final int MOTION_ROWS = 9;   // 运动检测的块行数
+    private static final int MOTION_SAMPLES = 8;    // 每个块每个方向的采样点数
+
+    /**
+     * Number of recent frames {@link #mTelemetry} computes its rolling statistics over.
+     */
+    private static final int TELEMETRY_WINDOW = 256;    // 帧遥测的统计窗口大小
+
+    /**
+     * Interval between two metrics summaries in logcat.
+     */
+    private static final long METRICS_LOG_INTERVAL_MS = 60000;  // 定期输出指标摘要的间隔
+
+    /**
+     * Number of recent camera events kept for post-mortem dumps, about two minutes of preview.
+     */
+    private static final int EVENT_CAPACITY = 4096;    // 事件记录器保留的事件数
+
+    /**
+     * Time after which a still capture sequence that has not completed is considered stuck.
+     */
+    private static final long CAPTURE_WATCHDOG_MS = 5000;   // 拍照流程的超时时间
 
-        @Override   // onSurfaceTextureDestroyed的作用是 当TextureView被销毁时，关闭相机
-        public boolean onSurfaceTextureDestroyed(SurfaceTexture texture) {
-            return true;
+    /**
+     * Event types of {@link #mEvents}. The arguments of each type are noted next to it.
+     */
+    private static final int EVENT_OPEN = 0;    // 请求打开相机
+    private static final int EVENT_OPENED = 1;  // 相机已打开
+    private static final int EVENT_DISCONNECTED = 2;    // 相机断开连接
+    private static final int EVENT_ERROR = 3;   // 相机出错，arg0为错误码
+    private static final int EVENT_CLOSE = 4;   // 关闭相机
+    private static final int EVENT_SESSION_CREATE = 5;  // 请求创建会话
+    private static final int EVENT_SESSION_CONFIGURED = 6;  // 会话配置完成
+    private static final int EVENT_SESSION_FAILED = 7;  // 会话配置失败
+    private static final int EVENT_STATE = 8;   // 状态切换，arg0为旧状态，arg1为新状态
+    private static final int EVENT_REPEATING = 9;   // 提交重复预览请求
+    private static final int EVENT_CAPTURE = 10;    // 提交单次请求，arg0为当前状态
+    private static final int EVENT_ABORT = 11;  // 停止重复请求并中止捕获
+    private static final int EVENT_RESULT = 12; // 捕获结果，arg0为帧号，arg1为AF/AE/AWB状态
+    private static final int EVENT_FAILED = 13; // 捕获失败，arg0为帧号，arg1为原因
+    private static final int EVENT_BUFFER_LOST = 14;    // 缓冲区丢失，arg0为帧号
+    private static final int EVENT_STILL_COMPLETED = 15;    // 静止图片完成，arg0为帧号
+    private static final int EVENT_ACCESS_ERROR = 16;   // CameraAccessException，arg0为原因
+    private static final int EVENT_WATCHDOG = 17;   // 拍照流程超时，arg0为当前状态
+
+    private static final String[] EVENT_NAMES = {
+            "open",
+            "opened",
+            "disconnected",
+            "error",
+            "close",
+            "session_create",
+            "session_configured",
+            "session_failed",
+            "state",
+            "repeating",
+            "capture",
+            "abort",
+            "result",
+            "failed",
+            "buffer_lost",
+            "still_completed",
+            "access_error",
+            "watchdog",
+    };
+
+    /**
+     * {@link PreviewBackend.Callback} handles the lifecycle events of the preview surface. 处理预览Surface的生命周期事件
+     */
+    private final PreviewBackend.Callback mPreviewCallback = new PreviewBackend.Callback() {
+
+        @Override   // onSurfaceAvailable的作用是 当预览Surface可用时，打开相机
+        public void onSurfaceAvailable(int width, int height) {
+            // A SurfaceView recreates its surface when the window becomes visible again, which
+            // can happen before onResume; onResume opens the camera in that case.
+            if (isResumed()) {
+                openCamera(width, height);
+            }
         }
 
-        @Override   // onSurfaceTextureUpdated的作用是 当TextureView更新时，进行相应的操作
-        public void onSurfaceTextureUpdated(SurfaceTexture texture) {
+        @Override   // onSurfaceSizeChanged的作用是 当预览View的大小改变时，重新配置变换矩阵
+        public void onSurfaceSizeChanged(int width, int height) {
+            configureTransform(width, height);
         }
 
     };
 
     /**
-     * ID of the current {@link CameraDevice}.
+     * ID of the current camera.
      */
     private String mCameraId;   // 当前相机的ID
 
     /**
-     * An {@link AutoFitTextureView} for camera preview.
+     * ID of the camera {@link #setUpCameraOutputs(int, int)} picks, or null for the first back
+     * facing one. Set by the toggle button.
+     */
+    private String mRequestedCameraId;  // 切换按钮选择的相机ID，null表示第一个后置相机
+
+    /**
+     * The two ways to show the camera preview. Only {@link #mPreview} is visible.
+     */
+    private TextureViewBackend mTextureBackend; // TextureView预览后端
+    private SurfaceViewBackend mSurfaceBackend; // SurfaceView预览后端
+
+    /**
+     * The backend currently showing the preview, chosen by {@link PreviewBackendPolicy}. Read by
+     * the capture callback on the background thread.
      */
-    private AutoFitTextureView mTextureView;    // TextureView用于显示相机预览
+    private volatile PreviewBackend mPreview;   // 当前使用的预览后端
 
     /**
-     * A {@link CameraCaptureSession } for camera preview.
+     * Backend requested with {@link #setPreviewBackend(int)}, {@code BACKEND_AUTO} by default.
      */
-    private CameraCaptureSession mCaptureSession;   // CameraCaptureSession用于管理处理预览请求和拍照请求
+    private int mPreferredBackend = PreviewBackendPolicy.BACKEND_AUTO;
 
     /**
-     * A reference to the opened {@link CameraDevice}.
+     * The camera and the capture flow running on it, the same {@link CaptureController} the
+     * headless service and the tests use. Created with the background thread, which drives them;
+     * null while it is stopped.
      */
-    private CameraDevice mCameraDevice; // CameraDevice代表系统摄像头，用于打开相机，关闭相机，捕获图片
+    private volatile Camera2Hal mHal;   // 基于Camera2的相机HAL
+    private volatile CaptureController mController; // 相机流程：打开、预览、拍照和切换摄像头
 
     /**
-     * The {@link android.util.Size} of camera preview.
+     * Counters and latency histograms of the whole pipeline. Declared before the callbacks so
+     * that the metric fields below are initialized when they run.
      */
-    private Size mPreviewSize;  // 预览尺寸
+    private final MetricsRegistry mMetrics = new MetricsRegistry();    // 指标注册表
 
     /**
-     * {@link CameraDevice.StateCallback} is called when {@link CameraDevice} changes its state.
+     * Writes still captures on the thread of {@link #mSaveQueue}. The channel strategy writes the
+     * pooled direct copy without a heap copy. Mapping is faster in JpegWriterBenchmark, but it
+     * leaves one mapping per photo alive until the next garbage collection.
      */
-    // CameraDevice.StateCallback用于监听CameraDevice的状态
-    private final CameraDevice.StateCallback mStateCallback = new CameraDevice.StateCallback() {
+    private final JpegWriter mJpegWriter = new JpegWriter(JpegWriter.STRATEGY_CHANNEL); // JPEG写文件器
 
-        @Override   // onOpened的作用是 当相机打开时，开启预览
-        public void onOpened(@NonNull CameraDevice cameraDevice) {
-            // This method is called when the camera is opened.  We start camera preview here.
-            mCameraOpenCloseLock.release(); // 释放锁
-            mCameraDevice = cameraDevice;   // 获取CameraDevice实例
-            createCameraPreviewSession();   // 创建CameraPreviewSession
+    /**
+     * Direct buffers the still images are copied into, so the JPEG reader gets its images back
+     * before they are written.
+     */
+    private final BufferPool mBufferPool = new BufferPool(BUFFER_POOL_MAX_BYTES, mMetrics);   // 图像副本的缓冲池
+
+    /**
+     * Gives the idle buffers of {@link #mBufferPool} back when the system runs low on memory.
+     */
+    // 内存紧张时裁剪缓冲池
+    private final ComponentCallbacks2 mTrimCallbacks = new ComponentCallbacks2() {
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) { // 包括界面隐藏和进入后台
+                mBufferPool.trim(0);
+            } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+                mBufferPool.trim(BUFFER_POOL_MAX_BYTES / 2);
+            }
         }
 
-        @Override   // onDisconnected的作用是 当相机断开连接时，关闭相机
-        public void onDisconnected(@NonNull CameraDevice cameraDevice) {
-            mCameraOpenCloseLock.release(); // 释放锁
-            cameraDevice.close();   // 关闭相机
-            mCameraDevice = null;   // 将CameraDevice置空
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
         }
 
-        @Override   // onError的作用是 当相机发生错误时，关闭相机
-        public void onError(@NonNull CameraDevice cameraDevice, int error) {
-            mCameraOpenCloseLock.release(); // 释放锁
-            cameraDevice.close();   // 关闭相机
-            mCameraDevice = null;   // 将CameraDevice置空 CameraDevice是代表系统摄像头的一个类，用于打开相机，关闭相机，捕获图片
-            Activity activity = getActivity();  // 获取Activity实例
-            if (null != activity) { // 如果Activity不为空
-                activity.finish();  // 结束Activity
-            }
+        @Override
+        public void onLowMemory() {
+            mBufferPool.trim(0);
+        }
+
+    };
+
+    /**
+     * Context {@link #mTrimCallbacks} is registered with.
+     */
+    private Context mAppContext;
+
+    /**
+     * Last preview transform and its inputs. {@link #configureTransform(int, int)} only touches
+     * the view when they change. Used on the main thread only.
+     */
+    private final PreviewTransformCache mTransformCache = new PreviewTransformCache();  // 预览变换缓存
+
+    /**
+     * Reused for every transform; {@link TextureView#setTransform(Matrix)} copies it.
+     */
+    private final Matrix mTransformMatrix = new Matrix();  // 复用的变换矩阵
+
+    private final StripedCounter mTransformsApplied = mMetrics.counter("preview.transforms");
+    private final StripedCounter mLayouts = mMetrics.counter("preview.layouts");
+    private final StripedCounter mLayoutsAvoided = mMetrics.counter("preview.layouts_avoided");
+
+    /**
+     * Display rotation, {@code Surface.ROTATION_*}, kept up to date by
+     * {@link #mDisplayListener} while the fragment is resumed so that layout and camera setup do
+     * not query the window manager each time.
+     */
+    private volatile int mDisplayRotation;  // 缓存的屏幕旋转角度
+
+    /**
+     * Follows display rotations. A 180 degree turn does not change the view size, so without it
+     * the preview would stay upside down.
+     */
+    private final DisplayManager.DisplayListener mDisplayListener
+            = new DisplayManager.DisplayListener() {
+
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
         }
 
+        @Override   // onDisplayChanged的作用是 屏幕旋转时更新缓存的角度并重新配置变换
+        public void onDisplayChanged(int displayId) {
+            if (displayId != Display.DEFAULT_DISPLAY) {
+                return;
+            }
+            int rotation = readDisplayRotation();
+            if (rotation != mDisplayRotation) {
+                mDisplayRotation = rotation;
+                if (mPreview != null) {
+                    configureTransform(mPreview.getWidth(), mPreview.getHeight());
+                }
+            }
+        }
     };
 
+    private final LatencyHistogram mOpenLatency = mMetrics.histogram("camera.open");
+    private final LatencyHistogram mCloseLatency = mMetrics.histogram("camera.close");
+    private final LatencyHistogram mConfigureLatency = mMetrics.histogram("session.configure");
+    private final LatencyHistogram mFocusLockLatency = mMetrics.histogram("capture.focus_lock");
+    private final LatencyHistogram mPrecaptureLatency = mMetrics.histogram("capture.precapture");
+    private final LatencyHistogram mStillLatency = mMetrics.histogram("capture.still");
+    private final LatencyHistogram mShutterLatency = mMetrics.histogram("capture.total");
+    private final StripedCounter mCaptures = mMetrics.counter("capture.count");
+    private final StripedCounter mCameraErrors = mMetrics.counter("camera.errors");
+    private final StripedCounter mDisconnects = mMetrics.counter("camera.disconnects");
+    private final StripedCounter mAccessErrors = mMetrics.counter("camera.access_errors");
+    private final StripedCounter mConfigureFailures = mMetrics.counter("session.configure_failures");
+
+    /**
+     * Recent camera events, written to a file when the camera fails, a capture gets stuck or the
+     * app crashes. Recording is lock-free and allocation-free, so it stays on in release builds.
+     */
+    private final EventRecorder mEvents = new EventRecorder(EVENT_CAPACITY, EVENT_NAMES);   // 事件记录器
+
+    /**
+     * Directory the event dumps are written to.
+     */
+    private volatile File mEventDumpDir;    // 事件转储文件的目录
+
+    /**
+     * Log of the preview results and capture sequences while result recording is on, for
+     * replaying them with {@code ResultReplay}; null when off.
+     */
+    private volatile ResultLogWriter mResultLog;    // 拍照结果日志
+
+    /**
+     * Records analysis frames to a {@code FrameSequence} file while frame recording is on; null
+     * when off. Runs as one of {@link #mAnalyzers}.
+     */
+    private FrameRecorder mFrameRecorder;   // 分析帧录制器
+
+    /**
+     * The handler that was installed before {@link #mCrashHandler}, to chain to.
+     */
+    private Thread.UncaughtExceptionHandler mPreviousCrashHandler;
+
+    /**
+     * {@link System#nanoTime()} when the current open, session configuration, capture sequence
+     * and capture phase started.
+     */
+    private volatile long mOpenStartNanos;  // 打开相机的开始时间
+    private volatile long mConfigureStartNanos; // 配置会话的开始时间
+    private volatile long mCaptureStartNanos;   // 拍照流程的开始时间
+    private volatile long mPhaseStartNanos; // 当前拍照阶段的开始时间
+
+    /**
+     * The size of camera preview, and of the YUV stream the analyzers read.
+     */
+    private Resolution mPreviewSize;  // 预览尺寸
+    private Resolution mAnalysisSize;   // 分析流的尺寸
+
     /**
      * An additional thread for running tasks that shouldn't block the UI.
      */
@@ -230,9 +483,66 @@ public class Camera2BasicFragment extends Fragment
     private Handler mBackgroundHandler; // 用于在后台运行任务的Handler
 
     /**
-     * An {@link ImageReader} that handles still image capture.
+     * Worker threads running the {@link FrameAnalyzer}s.
+     */
+    private ExecutorService mAnalysisExecutor;  // 运行分析器的线程池
+
+    /**
+     * Distributes analysis frames to {@link #mAnalyzers}, dropping stale frames.
+     */
+    private AnalysisPipeline mAnalysisPipeline; // 分析流水线
+
+    /**
+     * Analyzers attached to the analysis stream whenever the background threads are started.
+     */
+    private final List<FrameAnalyzer> mAnalyzers = new ArrayList<>();   // 已注册的分析器
+
+    /**
+     * Luma histogram and exposure statistics of the preview.
+     */
+    private final LumaHistogramAnalyzer mLumaAnalyzer
+            = new LumaHistogramAnalyzer(LUMA_SAMPLE_STEP);   // 亮度直方图分析器
+
+    /**
+     * Focus-quality scores of the preview.
+     */
+    private final SharpnessAnalyzer mSharpnessAnalyzer = new SharpnessAnalyzer(
+            SharpnessAnalyzer.METHOD_LAPLACIAN, SHARPNESS_SCALE, SHARPNESS_TILES,
+            SHARPNESS_TILES);   // 清晰度分析器
+
+    /**
+     * Makes still captures wait for a sharp frame once focus is locked, off until
+     * {@link #setSharpnessGate(float)} sets a threshold.
+     */
+    private final SharpnessGate mSharpnessGate
+            = new SharpnessGate(mSharpnessAnalyzer, SHARPNESS_GATE_MAX_WAIT);  // 清晰度门限
+
+    /**
+     * Detects motion in the preview, for unattended motion-triggered capture.
+     */
+    private final MotionAnalyzer mMotionAnalyzer
+            = new MotionAnalyzer(MOTION_COLUMNS, MOTION_ROWS, MOTION_SAMPLES);  // 运动检测分析器
+
+    /**
+     * Whether motion in the preview takes a picture.
      */
-    private ImageReader mImageReader;   // ImageReader用于从CameraDevice获取图像数据
+    private volatile boolean mMotionCaptureEnabled; // 是否开启运动触发拍照
+
+    /**
+     * Takes a picture when {@link #mMotionAnalyzer} fires. The controller starts it only from the
+     * preview state.
+     */
+    // 运动触发拍照：在后台线程上发起拍照，只在预览状态下触发
+    private final MotionAnalyzer.Listener mMotionListener = new MotionAnalyzer.Listener() {
+
+        @Override
+        public void onMotion(float fraction, long timestamp) {
+            if (mMotionCaptureEnabled) {
+                takePicture();
+            }
+        }
+
+    };
 
     /**
      * This is the output file for our picture.
@@ -240,121 +550,391 @@ public class Camera2BasicFragment extends Fragment
     private File mFile; // 保存图片的文件
 
     /**
-     * This a callback object for the {@link ImageReader}. "onImageAvailable" will be called when a
-     * still image is ready to be saved.
+     * Takes the bytes of every still image as soon as it is available, so the {@link Image} is
+     * closed right away, and writes them on its own thread. Pictures still pending on pause are
+     * journaled and written on the next resume.
+     */
+    private SaveQueue mSaveQueue;   // 持久化保存队列
+
+    /**
+     * Hands the JPEGs of {@link #mController} to {@link #mSaveQueue}, holding one that arrives
+     * before the result of its capture until the result does, for the exposure and sensitivity.
+     */
+    private SaveQueueSink mSink;    // 把照片交给保存队列
+
+    /**
+     * Closes the async trace section of every still once its outcome is known.
      */
-    // ImageReader的回调对象，当静止图像准备保存时，将调用“onImageAvailable”
-    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener
-            = new ImageReader.OnImageAvailableListener() {
+    // 保存队列回调：记录保存结果并结束静止图片的trace
+    private final SaveQueue.Listener mSaveListener = new SaveQueue.Listener() {
 
-        @Override   // onImageAvailable的作用是 当静止图像准备保存时，将调用“onImageAvailable”
-        public void onImageAvailable(ImageReader reader) {
-            mBackgroundHandler.post(new ImageSaver(reader.acquireNextImage(), mFile));
+        @Override
+        public void onSaved(long frameNumber, File file, long bytes) {
+            CameraTrace.endAsyncSection(TRACE_STILL, frameNumber);
+        }
+
+        @Override
+        public void onSaveFailed(long frameNumber, File file, IOException e) {
+            Log.e(TAG, "Could not save " + file, e);
+            CameraTrace.endAsyncSection(TRACE_STILL, frameNumber);
+        }
+
+        @Override
+        public void onSpilled(long frameNumber, File file) {
+            Log.w(TAG, "Journaled " + file + " to save it on the next start");
+            CameraTrace.endAsyncSection(TRACE_STILL, frameNumber);
         }
 
     };
 
     /**
-     * {@link CaptureRequest.Builder} for the camera preview
+     * Records the transitions of the capture sequence, and the start of each sequence and the
+     * return to preview in the result log. Called on the background thread.
      */
-    private CaptureRequest.Builder mPreviewRequestBuilder;  // 用于相机预览的CaptureRequest.Builder
+    // 拍照状态的变化：记录事件，并在结果日志中记录拍照流程的开始和结束
+    private final CaptureStateMachine.Listener mStateListener = new CaptureStateMachine.Listener() {
+        @Override
+        public void onStateChanged(int from, int to) {
+            mEvents.record(EVENT_STATE, from, to);
+            if (from == CaptureStateMachine.STATE_PREVIEW
+                    && to != CaptureStateMachine.STATE_PREVIEW) {
+                mCaptureStartNanos = mPhaseStartNanos = System.nanoTime();
+                logSequence(false); // 记录拍照流程开始
+                mEvents.record(EVENT_CAPTURE, to);
+            } else if (from != CaptureStateMachine.STATE_PREVIEW
+                    && to == CaptureStateMachine.STATE_PREVIEW) {
+                logSequence(true);  // 记录回到预览
+                mEvents.record(EVENT_REPEATING);
+            }
+        }
+    };
 
     /**
-     * {@link CaptureRequest} generated by {@link #mPreviewRequestBuilder}
+     * Orientation tables of the current camera, from its sensor orientation and lens facing.
+     * Replaced whenever a camera is opened.
      */
-    private CaptureRequest mPreviewRequest; // 由mPreviewRequestBuilder生成的CaptureRequest CaptureRequest是用于描述捕获图片的请求的类
+    private volatile OrientationCalculator mOrientation; // 当前相机的方向计算器
 
     /**
-     * The current state of camera state for taking pictures.
-     *
-     * @see #mCaptureCallback
+     * Device orientation from the accelerometer, read by the capture path instead of the display
+     * rotation. Listens only while the fragment is resumed.
      */
-    private int mState = STATE_PREVIEW; // 当前相机状态
+    private DeviceOrientationTracker mDeviceOrientation;   // 设备方向跟踪
 
     /**
-     * A {@link Semaphore} to prevent the app from exiting before closing the camera.
+     * Frame rate, jitter and dropped frames of the capture results.
      */
-    private Semaphore mCameraOpenCloseLock = new Semaphore(1);  // 信号量，防止在关闭相机之前退出应用程序
+    private final CaptureTelemetry mTelemetry = new CaptureTelemetry(TELEMETRY_WINDOW);  // 帧遥测
 
     /**
-     * Whether the current camera device supports Flash or not.
+     * Follows the capture flow of {@link #mController} into {@link #mMetrics}, {@link #mEvents},
+     * the traces and the result log. Called on the background thread.
      */
-    private boolean mFlashSupported;    // 当前相机设备是否支持闪光灯
+    // 相机流程的回调：记录指标、事件、trace和结果日志
+    private final CaptureController.Listener mControllerListener
+            = new CaptureController.Listener() {
+
+        @Override   // onCameraOpened的作用是 相机已打开，开始创建会话
+        public void onCameraOpened(String cameraId) {
+            mOpenLatency.recordSince(mOpenStartNanos);  // 记录打开相机的耗时
+            mEvents.record(EVENT_OPENED);
+            mConfigureStartNanos = System.nanoTime();
+            mEvents.record(EVENT_SESSION_CREATE);
+        }
+
+        @Override   // onPreviewStarted的作用是 会话配置完成，预览已开始
+        public void onPreviewStarted(String cameraId) {
+            mConfigureLatency.recordSince(mConfigureStartNanos);   // 记录配置会话的耗时
+            mEvents.record(EVENT_SESSION_CONFIGURED);
+            mTelemetry.onSessionStarted();  // 新会话的帧号从头开始
+            mPreview.onSessionStarted();
+            mEvents.record(EVENT_REPEATING);
+        }
+
+        @Override
+        public void onConfigureFailed(String cameraId) {
+            mConfigureFailures.increment();
+            mEvents.record(EVENT_SESSION_FAILED);
+            dumpEvents("session configure failed");
+            showToast("Failed");    // 显示Toast
+        }
+
+        @Override   // onCameraError的作用是 当相机发生错误时，结束Activity
+        public void onCameraError(String cameraId, int error) {
+            mCameraErrors.increment();
+            mEvents.record(EVENT_ERROR, error);
+            Log.e(TAG, "Camera error " + error);
+            dumpEvents("error " + error);
+            Activity activity = getActivity();  // 获取Activity实例
+            if (null != activity) { // 如果Activity不为空
+                activity.finish();  // 结束Activity
+            }
+        }
+
+        @Override
+        public void onDisconnected(String cameraId) {
+            mDisconnects.increment();
+            mEvents.record(EVENT_DISCONNECTED);
+            dumpEvents("disconnected");
+        }
+
+        @Override
+        public void onAccessError(HalException e) {
+            recordAccessError(e);
+        }
+
+        @Override
+        public void onSaveFailed(long frameNumber, IOException e) {
+            mMetrics.counter("save.errors").increment();
+            Log.e(TAG, "Could not save " + mFile, e);
+            CameraTrace.endAsyncSection(TRACE_STILL, frameNumber);
+        }
+
+        @Override   // onFrameStarted的作用是 当传感器开始曝光时，开始该帧的异步跟踪区段
+        public void onFrameStarted(HalRequest request, long timestamp, long frameNumber) {
+            // 静止图片的区段在保存完成时结束
+            CameraTrace.beginAsyncSection(isStill(request) ? TRACE_STILL : TRACE_FRAME,
+                    frameNumber);
+        }
+
+        @Override   // onFrameCompleted的作用是 记录完成的帧，静止图片完成时记录拍照耗时
+        public void onFrameCompleted(HalRequest request, HalResult result) {
+            recordCompleted(result);    // 静止图片也占用帧号
+            if (isStill(request)) {
+                mEvents.record(EVENT_STILL_COMPLETED, result.getFrameNumber());
+                endPhase(mStillLatency);    // 记录拍摄静止图片的耗时
+                mShutterLatency.recordSince(mCaptureStartNanos);    // 记录整个拍照流程的耗时
+                mCaptures.increment();
+                showToast("Saved: " + mFile);   // 显示Toast
+                Log.d(TAG, mFile.toString());   // 打印日志
+                return;
+            }
+            if (result.getTimestamp() != 0) {
+                mPreview.onPreviewResult(result.getTimestamp());    // 预览帧已交给显示
+            }
+            logResult(result);  // 记录结果
+            CameraTrace.endAsyncSection(TRACE_FRAME, result.getFrameNumber());
+        }
+
+        @Override   // onFrameFailed的作用是 当图像捕获失败时，记录失败的帧
+        public void onFrameFailed(HalRequest request, long frameNumber, int reason) {
+            mTelemetry.onCaptureFailed(frameNumber);
+            mEvents.record(EVENT_FAILED, frameNumber, reason);
+            CameraTrace.endAsyncSection(isStill(request) ? TRACE_STILL : TRACE_FRAME,
+                    frameNumber);
+        }
+
+        @Override   // onFrameBufferLost的作用是 当输出缓冲区丢失时，记录丢失次数
+        public void onFrameBufferLost(HalRequest request, long frameNumber) {
+            mTelemetry.onCaptureBufferLost();
+            mEvents.record(EVENT_BUFFER_LOST, frameNumber);
+        }
+
+        @Override   // onAction的作用是 记录拍照流程发出预捕获或拍照请求
+        public void onAction(int state, int action) {
+            logAction(action);
+            if (action == CaptureStateMachine.ACTION_PRECAPTURE) {  // 对焦完成但需要预捕获
+                endPhase(mFocusLockLatency);    // 记录对焦锁定的耗时
+                mEvents.record(EVENT_CAPTURE, CaptureStateMachine.STATE_WAITING_PRECAPTURE);
+                return;
+            }
+            endPhase(state == CaptureStateMachine.STATE_WAITING_LOCK
+                    ? mFocusLockLatency : mPrecaptureLatency);
+            mEvents.record(EVENT_ABORT);    // 停止重复请求并中止捕获
+            mEvents.record(EVENT_CAPTURE, CaptureStateMachine.STATE_PICTURE_TAKEN);
+        }
+
+        @Override   // onCaptureTimeout的作用是 拍照流程超时，转储事件，控制器随后恢复预览
+        public void onCaptureTimeout(int state) {
+            mEvents.record(EVENT_WATCHDOG, state);
+            Log.w(TAG, "Capture stuck in state " + CaptureStateMachine.stateName(state));
+            dumpEvents("capture watchdog");
+        }
+
+        @Override
+        public void onAnalysisCloseTimeout() {
+            Log.w(TAG, "Analyzers still running while closing the analysis reader");
+        }
+
+    };
 
     /**
-     * Orientation of the camera sensor
+     * Marks the sections of the capture flow with {@link CameraTrace}.
      */
-    private int mSensorOrientation; // 相机传感器的方向
+    private static final CaptureController.Tracer TRACER = new CaptureController.Tracer() {
+
+        @Override
+        public void beginSection(String name) {
+            CameraTrace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            CameraTrace.endSection();
+        }
+
+    };
+
+    private static boolean isStill(HalRequest request) {
+        return request.hasTarget(HalRequest.TARGET_JPEG);
+    }
 
     /**
-     * A {@link CameraCaptureSession.CaptureCallback} that handles events related to JPEG capture.
+     * Records the duration of the capture phase that just ended and starts the next one.
      */
-    // CameraCaptureSession.CaptureCallback用于处理与JPEG捕获相关的事件
-    private CameraCaptureSession.CaptureCallback mCaptureCallback
-            = new CameraCaptureSession.CaptureCallback() {
-        //  CaptureCallback是CameraCaptureSession的一个抽象类，用于接收关于捕获进度更新的通知
-        private void process(CaptureResult result) {    // process的作用是 处理捕获结果
-            switch (mState) {   // 根据当前状态进行相应的操作
-                case STATE_PREVIEW: {   // 如果当前状态是预览状态，就什么都不做
-                    // We have nothing to do when the camera preview is working normally.
-                    break;
-                }
-                case STATE_WAITING_LOCK: {  // 如果当前状态是等待对焦状态
-                    Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);   // 获取对焦状态
-                    if (afState == null) {  // 如果对焦状态为空，就拍照
-                        captureStillPicture();  // 拍照
-                    } else if (CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED == afState ||  // 如果对焦状态是对焦成功或者对焦锁定
-                            CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED == afState) {
-                        // CONTROL_AE_STATE can be null on some devices
-                        Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);   // 获取曝光状态
-                        if (aeState == null ||  // 如果曝光状态为空或者曝光状态是曝光成功或者曝光锁定
-                                aeState == CaptureResult.CONTROL_AE_STATE_CONVERGED) {
-                            mState = STATE_PICTURE_TAKEN;   // 将当前状态置为拍照状态
-                            captureStillPicture();  // 拍照
-                        } else {
-                            runPrecaptureSequence();    // 运行预捕获序列
-                        }
-                    }
-                    break;
-                }
-                case STATE_WAITING_PRECAPTURE: {    // 如果当前状态是等待曝光状态
-                    // CONTROL_AE_STATE can be null on some devices
-                    Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);   // 获取曝光状态
-                    if (aeState == null ||  // 如果曝光状态为空或者曝光状态是曝光成功或者曝光锁定
-                            aeState == CaptureResult.CONTROL_AE_STATE_PRECAPTURE ||
-                            aeState == CaptureRequest.CONTROL_AE_STATE_FLASH_REQUIRED) {
-                        mState = STATE_WAITING_NON_PRECAPTURE;  // 将当前状态置为等待非预捕获状态
-                    }
-                    break;
-                }
-                case STATE_WAITING_NON_PRECAPTURE: {    // 如果当前状态是等待非预捕获状态
-                    // CONTROL_AE_STATE can be null on some devices
-                    Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);   //  获取曝光状态
-                    if (aeState == null || aeState != CaptureResult.CONTROL_AE_STATE_PRECAPTURE) {  // 如果曝光状态为空或者曝光状态不是预捕获状态
-                        mState = STATE_PICTURE_TAKEN;   // 将当前状态置为拍照状态
-                        captureStillPicture();  // 拍照
-                    }
-                    break;
-                }
+    private void endPhase(LatencyHistogram histogram) {  // 结束当前拍照阶段
+        long now = System.nanoTime();
+        histogram.record(now - mPhaseStartNanos);
+        mPhaseStartNanos = now;
+    }
+
+    /**
+     * Feeds the frame number and sensor timestamp of a completed capture to {@link #mTelemetry}.
+     */
+    private void recordCompleted(HalResult result) {   // 记录完成的帧
+        if (result.getTimestamp() != 0) {
+            mTelemetry.onCaptureCompleted(result.getFrameNumber(), result.getTimestamp());
+        }
+        mEvents.record(EVENT_RESULT, result.getFrameNumber(),
+                packState(result.getAfState())
+                        | packState(result.getAeState()) << 8
+                        | packState(result.getAwbState()) << 16);
+    }
+
+    /**
+     * @return The 3A state as one byte, 0xFF when the device does not report it.
+     */
+    private static long packState(int state) {
+        return state == HalResult.STATE_UNAVAILABLE ? 0xFF : state & 0xFF;
+    }
+
+    /**
+     * @return The numeric camera id, or -1 for ids that are not numbers.
+     */
+    private static long parseCameraId(String cameraId) {
+        try {
+            return Long.parseLong(cameraId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Appends the 3A state of a result to {@link #mResultLog}, if result recording is on. The
+     * HAL reports complete results only.
+     */
+    private void logResult(HalResult result) {  // 记录结果的3A状态
+        ResultLogWriter log = mResultLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.writeResult(System.nanoTime(), false, result.getFrameNumber(),
+                    result.getTimestamp(), result.getAfState(), result.getAeState(),
+                    result.getAwbState());
+        } catch (IOException e) {
+            onResultLogFailed(log, e);
+        }
+    }
+
+    /**
+     * Logs the action {@link #mController} takes on the result logged last.
+     */
+    private void logAction(int action) {
+        ResultLogWriter log = mResultLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.writeAction(System.nanoTime(), action);
+        } catch (IOException e) {
+            onResultLogFailed(log, e);
+        }
+    }
+
+    /**
+     * Logs the start of a capture sequence, or the return to preview when {@code unlock}.
+     */
+    private void logSequence(boolean unlock) {
+        ResultLogWriter log = mResultLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            if (unlock) {
+                log.writeUnlock(System.nanoTime());
+            } else {
+                log.writeTrigger(System.nanoTime());
             }
+        } catch (IOException e) {
+            onResultLogFailed(log, e);
         }
+    }
 
-        @Override   // onCaptureProgressed的作用是 当部分图像捕获的结果可用时，将调用“onCaptureProgressed”
-        public void onCaptureProgressed(@NonNull CameraCaptureSession session,
-                                        @NonNull CaptureRequest request,
-                                        @NonNull CaptureResult partialResult) {
-            process(partialResult); // 处理捕获结果
+    private void onResultLogFailed(ResultLogWriter log, IOException e) {  // 写日志失败时停止记录
+        Log.w(TAG, "Result recording stopped", e);
+        if (mResultLog == log) {
+            mResultLog = null;
         }
+        closeResultLog(log);
+    }
 
-        @Override   // onCaptureCompleted的作用是 当图像捕获的结果可用时，将调用“onCaptureCompleted”
-        public void onCaptureCompleted(@NonNull CameraCaptureSession session,
-                                       @NonNull CaptureRequest request,
-                                       @NonNull TotalCaptureResult result) {
-            process(result);    // 处理捕获结果
+    private static void closeResultLog(ResultLogWriter log) {
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
+    /**
+     * Chained to the previous default handler; dumps the events before the process dies.
+     */
+    // 崩溃时转储事件，然后交给原来的处理器
+    private final Thread.UncaughtExceptionHandler mCrashHandler
+            = new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread thread, Throwable e) {
+            try {
+                dumpEvents("crash in " + thread.getName() + ": " + e);
+            } finally {
+                if (mPreviousCrashHandler != null) {
+                    mPreviousCrashHandler.uncaughtException(thread, e);
+                }
+            }
+        }
     };
 
+    /**
+     * Writes the recorded events to a new {@code camera-events-<time>.txt} in the app's external
+     * files directory. Safe to call from any thread.
+     *
+     * @param reason Written on the first line of the file
+     */
+    private void dumpEvents(String reason) {    // 将最近的相机事件写入文件
+        File dir = mEventDumpDir;
+        if (dir == null) {
+            return;
+        }
+        File file = new File(dir, "camera-events-" + System.currentTimeMillis() + ".txt");
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(file));
+            writer.println("reason: " + reason);
+            CaptureController controller = mController;
+            writer.println("camera=" + mCameraId + " state=" + (controller == null ? "stopped"
+                    : CaptureStateMachine.stateName(controller.getStateMachine().getState())));
+            mEvents.dump(writer);
+            Log.w(TAG, "Camera events written to " + file + " (" + reason + ")");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (null != writer) {
+                writer.close();
+            }
+        }
+    }
+
     /**
      * Shows a {@link Toast} on the UI thread.
      *
@@ -373,7 +953,7 @@ public class Camera2BasicFragment extends Fragment
     }
 
     /**
-     * Given {@code choices} of {@code Size}s supported by a camera, choose the smallest one that
+     * Given {@code choices} of sizes supported by a camera, choose the smallest one that
      * is at least as large as the respective texture view size, and that is at most as large as the
      * respective max size, and whose aspect ratio matches with the specified value. If such size
      * doesn't exist, choose the largest one that is at most as large as the respective max size,
@@ -386,44 +966,22 @@ public class Camera2BasicFragment extends Fragment
      * @param maxWidth          The maximum width that can be chosen
      * @param maxHeight         The maximum height that can be chosen
      * @param aspectRatio       The aspect ratio
-     * @return The optimal {@code Size}, or an arbitrary one if none were big enough
+     * @return The optimal size, or an arbitrary one if none were big enough
      */
     // chooseOptimalSize的作用是 从相机支持的尺寸中选择最小的尺寸，该尺寸至少与相应的纹理视图尺寸一样大，
     // 并且最大尺寸与相应的最大尺寸一样大，并且其纵横比与指定的值匹配。
     // 如果不存在这样的大小，则选择最大的大小，最大的大小不超过相应的最大大小，并且其纵横比与指定的值匹配。
-    private static Size chooseOptimalSize(Size[] choices, int textureViewWidth,
-            int textureViewHeight, int maxWidth, int maxHeight, Size aspectRatio) {
-
-        // Collect the supported resolutions that are at least as big as the preview Surface
-        List<Size> bigEnough = new ArrayList<>();   // 用于保存大于等于预览Surface的支持的分辨率
-        // Collect the supported resolutions that are smaller than the preview Surface
-        List<Size> notBigEnough = new ArrayList<>();    // 用于保存小于预览Surface的支持的分辨率
-        int w = aspectRatio.getWidth(); // 获取宽度
-        int h = aspectRatio.getHeight();    // 获取高度
-        for (Size option : choices) {   // 遍历choices
-            // 如果宽度小于等于最大宽度并且高度小于等于最大高度并且高度等于宽度乘以高度除以宽度
-            if (option.getWidth() <= maxWidth && option.getHeight() <= maxHeight &&
-                    option.getHeight() == option.getWidth() * h / w) {
-                // 如果宽度大于等于纹理视图宽度并且高度大于等于纹理视图高度
-                if (option.getWidth() >= textureViewWidth &&
-                    option.getHeight() >= textureViewHeight) {
-                    bigEnough.add(option);  // 将option添加到bigEnough中
-                } else {
-                    notBigEnough.add(option);   // 将option添加到notBigEnough中
-                }
-            }
-        }
-
-        // Pick the smallest of those big enough. If there is no one big enough, pick the
-        // largest of those not big enough.
-        if (bigEnough.size() > 0) { // 如果bigEnough的大小大于0
-            return Collections.min(bigEnough, new CompareSizesByArea());    // 返回bigEnough中最小的Size
-        } else if (notBigEnough.size() > 0) {   // 如果notBigEnough的大小大于0
-            return Collections.max(notBigEnough, new CompareSizesByArea()); // 返回notBigEnough中最大的Size
-        } else {
+    private static Resolution chooseOptimalSize(List<Resolution> choices, int textureViewWidth,
+            int textureViewHeight, int maxWidth, int maxHeight, Resolution aspectRatio) {
+        // 选择逻辑在Sizes中，可以在JVM上测试和做基准测试
+        Resolution optimal = Sizes.chooseOptimalSize(
+                choices.toArray(new Resolution[choices.size()]), textureViewWidth,
+                textureViewHeight, maxWidth, maxHeight, aspectRatio);
+        if (optimal == null) {
             Log.e(TAG, "Couldn't find any suitable preview size");  // 打印日志
-            return choices[0];  // 返回choices中的第一个Size
+            return choices.get(0);  // 返回choices中的第一个尺寸
         }
+        return optimal;
     }
 
     //  Camera2BasicFragment的构造方法   // 无参构造方法
@@ -431,7 +989,32 @@ public class Camera2BasicFragment extends Fragment
         return new Camera2BasicFragment();
     }
 
-    @Override   // onCreate的作用是 当Fragment被创建时，调用onCreate()方法
+    @Override   // onCreate的作用是 当Fragment被创建时，注册帧分析器
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mAnalyzers.add(mLumaAnalyzer);
+        mAnalyzers.add(mSharpnessAnalyzer);
+        mMotionAnalyzer.setListener(mMotionListener);
+        mAnalyzers.add(mMotionAnalyzer);
+        mPreviousCrashHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(mCrashHandler);
+    }
+
+    @Override   // onDestroy的作用是 当Fragment被销毁时，恢复原来的崩溃处理器
+    public void onDestroy() {
+        if (Thread.getDefaultUncaughtExceptionHandler() == mCrashHandler) {
+            Thread.setDefaultUncaughtExceptionHandler(mPreviousCrashHandler);
+        }
+        setResultRecording(false);
+        setFrameRecording(false, 0);
+        if (mAppContext != null) {
+            mAppContext.unregisterComponentCallbacks(mTrimCallbacks);
+            mAppContext = null;
+        }
+        super.onDestroy();
+    }
+
+    @Override   // onCreateView的作用是 当Fragment的视图被创建时，调用onCreateView()方法
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
         // 返回布局文件
@@ -443,7 +1026,14 @@ public class Camera2BasicFragment extends Fragment
         view.findViewById(R.id.picture).setOnClickListener(this);   // 设置拍照按钮的点击事件
         view.findViewById(R.id.info).setOnClickListener(this);  // 设置信息按钮的点击事件
         view.findViewById(R.id.toggle).setOnClickListener(this);    // 设置切换摄像头按钮的点击事件
-        mTextureView = (AutoFitTextureView) view.findViewById(R.id.texture);    // 获取TextureView实例
+        AutoFitTextureView textureView = (AutoFitTextureView) view.findViewById(R.id.texture);    // 获取TextureView实例
+        textureView.setCenterCrop(mTransformCache.isCenterCrop());
+        mTextureBackend = new TextureViewBackend(textureView, mMetrics);
+        mSurfaceBackend = new SurfaceViewBackend(
+                (AutoFitSurfaceView) view.findViewById(R.id.surface), mMetrics);   // 获取SurfaceView实例
+        mTransformCache.invalidate();   // 新的TextureView还没有变换
+        mPreview = null;
+        selectPreviewBackend(); // 按设备选择预览后端
     }
 
     @Override   // onActivityCreated的作用是 当Fragment所在的Activity被创建时，调用onActivityCreated()方法
@@ -451,27 +1041,61 @@ public class Camera2BasicFragment extends Fragment
         super.onActivityCreated(savedInstanceState);
         //  获取保存图片的文件
         mFile = new File(getActivity().getExternalFilesDir(null), "pic.jpg");
+        mEventDumpDir = getActivity().getExternalFilesDir(null);
+        mSaveQueue = new SaveQueue(new File(mEventDumpDir, SAVE_JOURNAL_NAME), mJpegWriter,
+                mBufferPool, mMetrics, mSaveListener);
+        mSink = new SaveQueueSink(mSaveQueue, mBufferPool, new SaveQueueSink.FileNamer() {
+            @Override
+            public File getFile(long timestamp, long frameNumber) {
+                return mFile;   // 每张照片都保存到同一个文件
+            }
+        }, mMetrics.counter("save.errors"));
+        if (mAppContext == null) {
+            mAppContext = getActivity().getApplicationContext();
+            mAppContext.registerComponentCallbacks(mTrimCallbacks);
+        }
+        mDeviceOrientation = new DeviceOrientationTracker(getActivity(),
+                mMetrics.counter("orientation.changes"));
     }
 
     @Override
     public void onResume() {    // onResume的作用是 当Fragment可见时，调用onResume()方法
         super.onResume();
         startBackgroundThread();    // 开启后台线程
-
-        // When the screen is turned off and turned back on, the SurfaceTexture is already
-        // available, and "onSurfaceTextureAvailable" will not be called. In that case, we can open
-        // a camera and start preview from here (otherwise, we wait until the surface is ready in
-        // the SurfaceTextureListener).
-        if (mTextureView.isAvailable()) {   // 如果TextureView可用
-            openCamera(mTextureView.getWidth(), mTextureView.getHeight());  // 打开相机
-        } else {
-            mTextureView.setSurfaceTextureListener(mSurfaceTextureListener);    // 设置TextureView的监听器
+        mSaveQueue.start(); // 先写完上次暂停时留在日志中的照片
+        mDisplayRotation = readDisplayRotation();   // 只在这里和屏幕变化时查询旋转角度
+        ((DisplayManager) getActivity().getSystemService(Context.DISPLAY_SERVICE))
+                .registerDisplayListener(mDisplayListener, null);
+        mDeviceOrientation.start(mDisplayRotation);  // 开始监听设备方向
+
+        // When the screen is turned off and turned back on, the surface is already available,
+        // and "onSurfaceAvailable" will not be called. In that case, we can open a camera and
+        // start preview from here (otherwise, we wait until the surface is ready in the
+        // PreviewBackend.Callback).
+        if (mPreview.isAvailable()) {   // 如果预览Surface可用
+            openCamera(mPreview.getWidth(), mPreview.getHeight());  // 打开相机
         }
     }
 
     @Override   // onPause的作用是 当Fragment不可见时，调用onPause()方法
     public void onPause() {
+        mDeviceOrientation.stop();  // 暂停时不再监听传感器
+        ((DisplayManager) getActivity().getSystemService(Context.DISPLAY_SERVICE))
+                .unregisterDisplayListener(mDisplayListener);
         closeCamera();  // 关闭相机
+        ResultLogWriter log = mResultLog;
+        if (log != null) {
+            try {
+                log.flush();    // 进程可能在后台被杀死，先把结果日志写出
+            } catch (IOException e) {
+                onResultLogFailed(log, e);
+            }
+        }
+        // The camera is closed, so every accepted picture is in the queue by now.
+        int spilled = mSaveQueue.stop(SAVE_DRAIN_TIMEOUT_MS);  // 排空保存队列，剩余的写入日志
+        if (spilled > 0) {
+            Log.w(TAG, spilled + " pictures journaled on pause");
+        }
         stopBackgroundThread(); // 停止后台线程
         super.onPause();    // 调用父类的onPause()方法
     }
@@ -506,55 +1130,30 @@ public class Camera2BasicFragment extends Fragment
     @SuppressWarnings("SuspiciousNameCombination")  // 忽略警告
     private void setUpCameraOutputs(int width, int height) {    // setUpCameraOutputs的作用是 设置与相机相关的成员变量
         Activity activity = getActivity();  // 获取Activity实例
-        CameraManager manager = (CameraManager) activity.getSystemService(Context.CAMERA_SERVICE);  // 获取CameraManager实例
         try {
-            for (String cameraId : manager.getCameraIdList()) { // 遍历相机ID列表
-                CameraCharacteristics characteristics
-                        = manager.getCameraCharacteristics(cameraId);   // 获取相机特性
+            for (String cameraId : mHal.getCameraIds()) { // 遍历相机ID列表
+                CameraInfo info = mHal.getCameraInfo(cameraId);   // 获取相机特性
 
-                // We don't use a front facing camera in this sample.
-                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);    // 获取相机朝向
-                if (facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT) {  // 如果相机朝向不为空并且相机朝向为前置相机
+                // Use the camera picked by the toggle button, or else the first back facing one.
+                if (mRequestedCameraId != null ? !cameraId.equals(mRequestedCameraId)
+                        : info.getFacing() == CameraInfo.LENS_FACING_FRONT) {
                     continue;
                 }
 
-                StreamConfigurationMap map = characteristics.get(   // 获取相机支持的配置
-                        CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP); // 获取相机支持的配置
-                if (map == null) {  // 如果相机支持的配置为空
+                if (info.getJpegSizes().isEmpty()) {  // 如果相机没有输出配置
                     continue;
                 }
 
                 // For still image captures, we use the largest available size.
-                Size largest = Collections.max( // 获取最大的尺寸
-                        Arrays.asList(map.getOutputSizes(ImageFormat.JPEG)),    // 获取相机支持的JPEG格式的输出尺寸
-                        new CompareSizesByArea());
-                mImageReader = ImageReader.newInstance(largest.getWidth(), largest.getHeight(),
-                        ImageFormat.JPEG, /*maxImages*/2);  // 创建ImageReader实例
-                mImageReader.setOnImageAvailableListener(   // 设置ImageReader的监听器
-                        mOnImageAvailableListener, mBackgroundHandler);
+                Resolution largest = Collections.max(info.getJpegSizes(), Sizes.BY_AREA); // 获取最大的尺寸
 
                 // Find out if we need to swap dimension to get the preview size relative to sensor
                 // coordinate.
-                int displayRotation = activity.getWindowManager().getDefaultDisplay().getRotation();    // 获取屏幕旋转的角度
-                //noinspection ConstantConditions
-                mSensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION); // 获取相机传感器的方向
-                boolean swappedDimensions = false;  // 是否交换尺寸
-                switch (displayRotation) {  // 根据屏幕旋转的角度进行相应的操作
-                    case Surface.ROTATION_0:    // 如果屏幕旋转的角度为0
-                    case Surface.ROTATION_180:  // 如果屏幕旋转的角度为180
-                        if (mSensorOrientation == 90 || mSensorOrientation == 270) {    // 如果相机传感器的方向为90或者270
-                            swappedDimensions = true;   // 将是否交换尺寸置为true
-                        }
-                        break;
-                    case Surface.ROTATION_90:   // 如果屏幕旋转的角度为90
-                    case Surface.ROTATION_270:  // 如果屏幕旋转的角度为270
-                        if (mSensorOrientation == 0 || mSensorOrientation == 180) { // 如果相机传感器的方向为0或者180
-                            swappedDimensions = true;   // 将是否交换尺寸置为true
-                        }
-                        break;
-                    default:
-                        Log.e(TAG, "Display rotation is invalid: " + displayRotation);  // 打印日志
-                }
+                int displayRotation = mDisplayRotation;    // 缓存的屏幕旋转角度
+                OrientationCalculator cameraOrientation = new OrientationCalculator(
+                        info.getSensorOrientation(), info.getFacing()); // 预先计算该相机的方向表
+                // 传感器方向与屏幕方向相差90度时交换宽高
+                boolean swappedDimensions = cameraOrientation.isDimensionSwapped(displayRotation);
 
                 Point displaySize = new Point();    // 创建Point实例
                 activity.getWindowManager().getDefaultDisplay().getSize(displaySize);   // 获取屏幕尺寸
@@ -581,29 +1180,35 @@ public class Camera2BasicFragment extends Fragment
                 // Danger, W.R.! Attempting to use too large a preview size could  exceed the camera
                 // bus' bandwidth limitation, resulting in gorgeous previews but the storage of
                 // garbage capture data.
-                mPreviewSize = chooseOptimalSize(map.getOutputSizes(SurfaceTexture.class),
+                mPreviewSize = chooseOptimalSize(info.getPreviewSizes(),
                         rotatedPreviewWidth, rotatedPreviewHeight, maxPreviewWidth,
                         maxPreviewHeight, largest);   // 获取预览尺寸
 
-                // We fit the aspect ratio of TextureView to the size of preview we picked.
+                // The analysis stream runs at preview resolution so it fits the guaranteed
+                // PRIV + YUV + JPEG stream combination on every hardware level.
+                mAnalysisSize = chooseOptimalSize(info.getYuvSizes(),
+                        rotatedPreviewWidth, rotatedPreviewHeight, maxPreviewWidth,
+                        maxPreviewHeight, largest);   // 获取分析尺寸
+
+                // We fit the aspect ratio of the preview view to the size of preview we picked.
                 int orientation = getResources().getConfiguration().orientation;    // 获取屏幕方向
+                boolean laidOut;
                 if (orientation == Configuration.ORIENTATION_LANDSCAPE) {   // 如果屏幕方向为横屏
-                    mTextureView.setAspectRatio(    // 设置TextureView的宽高比
+                    laidOut = mPreview.setAspectRatio(    // 设置预览View的宽高比
                             mPreviewSize.getWidth(), mPreviewSize.getHeight());
                 } else {    // 如果屏幕方向为竖屏
-                    mTextureView.setAspectRatio(
+                    laidOut = mPreview.setAspectRatio(
                             mPreviewSize.getHeight(), mPreviewSize.getWidth());
                 }
-
-                // Check if the flash is supported.
-                Boolean available = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);    // 获取闪光灯是否可用
-                mFlashSupported = available == null ? false : available;    // 将闪光灯是否可用置为available
+                (laidOut ? mLayouts : mLayoutsAvoided).increment(); // 统计重新布局和省掉的布局
 
                 mCameraId = cameraId;   // 将相机ID置为cameraId
+                mOrientation = cameraOrientation;
+                setTimestampSource(info.hasRealtimeTimestamps());
                 return;
             }
-        } catch (CameraAccessException e) { // 捕获Camera2BasicFragmentException异常 Camera2BasicFragment是自定义的异常
-            e.printStackTrace();
+        } catch (HalException e) {
+            recordAccessError(e);
         } catch (NullPointerException e) {  // 捕获NullPointerException异常 NullPointerException是空指针异常
             // Currently an NPE is thrown when the Camera2API is used but not supported on the
             // device this code runs.
@@ -616,289 +1221,223 @@ public class Camera2BasicFragment extends Fragment
      * Opens the camera specified by {@link Camera2BasicFragment#mCameraId}.
      */
     private void openCamera(int width, int height) {    // openCamera的作用是 打开相机
+        CameraTrace.beginSection("openCamera");
+        try {
+            openCameraTraced(width, height);
+        } finally {
+            CameraTrace.endSection();
+        }
+    }
+
+    private void openCameraTraced(int width, int height) {
         if (ContextCompat.checkSelfPermission(getActivity(), Manifest.permission.CAMERA)    // 如果没有相机权限
                 != PackageManager.PERMISSION_GRANTED) {
             requestCameraPermission();  // 请求相机权限
             return;
         }
+        mCameraId = null;
         setUpCameraOutputs(width, height);  // 设置与相机相关的成员变量
+        if (mCameraId == null) {
+            return;
+        }
         configureTransform(width, height);  // 配置变换
-        Activity activity = getActivity();  // 获取Activity实例
-        CameraManager manager = (CameraManager) activity.getSystemService(Context.CAMERA_SERVICE);  // 获取CameraManager实例
-        try {
-            if (!mCameraOpenCloseLock.tryAcquire(2500, TimeUnit.MILLISECONDS)) {    // 如果没有获取到锁
-                throw new RuntimeException("Time out waiting to lock camera opening."); // 抛出运行时异常
+        // This is the output Surface we need to start preview, with buffers of the size of
+        // camera preview we want.
+        final Surface surface = mPreview.createSurface(
+                mPreviewSize.getWidth(), mPreviewSize.getHeight());  // 获取预览Surface
+        final Resolution analysisSize = mAnalysisSize;
+        final String cameraId = mCameraId;
+        mBackgroundHandler.post(new Runnable() {    // 相机流程只在后台线程上运行
+            @Override
+            public void run() {
+                mHal.setPreviewSurface(surface);
+                // Preview frames also go to the analysis stream.
+                mHal.setYuvStream(analysisSize, MAX_ANALYSIS_IMAGES);
+                mOpenStartNanos = System.nanoTime();
+                mEvents.record(EVENT_OPEN, parseCameraId(cameraId));
+                try {
+                    mController.open(cameraId); // 打开相机，会话配置完成后开始预览
+                } catch (HalException e) {
+                    recordAccessError(e);
+                }
             }
-            manager.openCamera(mCameraId, mStateCallback, mBackgroundHandler);  // 打开相机
-        } catch (CameraAccessException e) { // 捕获Camera2BasicFragmentException异常 Camera2BasicFragment是自定义的异常
-            e.printStackTrace();
-        } catch (InterruptedException e) {  // 捕获InterruptedException异常 InterruptedException是中断异常
-            throw new RuntimeException("Interrupted while trying to lock camera opening.", e);
-        }
+        });
     }
 
     /**
-     * Closes the current {@link CameraDevice}.
+     * Closes the current camera. Waits for the background thread to close it, so that the preview
+     * surface and the readers are released when this returns.
      */
     private void closeCamera() {    // closeCamera的作用是 关闭相机
-        try {
-            mCameraOpenCloseLock.acquire(); // 获取锁
-            if (null != mCaptureSession) {  // 如果CameraCaptureSession不为空
-                mCaptureSession.close();    // 关闭CameraCaptureSession
-                mCaptureSession = null; // 将CameraCaptureSession置空
-            }
-            if (null != mCameraDevice) {    // 如果CameraDevice不为空
-                mCameraDevice.close();  // 关闭CameraDevice
-                mCameraDevice = null;   // 将CameraDevice置空
-            }
-            if (null != mImageReader) { // 如果ImageReader不为空
-                mImageReader.close();   // 关闭ImageReader
-                mImageReader = null;    // 将ImageReader置空
+        long start = System.nanoTime();
+        mEvents.record(EVENT_CLOSE);
+        FutureTask<Void> close = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                mController.close();    // 关闭会话和相机，通知未完成的照片失败
+                mSink.flush();  // 相机已关闭，结果不会再到达
             }
+        }, null);
+        mBackgroundHandler.post(close);
+        try {
+            close.get(CAMERA_CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            dumpEvents("close timeout");
+            throw new RuntimeException("Time out waiting to close the camera.", e);
         } catch (InterruptedException e) {  // 捕获InterruptedException异常 InterruptedException是中断异常
-            throw new RuntimeException("Interrupted while trying to lock camera closing.", e);
+            throw new RuntimeException("Interrupted while trying to close the camera.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not close the camera.", e.getCause());
         } finally {
-            mCameraOpenCloseLock.release(); // 释放锁
+            mCloseLatency.recordSince(start);   // 记录关闭相机的耗时
         }
     }
 
     /**
-     * Starts a background thread and its {@link Handler}.
+     * Starts a background thread and its {@link Handler}, and the camera flow that runs on it.
      */
     private void startBackgroundThread() {  // startBackgroundThread的作用是 开启后台线程
         mBackgroundThread = new HandlerThread("CameraBackground");  // 创建HandlerThread实例
         mBackgroundThread.start();  // 开启后台线程
         mBackgroundHandler = new Handler(mBackgroundThread.getLooper());    // 创建Handler实例
+
+        int threads = Math.max(1, Math.min(MAX_ANALYSIS_THREADS,
+                Runtime.getRuntime().availableProcessors() - 1));
+        mAnalysisExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "CameraAnalysis-" + mCount.incrementAndGet());
+            }
+        });
+        mAnalysisPipeline = new AnalysisPipeline(mAnalysisExecutor);    // 创建分析流水线
+        for (FrameAnalyzer analyzer : mAnalyzers) {
+            mAnalysisPipeline.addAnalyzer(analyzer);
+        }
+
+        // 与无界面服务和测试共用的相机流程
+        mHal = new Camera2Hal((CameraManager) getActivity().getSystemService(
+                Context.CAMERA_SERVICE), mBackgroundHandler);
+        CaptureController controller = new CaptureController(mHal, mSink, mControllerListener,
+                mStateListener);
+        controller.setAnalysisPipeline(mAnalysisPipeline, ANALYSIS_CLOSE_TIMEOUT_MS);
+        controller.setSharpnessGate(mSharpnessGate);
+        controller.setTracer(TRACER);
+        controller.setCaptureTimeout(TimeUnit.MILLISECONDS.toNanos(CAPTURE_WATCHDOG_MS));
+        mController = controller;
+        mBackgroundHandler.postDelayed(mMetricsLogger, METRICS_LOG_INTERVAL_MS);
     }
 
+    /**
+     * Logs a metrics summary every {@link #METRICS_LOG_INTERVAL_MS} on the background thread.
+     */
+    // 定期在logcat中输出指标摘要
+    private final Runnable mMetricsLogger = new Runnable() {
+        @Override
+        public void run() {
+            StringWriter summary = new StringWriter();
+            PrintWriter writer = new PrintWriter(summary);
+            mMetrics.dump("", writer);
+            mTelemetry.dump("", writer);
+            writer.flush();
+            for (String line : summary.toString().split("\n")) {
+                Log.i(TAG, line);
+            }
+            Handler handler = mBackgroundHandler;
+            if (handler != null) {
+                handler.postDelayed(this, METRICS_LOG_INTERVAL_MS);
+            }
+        }
+    };
+
     /**
      * Stops the background thread and its {@link Handler}.
      */
     private void stopBackgroundThread() {   // stopBackgroundThread的作用是 停止后台线程
+        mBackgroundHandler.removeCallbacks(mMetricsLogger);
+        mAnalysisPipeline.close(ANALYSIS_CLOSE_TIMEOUT_MS);
+        mAnalysisExecutor.shutdown();   // 关闭分析线程池
+        mAnalysisExecutor = null;
         mBackgroundThread.quitSafely(); // 安全地退出后台线程
         try {
             mBackgroundThread.join();   // 等待后台线程结束
             mBackgroundThread = null;   // 将后台线程置空
             mBackgroundHandler = null;  // 将Handler置空
+            mController = null;
+            mHal = null;
         } catch (InterruptedException e) {  // 捕获InterruptedException异常 InterruptedException是中断异常
             e.printStackTrace();
         }
     }
 
     /**
-     * Creates a new {@link CameraCaptureSession} for camera preview.
+     * Configures the necessary {@link android.graphics.Matrix} transformation to `mPreview`, if
+     * it supports one. This method should be called after the camera preview size is determined
+     * in setUpCameraOutputs and also the size of `mPreview` is fixed.
+     *
+     * @param viewWidth  The width of `mPreview`
+     * @param viewHeight The height of `mPreview`
      */
-    private void createCameraPreviewSession() { // createCameraPreviewSession的作用是 创建新的CameraCaptureSession用于相机预览
+    private void configureTransform(int viewWidth, int viewHeight) {    // configureTransform的作用是 配置变换
+        CameraTrace.beginSection("configureTransform");
         try {
-            SurfaceTexture texture = mTextureView.getSurfaceTexture();  // 获取TextureView的SurfaceTexture实例
-            assert texture != null; // 如果SurfaceTexture为空，就抛出断言异常
-
-            // We configure the size of default buffer to be the size of camera preview we want.
-            texture.setDefaultBufferSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());    // 设置SurfaceTexture的默认缓冲区大小
-
-            // This is the output Surface we need to start preview.
-            Surface surface = new Surface(texture); // 创建Surface实例
-
-            // We set up a CaptureRequest.Builder with the output Surface.
-            mPreviewRequestBuilder  // 创建CaptureRequest.Builder实例
-                    = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-            mPreviewRequestBuilder.addTarget(surface);  // 将surface添加到CaptureRequest.Builder中
-
-            // Here, we create a CameraCaptureSession for camera preview.
-            mCameraDevice.createCaptureSession(Arrays.asList(surface, mImageReader.getSurface()),   // 创建CameraCaptureSession实例
-                    new CameraCaptureSession.StateCallback() {  // 创建CameraCaptureSession的状态回调
-
-                        @Override   // onConfigured的作用是 当CameraCaptureSession配置完成时，将调用“onConfigured”
-                        public void onConfigured(@NonNull CameraCaptureSession cameraCaptureSession) {
-                            // The camera is already closed
-                            if (null == mCameraDevice) {    // 如果CameraDevice为空
-                                return;
-                            }
-
-                            // When the session is ready, we start displaying the preview.
-                            mCaptureSession = cameraCaptureSession;  // 将CameraCaptureSession置为cameraCaptureSession
-                            try {
-                                // Auto focus should be continuous for camera preview.
-                                mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_MODE,  // 设置自动对焦模式
-                                        CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE); // 设置自动对焦模式为连续自动对焦
-                                // Flash is automatically enabled when necessary.
-                                setAutoFlash(mPreviewRequestBuilder);   // 设置自动闪光灯
-
-                                // Finally, we start displaying the camera preview.
-                                mPreviewRequest = mPreviewRequestBuilder.build();   // 创建CaptureRequest实例
-                                mCaptureSession.setRepeatingRequest(mPreviewRequest,
-                                        mCaptureCallback, mBackgroundHandler);  // 设置重复请求
-                            } catch (CameraAccessException e) { // 捕获Camera2BasicFragmentException异常 Camera2BasicFragment是自定义的异常
-                                e.printStackTrace();
-                            }
-                        }
-
-                        @Override
-                        public void onConfigureFailed(  // onConfigureFailed的作用是 当CameraCaptureSession配置失败时，将调用“onConfigureFailed”
-                                @NonNull CameraCaptureSession cameraCaptureSession) {   // CameraCaptureSession配置失败时，将调用“onConfigureFailed”
-                            showToast("Failed");    // 显示Toast
-                        }
-                    }, null
-            );
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+            configureTransformTraced(viewWidth, viewHeight);
+        } finally {
+            CameraTrace.endSection();
         }
     }
 
-    /**
-     * Configures the necessary {@link android.graphics.Matrix} transformation to `mTextureView`.
-     * This method should be called after the camera preview size is determined in
-     * setUpCameraOutputs and also the size of `mTextureView` is fixed.
-     *
-     * @param viewWidth  The width of `mTextureView`
-     * @param viewHeight The height of `mTextureView`
-     */
-    private void configureTransform(int viewWidth, int viewHeight) {    // configureTransform的作用是 配置变换
-        Activity activity = getActivity();  // 获取Activity实例
-        if (null == mTextureView || null == mPreviewSize || null == activity) {  // 如果TextureView或者预览尺寸或者Activity为空
+    private void configureTransformTraced(int viewWidth, int viewHeight) {
+        PreviewBackend preview = mPreview;
+        if (null == preview || null == mPreviewSize || !preview.supportsTransform()) {  // 如果没有预览或者预览尺寸为空，或者后端不支持变换
             return;
         }
-        int rotation = activity.getWindowManager().getDefaultDisplay().getRotation();   // 获取屏幕旋转的角度
-        Matrix matrix = new Matrix();   // 创建Matrix实例
-        RectF viewRect = new RectF(0, 0, viewWidth, viewHeight);    // 创建RectF实例
-        RectF bufferRect = new RectF(0, 0, mPreviewSize.getHeight(), mPreviewSize.getWidth());  // 创建RectF实例
-        float centerX = viewRect.centerX();     // 获取中心点的X坐标
-        float centerY = viewRect.centerY();     // 获取中心点的Y坐标
-        if (Surface.ROTATION_90 == rotation || Surface.ROTATION_270 == rotation) {  // 如果屏幕旋转的角度为90或者270
-            bufferRect.offset(centerX - bufferRect.centerX(), centerY - bufferRect.centerY());  // 将bufferRect的中心点移动到viewRect的中心点
-            matrix.setRectToRect(viewRect, bufferRect, Matrix.ScaleToFit.FILL);   // 设置矩阵
-            float scale = Math.max( // 获取最大的缩放比例
-                    (float) viewHeight / mPreviewSize.getHeight(),
-                    (float) viewWidth / mPreviewSize.getWidth());
-            matrix.postScale(scale, scale, centerX, centerY);   // 设置缩放比例
-            matrix.postRotate(90 * (rotation - 2), centerX, centerY);   // 设置旋转角度
-        } else if (Surface.ROTATION_180 == rotation) {  // 如果屏幕旋转的角度为180
-            matrix.postRotate(180, centerX, centerY);   // 设置旋转角度
-        }
-        mTextureView.setTransform(matrix);
-    }
-
-    /**
-     * Initiate a still image capture.
-     */
-    private void takePicture() {
-        lockFocus();
-    }   // takePicture的作用是 拍照
-
-    /**
-     * Lock the focus as the first step for a still image capture.
-     */
-    private void lockFocus() {  // lockFocus的作用是 锁定焦点
-        try {
-            // This is how to tell the camera to lock focus.
-            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,   // 设置自动对焦触发
-                    CameraMetadata.CONTROL_AF_TRIGGER_START);
-            // Tell #mCaptureCallback to wait for the lock.
-            mState = STATE_WAITING_LOCK;    // 将当前状态置为等待锁定状态
-            mCaptureSession.capture(mPreviewRequestBuilder.build(), mCaptureCallback,   // 设置重复请求
-                    mBackgroundHandler);
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+        OrientationCalculator orientation = mOrientation;
+        int sensorOrientation = orientation == null ? 0 : orientation.getSensorOrientation();
+        int lensFacing = orientation == null ? -1 : orientation.getLensFacing();
+        // 变换矩阵的计算在PreviewTransform中，输入没有变化时不重新设置
+        if (!mTransformCache.update(viewWidth, viewHeight, mPreviewSize.getWidth(),
+                mPreviewSize.getHeight(), mDisplayRotation, sensorOrientation, lensFacing)) {
+            return;
         }
+        mTransformMatrix.setValues(mTransformCache.getValues());
+        preview.setTransform(mTransformMatrix);
+        mTransformsApplied.increment();
     }
 
-    /**
-     * Run the precapture sequence for capturing a still image. This method should be called when
-     * we get a response in {@link #mCaptureCallback} from {@link #lockFocus()}.
-     */
-    private void runPrecaptureSequence() {  // runPrecaptureSequence的作用是 运行预捕获序列
-        try {
-            // This is how to tell the camera to trigger.
-            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,    // 设置自动曝光预捕获触发
-                    CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER_START);
-            // Tell #mCaptureCallback to wait for the precapture sequence to be set.
-            mState = STATE_WAITING_PRECAPTURE;  // 将当前状态置为等待预捕获状态
-            mCaptureSession.capture(mPreviewRequestBuilder.build(), mCaptureCallback,
-                    mBackgroundHandler);    // 设置重复请求
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
-        }
+    private int readDisplayRotation() {    // readDisplayRotation的作用是 查询当前屏幕的旋转角度
+        return getActivity().getWindowManager().getDefaultDisplay().getRotation();
     }
 
     /**
-     * Capture a still picture. This method should be called when we get a response in
-     * {@link #mCaptureCallback} from both {@link #lockFocus()}.
+     * Initiate a still image capture. The controller runs on the background thread and starts it
+     * only from the preview state.
      */
-    private void captureStillPicture() {    // captureStillPicture的作用是 拍摄静止图片
-        try {
-            final Activity activity = getActivity();    // 获取Activity实例
-            if (null == activity || null == mCameraDevice) {    // 如果Activity或者CameraDevice为空
-                return;
-            }
-            // This is the CaptureRequest.Builder that we use to take a picture.
-            final CaptureRequest.Builder captureBuilder =   // 创建CaptureRequest.Builder实例
-                    mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
-            captureBuilder.addTarget(mImageReader.getSurface());    // 将ImageReader的Surface添加到CaptureRequest.Builder中
-
-            // Use the same AE and AF modes as the preview.
-            captureBuilder.set(CaptureRequest.CONTROL_AF_MODE,
-                    CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE); // 设置自动对焦模式为连续自动对焦
-            setAutoFlash(captureBuilder);   // 设置自动闪光灯
-
-            // Orientation
-            int rotation = activity.getWindowManager().getDefaultDisplay().getRotation();   // 获取屏幕旋转的角度
-            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, getOrientation(rotation));  // 设置JPEG的方向
-
-            CameraCaptureSession.CaptureCallback CaptureCallback        // 创建CameraCaptureSession.CaptureCallback实例
-                    = new CameraCaptureSession.CaptureCallback() {
-
-                @Override   // onCaptureCompleted的作用是 当图像捕获完毕时，将调用“onCaptureCompleted”
-                public void onCaptureCompleted(@NonNull CameraCaptureSession session,
-                                               @NonNull CaptureRequest request,
-                                               @NonNull TotalCaptureResult result) {
-                    showToast("Saved: " + mFile);   // 显示Toast
-                    Log.d(TAG, mFile.toString());   // 打印日志
-                    unlockFocus();  // 解锁焦点
-                }
-            };
-
-            mCaptureSession.stopRepeating();    // 停止重复请求
-            mCaptureSession.abortCaptures();    // 中止捕获
-            mCaptureSession.capture(captureBuilder.build(), CaptureCallback, null);  // 捕获静止图片
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+    private void takePicture() {    // takePicture的作用是 拍照
+        Handler handler = mBackgroundHandler;
+        if (handler != null) {
+            handler.post(mTakePicture);
         }
     }
 
-    /**
-     * Retrieves the JPEG orientation from the specified screen rotation.
-     *
-     * @param rotation The screen rotation.
-     * @return The JPEG orientation (one of 0, 90, 270, and 360)
-     */
-    private int getOrientation(int rotation) {  // getOrientation的作用是 从指定的屏幕旋转中检索JPEG方向
-        // Sensor orientation is 90 for most devices, or 270 for some devices (eg. Nexus 5X)
-        // We have to take that into account and rotate JPEG properly.
-        // For devices with orientation of 90, we simply return our mapping from ORIENTATIONS.
-        // For devices with orientation of 270, we need to rotate the JPEG 180 degrees.
-        return (ORIENTATIONS.get(rotation) + mSensorOrientation + 270) % 360;   // 返回JPEG方向
-    }
-
-    /**
-     * Unlock the focus. This method should be called when still image capture sequence is
-     * finished.
-     */
-    private void unlockFocus() {    // unlockFocus的作用是 解锁焦点
-        try {
-            // Reset the auto-focus trigger
-            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,   // 设置自动对焦触发
-                    CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
-            setAutoFlash(mPreviewRequestBuilder);   // 设置自动闪光灯
-            mCaptureSession.capture(mPreviewRequestBuilder.build(), mCaptureCallback,
-                    mBackgroundHandler);    // 设置重复请求
-            // After this, the camera will go back to the normal state of preview.
-            mState = STATE_PREVIEW; // 将当前状态置为预览状态
-            mCaptureSession.setRepeatingRequest(mPreviewRequest, mCaptureCallback,
-                    mBackgroundHandler);    // 设置重复请求
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+    private final Runnable mTakePicture = new Runnable() {
+        @Override
+        public void run() {
+            CaptureController controller = mController;
+            if (controller != null) {
+                // 按设备方向查表得到JPEG的方向
+                controller.setDeviceOrientation(mDeviceOrientation.getOrientation());
+                controller.takePicture();
+            }
         }
-    }
+    };
 
     @Override
     public void onClick(View view) {    // onClick的作用是 当点击拍照按钮或者信息按钮时，调用onClick()方法
@@ -924,97 +1463,264 @@ public class Camera2BasicFragment extends Fragment
         }
     }
 
-    @SuppressLint("MissingPermission")
-    private void takeToggle() {
-        //获取摄像头的管理者
-        CameraManager cameraManager = (CameraManager) getActivity().getSystemService(Context.CAMERA_SERVICE);
-        try {
-            for (String id : cameraManager.getCameraIdList()) {
-                CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
-                StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-                mPreviewSize = map.getOutputSizes(SurfaceTexture.class)[0]; //获取预览尺寸
-                if (mCameraId.equals(String.valueOf(CameraCharacteristics.LENS_FACING_BACK)) && characteristics.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT) {
-                    mCameraId = String.valueOf(CameraCharacteristics.LENS_FACING_FRONT);
-                    mCameraDevice.close();
-                    backOrientation();
-                    cameraManager.openCamera(mCameraId, mStateCallback, mBackgroundHandler);  // 打开相机
-                    break;
-                } else if (mCameraId.equals(String.valueOf(CameraCharacteristics.LENS_FACING_FRONT)) && characteristics.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_BACK) {
-                    mCameraId = String.valueOf(CameraCharacteristics.LENS_FACING_BACK);
-                    mCameraDevice.close();
-                    frontOrientation();
-                    cameraManager.openCamera(mCameraId, mStateCallback, mBackgroundHandler);  // 打开相机
-                    break;
+    /**
+     * Makes still captures wait until the preview is sharp enough once focus is locked.
+     *
+     * @param threshold Minimum center score of {@link SharpnessAnalyzer}, or 0 to disable the gate
+     */
+    public void setSharpnessGate(float threshold) {  // 设置拍照的清晰度门限
+        mSharpnessGate.setThreshold(threshold);
+    }
+
+    /**
+     * Locks or unlocks focus and exposure between pictures, so that a series of pictures shares
+     * the same 3A and each is captured on the next frame. Ignored during a capture.
+     */
+    public void set3ALocked(final boolean locked) {  // 锁定或解锁3A
+        Handler handler = mBackgroundHandler;
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                CaptureController controller = mController;
+                if (controller != null) {
+                    controller.set3ALocked(locked);
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        });
     }
 
-    private void setAutoFlash(CaptureRequest.Builder requestBuilder) {  // setAutoFlash的作用是 设置自动闪光灯
-        if (mFlashSupported) {      // 如果闪光灯可用
-            requestBuilder.set(CaptureRequest.CONTROL_AE_MODE,  // 设置自动曝光模式
-                    CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
+    /**
+     * Starts or stops recording the 3A state of every preview result and the capture sequences to
+     * a new {@code capture-results-<time>.bin} in the app's external files directory. The log can
+     * be replayed on a desktop JVM with {@code ResultReplay}.
+     *
+     * @return The file being recorded to, or null if recording is off or could not start
+     */
+    public synchronized File setResultRecording(boolean enabled) {  // 开始或停止记录拍照结果
+        ResultLogWriter previous = mResultLog;
+        mResultLog = null;
+        if (previous != null) {
+            closeResultLog(previous);
+        }
+        File dir = mEventDumpDir;
+        if (!enabled || dir == null) {
+            return null;
+        }
+        File file = new File(dir, "capture-results-" + System.currentTimeMillis() + ".bin");
+        try {
+            mResultLog = new ResultLogWriter(new FileOutputStream(file), System.nanoTime());
+            return file;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not start result recording", e);
+            return null;
         }
     }
 
     /**
-     * Saves a JPEG {@link Image} into the specified {@link File}.
+     * Starts or stops recording the analysis frames to a new {@code camera-frames-<time>.yuvs}
+     * in the app's external files directory, for replaying them into analyzers on a desktop JVM
+     * with {@code FrameSequencePlayer}. Must be called on the UI thread.
+     *
+     * @param maxFrames Frames to record at most; at 640x480 each takes 450 KiB
+     * @return The file being recorded to, or null if recording is off or could not start
      */
-    private static class ImageSaver implements Runnable {   // ImageSaver的作用是 将JPEG图像保存到指定的文件中
+    public File setFrameRecording(boolean enabled, int maxFrames) {  // 开始或停止录制分析帧
+        FrameRecorder previous = mFrameRecorder;
+        if (previous != null) {
+            mFrameRecorder = null;
+            mAnalyzers.remove(previous);
+            if (mAnalysisPipeline != null) {
+                mAnalysisPipeline.removeAnalyzer(previous);
+            }
+            try {
+                previous.close();   // 写入帧数并关闭文件
+            } catch (IOException e) {
+                Log.w(TAG, "Could not finish frame recording", e);
+            }
+        }
+        File dir = mEventDumpDir;
+        if (!enabled || dir == null) {
+            return null;
+        }
+        File file = new File(dir, "camera-frames-" + System.currentTimeMillis() + ".yuvs");
+        try {
+            mFrameRecorder = new FrameRecorder(file, maxFrames);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not start frame recording", e);
+            return null;
+        }
+        mAnalyzers.add(mFrameRecorder);
+        if (mAnalysisPipeline != null) {
+            mAnalysisPipeline.addAnalyzer(mFrameRecorder);
+        }
+        return file;
+    }
 
-        /**
-         * The JPEG image
-         */
-        private final Image mImage; // JPEG图像
-        /**
-         * The file we save the image into.
-         */
-        private final File mFile;   // 保存图像的文件
+    /**
+     * Enables capture on motion, for rigs where nobody taps {@link R.id#picture}.
+     *
+     * @param enabled     Whether motion takes a picture
+     * @param sensitivity Mean absolute luma difference, 0 to 255, above which a block moves
+     * @param cooldownMs  Minimum time between two motion-triggered captures
+     * @param regionMask  One entry per block of the {@code MOTION_COLUMNS x MOTION_ROWS} grid,
+     *                    row by row, or null to watch the whole frame
+     */
+    public void setMotionCapture(boolean enabled, int sensitivity, long cooldownMs,
+                                 boolean[] regionMask) {  // 设置运动触发拍照
+        mMotionAnalyzer.setSensitivity(sensitivity);
+        mMotionAnalyzer.setCooldown(TimeUnit.MILLISECONDS.toNanos(cooldownMs));
+        mMotionAnalyzer.setRegionMask(regionMask);
+        mMotionCaptureEnabled = enabled;
+    }
 
-        ImageSaver(Image image, File file) {
-            mImage = image;
-            mFile = file;
+    /**
+     * Fills the screen with the preview and crops it, instead of fitting the view to the
+     * preview's aspect ratio. Cropping needs a transform, so it moves the preview to the
+     * {@link TextureView} backend. Call on the main thread.
+     */
+    public void setCenterCrop(boolean centerCrop) {  // 设置居中裁剪模式
+        mTransformCache.setCenterCrop(centerCrop);
+        if (mTextureBackend != null) {
+            mTextureBackend.setCenterCrop(centerCrop);
+            selectPreviewBackend();
+            configureTransform(mPreview.getWidth(), mPreview.getHeight());
         }
+    }
 
-        @Override
-        public void run() { // run的作用是 将JPEG图像保存到指定的文件中
-            ByteBuffer buffer = mImage.getPlanes()[0].getBuffer();  // 获取ByteBuffer实例
-            byte[] bytes = new byte[buffer.remaining()];    // 创建字节数组
-            buffer.get(bytes);  // 将ByteBuffer中的数据复制到字节数组中
-            FileOutputStream output = null;   // 创建FileOutputStream实例
-            try {
-                output = new FileOutputStream(mFile);   // 创建FileOutputStream实例
-                output.write(bytes);    // 将字节数组中的数据写入到文件中
-            } catch (IOException e) {   // 捕获IOException异常 IOException是输入输出异常
-                e.printStackTrace();
-            } finally { // 最终执行
-                mImage.close(); // 关闭Image
-                if (null != output) {   // 如果FileOutputStream不为空
-                    try {
-                        output.close(); // 关闭FileOutputStream
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+    /**
+     * Overrides the per-device choice of the preview backend, e.g. on a device whose hardware
+     * overlay misbehaves. Call on the main thread.
+     *
+     * @param backend One of the {@code PreviewBackendPolicy.BACKEND_*} values
+     */
+    public void setPreviewBackend(int backend) {  // 指定预览后端
+        mPreferredBackend = backend;
+        if (mTextureBackend != null) {
+            selectPreviewBackend();
         }
+    }
 
+    /**
+     * Shows the preview through the backend {@link PreviewBackendPolicy} picks for this device.
+     * Switching backends while the camera is open changes the preview surface, so the camera is
+     * reopened on the new one.
+     */
+    private void selectPreviewBackend() {    // 选择预览后端，必要时在新的Surface上重新打开相机
+        int selected = PreviewBackendPolicy.select(Build.VERSION.SDK_INT,
+                mTransformCache.isCenterCrop(), mPreferredBackend);
+        PreviewBackend next = selected == PreviewBackendPolicy.BACKEND_SURFACE_VIEW
+                ? mSurfaceBackend : mTextureBackend;
+        PreviewBackend previous = mPreview;
+        if (next == previous) {
+            return;
+        }
+        boolean reopen = previous != null && isResumed();
+        if (reopen) {
+            closeCamera();  // 旧的Surface即将被隐藏
+        }
+        if (previous != null) {
+            previous.detach();
+        }
+        mPreview = next;
+        mTransformCache.invalidate();
+        next.attach(mPreviewCallback);
+        Log.i(TAG, "Preview backend: " + next.getName());
+        if (reopen && next.isAvailable()) {
+            openCamera(next.getWidth(), next.getHeight());
+        }
     }
 
     /**
-     * Compares two {@code Size}s based on their areas.
+     * Tells the preview backends the time base of the sensor timestamps, for display latency.
      */
-    static class CompareSizesByArea implements Comparator<Size> {   // CompareSizesByArea的作用是 根据它们的面积比较两个Size
+    private void setTimestampSource(boolean realtime) {
+        mTextureBackend.setRealtimeTimestamps(realtime);
+        mSurfaceBackend.setRealtimeTimestamps(realtime);
+    }
 
-        @Override
-        public int compare(Size lhs, Size rhs) {    // compare的作用是 根据它们的面积比较两个Size
-            // We cast here to ensure the multiplications won't overflow
-            return Long.signum((long) lhs.getWidth() * lhs.getHeight() -
-                    (long) rhs.getWidth() * rhs.getHeight());   // 返回比较结果
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        AnalysisPipeline pipeline = mAnalysisPipeline;
+        if (pipeline != null) {
+            pipeline.dump(prefix, writer);  // 输出分析器的耗时和丢帧统计
         }
+        mTelemetry.dump(prefix, writer);    // 输出帧率、抖动和丢帧统计
+        if (mTextureBackend != null) {
+            mTextureBackend.dump(prefix, writer);   // 输出每个预览后端的显示延迟和帧节奏
+            mSurfaceBackend.dump(prefix, writer);
+        }
+        writer.print(prefix);
+        writer.println("Metrics:");
+        mMetrics.dump(prefix + "  ", writer);  // 输出所有指标
+        writer.print(prefix);
+        writer.println("Events:");
+        mEvents.dump(writer);   // 输出最近的相机事件
+        writer.print(prefix);
+        writer.println("Exposure: " + mLumaAnalyzer.getLatest(new ExposureStats()));
+        writer.print(prefix);
+        writer.println("Sharpness: "
+                + mSharpnessAnalyzer.getLatest(mSharpnessAnalyzer.newStats()));
+        writer.print(prefix);
+        writer.println("Sharpness gate: threshold=" + mSharpnessGate.getThreshold()
+                + " give-ups=" + mSharpnessGate.getGiveUps());
+        writer.print(prefix);
+        writer.println("Motion: enabled=" + mMotionCaptureEnabled + " fraction="
+                + mMotionAnalyzer.getLastFraction() + " triggers="
+                + mMotionAnalyzer.getTriggerCount());
+        writer.print(prefix);
+        writer.println("Device orientation: " + mDeviceOrientation.getOrientation());
+        writer.print(prefix);
+        writer.println("Preview transform: rotation=" + mDisplayRotation + " hits="
+                + mTransformCache.getHits() + " misses=" + mTransformCache.getMisses());
+        ResultLogWriter log = mResultLog;
+        writer.print(prefix);
+        writer.println("Result recording: "
+                + (log == null ? "off" : log.getRecordCount() + " records"));
+        FrameRecorder recorder = mFrameRecorder;
+        writer.print(prefix);
+        writer.println("Frame recording: " + (recorder == null ? "off"
+                : recorder.getFrameCount() + " frames, " + recorder.getSkippedCount()
+                + " skipped"));
+    }
 
+    /**
+     * Switches to the next camera facing the other way. The camera is closed and opened again as
+     * on resume, so the session, the readers and the preview size are rebuilt for the new camera.
+     */
+    private void takeToggle() {
+        Camera2Hal hal = mHal;
+        if (hal == null || mPreview == null || !mPreview.isAvailable()) {
+            return;
+        }
+        String next;
+        try {
+            List<String> ids = hal.getCameraIds();
+            if (ids.size() < 2) {
+                return;
+            }
+            int[] facings = new int[ids.size()];
+            for (int i = 0; i < facings.length; i++) {
+                facings[i] = hal.getCameraInfo(ids.get(i)).getFacing();
+            }
+            next = CaptureController.nextCamera(ids, facings, mCameraId);
+        } catch (HalException e) {
+            recordAccessError(e);
+            return;
+        }
+        closeCamera();  // 在后台线程上关闭会话、相机和ImageReader
+        mMotionAnalyzer.reset();
+        mRequestedCameraId = next;
+        openCamera(mPreview.getWidth(), mPreview.getHeight());  // 按新相机重新建立输出和预览尺寸
+    }
+
+    private void recordAccessError(HalException e) {  // 记录相机访问失败
+        mAccessErrors.increment();
+        mEvents.record(EVENT_ACCESS_ERROR, e.getReason());
+        e.printStackTrace();
     }
 
     /**
@@ -1080,23 +1786,4 @@ public class Camera2BasicFragment extends Fragment
                     .create();  // 创建对话框
         }
     }
-
-    //前置拍摄时，照片旋转270
-    private void frontOrientation() {
-        //前置时，照片旋转270
-        ORIENTATIONS.append(Surface.ROTATION_0, 270);
-        ORIENTATIONS.append(Surface.ROTATION_90, 0);
-        ORIENTATIONS.append(Surface.ROTATION_180, 90);
-        ORIENTATIONS.append(Surface.ROTATION_270, 180);
-    }
-
-    //后置拍摄时，照片旋转90
-    private static void backOrientation() {
-        //后置时，照片旋转90
-        ORIENTATIONS.append(Surface.ROTATION_0, 90);
-        ORIENTATIONS.append(Surface.ROTATION_90, 0);
-        ORIENTATIONS.append(Surface.ROTATION_180, 270);
-        ORIENTATIONS.append(Surface.ROTATION_270, 180);
-    }
-    
 }
@@ -0,0 +1,596 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.annotation.SuppressLint;
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.util.Size;
+import android.view.Surface;
+
+import com.example.android.camera2basic.hal.CameraHal;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalDevice;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.HalRequest;
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.hal.HalSession;
+import com.example.android.camera2basic.hal.Resolution;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CameraHal} on the real Camera2 API.
+ *
+ * <p>Every session has two {@link ImageReader} outputs: the largest JPEG size for
+ * {@link HalRequest#TARGET_JPEG}, and a YUV stream for {@link HalRequest#TARGET_YUV}. By default
+ * the YUV stream is small, so that it keeps 3A running between pictures at a fraction of the cost
+ * of a rendered preview; the fragment sizes it with {@link #setYuvStream} for its analyzers.
+ * {@link HalRequest#TARGET_PREVIEW} goes to the surface given to {@link #setPreviewSurface}, and
+ * is ignored without one, as in the headless service. All callbacks run on the handler given to
+ * the constructor, which is also the thread the HAL must be called on; only
+ * {@link #getCameraIds()} and {@link #getCameraInfo(String)} may be called from any thread, so
+ * the UI can size the preview from them.</p>
+ */
+// 基于Camera2的CameraHal实现：JPEG和YUV两个ImageReader，以及可选的预览Surface
+class Camera2Hal implements CameraHal {
+
+    /**
+     * The YUV stream is the smallest size with at least this many pixels.
+     */
+    private static final int MIN_YUV_AREA = 320 * 240;
+
+    private static final int MAX_YUV_IMAGES = 2;
+
+    private final CameraManager mManager;
+    private final Handler mHandler;
+
+    private final Map<String, CameraInfo> mInfos = new ConcurrentHashMap<>();
+
+    private Surface mPreviewSurface;
+    private Resolution mYuvSize;
+    private int mMaxYuvImages = MAX_YUV_IMAGES;
+
+    Camera2Hal(CameraManager manager, Handler handler) {
+        mManager = manager;
+        mHandler = handler;
+    }
+
+    /**
+     * @param surface Output of {@link HalRequest#TARGET_PREVIEW} in the sessions created from now
+     *                on, with buffers of a supported preview size, or null for none
+     */
+    void setPreviewSurface(Surface surface) {
+        mPreviewSurface = surface;
+    }
+
+    /**
+     * Sizes the YUV stream of the sessions created from now on.
+     *
+     * @param size      One of {@link CameraInfo#getYuvSizes()}, or null for the smallest with at
+     *                  least {@link #MIN_YUV_AREA} pixels
+     * @param maxImages Most YUV images the frame listener may hold at once
+     */
+    void setYuvStream(Resolution size, int maxImages) {
+        mYuvSize = size;
+        mMaxYuvImages = maxImages;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayNanos) {
+        mHandler.postDelayed(task, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    @Override
+    public List<String> getCameraIds() throws HalException {
+        try {
+            return Arrays.asList(mManager.getCameraIdList());
+        } catch (CameraAccessException e) {
+            throw toHalException(e);
+        }
+    }
+
+    @Override
+    public CameraInfo getCameraInfo(String cameraId) throws HalException {
+        CameraInfo info = mInfos.get(cameraId);
+        if (info == null) {
+            CameraCharacteristics characteristics = getCharacteristics(cameraId);
+            CameraInfo.Builder builder = new CameraInfo.Builder(cameraId);
+            Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+            if (facing != null) {
+                builder.setFacing(facing);
+            }
+            Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+            if (orientation != null) {
+                builder.setSensorOrientation(orientation);
+            }
+            Boolean flash = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+            builder.setFlashSupported(flash != null && flash);
+            StreamConfigurationMap map = characteristics.get(
+                    CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            if (map != null) {
+                for (Size size : map.getOutputSizes(SurfaceTexture.class)) {
+                    builder.addPreviewSize(size.getWidth(), size.getHeight());
+                }
+                for (Size size : map.getOutputSizes(ImageFormat.JPEG)) {
+                    builder.addJpegSize(size.getWidth(), size.getHeight());
+                }
+                for (Size size : map.getOutputSizes(ImageFormat.YUV_420_888)) {
+                    builder.addYuvSize(size.getWidth(), size.getHeight());
+                }
+            }
+            Integer source = characteristics.get(
+                    CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+            builder.setRealtimeTimestamps(source != null
+                    && source == CameraMetadata.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME);
+            info = builder.build();
+            mInfos.put(cameraId, info);
+        }
+        return info;
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public void openCamera(String cameraId, final DeviceCallback callback) throws HalException {
+        try {
+            mManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+
+                private Device mDevice;
+
+                private Device device(CameraDevice camera) {
+                    if (mDevice == null) {
+                        mDevice = new Device(camera);
+                    }
+                    return mDevice;
+                }
+
+                @Override
+                public void onOpened(@NonNull CameraDevice camera) {
+                    callback.onOpened(device(camera));
+                }
+
+                @Override
+                public void onDisconnected(@NonNull CameraDevice camera) {
+                    callback.onDisconnected(device(camera));
+                }
+
+                @Override
+                public void onError(@NonNull CameraDevice camera, int error) {
+                    callback.onError(device(camera), error);
+                }
+
+            }, mHandler);
+        } catch (CameraAccessException e) {
+            throw toHalException(e);
+        } catch (SecurityException e) {
+            // 没有相机权限，例如服务在授权之前被启动
+            throw new HalException(HalException.CAMERA_DISABLED, e.getMessage());
+        }
+    }
+
+    private CameraCharacteristics getCharacteristics(String cameraId) throws HalException {
+        try {
+            return mManager.getCameraCharacteristics(cameraId);
+        } catch (CameraAccessException e) {
+            throw toHalException(e);
+        }
+    }
+
+    private static HalException toHalException(CameraAccessException e) {
+        return new HalException(e.getReason(), e.getMessage());
+    }
+
+    private static int stateOf(CaptureResult result, CaptureResult.Key<Integer> key) {
+        Integer state = result.get(key);
+        return state == null ? HalResult.STATE_UNAVAILABLE : state;
+    }
+
+    private static Size chooseLargest(Size[] sizes) {
+        Size largest = sizes[0];
+        for (Size size : sizes) {
+            if ((long) size.getWidth() * size.getHeight()
+                    > (long) largest.getWidth() * largest.getHeight()) {
+                largest = size;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * @return The smallest size with at least {@link #MIN_YUV_AREA} pixels, or the largest one
+     */
+    private static Resolution chooseYuvSize(Size[] sizes) {
+        Size best = null;
+        Size largest = null;
+        for (Size size : sizes) {
+            long area = (long) size.getWidth() * size.getHeight();
+            if (largest == null || area > (long) largest.getWidth() * largest.getHeight()) {
+                largest = size;
+            }
+            if (area >= MIN_YUV_AREA && (best == null
+                    || area < (long) best.getWidth() * best.getHeight())) {
+                best = size;
+            }
+        }
+        Size chosen = best != null ? best : largest;
+        return new Resolution(chosen.getWidth(), chosen.getHeight());
+    }
+
+    /**
+     * An open {@link CameraDevice}.
+     */
+    private final class Device implements HalDevice {
+
+        private final CameraDevice mCamera;
+        private Session mSession;
+
+        Device(CameraDevice camera) {
+            mCamera = camera;
+        }
+
+        @Override
+        public String getId() {
+            return mCamera.getId();
+        }
+
+        @Override
+        public void createCaptureSession(final SessionCallback callback) throws HalException {
+            if (mSession != null) {
+                mSession.close();
+                mSession = null;
+            }
+            StreamConfigurationMap map = getCharacteristics(getId()).get(
+                    CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            if (map == null) {
+                throw new HalException(HalException.CAMERA_ERROR, "No stream configurations");
+            }
+            Size jpegSize = chooseLargest(map.getOutputSizes(ImageFormat.JPEG));
+            Resolution yuvSize = mYuvSize != null ? mYuvSize
+                    : chooseYuvSize(map.getOutputSizes(ImageFormat.YUV_420_888));
+            final Surface previewSurface = mPreviewSurface;
+            final ImageReader jpegReader = ImageReader.newInstance(jpegSize.getWidth(),
+                    jpegSize.getHeight(), ImageFormat.JPEG, /*maxImages*/2);
+            final ImageReader yuvReader = ImageReader.newInstance(yuvSize.getWidth(),
+                    yuvSize.getHeight(), ImageFormat.YUV_420_888, mMaxYuvImages);
+            List<Surface> outputs = new ArrayList<>(3);
+            if (previewSurface != null) {
+                outputs.add(previewSurface);
+            }
+            outputs.add(jpegReader.getSurface());
+            outputs.add(yuvReader.getSurface());
+            try {
+                mCamera.createCaptureSession(outputs,
+                        new CameraCaptureSession.StateCallback() {
+
+                            @Override
+                            public void onConfigured(@NonNull CameraCaptureSession session) {
+                                mSession = new Session(Device.this, session, previewSurface,
+                                        jpegReader, yuvReader);
+                                callback.onConfigured(mSession);
+                            }
+
+                            @Override
+                            public void onConfigureFailed(
+                                    @NonNull CameraCaptureSession session) {
+                                jpegReader.close();
+                                yuvReader.close();
+                                callback.onConfigureFailed();
+                            }
+
+                        }, mHandler);
+            } catch (CameraAccessException e) {
+                jpegReader.close();
+                yuvReader.close();
+                throw toHalException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (mSession != null) {
+                mSession.close();
+                mSession = null;
+            }
+            mCamera.close();
+        }
+
+    }
+
+    /**
+     * A configured {@link CameraCaptureSession}, its two readers and its preview surface, if any.
+     */
+    private final class Session implements HalSession {
+
+        private final Device mDevice;
+        private final CameraCaptureSession mSession;
+        private final Surface mPreviewSurface;
+        private final ImageReader mJpegReader;
+        private final ImageReader mYuvReader;
+
+        private FrameListener mFrameListener;
+        private JpegListener mJpegListener;
+        private long mFrameSequence;
+
+        /**
+         * Frame numbers of started still captures by sensor timestamp, to match their JPEGs.
+         */
+        private final Map<Long, Long> mStillFrames = new HashMap<>();
+
+        private boolean mClosed;
+
+        Session(Device device, CameraCaptureSession session, Surface previewSurface,
+                ImageReader jpegReader, ImageReader yuvReader) {
+            mDevice = device;
+            mSession = session;
+            mPreviewSurface = previewSurface;
+            mJpegReader = jpegReader;
+            mYuvReader = yuvReader;
+            jpegReader.setOnImageAvailableListener(mOnJpegAvailable, mHandler);
+            yuvReader.setOnImageAvailableListener(mOnYuvAvailable, mHandler);
+        }
+
+        @Override
+        public HalDevice getDevice() {
+            return mDevice;
+        }
+
+        @Override
+        public void setFrameListener(FrameListener listener) {
+            mFrameListener = listener;
+        }
+
+        @Override
+        public void setJpegListener(JpegListener listener) {
+            mJpegListener = listener;
+        }
+
+        @Override
+        public void setRepeatingRequest(HalRequest request, CaptureCallback callback)
+                throws HalException {
+            try {
+                mSession.setRepeatingRequest(toCaptureRequest(request),
+                        new CallbackAdapter(request, callback), mHandler);
+            } catch (CameraAccessException e) {
+                throw toHalException(e);
+            }
+        }
+
+        @Override
+        public void capture(HalRequest request, CaptureCallback callback) throws HalException {
+            try {
+                mSession.capture(toCaptureRequest(request),
+                        new CallbackAdapter(request, callback), mHandler);
+            } catch (CameraAccessException e) {
+                throw toHalException(e);
+            }
+        }
+
+        @Override
+        public void stopRepeating() throws HalException {
+            try {
+                mSession.stopRepeating();
+            } catch (CameraAccessException e) {
+                throw toHalException(e);
+            }
+        }
+
+        @Override
+        public void abortCaptures() throws HalException {
+            try {
+                mSession.abortCaptures();
+            } catch (CameraAccessException e) {
+                throw toHalException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (mClosed) {
+                return;
+            }
+            // JPEGs may be waiting for a callback still queued on the handler.
+            deliverJpegs(mJpegReader);
+            mClosed = true;
+            mSession.close();
+            mJpegReader.close();
+            mYuvReader.close();
+            mStillFrames.clear();
+        }
+
+        private CaptureRequest toCaptureRequest(HalRequest request) throws HalException {
+            CaptureRequest.Builder builder;
+            try {
+                builder = mSession.getDevice().createCaptureRequest(request.getTemplate());
+            } catch (CameraAccessException e) {
+                throw toHalException(e);
+            }
+            if (request.hasTarget(HalRequest.TARGET_PREVIEW) && mPreviewSurface != null) {
+                builder.addTarget(mPreviewSurface);
+            }
+            if (request.hasTarget(HalRequest.TARGET_YUV)) {
+                builder.addTarget(mYuvReader.getSurface());
+            }
+            if (request.hasTarget(HalRequest.TARGET_JPEG)) {
+                builder.addTarget(mJpegReader.getSurface());
+                builder.set(CaptureRequest.JPEG_ORIENTATION, request.getJpegOrientation());
+            }
+            // The HalRequest constants have the values of their Camera2 counterparts.
+            builder.set(CaptureRequest.CONTROL_AF_MODE, request.getAfMode());
+            builder.set(CaptureRequest.CONTROL_AF_TRIGGER, request.getAfTrigger());
+            builder.set(CaptureRequest.CONTROL_AE_MODE, request.getAeMode());
+            builder.set(CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,
+                    request.getAePrecaptureTrigger());
+            builder.set(CaptureRequest.CONTROL_AE_LOCK, request.isAeLock());
+            return builder.build();
+        }
+
+        private final ImageReader.OnImageAvailableListener mOnYuvAvailable
+                = new ImageReader.OnImageAvailableListener() {
+
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                Image image;
+                try {
+                    image = reader.acquireLatestImage();
+                } catch (IllegalStateException e) {
+                    // Every image is still held by the frame listener; skip this one.
+                    return;
+                }
+                if (image == null) {
+                    return;
+                }
+                FrameListener listener = mFrameListener;
+                if (listener == null || mClosed) {
+                    image.close();  // 没有人分析时立即归还，相机才不会停下
+                    return;
+                }
+                listener.onFrame(new ImageFrame(image, ++mFrameSequence));
+            }
+
+        };
+
+        private final ImageReader.OnImageAvailableListener mOnJpegAvailable
+                = new ImageReader.OnImageAvailableListener() {
+
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                if (!mClosed) {
+                    deliverJpegs(reader);
+                }
+            }
+
+        };
+
+        /**
+         * Hands every JPEG waiting in {@code reader} to the listener and closes it.
+         */
+        private void deliverJpegs(ImageReader reader) {
+            while (true) {
+                Image image = reader.acquireNextImage();
+                if (image == null) {
+                    return;
+                }
+                try {
+                    Long frameNumber = mStillFrames.remove(image.getTimestamp());
+                    JpegListener listener = mJpegListener;
+                    if (listener != null) {
+                        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                        listener.onJpeg(buffer, image.getTimestamp(),
+                                frameNumber == null ? -1 : frameNumber);
+                    }
+                } finally {
+                    image.close();
+                }
+            }
+        }
+
+        /**
+         * Forwards the Camera2 callbacks of one submitted request.
+         */
+        private final class CallbackAdapter extends CameraCaptureSession.CaptureCallback {
+
+            private final HalRequest mRequest;
+            private final HalSession.CaptureCallback mCallback;
+
+            CallbackAdapter(HalRequest request, HalSession.CaptureCallback callback) {
+                mRequest = request;
+                mCallback = callback;
+            }
+
+            @Override
+            public void onCaptureStarted(@NonNull CameraCaptureSession session,
+                                         @NonNull CaptureRequest request,
+                                         long timestamp, long frameNumber) {
+                if (mRequest.hasTarget(HalRequest.TARGET_JPEG)) {
+                    mStillFrames.put(timestamp, frameNumber);
+                }
+                if (mCallback != null) {
+                    mCallback.onCaptureStarted(mRequest, timestamp, frameNumber);
+                }
+            }
+
+            @Override
+            public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                           @NonNull CaptureRequest request,
+                                           @NonNull TotalCaptureResult result) {
+                if (mCallback == null || mClosed) {
+                    return;
+                }
+                Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+                Long exposure = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+                Integer sensitivity = result.get(CaptureResult.SENSOR_SENSITIVITY);
+                mCallback.onCaptureCompleted(mRequest, new HalResult(result.getFrameNumber(),
+                        timestamp == null ? 0 : timestamp,
+                        stateOf(result, CaptureResult.CONTROL_AF_STATE),
+                        stateOf(result, CaptureResult.CONTROL_AE_STATE),
+                        stateOf(result, CaptureResult.CONTROL_AWB_STATE),
+                        exposure == null ? -1 : exposure,
+                        sensitivity == null ? -1 : sensitivity));
+            }
+
+            @Override
+            public void onCaptureFailed(@NonNull CameraCaptureSession session,
+                                        @NonNull CaptureRequest request,
+                                        @NonNull CaptureFailure failure) {
+                if (mCallback != null && !mClosed) {
+                    mCallback.onCaptureFailed(mRequest, failure.getFrameNumber(),
+                            failure.getReason());
+                }
+            }
+
+            @Override
+            public void onCaptureBufferLost(@NonNull CameraCaptureSession session,
+                                            @NonNull CaptureRequest request,
+                                            @NonNull Surface target, long frameNumber) {
+                if (mCallback != null && !mClosed) {
+                    mCallback.onCaptureBufferLost(mRequest, frameNumber);
+                }
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+
+/**
+ * Thin wrapper around {@link Trace} for the camera hot paths.
+ *
+ * <p>Sync sections must begin and end on the same thread. Async sections may span threads and
+ * are told apart by a cookie, for which we use the frame number, so that a single capture can be
+ * followed from the request to the saved file in Perfetto.</p>
+ *
+ * <p>Tracing is switched by the {@code CAMERA_TRACE} build config constant. When it is false
+ * every method here compiles down to nothing.</p>
+ */
+// 相机热路径的系统跟踪封装，关闭时没有任何开销
+final class CameraTrace {
+
+    private static final String TAG = "CameraTrace";
+
+    /**
+     * Whether trace sections are emitted at all.
+     */
+    static final boolean ENABLED = BuildConfig.CAMERA_TRACE;
+
+    /**
+     * {@code Trace#beginAsyncSection}, {@code Trace#endAsyncSection} and
+     * {@code Trace#isEnabled}, public from API 29. Resolved once, since this project compiles
+     * against an older SDK.
+     */
+    private static final Method BEGIN_ASYNC;
+    private static final Method END_ASYNC;
+    private static final Method IS_ENABLED;
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    static {
+        Method begin = null;
+        Method end = null;
+        Method isEnabled = null;
+        if (ENABLED && Build.VERSION.SDK_INT >= 29) {
+            try {
+                begin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                end = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+                isEnabled = Trace.class.getMethod("isEnabled");
+            } catch (NoSuchMethodException e) {
+                Log.w(TAG, "Async trace sections are not available", e);
+                begin = null;
+                end = null;
+            }
+        }
+        BEGIN_ASYNC = begin;
+        END_ASYNC = end;
+        IS_ENABLED = isEnabled;
+    }
+
+    private CameraTrace() {
+    }
+
+    static void beginSection(String name) {
+        if (ENABLED) {
+            Trace.beginSection(name);
+        }
+    }
+
+    static void endSection() {
+        if (ENABLED) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Begins an async section identified by {@code name} and {@code frameNumber}.
+     */
+    static void beginAsyncSection(String name, long frameNumber) {
+        if (ENABLED && BEGIN_ASYNC != null) {
+            invoke(BEGIN_ASYNC, name, frameNumber);
+        }
+    }
+
+    /**
+     * Ends the async section started with the same {@code name} and {@code frameNumber}.
+     */
+    static void endAsyncSection(String name, long frameNumber) {
+        if (ENABLED && END_ASYNC != null) {
+            invoke(END_ASYNC, name, frameNumber);
+        }
+    }
+
+    private static void invoke(Method method, String name, long frameNumber) {
+        try {
+            // Skip boxing the cookie and building the argument array while nobody is tracing.
+            if (!(Boolean) IS_ENABLED.invoke(null, NO_ARGUMENTS)) {
+                return;
+            }
+            // The cookie is the low 32 bits of the frame number; it only has to tell apart the
+            // few captures in flight at a time.
+            method.invoke(null, name, (int) (frameNumber & 0xFFFFFFFFL));
+        } catch (ReflectiveOperationException e) {
+            Log.w(TAG, "Failed to emit async section " + name, e);
+        }
+    }
+
+}
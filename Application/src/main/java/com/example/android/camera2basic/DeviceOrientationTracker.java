@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.content.Context;
+import android.hardware.SensorManager;
+import android.view.OrientationEventListener;
+
+import com.example.android.camera2basic.geometry.OrientationCalculator;
+import com.example.android.camera2basic.geometry.OrientationQuantizer;
+import com.example.android.camera2basic.metrics.StripedCounter;
+
+/**
+ * Keeps the device orientation from the accelerometer, independent of the display rotation, so
+ * the JPEG orientation is right even when the activity is locked to one orientation.
+ *
+ * <p>Readers get the cached quarter turn with {@link #getOrientation()}, a volatile read with no
+ * call into the window manager. The sensor listener only runs between {@link #start} and
+ * {@link #stop}.</p>
+ */
+// 设备方向跟踪：监听加速度计得到设备方向并缓存，拍照时直接读取，不再查询WindowManager
+class DeviceOrientationTracker extends OrientationEventListener {
+
+    /**
+     * Degrees past the midpoint between two quarters before the orientation switches.
+     */
+    private static final int HYSTERESIS = 10;
+
+    private final OrientationQuantizer mQuantizer = new OrientationQuantizer(HYSTERESIS);
+
+    private final StripedCounter mChanges;
+
+    DeviceOrientationTracker(Context context, StripedCounter changes) {
+        super(context, SensorManager.SENSOR_DELAY_NORMAL);
+        mChanges = changes;
+    }
+
+    /**
+     * Starts listening, seeded from the display rotation until the first sensor reading.
+     *
+     * @param displayRotation {@code Surface.ROTATION_*}
+     */
+    void start(int displayRotation) {
+        mQuantizer.reset(OrientationCalculator.deviceOrientation(displayRotation));
+        if (canDetectOrientation()) {
+            enable();
+        }
+    }
+
+    void stop() {
+        disable();
+    }
+
+    /**
+     * @return Clockwise degrees from the natural orientation: 0, 90, 180 or 270.
+     */
+    int getOrientation() {
+        int orientation = mQuantizer.getOrientation();
+        return orientation == OrientationQuantizer.UNKNOWN ? 0 : orientation;
+    }
+
+    @Override
+    public void onOrientationChanged(int orientation) {
+        if (mQuantizer.update(orientation)) {
+            mChanges.increment();
+        }
+    }
+
+}
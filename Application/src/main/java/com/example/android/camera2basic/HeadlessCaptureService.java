@@ -0,0 +1,692 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.hardware.camera2.CameraManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.Process;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+
+import com.example.android.camera2basic.analysis.AnalysisPipeline;
+import com.example.android.camera2basic.capture.CaptureController;
+import com.example.android.camera2basic.capture.CaptureStateMachine;
+import com.example.android.camera2basic.capture.SaveQueueSink;
+import com.example.android.camera2basic.control.CaptureHttpServer;
+import com.example.android.camera2basic.control.MjpegStreamer;
+import com.example.android.camera2basic.control.TriggerProtocol;
+import com.example.android.camera2basic.control.TriggerServer;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.HalRequest;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+import com.example.android.camera2basic.storage.BufferPool;
+import com.example.android.camera2basic.storage.JpegWriter;
+import com.example.android.camera2basic.storage.SaveQueue;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Captures pictures on triggers without any UI, for rigs where nobody looks at the screen.
+ *
+ * <p>The service runs the fragment's open, session, 3A and save flow through
+ * {@link CaptureController} on a {@link Camera2Hal}. Nothing is rendered: between pictures the
+ * repeating request only feeds a small YUV stream that keeps 3A converged. It runs in the
+ * foreground and holds a partial wake lock, so it keeps capturing with the screen off, and it is
+ * driven by intents: {@link #ACTION_START}, {@link #ACTION_CAPTURE} and {@link #ACTION_STOP},
+ * or by a test-bench controller through the {@link TriggerServer} it runs on the local socket
+ * {@link #EXTRA_CONTROL_SOCKET}, which only serves the shell and this app. A
+ * {@link CaptureHttpServer} on {@link #EXTRA_HTTP_PORT} serves the pictures, the metrics and an MJPEG stream of the YUV
+ * frames. Pictures go to {@code headless-<time>-<frame>.jpg} in the app's external files directory.</p>
+ *
+ * <p>The camera permission must have been granted through the activity. The activity's preview
+ * and this service compete for the camera; whichever opens it last wins.</p>
+ */
+// 无界面拍照服务：前台服务中运行与Fragment相同的打开、会话、3A和保存流程，不渲染预览，熄屏也能继续拍照
+public class HeadlessCaptureService extends Service {
+
+    /**
+     * Opens the camera in {@link #EXTRA_CAMERA_ID}, or the first back camera.
+     */
+    public static final String ACTION_START = "com.example.android.camera2basic.action.START";
+
+    /**
+     * Takes one picture.
+     */
+    public static final String ACTION_CAPTURE = "com.example.android.camera2basic.action.CAPTURE";
+
+    /**
+     * Closes the camera and stops the service.
+     */
+    public static final String ACTION_STOP = "com.example.android.camera2basic.action.STOP";
+
+    public static final String EXTRA_CAMERA_ID = "com.example.android.camera2basic.extra.CAMERA_ID";
+
+    /**
+     * Name of the trigger server's socket in the abstract local namespace, read by the first
+     * {@link #ACTION_START}. Defaults to {@link #DEFAULT_CONTROL_SOCKET}; an empty name disables
+     * the server. A host connects through {@code adb forward tcp:8765 localabstract:<name>}.
+     */
+    public static final String EXTRA_CONTROL_SOCKET =
+            "com.example.android.camera2basic.extra.CONTROL_SOCKET";
+
+    public static final String DEFAULT_CONTROL_SOCKET = "com.example.android.camera2basic.trigger";
+
+    /**
+     * The uid of {@code adb shell}, and so of {@code adb forward}.
+     */
+    private static final int SHELL_UID = 2000;
+
+    /**
+     * Loopback port of the HTTP server, read by the first {@link #ACTION_START}. Defaults to
+     * {@link #DEFAULT_HTTP_PORT}; 0 disables the server.
+     */
+    public static final String EXTRA_HTTP_PORT = "com.example.android.camera2basic.extra.HTTP_PORT";
+
+    public static final int DEFAULT_HTTP_PORT = 8080;
+
+    /**
+     * Whether the HTTP server listens on every interface, so the stream can be watched over the
+     * LAN, rather than on loopback only. Read by the first {@link #ACTION_START}.
+     */
+    public static final String EXTRA_HTTP_LAN = "com.example.android.camera2basic.extra.HTTP_LAN";
+
+    /**
+     * Highest frame rate of the MJPEG stream, a float. Defaults to {@link #DEFAULT_STREAM_FPS}.
+     */
+    public static final String EXTRA_STREAM_FPS =
+            "com.example.android.camera2basic.extra.STREAM_FPS";
+
+    public static final float DEFAULT_STREAM_FPS = 10;
+
+    /**
+     * Name of this capture rig, written into every picture with the frame number and timestamp.
+     * Read by every {@link #ACTION_START} that carries it.
+     */
+    public static final String EXTRA_RIG_ID = "com.example.android.camera2basic.extra.RIG_ID";
+
+    /**
+     * Largest width of the MJPEG stream.
+     */
+    private static final int STREAM_MAX_WIDTH = 640;
+
+    /**
+     * Longest the stream may keep a frame once the camera closes.
+     */
+    private static final long STREAM_CLOSE_TIMEOUT_MS = 500;
+
+    /**
+     * How long {@link #onDestroy()} waits for pending pictures before journaling them.
+     */
+    private static final long SAVE_DRAIN_TIMEOUT_MS = 1000;
+
+    /**
+     * Spill journal of {@link #mSaveQueue}, next to the pictures. Not the activity's journal,
+     * which is written from another queue.
+     */
+    private static final String SAVE_JOURNAL_NAME = "headless-save-journal.bin";
+
+    /**
+     * Most memory {@link #mBufferPool} keeps in idle buffers, a few full-resolution JPEGs.
+     */
+    private static final long BUFFER_POOL_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final String TAG = "HeadlessCapture";
+
+    private static final String CHANNEL_ID = "headless_capture";
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * Longest the wake lock is held, in case the service is never stopped.
+     */
+    private static final long WAKE_LOCK_TIMEOUT_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Longest a trigger server request waits for the camera thread.
+     */
+    private static final long CAMERA_THREAD_TIMEOUT_MS = 1000;
+
+    /**
+     * Longest {@link #onDestroy()} waits for the camera thread to close the camera and drain the
+     * save queue, a little more than the stream and the queue may take.
+     */
+    private static final long STOP_TIMEOUT_MS =
+            STREAM_CLOSE_TIMEOUT_MS + SAVE_DRAIN_TIMEOUT_MS + 500;
+
+    private final MetricsRegistry mMetrics = new MetricsRegistry();  // 指标注册表
+    private final StripedCounter mTriggers = mMetrics.counter("headless.triggers");
+    private final StripedCounter mTriggersDropped = mMetrics.counter("headless.triggers_dropped");
+    private final StripedCounter mSaveErrors = mMetrics.counter("headless.save_errors");
+    private final StripedCounter mCameraErrors = mMetrics.counter("headless.camera_errors");
+    private final LatencyHistogram mTriggerToSave = mMetrics.histogram("headless.trigger_to_save");
+
+    private final JpegWriter mJpegWriter = new JpegWriter(JpegWriter.STRATEGY_CHANNEL);
+
+    /**
+     * Direct buffers the pictures are copied into, so the JPEG reader gets its images back
+     * before they are written.
+     */
+    private final BufferPool mBufferPool = new BufferPool(BUFFER_POOL_MAX_BYTES, mMetrics);
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private Camera2Hal mHal;
+    private CaptureController mController;
+    private PowerManager.WakeLock mWakeLock;
+    private File mDir;
+    private TriggerServer mTriggerServer;
+    private String mTriggerSocket;
+    private CaptureHttpServer mHttpServer;
+    private ExecutorService mStreamExecutor;
+    private AnalysisPipeline mStreamPipeline;
+    private MjpegStreamer mStreamer;
+    private SaveQueue mSaveQueue;
+    private SaveQueueSink mSink;
+
+    private volatile String mLastFile;
+    private volatile long mLastTimestamp;
+
+    /**
+     * Starts the service, or tells a running one to take a picture or stop.
+     *
+     * @param action One of the {@code ACTION_*} values
+     */
+    public static void send(Context context, String action) {
+        Intent intent = new Intent(context, HeadlessCaptureService.class).setAction(action);
+        if (ACTION_STOP.equals(action)) {
+            context.startService(intent);   // 停止不需要前台服务
+        } else {
+            ContextCompat.startForegroundService(context, intent);
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        startForeground(NOTIFICATION_ID, buildNotification());
+        mDir = getExternalFilesDir(null);
+        mThread = new HandlerThread("HeadlessCapture", Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mSaveQueue = new SaveQueue(new File(mDir, SAVE_JOURNAL_NAME), mJpegWriter, mBufferPool,
+                mMetrics, mSaveListener);
+        mSaveQueue.start(); // 先写完上次停止时留在日志中的照片
+        mSink = new SaveQueueSink(mSaveQueue, mBufferPool, mFileNamer, mSaveErrors);
+        mHal = new Camera2Hal((CameraManager) getSystemService(Context.CAMERA_SERVICE), mHandler);
+        mController = new CaptureController(mHal, mSink, mListener, null);
+        mController.setPreviewTargets(HalRequest.TARGET_YUV);   // 不渲染预览，只用小尺寸YUV维持3A
+        mStreamExecutor = Executors.newSingleThreadExecutor();
+        mStreamPipeline = new AnalysisPipeline(mStreamExecutor);
+        mStreamer = new MjpegStreamer(new YuvImageEncoder(), STREAM_MAX_WIDTH,
+                DEFAULT_STREAM_FPS, mMetrics);
+        mStreamPipeline.addAnalyzer(mStreamer);
+        mController.setAnalysisPipeline(mStreamPipeline, STREAM_CLOSE_TIMEOUT_MS); // 没有观看者时不编码
+        PowerManager power = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        mWakeLock = power.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+        mWakeLock.setReferenceCounted(false);
+        mWakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);    // 熄屏后CPU也要继续运行
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // A null intent means the system restarted the service; resume capturing.
+        String action = intent == null ? ACTION_START : intent.getAction();
+        final String cameraId = intent == null ? null : intent.getStringExtra(EXTRA_CAMERA_ID);
+        if (ACTION_STOP.equals(action)) {
+            stopSelf();
+        } else if (ACTION_CAPTURE.equals(action)) {
+            mTriggers.increment();
+            final long triggerNanos = System.nanoTime();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    capture(triggerNanos);
+                }
+            });
+        } else {
+            if (intent != null && intent.hasExtra(EXTRA_RIG_ID)) {
+                mSink.setRigId(intent.getStringExtra(EXTRA_RIG_ID));
+            }
+            if (mTriggerServer == null) {
+                String socketName = intent == null
+                        ? null : intent.getStringExtra(EXTRA_CONTROL_SOCKET);
+                startTriggerServer(socketName == null ? DEFAULT_CONTROL_SOCKET : socketName);
+            }
+            if (mHttpServer == null) {
+                if (intent != null) {
+                    mStreamer.setFrameRate(
+                            intent.getFloatExtra(EXTRA_STREAM_FPS, DEFAULT_STREAM_FPS));
+                }
+                startHttpServer(intent == null ? DEFAULT_HTTP_PORT
+                        : intent.getIntExtra(EXTRA_HTTP_PORT, DEFAULT_HTTP_PORT),
+                        intent != null && intent.getBooleanExtra(EXTRA_HTTP_LAN, false));
+            }
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    open(cameraId);
+                }
+            });
+        }
+        return START_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mTriggerServer != null) {
+            mTriggerServer.close();
+        }
+        if (mHttpServer != null) {
+            mHttpServer.close();
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeCamera();
+                // The reader is closed, so every accepted picture is in the queue by now.
+                int spilled = mSaveQueue.stop(SAVE_DRAIN_TIMEOUT_MS);
+                if (spilled > 0) {
+                    Log.w(TAG, spilled + " pictures journaled on stop");
+                }
+                // 相机和保存队列都停了以后才关掉码流线程，放开唤醒锁
+                mStreamExecutor.shutdown();
+                if (mWakeLock.isHeld()) {
+                    mWakeLock.release();
+                }
+            }
+        });
+        mThread.quitSafely();
+        try {
+            mThread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (mThread.isAlive()) {
+            Log.w(TAG, "Camera thread did not stop in " + STOP_TIMEOUT_MS + " ms");
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("HeadlessCaptureService: camera=" + mController.getCameraId()
+                + " previewing=" + mController.isPreviewing()
+                + " saved=" + mController.getPicturesSaved()
+                + " queued=" + mController.getQueuedPictures()
+                + " triggerSocket=" + mTriggerSocket
+                + " triggerClients="
+                + (mTriggerServer == null ? 0 : mTriggerServer.getConnectionCount())
+                + " httpPort=" + (mHttpServer == null ? -1 : mHttpServer.getPort()));
+        mMetrics.dump("  ", writer);
+    }
+
+    /**
+     * Closes the camera on the camera thread. The controller makes the stream drop its frames
+     * first, since closing the session closes the YUV reader whose images they are.
+     */
+    private void closeCamera() {
+        mController.close();
+        mSink.flush();  // 相机已关闭，结果不会再到达
+    }
+
+    private void open(String cameraId) {    // 打开相机，已经打开时不做任何事
+        if (mController.getCameraId() != null) {
+            return;
+        }
+        try {
+            mController.open(cameraId != null ? cameraId : chooseCamera());
+        } catch (HalException e) {
+            mCameraErrors.increment();
+            Log.e(TAG, "Could not open the camera", e);
+            stopSelf();
+        }
+    }
+
+    /**
+     * @return The first back camera, or the first camera if none faces back.
+     */
+    private String chooseCamera() throws HalException {
+        List<String> ids = mHal.getCameraIds();
+        for (String id : ids) {
+            if (mHal.getCameraInfo(id).getFacing() == CameraInfo.LENS_FACING_BACK) {
+                return id;
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new HalException(HalException.CAMERA_ERROR, "No camera");
+        }
+        return ids.get(0);
+    }
+
+    private void capture(final long triggerNanos) {   // 把一张照片加入拍照队列，相机还在打开时等预览开始，队列满时丢弃触发
+        if (mController.getCameraId() == null) {
+            open(null);
+        }
+        boolean queued = mController.queuePicture(new CaptureController.PictureCallback() {
+            @Override
+            public void onPictureSaved(long timestamp, long frameNumber) {
+                mTriggerToSave.recordSince(triggerNanos);
+            }
+
+            @Override
+            public void onPictureFailed(long frameNumber) {
+            }
+        });
+        if (!queued) {
+            mTriggersDropped.increment();
+        }
+    }
+
+    private void startTriggerServer(String socketName) {
+        if (socketName.isEmpty()) {
+            return;
+        }
+        LocalTriggerAcceptor acceptor;
+        try {
+            acceptor = new LocalTriggerAcceptor(socketName);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not listen on " + socketName, e);
+            return;
+        }
+        mTriggerSocket = socketName;
+        mTriggerServer = new TriggerServer(mTriggerTarget, mMetrics, SHELL_UID, Process.myUid());
+        mTriggerServer.start(acceptor);
+    }
+
+    private void startHttpServer(int port, boolean lan) {
+        if (port == 0 || mDir == null) {
+            return;
+        }
+        mHttpServer = new CaptureHttpServer(mDir, mMetrics);
+        mHttpServer.setStream(mStreamer);
+        try {
+            mHttpServer.start(lan ? null : InetAddress.getLoopbackAddress(), port);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not listen on port " + port, e);
+            mHttpServer = null;
+        }
+    }
+
+    /**
+     * Runs {@code task} on the camera thread and waits for its result. A task still queued after
+     * the timeout is cancelled, so {@code fallback} is its only outcome; a task that already
+     * started is waited for, so its result is never lost.
+     */
+    private <T> T callOnCameraThread(Callable<T> task, T fallback) {
+        FutureTask<T> future = new FutureTask<>(task);
+        if (!mHandler.post(future)) {
+            return fallback;
+        }
+        try {
+            return future.get(CAMERA_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                // Never runs, so the caller's answer is the only one.
+                Log.w(TAG, "Camera thread did not answer", e);
+                return fallback;
+            }
+            // Already running; its effects happen, so report them.
+            return awaitStarted(future, fallback);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return future.cancel(false) ? fallback : awaitStarted(future, fallback);
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Camera thread task failed", e);
+            return fallback;
+        }
+    }
+
+    private static <T> T awaitStarted(FutureTask<T> future, T fallback) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    Log.w(TAG, "Camera thread task failed", e);
+                    return fallback;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Notification buildNotification() {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.headless_channel), NotificationManager.IMPORTANCE_LOW));
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = newLegacyBuilder();
+        }
+        return builder.setSmallIcon(R.drawable.ic_launcher)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.headless_notification))
+                .setOngoing(true)
+                .build();
+    }
+
+    /**
+     * @return A builder without a channel, which releases before O require
+     */
+    @SuppressWarnings("deprecation")
+    private Notification.Builder newLegacyBuilder() {
+        return new Notification.Builder(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mBufferPool.trim(0);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            mBufferPool.trim(BUFFER_POOL_MAX_BYTES / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        mBufferPool.trim(0);
+    }
+
+    /**
+     * Names each picture after the time it was saved and its frame number.
+     */
+    private final SaveQueueSink.FileNamer mFileNamer = new SaveQueueSink.FileNamer() {
+
+        @Override
+        public File getFile(long timestamp, long frameNumber) {
+            return new File(mDir,
+                    "headless-" + System.currentTimeMillis() + "-" + frameNumber + ".jpg");
+        }
+
+    };
+
+    private final SaveQueue.Listener mSaveListener = new SaveQueue.Listener() {
+
+        @Override
+        public void onSaved(long frameNumber, File file, long bytes) {
+            mLastFile = file.getName();
+        }
+
+        @Override
+        public void onSaveFailed(long frameNumber, File file, IOException e) {
+            mSaveErrors.increment();
+            Log.e(TAG, "Could not save " + file, e);
+        }
+
+        @Override
+        public void onSpilled(long frameNumber, File file) {
+            Log.w(TAG, "Journaled " + file + " to save it on the next start");
+        }
+
+    };
+
+    private final CaptureController.Listener mListener = new CaptureController.Listener() {
+
+        @Override
+        public void onSaveFailed(long frameNumber, IOException e) {
+            mSaveErrors.increment();
+            Log.e(TAG, "Could not save frame " + frameNumber, e);
+        }
+
+        @Override
+        public void onCameraError(String cameraId, int error) {
+            mCameraErrors.increment();
+            Log.e(TAG, "Camera " + cameraId + " error " + error);
+            closeCamera();  // 下一次触发时重新打开
+        }
+
+        @Override
+        public void onDisconnected(String cameraId) {
+            Log.w(TAG, "Camera " + cameraId + " disconnected");
+            closeCamera();
+        }
+
+        @Override
+        public void onAccessError(HalException e) {
+            mCameraErrors.increment();
+            Log.e(TAG, "Camera access error", e);
+        }
+
+        @Override
+        public void onCaptureTimeout(int state) {
+            Log.w(TAG, "Capture stuck in state " + CaptureStateMachine.stateName(state));
+        }
+
+        @Override
+        public void onAnalysisCloseTimeout() {
+            Log.w(TAG, "Stream still encoding while closing the camera");
+        }
+
+    };
+
+    /**
+     * Hands the requests of the trigger server to the camera thread. Pictures are queued without
+     * waiting for the answer, the other requests wait for it.
+     */
+    private final TriggerServer.Target mTriggerTarget = new TriggerServer.Target() {
+
+        @Override
+        public int capture(final int count, final CaptureController.PictureCallback callback) {
+            Integer queued = callOnCameraThread(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    mTriggers.add(count);
+                    int queued = 0;
+                    while (queued < count && mController.queuePicture(mLastTimestampCallback)) {
+                        queued++;
+                    }
+                    mTriggersDropped.add(count - queued);
+                    return queued;
+                }
+
+                private final CaptureController.PictureCallback mLastTimestampCallback =
+                        new CaptureController.PictureCallback() {
+                            @Override
+                            public void onPictureSaved(long timestamp, long frameNumber) {
+                                mLastTimestamp = timestamp;
+                                callback.onPictureSaved(timestamp, frameNumber);
+                            }
+
+                            @Override
+                            public void onPictureFailed(long frameNumber) {
+                                callback.onPictureFailed(frameNumber);
+                            }
+                        };
+            }, 0);
+            return queued;
+        }
+
+        @Override
+        public int set3ALocked(final boolean locked) {
+            return callOnCameraThread(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    if (!mController.isPreviewing()) {
+                        return TriggerProtocol.STATUS_UNAVAILABLE;
+                    }
+                    return mController.set3ALocked(locked) ? TriggerProtocol.STATUS_OK
+                            : TriggerProtocol.STATUS_BUSY;
+                }
+            }, TriggerProtocol.STATUS_UNAVAILABLE);
+        }
+
+        @Override
+        public void getStatus(final TriggerProtocol.Status status) {
+            callOnCameraThread(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    status.state = mController.getStateMachine().getState();
+                    status.previewing = mController.isPreviewing();
+                    status.locked = mController.is3ALocked();
+                    status.queued = mController.getQueuedPictures();
+                    status.saved = mController.getPicturesSaved();
+                    return null;
+                }
+            }, null);
+            status.lastTimestamp = mLastTimestamp;
+        }
+
+        @Override
+        public String getLastFile() {
+            return mLastFile;
+        }
+
+    };
+
+}
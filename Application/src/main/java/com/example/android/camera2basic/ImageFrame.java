@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic;
+
+import android.media.Image;
+
+import com.example.android.camera2basic.analysis.Frame;
+
+/**
+ * A {@link Frame} backed by a YUV_420_888 {@link Image}. The image is closed when the last
+ * analyzer releases the frame.
+ */
+// 将YUV_420_888格式的Image包装成Frame，最后一个引用释放时关闭Image
+class ImageFrame extends Frame {
+
+    private final Image mImage;
+
+    ImageFrame(Image image, long sequence) {
+        super(image.getWidth(), image.getHeight());
+        mImage = image;
+        Image.Plane[] planes = image.getPlanes();
+        for (int i = 0; i < planes.length; i++) {
+            setPlane(i, planes[i].getBuffer(), planes[i].getRowStride(),
+                    planes[i].getPixelStride());
+        }
+        setTimestamp(image.getTimestamp());
+        setSequence(sequence);
+    }
+
+    @Override
+    protected void onReleased() {
+        mImage.close();
+    }
+
+}
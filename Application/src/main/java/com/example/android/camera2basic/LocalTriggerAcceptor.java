@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import com.example.android.camera2basic.control.TriggerServer;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Accepts {@link TriggerServer} clients on a socket in the abstract local namespace, whose peer
+ * uid the kernel vouches for. A host reaches it through
+ * {@code adb forward tcp:<port> localabstract:<name>}.
+ */
+// 抽象命名空间的本地套接字：内核提供对端uid，可通过adb forward从主机访问
+final class LocalTriggerAcceptor implements TriggerServer.Acceptor {
+
+    private final LocalServerSocket mServerSocket;
+
+    LocalTriggerAcceptor(String name) throws IOException {
+        mServerSocket = new LocalServerSocket(name);
+    }
+
+    @Override
+    public TriggerServer.Link accept() throws IOException {
+        final LocalSocket socket = mServerSocket.accept();
+        return new TriggerServer.Link() {
+            @Override
+            public int getPeerUid() throws IOException {
+                return socket.getPeerCredentials().getUid();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return socket.getInputStream();
+            }
+
+            @Override
+            public OutputStream getOutputStream() throws IOException {
+                return socket.getOutputStream();
+            }
+
+            @Override
+            public void close() {
+                // Shut down first: on older releases close() does not wake a blocked read.
+                shutdown(socket.getFileDescriptor());
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Nothing left to release.
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // A blocked accept() only returns once the listening socket is shut down.
+        shutdown(mServerSocket.getFileDescriptor());
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            // Nothing left to release.
+        }
+    }
+
+    private static void shutdown(FileDescriptor fd) {
+        if (fd == null) {
+            return;
+        }
+        try {
+            Os.shutdown(fd, OsConstants.SHUT_RDWR);
+        } catch (ErrnoException e) {
+            // Not connected, or already shut down.
+        }
+    }
+
+}
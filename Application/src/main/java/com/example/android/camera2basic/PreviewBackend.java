@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.graphics.Matrix;
+import android.os.SystemClock;
+import android.view.Surface;
+import android.view.View;
+
+import com.example.android.camera2basic.metrics.CaptureTelemetry;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+import java.io.PrintWriter;
+
+/**
+ * The view the camera preview is drawn into. {@link Camera2BasicFragment} talks to this class
+ * only, so it does not need to know whether a {@link android.view.TextureView} or a
+ * {@link android.view.SurfaceView} is behind it.
+ *
+ * <p>Every backend reports when frames reach the screen, as well as it can tell, through
+ * {@link #onFrameShown(long)}: the latency from the sensor timestamp goes to the
+ * {@code preview.<name>.latency} histogram, and the intervals between frames to a
+ * {@link CaptureTelemetry} that measures frame pacing.</p>
+ */
+// 预览后端：封装显示预览的View，Fragment不需要关心使用的是TextureView还是SurfaceView
+abstract class PreviewBackend {
+
+    /**
+     * Lifecycle of the surface behind the view, on the main thread.
+     */
+    interface Callback {
+
+        void onSurfaceAvailable(int width, int height);
+
+        void onSurfaceSizeChanged(int width, int height);
+
+    }
+
+    private static final int PACING_WINDOW = 120;
+
+    private final String mName;
+    private final LatencyHistogram mLatency;
+    private final CaptureTelemetry mPacing = new CaptureTelemetry(PACING_WINDOW);
+
+    private long mShownFrames;
+    private volatile boolean mRealtimeTimestamps;
+
+    Callback mCallback;
+
+    PreviewBackend(String name, MetricsRegistry metrics) {
+        mName = name;
+        mLatency = metrics.histogram("preview." + name + ".latency");
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    /**
+     * Shows the view and starts reporting surface events to {@code callback}. If the surface
+     * already exists, {@link #isAvailable()} is true right away and no
+     * {@link Callback#onSurfaceAvailable} follows.
+     */
+    abstract void attach(Callback callback);
+
+    /**
+     * Stops reporting surface events and hides the view, which releases its surface.
+     */
+    abstract void detach();
+
+    abstract View getView();
+
+    abstract boolean isAvailable();
+
+    /**
+     * @return Whether {@link #setTransform(Matrix)} has any effect.
+     */
+    abstract boolean supportsTransform();
+
+    abstract void setTransform(Matrix matrix);
+
+    /**
+     * @return Whether the view requested a layout pass, see
+     * {@link AutoFitTextureView#setAspectRatio(int, int)}.
+     */
+    abstract boolean setAspectRatio(int width, int height);
+
+    /**
+     * Center-crop mode; only backends that {@link #supportsTransform()} honor it.
+     */
+    abstract void setCenterCrop(boolean centerCrop);
+
+    /**
+     * Sizes the surface's buffers for the camera and returns it, for a new capture session.
+     */
+    abstract Surface createSurface(int bufferWidth, int bufferHeight);
+
+    int getWidth() {
+        return getView().getWidth();
+    }
+
+    int getHeight() {
+        return getView().getHeight();
+    }
+
+    /**
+     * Called for every completed preview result, on the camera callback thread. Backends that
+     * see their frames arrive on screen ignore it.
+     */
+    void onPreviewResult(long sensorTimestamp) {
+    }
+
+    /**
+     * @param realtime Whether sensor timestamps use {@code elapsedRealtimeNanos} instead of
+     *                 {@code System.nanoTime}, from {@code SENSOR_INFO_TIMESTAMP_SOURCE}
+     */
+    void setRealtimeTimestamps(boolean realtime) {
+        mRealtimeTimestamps = realtime;
+    }
+
+    /**
+     * Starts a new pacing window, e.g. when a new session starts.
+     */
+    void onSessionStarted() {
+        mPacing.onSessionStarted();
+    }
+
+    /**
+     * Records that the frame exposed at {@code sensorTimestamp} has been handed to the display.
+     */
+    void onFrameShown(long sensorTimestamp) {
+        long now = mRealtimeTimestamps ? SystemClock.elapsedRealtimeNanos() : System.nanoTime();
+        mLatency.record(now - sensorTimestamp);
+        // 显示时间作为时间戳，序号连续，因此只统计间隔、抖动和迟到，不会有丢帧
+        mPacing.onCaptureCompleted(mShownFrames++, now);
+    }
+
+    void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("Preview " + mName + ": latency " + mLatency);
+        writer.print(prefix);
+        writer.println("  pacing " + mPacing.snapshot(new CaptureTelemetry.Snapshot()));
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.graphics.Matrix;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.View;
+
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+/**
+ * Shows the preview in an {@link AutoFitSurfaceView}. The camera's buffers go straight to the
+ * system compositor, usually as a hardware overlay, skipping the GPU pass on the app's UI thread.
+ * The camera rotates the buffers for the display on its own, but no other transform is possible.
+ *
+ * <p>The app never sees these frames, so a frame counts as shown when its preview result
+ * arrives, which is when the buffer has been queued to the compositor. The latency thus
+ * excludes the final composition, at most one refresh.</p>
+ */
+// SurfaceView预览后端：走硬件叠加层，延迟更低，但不支持变换矩阵
+class SurfaceViewBackend extends PreviewBackend implements SurfaceHolder.Callback {
+
+    private final AutoFitSurfaceView mView;
+
+    private boolean mAvailable;
+
+    SurfaceViewBackend(AutoFitSurfaceView view, MetricsRegistry metrics) {
+        super("surface", metrics);
+        mView = view;
+        mView.getHolder().addCallback(this);
+    }
+
+    @Override
+    void attach(Callback callback) {
+        mCallback = callback;
+        mView.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    void detach() {
+        mCallback = null;
+        mView.setVisibility(View.GONE);
+    }
+
+    @Override
+    View getView() {
+        return mView;
+    }
+
+    @Override
+    boolean isAvailable() {
+        return mAvailable;
+    }
+
+    @Override
+    boolean supportsTransform() {
+        return false;
+    }
+
+    @Override
+    void setTransform(Matrix matrix) {
+    }
+
+    @Override
+    boolean setAspectRatio(int width, int height) {
+        return mView.setAspectRatio(width, height);
+    }
+
+    @Override
+    void setCenterCrop(boolean centerCrop) {
+    }
+
+    @Override
+    Surface createSurface(int bufferWidth, int bufferHeight) {
+        SurfaceHolder holder = mView.getHolder();
+        holder.setFixedSize(bufferWidth, bufferHeight); // 缓冲区大小必须是相机支持的输出尺寸
+        return holder.getSurface();
+    }
+
+    @Override
+    void onPreviewResult(long sensorTimestamp) {
+        onFrameShown(sensorTimestamp);
+    }
+
+    @Override   // surfaceCreated的作用是 Surface创建后通知Fragment打开相机
+    public void surfaceCreated(SurfaceHolder holder) {
+        mAvailable = true;
+        Callback callback = mCallback;
+        if (callback != null) {
+            callback.onSurfaceAvailable(mView.getWidth(), mView.getHeight());
+        }
+    }
+
+    @Override   // surfaceChanged报告的是缓冲区的尺寸，即上面设置的固定尺寸，不需要处理
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        mAvailable = false;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+/**
+ * Shows the preview in an {@link AutoFitTextureView}. The frames are composited by the GPU as
+ * part of the app's window, which allows arbitrary transforms, at the cost of one extra frame of
+ * latency. A frame counts as shown when the view latches it.
+ */
+// TextureView预览后端：支持变换矩阵和居中裁剪，在纹理更新时统计显示延迟
+class TextureViewBackend extends PreviewBackend implements TextureView.SurfaceTextureListener {
+
+    private final AutoFitTextureView mView;
+
+    TextureViewBackend(AutoFitTextureView view, MetricsRegistry metrics) {
+        super("texture", metrics);
+        mView = view;
+    }
+
+    @Override
+    void attach(Callback callback) {
+        mCallback = callback;
+        mView.setSurfaceTextureListener(this);
+        mView.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    void detach() {
+        mCallback = null;
+        mView.setVisibility(View.GONE);
+    }
+
+    @Override
+    View getView() {
+        return mView;
+    }
+
+    @Override
+    boolean isAvailable() {
+        return mView.isAvailable();
+    }
+
+    @Override
+    boolean supportsTransform() {
+        return true;
+    }
+
+    @Override
+    void setTransform(Matrix matrix) {
+        mView.setTransform(matrix);
+    }
+
+    @Override
+    boolean setAspectRatio(int width, int height) {
+        return mView.setAspectRatio(width, height);
+    }
+
+    @Override
+    void setCenterCrop(boolean centerCrop) {
+        mView.setCenterCrop(centerCrop);
+    }
+
+    @Override
+    Surface createSurface(int bufferWidth, int bufferHeight) {
+        SurfaceTexture texture = mView.getSurfaceTexture();
+        if (texture == null) {
+            throw new IllegalStateException("SurfaceTexture is not available.");
+        }
+        // We configure the size of default buffer to be the size of camera preview we want.
+        texture.setDefaultBufferSize(bufferWidth, bufferHeight);    // 设置SurfaceTexture的默认缓冲区大小
+        return new Surface(texture);
+    }
+
+    @Override   // onSurfaceTextureAvailable的作用是 当TextureView可用时，通知Fragment打开相机
+    public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height) {
+        Callback callback = mCallback;
+        if (callback != null) {
+            callback.onSurfaceAvailable(width, height);
+        }
+    }
+
+    @Override   // onSurfaceTextureSizeChanged的作用是 当TextureView的大小改变时，通知Fragment重新配置变换
+    public void onSurfaceTextureSizeChanged(SurfaceTexture texture, int width, int height) {
+        Callback callback = mCallback;
+        if (callback != null) {
+            callback.onSurfaceSizeChanged(width, height);
+        }
+    }
+
+    @Override   // onSurfaceTextureDestroyed的作用是 当TextureView被销毁时，释放SurfaceTexture
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture texture) {
+        return true;
+    }
+
+    @Override   // onSurfaceTextureUpdated的作用是 新的一帧被TextureView取用，即将显示
+    public void onSurfaceTextureUpdated(SurfaceTexture texture) {
+        onFrameShown(texture.getTimestamp());
+    }
+
+}
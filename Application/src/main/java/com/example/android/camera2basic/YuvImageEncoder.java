@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import com.example.android.camera2basic.control.MjpegStreamer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses stream frames with the platform's {@link YuvImage}, which uses the native
+ * libjpeg-turbo encoder.
+ */
+// 使用YuvImage把NV21帧压缩成JPEG
+final class YuvImageEncoder implements MjpegStreamer.Encoder {
+
+    private final Rect mRect = new Rect();
+
+    @Override
+    public void encode(byte[] nv21, int width, int height, int quality, OutputStream out)
+            throws IOException {
+        mRect.set(0, 0, width, height);
+        YuvImage image = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        if (!image.compressToJpeg(mRect, quality, out)) {
+            throw new IOException("Could not compress a " + width + "x" + height + " frame");
+        }
+    }
+
+}
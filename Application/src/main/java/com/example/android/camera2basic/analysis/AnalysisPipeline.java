@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.io.PrintWriter;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fans preview frames out to a set of {@link FrameAnalyzer}s running on an {@link Executor}.
+ *
+ * <p>Every analyzer owns a single pending slot. Submitting a frame replaces whatever is still
+ * waiting in the slot, and the replaced frame is released immediately (keep-latest). A slow
+ * analyzer therefore never holds more than the frame it is working on plus the newest one, and
+ * the producer never blocks.</p>
+ */
+// 分析流水线：每个分析器只保留最新的一帧，旧帧立即释放，保证相机不会因为分析过慢而阻塞
+public final class AnalysisPipeline {
+
+    private final Executor mExecutor;
+
+    private final CopyOnWriteArrayList<Slot> mSlots = new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of slots currently running on the executor.
+     */
+    private final AtomicInteger mActive = new AtomicInteger();
+
+    private final Object mIdleLock = new Object();
+
+    private volatile boolean mClosed;
+
+    public AnalysisPipeline(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Registers an analyzer. Frames submitted from now on are delivered to it.
+     */
+    public void addAnalyzer(FrameAnalyzer analyzer) {
+        mSlots.add(new Slot(analyzer));
+    }
+
+    /**
+     * Unregisters an analyzer and releases the frame waiting for it, if any.
+     */
+    public void removeAnalyzer(FrameAnalyzer analyzer) {
+        for (Slot slot : mSlots) {
+            if (slot.mAnalyzer == analyzer) {
+                mSlots.remove(slot);
+                slot.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The statistics of {@code analyzer}, or null if it is not registered.
+     */
+    public AnalyzerStats getStats(FrameAnalyzer analyzer) {
+        for (Slot slot : mSlots) {
+            if (slot.mAnalyzer == analyzer) {
+                return slot.mStats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands a frame to every analyzer. The caller's reference is consumed; the frame is released
+     * once every analyzer is done with it or has dropped it.
+     */
+    public void submit(Frame frame) {
+        try {
+            if (mClosed) {
+                return;
+            }
+            for (Slot slot : mSlots) {
+                slot.offer(frame);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Stops accepting frames, releases all pending ones and waits up to {@code timeoutMs} for
+     * analyzers that are still running. After this returns true no analyzer touches a frame, so
+     * the buffers behind them can be closed.
+     *
+     * @return Whether all analyzers went idle within the timeout
+     */
+    public boolean close(long timeoutMs) {
+        mClosed = true;
+        for (Slot slot : mSlots) {
+            slot.clear();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (mIdleLock) {
+            while (mActive.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mIdleLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accepts frames again after {@link #close}, once the buffers behind the old frames were
+     * closed and a new source is about to deliver.
+     */
+    public void reopen() {
+        mClosed = false;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("AnalysisPipeline: " + mSlots.size() + " analyzers, active="
+                + mActive.get());
+        for (Slot slot : mSlots) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(slot.mAnalyzer.getClass().getSimpleName());
+            writer.print(": ");
+            writer.println(slot.mStats);
+        }
+    }
+
+    private void onSlotIdle() {
+        if (mActive.decrementAndGet() == 0 && mClosed) {
+            synchronized (mIdleLock) {
+                mIdleLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Holds the newest frame for one analyzer and runs the analyzer on the executor.
+     */
+    private final class Slot implements Runnable {
+
+        final FrameAnalyzer mAnalyzer;
+        final AnalyzerStats mStats = new AnalyzerStats();
+        final AtomicReference<Frame> mPending = new AtomicReference<>();
+        final AtomicBoolean mScheduled = new AtomicBoolean();
+
+        Slot(FrameAnalyzer analyzer) {
+            mAnalyzer = analyzer;
+        }
+
+        void offer(Frame frame) {
+            frame.retain();
+            Frame previous = mPending.getAndSet(frame);
+            if (previous != null) {
+                // The analyzer is still busy with an older frame; drop the one it never saw.
+                mStats.onDropped();
+                previous.release();
+            }
+            schedule();
+        }
+
+        void clear() {
+            Frame previous = mPending.getAndSet(null);
+            if (previous != null) {
+                previous.release();
+            }
+        }
+
+        private void schedule() {
+            if (mScheduled.compareAndSet(false, true)) {
+                mActive.incrementAndGet();
+                try {
+                    mExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    mScheduled.set(false);
+                    clear();
+                    onSlotIdle();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Frame frame = mPending.getAndSet(null);
+                    if (frame == null) {
+                        mScheduled.set(false);
+                        // A frame may have landed between the poll and the flag reset.
+                        if (mPending.get() != null && !mClosed
+                                && mScheduled.compareAndSet(false, true)) {
+                            continue;
+                        }
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        mAnalyzer.analyze(frame);
+                    } finally {
+                        mStats.onProcessed(System.nanoTime() - start);
+                        frame.release();
+                    }
+                }
+            } catch (RuntimeException e) {
+                // We still own the schedule flag here; hand it back so the next frame runs.
+                mScheduled.set(false);
+                throw e;
+            } finally {
+                onSlotIdle();
+            }
+        }
+
+    }
+
+}
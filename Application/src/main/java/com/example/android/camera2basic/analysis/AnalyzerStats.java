@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processing time and drop counts of a single {@link FrameAnalyzer}.
+ *
+ * <p>Timing fields are written only by the worker running the analyzer, which never runs it
+ * concurrently, so plain volatile fields are enough. Drops are counted by the submitting thread.</p>
+ */
+// 单个分析器的统计信息：处理耗时和丢帧数
+public final class AnalyzerStats {
+
+    private volatile long mProcessed;
+    private volatile long mLastNanos;
+    private volatile long mMaxNanos;
+    private volatile long mTotalNanos;
+    private final AtomicLong mDropped = new AtomicLong();
+
+    void onProcessed(long nanos) {
+        mProcessed++;
+        mLastNanos = nanos;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    void onDropped() {
+        mDropped.incrementAndGet();
+    }
+
+    /**
+     * @return Number of frames the analyzer has processed.
+     */
+    public long getProcessed() {
+        return mProcessed;
+    }
+
+    /**
+     * @return Number of frames that were replaced by a newer one before the analyzer got to them.
+     */
+    public long getDropped() {
+        return mDropped.get();
+    }
+
+    public long getLastNanos() {
+        return mLastNanos;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public long getAverageNanos() {
+        long processed = mProcessed;
+        return processed == 0 ? 0 : mTotalNanos / processed;
+    }
+
+    @Override
+    public String toString() {
+        return "processed=" + getProcessed()
+                + " dropped=" + getDropped()
+                + " lastUs=" + getLastNanos() / 1000
+                + " avgUs=" + getAverageNanos() / 1000
+                + " maxUs=" + getMaxNanos() / 1000;
+    }
+
+}
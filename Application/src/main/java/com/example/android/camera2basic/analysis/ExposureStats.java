@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+/**
+ * Luma histogram and exposure statistics of one frame, as computed by
+ * {@link LumaHistogramAnalyzer}. Instances are meant to be reused by callers.
+ */
+// 单帧的亮度直方图和曝光统计
+public final class ExposureStats {
+
+    /**
+     * Number of bins of {@link #histogram}, one per 8-bit luma value.
+     */
+    public static final int BINS = 256;
+
+    /**
+     * Luma histogram over the sampled pixels.
+     */
+    public final int[] histogram = new int[BINS];
+
+    /**
+     * {@link Frame#getSequence()} of the frame these statistics belong to, or 0 if none yet.
+     */
+    public long sequence;
+
+    /**
+     * {@link Frame#getTimestamp()} of the frame these statistics belong to.
+     */
+    public long timestamp;
+
+    /**
+     * Number of pixels that went into the histogram.
+     */
+    public int samples;
+
+    /**
+     * Mean luma, 0 to 255.
+     */
+    public float mean;
+
+    /**
+     * Percentage of sampled pixels at or below the shadow clipping level.
+     */
+    public float shadowClipPercent;
+
+    /**
+     * Percentage of sampled pixels at or above the highlight clipping level.
+     */
+    public float highlightClipPercent;
+
+    /**
+     * Luma value below which 1% of the sampled pixels fall.
+     */
+    public int lowPercentile;
+
+    /**
+     * Luma value below which 99% of the sampled pixels fall.
+     */
+    public int highPercentile;
+
+    /**
+     * Estimated dynamic range of the scene in stops, from the 1st and 99th percentiles.
+     */
+    public float dynamicRangeStops;
+
+    /**
+     * Copies every field of {@code other} into this instance.
+     */
+    public void set(ExposureStats other) {
+        System.arraycopy(other.histogram, 0, histogram, 0, BINS);
+        sequence = other.sequence;
+        timestamp = other.timestamp;
+        samples = other.samples;
+        mean = other.mean;
+        shadowClipPercent = other.shadowClipPercent;
+        highlightClipPercent = other.highlightClipPercent;
+        lowPercentile = other.lowPercentile;
+        highPercentile = other.highPercentile;
+        dynamicRangeStops = other.dynamicRangeStops;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seq=%d mean=%.1f shadows=%.1f%% highlights=%.1f%% p1=%d p99=%d"
+                        + " range=%.1fEV", sequence, mean, shadowClipPercent,
+                highlightClipPercent, lowPercentile, highPercentile, dynamicRangeStops);
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A YUV_420_888 frame handed to {@link FrameAnalyzer}s. The planes are exposed as raw buffers
+ * together with their row and pixel strides, so this class has no dependency on
+ * {@code android.media.Image} and can be fed from any source.
+ *
+ * <p>A frame is shared between analyzers running on different threads, so analyzers must only
+ * use absolute reads ({@code buffer.get(index)}) and must never change position or limit.</p>
+ *
+ * <p>Frames are reference counted. A new frame holds one reference; {@link #onReleased()} runs
+ * once the last reference is dropped, which is where the backing image is returned.</p>
+ */
+// 分析帧，只包含YUV平面数据，不依赖android.media.Image
+public class Frame {
+
+    /**
+     * Index of the luma plane.
+     */
+    public static final int PLANE_Y = 0;
+
+    /**
+     * Index of the Cb plane.
+     */
+    public static final int PLANE_U = 1;
+
+    /**
+     * Index of the Cr plane.
+     */
+    public static final int PLANE_V = 2;
+
+    private final int mWidth;
+    private final int mHeight;
+
+    private final ByteBuffer[] mPlanes = new ByteBuffer[3];
+    private final int[] mRowStrides = new int[3];
+    private final int[] mPixelStrides = new int[3];
+
+    private long mTimestamp;
+    private long mSequence;
+
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    public Frame(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive.");
+        }
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return The sensor timestamp of this frame in nanoseconds.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * @return A monotonically increasing number assigned by the frame source.
+     */
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public void setSequence(long sequence) {
+        mSequence = sequence;
+    }
+
+    public ByteBuffer getPlane(int plane) {
+        return mPlanes[plane];
+    }
+
+    public int getRowStride(int plane) {
+        return mRowStrides[plane];
+    }
+
+    public int getPixelStride(int plane) {
+        return mPixelStrides[plane];
+    }
+
+    /**
+     * Sets one of the three planes of this frame.
+     *
+     * @param plane       {@link #PLANE_Y}, {@link #PLANE_U} or {@link #PLANE_V}
+     * @param buffer      The plane data
+     * @param rowStride   Distance in bytes between the starts of two rows
+     * @param pixelStride Distance in bytes between two horizontally adjacent samples
+     */
+    public void setPlane(int plane, ByteBuffer buffer, int rowStride, int pixelStride) {
+        mPlanes[plane] = buffer;
+        mRowStrides[plane] = rowStride;
+        mPixelStrides[plane] = pixelStride;
+    }
+
+    /**
+     * Adds a reference to this frame.
+     */
+    public final void retain() {
+        mRefCount.incrementAndGet();
+    }
+
+    /**
+     * Drops a reference to this frame, releasing it when no reference is left.
+     */
+    public final void release() {
+        int count = mRefCount.decrementAndGet();
+        if (count == 0) {
+            onReleased();
+        } else if (count < 0) {
+            throw new IllegalStateException("Frame released too many times.");
+        }
+    }
+
+    /**
+     * Re-arms a released frame with a single reference, for sources that recycle frames.
+     */
+    protected final void resetReferences() {
+        mRefCount.set(1);
+    }
+
+    /**
+     * Called once when the last reference is dropped. Subclasses return the backing buffers here.
+     */
+    protected void onReleased() {
+    }
+
+}
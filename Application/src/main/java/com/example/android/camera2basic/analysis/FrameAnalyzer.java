@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+/**
+ * Receives preview frames from an {@link AnalysisPipeline}.
+ *
+ * <p>{@link #analyze(Frame)} is called on a worker thread, never concurrently for the same
+ * analyzer. The frame is only valid for the duration of the call; analyzers that fall behind
+ * simply miss frames.</p>
+ */
+// 帧分析器接口
+public interface FrameAnalyzer {
+
+    /**
+     * Analyzes one frame. The frame must not be retained after this method returns.
+     *
+     * @param frame The frame to analyze
+     */
+    void analyze(Frame frame);
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records the frames it is given to a {@link FrameSequence} file. Attach it to the
+ * {@link AnalysisPipeline} like any analyzer: it runs on a worker thread and, being keep-latest,
+ * skips frames rather than stall the camera when storage is slow.
+ *
+ * <p>Planes are repacked from whatever strides the camera delivers into tight I420 in a reused
+ * direct buffer, which is written with one channel write per frame. Frames of a different size
+ * than the first one, for example after switching cameras, are skipped.</p>
+ */
+// 帧录制器：作为分析器挂在流水线上，把YUV帧重新打包成I420写入帧序列文件
+public final class FrameRecorder implements FrameAnalyzer, Closeable {
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mMaxFrames;
+
+    private ByteBuffer mBuffer;
+    private int mWidth;
+    private int mHeight;
+    private int mFrames;
+    private int mSkipped;
+    private boolean mClosed;
+
+    /**
+     * @param file      Replaced by the recording
+     * @param maxFrames Frames to record at most, to bound the file size
+     */
+    public FrameRecorder(File file, int maxFrames) throws IOException {
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mChannel = mFile.getChannel();
+        mMaxFrames = maxFrames;
+    }
+
+    /**
+     * @return Number of frames written so far.
+     */
+    public synchronized int getFrameCount() {
+        return mFrames;
+    }
+
+    /**
+     * @return Number of frames skipped because of their size or the frame limit.
+     */
+    public synchronized int getSkippedCount() {
+        return mSkipped;
+    }
+
+    @Override
+    public synchronized void analyze(Frame frame) {
+        if (mClosed) {
+            return;
+        }
+        try {
+            if (mBuffer == null) {
+                start(frame.getWidth(), frame.getHeight());
+            }
+            if (frame.getWidth() != mWidth || frame.getHeight() != mHeight
+                    || mFrames >= mMaxFrames) {
+                mSkipped++;
+                return;
+            }
+            ByteBuffer buffer = mBuffer;
+            buffer.clear();
+            buffer.putLong(frame.getTimestamp());
+            buffer.putLong(frame.getSequence());
+            pack(frame, Frame.PLANE_Y, mWidth, mHeight, buffer);
+            int chromaWidth = (mWidth + 1) / 2;
+            int chromaHeight = (mHeight + 1) / 2;
+            pack(frame, Frame.PLANE_U, chromaWidth, chromaHeight, buffer);
+            pack(frame, Frame.PLANE_V, chromaWidth, chromaHeight, buffer);
+            buffer.flip();
+            long position = FrameSequence.HEADER_SIZE + (long) mFrames * buffer.limit();
+            while (buffer.hasRemaining()) {
+                position += mChannel.write(buffer, position);
+            }
+            mFrames++;
+        } catch (IOException e) {
+            // A full disk ends the recording; what was written stays readable.
+            mClosed = true;
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Writes the frame count and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            if (mBuffer != null) {
+                ByteBuffer count = ByteBuffer.allocate(4);
+                count.putInt(0, mFrames);
+                mChannel.write(count, FrameSequence.OFFSET_FRAME_COUNT);
+            }
+        } finally {
+            mFile.close();
+        }
+    }
+
+    private void start(int width, int height) throws IOException {
+        mWidth = width;
+        mHeight = height;
+        ByteBuffer header = ByteBuffer.allocate(FrameSequence.HEADER_SIZE);
+        header.putInt(FrameSequence.MAGIC);
+        header.putInt(FrameSequence.VERSION);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(0);
+        header.putInt(FrameSequence.FRAME_HEADER_SIZE);
+        header.flip();
+        while (header.hasRemaining()) {
+            mChannel.write(header, header.position());
+        }
+        mBuffer = ByteBuffer.allocateDirect(FrameSequence.frameSize(width, height));
+    }
+
+    /**
+     * Appends a {@code width x height} plane of {@code frame} to {@code out} without padding.
+     */
+    private static void pack(Frame frame, int plane, int width, int height, ByteBuffer out) {
+        ByteBuffer source = frame.getPlane(plane).duplicate();
+        int rowStride = frame.getRowStride(plane);
+        int pixelStride = frame.getPixelStride(plane);
+        for (int row = 0; row < height; row++) {
+            int start = row * rowStride;
+            if (pixelStride == 1) {
+                source.limit(start + width);
+                source.position(start);
+                out.put(source);
+                source.limit(source.capacity());
+            } else {
+                for (int column = 0; column < width; column++) {
+                    out.put(source.get(start + column * pixelStride));
+                }
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            // Nothing left to do.
+        }
+    }
+
+}
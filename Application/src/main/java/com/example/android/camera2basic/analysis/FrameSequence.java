@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A recorded sequence of YUV frames, read through memory mappings of the file, so frames are
+ * handed to analyzers without copying a byte.
+ *
+ * <p>The file starts with a {@link #HEADER_SIZE}-byte header: the {@link #MAGIC} number, the
+ * {@link #VERSION}, the frame width and height, the frame count and the size of the per-frame
+ * metadata. Frames follow back to back, each with its sensor timestamp and sequence number
+ * followed by tightly packed I420 planes: Y, then Cb and Cr at half resolution. Every frame has
+ * the same size, so frame {@code i} is found without an index. A file whose recorder never
+ * closed it has a frame count of 0; its frames are counted from the file length instead.</p>
+ *
+ * <p>Files over 2 GiB are mapped in segments of whole frames. Instances are thread-safe.</p>
+ */
+// 内存映射的YUV帧序列文件：帧数据直接从映射中切片交给分析器，不复制
+public final class FrameSequence implements Closeable {
+
+    public static final int MAGIC = 0x59555653;  // "YUVS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * Size of the metadata in front of every frame: timestamp and sequence number.
+     */
+    public static final int FRAME_HEADER_SIZE = 16;
+
+    static final int OFFSET_FRAME_COUNT = 16;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFrameCount;
+    private final int mFrameSize;
+    private final int mFramesPerSegment;
+    private final MappedByteBuffer[] mSegments;
+
+    private FrameSequence(RandomAccessFile file, int width, int height, int frameCount)
+            throws IOException {
+        mFile = file;
+        mChannel = file.getChannel();
+        mWidth = width;
+        mHeight = height;
+        mFrameSize = frameSize(width, height);
+        long available = (mChannel.size() - HEADER_SIZE) / mFrameSize;
+        mFrameCount = frameCount > 0 ? (int) Math.min(frameCount, available) : (int) available;
+        mFramesPerSegment = Math.max(1, Integer.MAX_VALUE / mFrameSize);
+        mSegments = new MappedByteBuffer[(mFrameCount + mFramesPerSegment - 1)
+                / mFramesPerSegment];
+    }
+
+    /**
+     * Opens a recorded sequence for reading.
+     *
+     * @throws IOException If {@code file} cannot be read or is not a frame sequence
+     */
+    public static FrameSequence open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && input.getChannel().read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends.
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a frame sequence.");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported frame sequence version " + header.getInt(4));
+            }
+            if (header.getInt(20) != FRAME_HEADER_SIZE) {
+                throw new IOException("Unsupported frame header size " + header.getInt(20));
+            }
+            FrameSequence sequence = new FrameSequence(input, header.getInt(8),
+                    header.getInt(12), header.getInt(OFFSET_FRAME_COUNT));
+            input = null;
+            return sequence;
+        } finally {
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * @return Bytes taken by one frame, metadata included, in a sequence of the given size.
+     */
+    public static int frameSize(int width, int height) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        return FRAME_HEADER_SIZE + width * height + 2 * chromaWidth * chromaHeight;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getTimestamp(int index) throws IOException {
+        return segment(index).getLong(offset(index));
+    }
+
+    /**
+     * Wraps frame {@code index} in a new {@link Frame} whose planes are slices of the mapping.
+     * Releasing the frame does nothing; the planes stay valid until the garbage collector
+     * unmaps them, even after {@link #close()}.
+     */
+    public Frame getFrame(int index) throws IOException {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        Frame frame = new Frame(mWidth, mHeight);
+        frame.setTimestamp(segment.getLong(offset));
+        frame.setSequence(segment.getLong(offset + 8));
+        int lumaSize = mWidth * mHeight;
+        int chromaWidth = (mWidth + 1) / 2;
+        int chromaSize = chromaWidth * ((mHeight + 1) / 2);
+        int plane = offset + FRAME_HEADER_SIZE;
+        frame.setPlane(Frame.PLANE_Y, slice(segment, plane, lumaSize), mWidth, 1);
+        plane += lumaSize;
+        frame.setPlane(Frame.PLANE_U, slice(segment, plane, chromaSize), chromaWidth, 1);
+        plane += chromaSize;
+        frame.setPlane(Frame.PLANE_V, slice(segment, plane, chromaSize), chromaWidth, 1);
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+    private int offset(int index) {
+        return (index % mFramesPerSegment) * mFrameSize;
+    }
+
+    private synchronized ByteBuffer segment(int index) throws IOException {
+        if (index < 0 || index >= mFrameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + mFrameCount);
+        }
+        int segment = index / mFramesPerSegment;
+        if (mSegments[segment] == null) {
+            int first = segment * mFramesPerSegment;
+            int frames = Math.min(mFramesPerSegment, mFrameCount - first);
+            mSegments[segment] = mChannel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + (long) first * mFrameSize, (long) frames * mFrameSize);
+        }
+        return mSegments[segment];
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view.slice();
+    }
+
+}
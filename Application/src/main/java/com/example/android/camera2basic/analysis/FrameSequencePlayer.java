@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a {@link FrameSequence} into an analyzer or an {@link AnalysisPipeline}, as the camera
+ * would, either paced by the recorded timestamps or as fast as the consumer takes the frames.
+ */
+// 帧序列播放器：按录制时的时间间隔或以最快速度把帧送给分析器
+public final class FrameSequencePlayer {
+
+    private final FrameSequence mSequence;
+
+    private volatile double mSpeed;
+
+    public FrameSequencePlayer(FrameSequence sequence) {
+        mSequence = sequence;
+    }
+
+    /**
+     * @param speed Multiple of real time to play at: 1 keeps the recorded frame timing, 0 (the
+     *              default) plays as fast as possible
+     */
+    public void setSpeed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Speed must not be negative.");
+        }
+        mSpeed = speed;
+    }
+
+    /**
+     * Calls {@code analyzer} with every frame, on the calling thread.
+     *
+     * @return Number of frames played
+     */
+    public int play(FrameAnalyzer analyzer) throws IOException, InterruptedException {
+        return play(analyzer, null);
+    }
+
+    /**
+     * Submits every frame to {@code pipeline}, which drops the frames its analyzers are too slow
+     * for, as with a live camera.
+     *
+     * @return Number of frames played
+     */
+    public int play(AnalysisPipeline pipeline) throws IOException, InterruptedException {
+        return play(null, pipeline);
+    }
+
+    private int play(FrameAnalyzer analyzer, AnalysisPipeline pipeline)
+            throws IOException, InterruptedException {
+        int count = mSequence.getFrameCount();
+        long start = System.nanoTime();
+        long firstTimestamp = 0;
+        for (int i = 0; i < count; i++) {
+            Frame frame = mSequence.getFrame(i);
+            double speed = mSpeed;
+            if (i == 0) {
+                firstTimestamp = frame.getTimestamp();
+            } else if (speed > 0) {
+                long due = start + (long) ((frame.getTimestamp() - firstTimestamp) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            if (pipeline != null) {
+                pipeline.submit(frame);
+            } else {
+                analyzer.analyze(frame);
+            }
+        }
+        return count;
+    }
+
+}
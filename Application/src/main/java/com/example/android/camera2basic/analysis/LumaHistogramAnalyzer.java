@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Computes a 256-bin luma histogram and exposure statistics from the Y plane of every frame.
+ *
+ * <p>Only every {@code step}-th pixel of every {@code step}-th row is sampled. All working
+ * storage is allocated up front, so analyzing a frame allocates nothing. The newest result is
+ * published under a short lock and can be copied out with {@link #getLatest(ExposureStats)}.</p>
+ */
+// 亮度直方图分析器：在降采样网格上统计Y平面，计算均值、裁剪比例和动态范围，每帧不分配内存
+public class LumaHistogramAnalyzer implements FrameAnalyzer {
+
+    /**
+     * Luma values at or below this level count as clipped shadows.
+     */
+    public static final int SHADOW_CLIP_LEVEL = 2;
+
+    /**
+     * Luma values at or above this level count as clipped highlights.
+     */
+    public static final int HIGHLIGHT_CLIP_LEVEL = 253;
+
+    private final int mStep;
+
+    /**
+     * Working histogram, only touched by the analyzing thread.
+     */
+    private final int[] mHistogram = new int[ExposureStats.BINS];
+
+    /**
+     * Newest published result, guarded by {@link #mLock}.
+     */
+    private final ExposureStats mLatest = new ExposureStats();
+
+    private final Object mLock = new Object();
+
+    /**
+     * @param step Sampling distance in pixels, both horizontally and vertically. 1 samples every
+     *             pixel.
+     */
+    public LumaHistogramAnalyzer(int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Step must be at least 1.");
+        }
+        mStep = step;
+    }
+
+    @Override
+    public void analyze(Frame frame) {
+        int[] histogram = mHistogram;
+        Arrays.fill(histogram, 0);
+        ByteBuffer y = frame.getPlane(Frame.PLANE_Y);
+        int rowStride = frame.getRowStride(Frame.PLANE_Y);
+        int pixelStride = frame.getPixelStride(Frame.PLANE_Y);
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int step = mStep;
+        int columnStep = step * pixelStride;
+        int rowEnd = width * pixelStride;
+        for (int row = 0; row < height; row += step) {
+            int offset = row * rowStride;
+            int end = offset + rowEnd;
+            for (int i = offset; i < end; i += columnStep) {
+                histogram[y.get(i) & 0xFF]++;
+            }
+        }
+        int samples = ((height + step - 1) / step) * ((width + step - 1) / step);
+
+        synchronized (mLock) {
+            ExposureStats stats = mLatest;
+            System.arraycopy(histogram, 0, stats.histogram, 0, ExposureStats.BINS);
+            stats.sequence = frame.getSequence();
+            stats.timestamp = frame.getTimestamp();
+            stats.samples = samples;
+            computeStats(stats);
+        }
+    }
+
+    /**
+     * Copies the statistics of the most recently analyzed frame into {@code out}.
+     *
+     * @return {@code out}
+     */
+    public ExposureStats getLatest(ExposureStats out) {
+        synchronized (mLock) {
+            out.set(mLatest);
+        }
+        return out;
+    }
+
+    /**
+     * Derives the scalar statistics from the histogram and sample count already in {@code stats}.
+     */
+    static void computeStats(ExposureStats stats) {
+        int[] histogram = stats.histogram;
+        int samples = stats.samples;
+        if (samples == 0) {
+            return;
+        }
+        // The mean comes from the histogram so the sampling loop does a single store per pixel.
+        long sum = 0;
+        for (int i = 0; i < ExposureStats.BINS; i++) {
+            sum += (long) i * histogram[i];
+        }
+        int shadows = 0;
+        for (int i = 0; i <= SHADOW_CLIP_LEVEL; i++) {
+            shadows += histogram[i];
+        }
+        int highlights = 0;
+        for (int i = HIGHLIGHT_CLIP_LEVEL; i < ExposureStats.BINS; i++) {
+            highlights += histogram[i];
+        }
+        int lowTarget = samples / 100;
+        int highTarget = samples - samples / 100;
+        int low = -1;
+        int high = ExposureStats.BINS - 1;
+        int cumulative = 0;
+        for (int i = 0; i < ExposureStats.BINS; i++) {
+            cumulative += histogram[i];
+            if (low < 0 && cumulative > lowTarget) {
+                low = i;
+            }
+            if (cumulative >= highTarget) {
+                high = i;
+                break;
+            }
+        }
+        if (low < 0) {
+            low = high;
+        }
+        stats.mean = (float) sum / samples;
+        stats.shadowClipPercent = 100f * shadows / samples;
+        stats.highlightClipPercent = 100f * highlights / samples;
+        stats.lowPercentile = low;
+        stats.highPercentile = high;
+        // Luma is roughly gamma encoded; this is a coarse estimate, not a radiometric one.
+        stats.dynamicRangeStops = (float) (Math.log((high + 1.0) / (low + 1.0)) / Math.log(2));
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Detects motion by comparing luma blocks of consecutive frames.
+ *
+ * <p>The frame is divided into a fixed grid of blocks, independent of its resolution. Each block
+ * is sampled at {@code samples x samples} points and compared with the same points of the
+ * previous frame using the sum of absolute differences, after removing the change of the block
+ * mean so that exposure adjustments do not count as motion. A block moves when its mean absolute
+ * difference exceeds the sensitivity; the {@link Listener} fires when the moving share of the
+ * blocks enabled in the region mask reaches the trigger fraction, at most once per cooldown.</p>
+ */
+// 运动检测分析器：按块比较相邻两帧的亮度差(SAD)，超过阈值时触发回调，带冷却时间
+public class MotionAnalyzer implements FrameAnalyzer {
+
+    /**
+     * Receives motion events, on the analyzing thread.
+     */
+    public interface Listener {
+
+        /**
+         * @param fraction  Share of the masked blocks that moved, 0 to 1
+         * @param timestamp Timestamp of the frame that triggered
+         */
+        void onMotion(float fraction, long timestamp);
+
+    }
+
+    private final int mColumns;
+    private final int mRows;
+    private final int mSamples;
+
+    /**
+     * Samples of the current and previous frame, block by block. Swapped after every frame.
+     */
+    private int[] mCurrent;
+    private int[] mPrevious;
+    private boolean mHasPrevious;
+
+    private final boolean[] mMask;
+    private int mMaskedBlocks;
+
+    private volatile int mSensitivity = 12;
+    private volatile float mTriggerFraction = 0.02f;
+    private volatile long mCooldownNanos = 3000000000L;
+    private volatile Listener mListener;
+
+    private long mLastTrigger = Long.MIN_VALUE;
+    private volatile float mLastFraction;
+    private volatile long mTriggers;
+
+    /**
+     * @param columns Number of block columns
+     * @param rows    Number of block rows
+     * @param samples Sample points per block in each direction
+     */
+    public MotionAnalyzer(int columns, int rows, int samples) {
+        if (columns < 1 || rows < 1 || samples < 1) {
+            throw new IllegalArgumentException("Invalid block grid.");
+        }
+        mColumns = columns;
+        mRows = rows;
+        mSamples = samples;
+        mCurrent = new int[columns * rows * samples * samples];
+        mPrevious = new int[mCurrent.length];
+        mMask = new boolean[columns * rows];
+        Arrays.fill(mMask, true);
+        mMaskedBlocks = mMask.length;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param sensitivity Mean absolute luma difference, 0 to 255, above which a block moves
+     */
+    public void setSensitivity(int sensitivity) {
+        mSensitivity = sensitivity;
+    }
+
+    /**
+     * @param fraction Share of the masked blocks that must move to trigger, 0 to 1
+     */
+    public void setTriggerFraction(float fraction) {
+        mTriggerFraction = fraction;
+    }
+
+    public void setCooldown(long cooldownNanos) {
+        mCooldownNanos = cooldownNanos;
+    }
+
+    /**
+     * Restricts detection to a region of the frame.
+     *
+     * @param mask One entry per block, row by row; true includes the block. Null includes all.
+     */
+    public synchronized void setRegionMask(boolean[] mask) {
+        if (mask == null) {
+            Arrays.fill(mMask, true);
+            mMaskedBlocks = mMask.length;
+            return;
+        }
+        if (mask.length != mMask.length) {
+            throw new IllegalArgumentException("Mask must have " + mMask.length + " entries.");
+        }
+        int count = 0;
+        for (int i = 0; i < mask.length; i++) {
+            mMask[i] = mask[i];
+            if (mask[i]) {
+                count++;
+            }
+        }
+        mMaskedBlocks = count;
+    }
+
+    /**
+     * @return Share of the masked blocks that moved in the last analyzed frame.
+     */
+    public float getLastFraction() {
+        return mLastFraction;
+    }
+
+    /**
+     * @return Number of times the listener fired.
+     */
+    public long getTriggerCount() {
+        return mTriggers;
+    }
+
+    /**
+     * Forgets the previous frame and the cooldown, e.g. after the camera was switched, whose
+     * timestamps need not continue those of the previous camera.
+     */
+    public synchronized void reset() {
+        mHasPrevious = false;
+        mLastTrigger = Long.MIN_VALUE;
+    }
+
+    @Override
+    public synchronized void analyze(Frame frame) {
+        sample(frame);
+        if (!mHasPrevious) {
+            mHasPrevious = true;
+            swap();
+            return;
+        }
+        int moving = countMovingBlocks();
+        swap();
+        float fraction = mMaskedBlocks == 0 ? 0 : (float) moving / mMaskedBlocks;
+        mLastFraction = fraction;
+        long timestamp = frame.getTimestamp();
+        if (moving > 0 && fraction >= mTriggerFraction
+                && (mLastTrigger == Long.MIN_VALUE
+                || timestamp - mLastTrigger >= mCooldownNanos)) {
+            mLastTrigger = timestamp;
+            mTriggers++;
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onMotion(fraction, timestamp);
+            }
+        }
+    }
+
+    private void swap() {
+        int[] previous = mPrevious;
+        mPrevious = mCurrent;
+        mCurrent = previous;
+    }
+
+    /**
+     * Reads the sample points of every block into {@link #mCurrent}. The points sit at the
+     * centers of a regular {@code samples x samples} sub-grid of each block.
+     */
+    private void sample(Frame frame) {
+        ByteBuffer y = frame.getPlane(Frame.PLANE_Y);
+        int rowStride = frame.getRowStride(Frame.PLANE_Y);
+        int pixelStride = frame.getPixelStride(Frame.PLANE_Y);
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int pointsX = mColumns * mSamples;
+        int pointsY = mRows * mSamples;
+        int[] current = mCurrent;
+        int samplesPerBlock = mSamples * mSamples;
+        for (int py = 0; py < pointsY; py++) {
+            int offset = ((2 * py + 1) * height / (2 * pointsY)) * rowStride;
+            int blockRow = py / mSamples;
+            int base = blockRow * mColumns * samplesPerBlock + (py % mSamples) * mSamples;
+            for (int px = 0; px < pointsX; px++) {
+                int x = (2 * px + 1) * width / (2 * pointsX);
+                int blockColumn = px / mSamples;
+                current[base + blockColumn * samplesPerBlock + px % mSamples]
+                        = y.get(offset + x * pixelStride) & 0xFF;
+            }
+        }
+    }
+
+    private int countMovingBlocks() {
+        int[] current = mCurrent;
+        int[] previous = mPrevious;
+        int samplesPerBlock = mSamples * mSamples;
+        long threshold = (long) mSensitivity * samplesPerBlock;
+        int moving = 0;
+        for (int block = 0; block < mMask.length; block++) {
+            if (!mMask[block]) {
+                continue;
+            }
+            int start = block * samplesPerBlock;
+            int end = start + samplesPerBlock;
+            int delta = 0;
+            for (int i = start; i < end; i++) {
+                delta += current[i] - previous[i];
+            }
+            // Remove the change of the block mean, so global brightness shifts are not motion.
+            int shift = delta / samplesPerBlock;
+            long sad = 0;
+            for (int i = start; i < end; i++) {
+                sad += Math.abs(current[i] - previous[i] - shift);
+            }
+            if (sad > threshold) {
+                moving++;
+            }
+        }
+        return moving;
+    }
+
+}
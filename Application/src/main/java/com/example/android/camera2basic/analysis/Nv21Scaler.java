@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Downscales YUV_420_888 {@link Frame}s by an integer factor into an NV21 array, the input
+ * format of the platform JPEG encoder.
+ *
+ * <p>Pixels are point-sampled: output pixel {@code (x, y)} takes the luma at
+ * {@code (x * f, y * f)} and the chroma of that position, so a frame costs one read per output
+ * sample whatever the factor. The factor is the smallest that brings the width within the
+ * limit; output dimensions are rounded down to even numbers, as NV21 requires. The output
+ * array is reused for frames of the same size.</p>
+ */
+// 把YUV_420_888帧按整数倍缩小并转换为NV21，供JPEG编码使用，输出数组复用
+public final class Nv21Scaler {
+
+    private final int mMaxWidth;
+
+    private byte[] mOut;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * @param maxWidth Largest output width
+     */
+    public Nv21Scaler(int maxWidth) {
+        if (maxWidth < 2) {
+            throw new IllegalArgumentException("Width must be at least 2.");
+        }
+        mMaxWidth = maxWidth;
+    }
+
+    /**
+     * @return The width of the last converted frame
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return The height of the last converted frame
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return The smallest factor that brings {@code width} within the limit
+     */
+    public int factorFor(int width) {
+        return (width + mMaxWidth - 1) / mMaxWidth;
+    }
+
+    /**
+     * Converts a frame. The result stays valid until the next call.
+     *
+     * @return The NV21 pixels: {@link #getWidth()} x {@link #getHeight()} luma bytes followed by
+     * interleaved V and U bytes for every 2x2 block
+     */
+    public byte[] convert(Frame frame) {
+        int factor = factorFor(frame.getWidth());
+        int width = (frame.getWidth() / factor) & ~1;
+        int height = (frame.getHeight() / factor) & ~1;
+        if (width == 0 || height == 0) {
+            throw new IllegalArgumentException("Frame too small to scale.");
+        }
+        int size = width * height * 3 / 2;
+        if (mOut == null || mOut.length != size) {
+            mOut = new byte[size];
+        }
+        mWidth = width;
+        mHeight = height;
+        byte[] out = mOut;
+
+        ByteBuffer y = frame.getPlane(Frame.PLANE_Y);
+        int yRowStride = frame.getRowStride(Frame.PLANE_Y);
+        int yPixelStride = frame.getPixelStride(Frame.PLANE_Y);
+        int o = 0;
+        for (int row = 0; row < height; row++) {
+            int offset = row * factor * yRowStride;
+            int step = factor * yPixelStride;
+            for (int column = 0; column < width; column++) {
+                out[o++] = y.get(offset);
+                offset += step;
+            }
+        }
+
+        ByteBuffer u = frame.getPlane(Frame.PLANE_U);
+        ByteBuffer v = frame.getPlane(Frame.PLANE_V);
+        int uRowStride = frame.getRowStride(Frame.PLANE_U);
+        int uPixelStride = frame.getPixelStride(Frame.PLANE_U);
+        int vRowStride = frame.getRowStride(Frame.PLANE_V);
+        int vPixelStride = frame.getPixelStride(Frame.PLANE_V);
+        // Output chroma sample (x, y) covers output luma (2x, 2y), i.e. source luma
+        // (2x * f, 2y * f), whose chroma is at (x * f, y * f).
+        for (int row = 0; row < height / 2; row++) {
+            int sourceRow = row * factor;
+            int uOffset = sourceRow * uRowStride;
+            int vOffset = sourceRow * vRowStride;
+            for (int column = 0; column < width / 2; column++) {
+                int sourceColumn = column * factor;
+                out[o++] = v.get(vOffset + sourceColumn * vPixelStride);
+                out[o++] = u.get(uOffset + sourceColumn * uPixelStride);
+            }
+        }
+        return out;
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estimates how well a frame is focused from its luma plane.
+ *
+ * <p>The Y plane is first reduced by {@code scale} in both directions, averaging a 2x2 block at
+ * every grid point. The reduced image is split into a grid of tiles and every tile is scored
+ * with either the variance of the Laplacian or the Tenengrad (Sobel gradient energy) measure.
+ * The reduced image is allocated once for the first frame size seen.</p>
+ */
+// 清晰度分析器：在降采样的亮度图上按块计算拉普拉斯方差或Tenengrad评分
+public class SharpnessAnalyzer implements FrameAnalyzer {
+
+    /**
+     * Scores tiles with the variance of the 4-neighbour Laplacian.
+     */
+    public static final int METHOD_LAPLACIAN = 0;
+
+    /**
+     * Scores tiles with the mean squared Sobel gradient magnitude.
+     */
+    public static final int METHOD_TENENGRAD = 1;
+
+    private final int mMethod;
+    private final int mScale;
+    private final int mTileColumns;
+    private final int mTileRows;
+
+    /**
+     * The reduced luma image, only touched by the analyzing thread.
+     */
+    private int[] mReduced = new int[0];
+    private int mReducedWidth;
+    private int mReducedHeight;
+
+    /**
+     * Working scores, only touched by the analyzing thread.
+     */
+    private final SharpnessStats mWork;
+
+    /**
+     * Newest published result, guarded by {@link #mLock}.
+     */
+    private final SharpnessStats mLatest;
+
+    private final Object mLock = new Object();
+
+    /**
+     * @param method      {@link #METHOD_LAPLACIAN} or {@link #METHOD_TENENGRAD}
+     * @param scale       Reduction factor applied to the luma plane before scoring
+     * @param tileColumns Number of tile columns
+     * @param tileRows    Number of tile rows
+     */
+    public SharpnessAnalyzer(int method, int scale, int tileColumns, int tileRows) {
+        if (method != METHOD_LAPLACIAN && method != METHOD_TENENGRAD) {
+            throw new IllegalArgumentException("Unknown method: " + method);
+        }
+        if (scale < 2 || tileColumns < 1 || tileRows < 1) {
+            throw new IllegalArgumentException("Invalid scale or tile grid.");
+        }
+        mMethod = method;
+        mScale = scale;
+        mTileColumns = tileColumns;
+        mTileRows = tileRows;
+        mWork = new SharpnessStats(tileColumns, tileRows);
+        mLatest = new SharpnessStats(tileColumns, tileRows);
+    }
+
+    /**
+     * @return A {@link SharpnessStats} with the tile grid of this analyzer.
+     */
+    public SharpnessStats newStats() {
+        return new SharpnessStats(mTileColumns, mTileRows);
+    }
+
+    @Override
+    public void analyze(Frame frame) {
+        reduce(frame);
+        SharpnessStats work = mWork;
+        int width = mReducedWidth;
+        int height = mReducedHeight;
+        // Tiles cover the interior of the reduced image; the outermost ring has no neighbours.
+        int innerWidth = width - 2;
+        int innerHeight = height - 2;
+        double total = 0;
+        double center = 0;
+        int centerTiles = 0;
+        for (int tileRow = 0; tileRow < mTileRows; tileRow++) {
+            int top = 1 + innerHeight * tileRow / mTileRows;
+            int bottom = 1 + innerHeight * (tileRow + 1) / mTileRows;
+            for (int tileColumn = 0; tileColumn < mTileColumns; tileColumn++) {
+                int left = 1 + innerWidth * tileColumn / mTileColumns;
+                int right = 1 + innerWidth * (tileColumn + 1) / mTileColumns;
+                float score = mMethod == METHOD_LAPLACIAN
+                        ? laplacianVariance(left, top, right, bottom)
+                        : tenengrad(left, top, right, bottom);
+                work.tiles[tileRow * mTileColumns + tileColumn] = score;
+                total += score;
+                if (isCenterTile(tileColumn, mTileColumns) && isCenterTile(tileRow, mTileRows)) {
+                    center += score;
+                    centerTiles++;
+                }
+            }
+        }
+        work.score = (float) (total / work.tiles.length);
+        work.centerScore = centerTiles == 0 ? work.score : (float) (center / centerTiles);
+        work.sequence = frame.getSequence();
+        work.timestamp = frame.getTimestamp();
+        synchronized (mLock) {
+            mLatest.set(work);
+        }
+    }
+
+    /**
+     * Copies the scores of the most recently analyzed frame into {@code out}, which must come
+     * from {@link #newStats()}.
+     *
+     * @return {@code out}
+     */
+    public SharpnessStats getLatest(SharpnessStats out) {
+        synchronized (mLock) {
+            out.set(mLatest);
+        }
+        return out;
+    }
+
+    /**
+     * The middle one or two tiles of each axis count as the center.
+     */
+    private static boolean isCenterTile(int index, int count) {
+        return index == count / 2 || (count % 2 == 0 && index == count / 2 - 1);
+    }
+
+    /**
+     * Fills {@link #mReduced} with the 2x2 block average at every {@code scale}-th pixel.
+     */
+    private void reduce(Frame frame) {
+        int scale = mScale;
+        int width = frame.getWidth() / scale;
+        int height = frame.getHeight() / scale;
+        if (width * height > mReduced.length) {
+            mReduced = new int[width * height];
+        }
+        mReducedWidth = width;
+        mReducedHeight = height;
+        int[] reduced = mReduced;
+        ByteBuffer y = frame.getPlane(Frame.PLANE_Y);
+        int rowStride = frame.getRowStride(Frame.PLANE_Y);
+        int pixelStride = frame.getPixelStride(Frame.PLANE_Y);
+        int step = scale * pixelStride;
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            int offset = row * scale * rowStride;
+            for (int column = 0; column < width; column++, offset += step) {
+                int sum = (y.get(offset) & 0xFF)
+                        + (y.get(offset + pixelStride) & 0xFF)
+                        + (y.get(offset + rowStride) & 0xFF)
+                        + (y.get(offset + rowStride + pixelStride) & 0xFF);
+                reduced[index++] = sum;
+            }
+        }
+    }
+
+    private float laplacianVariance(int left, int top, int right, int bottom) {
+        int[] p = mReduced;
+        int width = mReducedWidth;
+        long sum = 0;
+        long sumSquares = 0;
+        for (int row = top; row < bottom; row++) {
+            int i = row * width + left;
+            for (int column = left; column < right; column++, i++) {
+                int laplacian = 4 * p[i] - p[i - 1] - p[i + 1] - p[i - width] - p[i + width];
+                sum += laplacian;
+                sumSquares += (long) laplacian * laplacian;
+            }
+        }
+        int count = (right - left) * (bottom - top);
+        if (count <= 0) {
+            return 0;
+        }
+        // Samples are sums of four pixels; scale back to 8-bit units.
+        double mean = (double) sum / count;
+        return (float) (((double) sumSquares / count - mean * mean) / 16);
+    }
+
+    private float tenengrad(int left, int top, int right, int bottom) {
+        int[] p = mReduced;
+        int width = mReducedWidth;
+        long energy = 0;
+        for (int row = top; row < bottom; row++) {
+            int i = row * width + left;
+            for (int column = left; column < right; column++, i++) {
+                int above = i - width;
+                int below = i + width;
+                int gx = (p[above + 1] + 2 * p[i + 1] + p[below + 1])
+                        - (p[above - 1] + 2 * p[i - 1] + p[below - 1]);
+                int gy = (p[below - 1] + 2 * p[below] + p[below + 1])
+                        - (p[above - 1] + 2 * p[above] + p[above + 1]);
+                energy += (long) gx * gx + (long) gy * gy;
+            }
+        }
+        int count = (right - left) * (bottom - top);
+        if (count <= 0) {
+            return 0;
+        }
+        return (float) ((double) energy / count / 16);
+    }
+
+}
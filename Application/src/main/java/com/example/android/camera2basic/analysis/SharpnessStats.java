@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+/**
+ * Focus-quality scores of one frame, as computed by {@link SharpnessAnalyzer}. Instances are
+ * meant to be reused by callers.
+ */
+// 单帧的清晰度评分
+public final class SharpnessStats {
+
+    /**
+     * Score of every tile, row by row. Higher is sharper.
+     */
+    public final float[] tiles;
+
+    /**
+     * Number of tile columns in {@link #tiles}.
+     */
+    public final int tileColumns;
+
+    /**
+     * {@link Frame#getSequence()} of the frame these scores belong to, or 0 if none yet.
+     */
+    public long sequence;
+
+    /**
+     * {@link Frame#getTimestamp()} of the frame these scores belong to.
+     */
+    public long timestamp;
+
+    /**
+     * Score of the whole frame.
+     */
+    public float score;
+
+    /**
+     * Score of the central tiles, where continuous auto focus usually settles.
+     */
+    public float centerScore;
+
+    public SharpnessStats(int tileColumns, int tileRows) {
+        this.tileColumns = tileColumns;
+        this.tiles = new float[tileColumns * tileRows];
+    }
+
+    /**
+     * Copies every field of {@code other}, which must have the same tile grid, into this instance.
+     */
+    public void set(SharpnessStats other) {
+        System.arraycopy(other.tiles, 0, tiles, 0, tiles.length);
+        sequence = other.sequence;
+        timestamp = other.timestamp;
+        score = other.score;
+        centerScore = other.centerScore;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seq=%d score=%.1f center=%.1f", sequence, score, centerScore);
+    }
+
+}
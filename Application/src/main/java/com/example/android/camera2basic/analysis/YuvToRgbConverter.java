@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts YUV_420_888 {@link Frame}s to packed ARGB_8888 pixels.
+ *
+ * <p>Chroma is addressed through the row and pixel strides of each plane, so semi-planar (NV12,
+ * NV21) and planar (I420) layouts are all handled by the same loop. Rows are split into bands
+ * that run on a {@link ForkJoinPool}. The band tasks are created once and re-armed for every
+ * frame, so converting allocates nothing in steady state.</p>
+ *
+ * <p>Colors use the full-range BT.601 matrix of JFIF, which camera YUV output follows.</p>
+ */
+// YUV_420_888转ARGB转换器：支持任意行跨度和像素跨度，按行分块并行转换，稳定状态下不分配内存
+public class YuvToRgbConverter {
+
+    /**
+     * Fixed-point precision of the color matrix.
+     */
+    private static final int SHIFT = 16;
+    private static final int HALF = 1 << (SHIFT - 1);
+    private static final int R_FROM_V = 91881;      // 1.402 << 16
+    private static final int G_FROM_U = 22554;      // 0.344136 << 16
+    private static final int G_FROM_V = 46802;      // 0.714136 << 16
+    private static final int B_FROM_U = 116130;     // 1.772 << 16
+
+    private final ForkJoinPool mPool;
+    private final boolean mOwnsPool;
+    private final Band[] mBands;
+    private final Root mRoot = new Root();
+
+    /*
+     * Inputs of the frame being converted. Written before the tasks are invoked, which makes
+     * them visible to the workers.
+     */
+    private Frame mFrame;
+    private int[] mOutArray;
+    private IntBuffer mOutBuffer;
+
+    /**
+     * Creates a converter with its own pool of {@code threads} workers. With a single thread the
+     * conversion runs on the calling thread.
+     */
+    public YuvToRgbConverter(int threads) {
+        this(threads > 1 ? new ForkJoinPool(threads) : null, threads, true);
+    }
+
+    /**
+     * Creates a converter that splits frames into {@code bands} row bands running on
+     * {@code pool}.
+     */
+    public YuvToRgbConverter(ForkJoinPool pool, int bands) {
+        this(pool, bands, false);
+    }
+
+    private YuvToRgbConverter(ForkJoinPool pool, int bands, boolean ownsPool) {
+        if (bands < 1) {
+            throw new IllegalArgumentException("Need at least one band.");
+        }
+        mPool = pool;
+        mOwnsPool = ownsPool;
+        mBands = new Band[bands];
+        for (int i = 0; i < bands; i++) {
+            mBands[i] = new Band(i);
+        }
+    }
+
+    /**
+     * Converts {@code frame} into {@code out}, one ARGB pixel per int, row by row without
+     * padding.
+     */
+    public synchronized void convert(Frame frame, int[] out) {
+        if (out.length < frame.getWidth() * frame.getHeight()) {
+            throw new IllegalArgumentException("Output is too small.");
+        }
+        run(frame, out, null);
+    }
+
+    /**
+     * Converts {@code frame} into {@code out}, usually a direct buffer, using absolute puts
+     * from index 0. The buffer position is left untouched.
+     */
+    public synchronized void convert(Frame frame, IntBuffer out) {
+        if (out.limit() < frame.getWidth() * frame.getHeight()) {
+            throw new IllegalArgumentException("Output is too small.");
+        }
+        run(frame, null, out);
+    }
+
+    /**
+     * Shuts down the pool if this converter created it.
+     */
+    public void close() {
+        if (mOwnsPool && mPool != null) {
+            mPool.shutdown();
+        }
+    }
+
+    private void run(Frame frame, int[] outArray, IntBuffer outBuffer) {
+        mFrame = frame;
+        mOutArray = outArray;
+        mOutBuffer = outBuffer;
+        try {
+            if (mPool == null || mBands.length == 1) {
+                for (Band band : mBands) {
+                    band.convert();
+                }
+            } else {
+                mRoot.reinitialize();
+                mPool.invoke(mRoot);
+            }
+        } finally {
+            mFrame = null;
+            mOutArray = null;
+            mOutBuffer = null;
+        }
+    }
+
+    /**
+     * Converts rows {@code [top, bottom)} of the current frame. {@code top} must be even so that
+     * both rows sharing a chroma row are handled together.
+     */
+    void convertRows(int top, int bottom) {
+        Frame frame = mFrame;
+        int[] outArray = mOutArray;
+        IntBuffer outBuffer = mOutBuffer;
+        int width = frame.getWidth();
+        ByteBuffer y = frame.getPlane(Frame.PLANE_Y);
+        ByteBuffer u = frame.getPlane(Frame.PLANE_U);
+        ByteBuffer v = frame.getPlane(Frame.PLANE_V);
+        int yRowStride = frame.getRowStride(Frame.PLANE_Y);
+        int yPixelStride = frame.getPixelStride(Frame.PLANE_Y);
+        int uRowStride = frame.getRowStride(Frame.PLANE_U);
+        int uPixelStride = frame.getPixelStride(Frame.PLANE_U);
+        int vRowStride = frame.getRowStride(Frame.PLANE_V);
+        int vPixelStride = frame.getPixelStride(Frame.PLANE_V);
+        for (int row = top; row < bottom; row++) {
+            int yOffset = row * yRowStride;
+            int uOffset = (row >> 1) * uRowStride;
+            int vOffset = (row >> 1) * vRowStride;
+            int out = row * width;
+            // Two horizontally adjacent pixels share one chroma sample.
+            for (int column = 0; column < width; column += 2) {
+                int chroma = column >> 1;
+                int cb = (u.get(uOffset + chroma * uPixelStride) & 0xFF) - 128;
+                int cr = (v.get(vOffset + chroma * vPixelStride) & 0xFF) - 128;
+                int red = R_FROM_V * cr + HALF;
+                int green = HALF - G_FROM_U * cb - G_FROM_V * cr;
+                int blue = B_FROM_U * cb + HALF;
+                int index = yOffset + column * yPixelStride;
+                int first = argb((y.get(index) & 0xFF) << SHIFT, red, green, blue);
+                if (outArray != null) {
+                    outArray[out++] = first;
+                } else {
+                    outBuffer.put(out++, first);
+                }
+                if (column + 1 < width) {
+                    int second = argb((y.get(index + yPixelStride) & 0xFF) << SHIFT,
+                            red, green, blue);
+                    if (outArray != null) {
+                        outArray[out++] = second;
+                    } else {
+                        outBuffer.put(out++, second);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int argb(int luma, int red, int green, int blue) {
+        return 0xFF000000
+                | (clamp((luma + red) >> SHIFT) << 16)
+                | (clamp((luma + green) >> SHIFT) << 8)
+                | clamp((luma + blue) >> SHIFT);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * Forks every band and waits for all of them.
+     */
+    private final class Root extends RecursiveAction {
+
+        @Override
+        protected void compute() {
+            for (Band band : mBands) {
+                band.reinitialize();
+            }
+            invokeAll(mBands);
+        }
+
+    }
+
+    /**
+     * One horizontal band of the frame. Band boundaries fall on even rows.
+     */
+    private final class Band extends RecursiveAction {
+
+        private final int mIndex;
+
+        Band(int index) {
+            mIndex = index;
+        }
+
+        @Override
+        protected void compute() {
+            convert();
+        }
+
+        void convert() {
+            int pairs = (mFrame.getHeight() + 1) / 2;
+            int count = mBands.length;
+            int top = 2 * (pairs * mIndex / count);
+            int bottom = Math.min(mFrame.getHeight(), 2 * (pairs * (mIndex + 1) / count));
+            convertRows(top, bottom);
+        }
+
+    }
+
+}
@@ -0,0 +1,942 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.analysis.AnalysisPipeline;
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.geometry.OrientationCalculator;
+import com.example.android.camera2basic.hal.CameraHal;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalDevice;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.HalRequest;
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.hal.HalSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the sample's camera flow on a {@link CameraHal}: open, preview, still capture through
+ * {@link CaptureStateMachine}, saving, and switching between cameras.
+ *
+ * <p>The fragment and the headless service both run their camera through it, so the sequence
+ * they share, including the sharpness gate, the capture timeout and the pairing of JPEGs with
+ * their results, is the one exercised against
+ * {@link com.example.android.camera2basic.hal.fake.FakeCameraHal} in tests and benchmarks. It
+ * must be called on the thread the HAL delivers callbacks on.</p>
+ */
+// 在CameraHal上运行与Fragment相同的相机流程：打开、预览、拍照、保存和切换摄像头
+public final class CaptureController {
+
+    /**
+     * Receives the outcome of the flow. All methods do nothing by default.
+     */
+    public abstract static class Listener {
+
+        /**
+         * The camera opened; its session is being created.
+         */
+        public void onCameraOpened(String cameraId) {
+        }
+
+        public void onPreviewStarted(String cameraId) {
+        }
+
+        public void onPictureSaved(long frameNumber) {
+        }
+
+        public void onSaveFailed(long frameNumber, IOException e) {
+        }
+
+        public void onCaptureFailed(long frameNumber) {
+        }
+
+        public void onCameraError(String cameraId, int error) {
+        }
+
+        public void onDisconnected(String cameraId) {
+        }
+
+        public void onAccessError(HalException e) {
+        }
+
+        /**
+         * The session could not be configured. Reported as a device error by default.
+         */
+        public void onConfigureFailed(String cameraId) {
+            onCameraError(cameraId, HalDevice.ERROR_CAMERA_DEVICE);
+        }
+
+        /**
+         * Progress of every request, preview and still, reported before the capture sequence
+         * acts on it.
+         */
+        public void onFrameStarted(HalRequest request, long timestamp, long frameNumber) {
+        }
+
+        public void onFrameCompleted(HalRequest request, HalResult result) {
+        }
+
+        public void onFrameFailed(HalRequest request, long frameNumber, int reason) {
+        }
+
+        public void onFrameBufferLost(HalRequest request, long frameNumber) {
+        }
+
+        /**
+         * The capture sequence sends the precapture trigger or the still request.
+         *
+         * @param state  State of the sequence when the result that caused it arrived
+         * @param action {@code CaptureStateMachine.ACTION_PRECAPTURE} or {@code ACTION_CAPTURE}
+         */
+        public void onAction(int state, int action) {
+        }
+
+        /**
+         * A capture sequence did not complete within the capture timeout, typically because the
+         * device never reported an AF or AE state it waits for. The controller returns to
+         * preview right after, so the next picture can start.
+         *
+         * @param state The state the sequence was stuck in
+         */
+        public void onCaptureTimeout(int state) {
+        }
+
+        /**
+         * Analyzers were still running when the camera closed the images they read.
+         */
+        public void onAnalysisCloseTimeout() {
+        }
+
+    }
+
+    /**
+     * Marks the sections of the flow in a trace, for example with {@code android.os.Trace}.
+     */
+    public interface Tracer {
+
+        void beginSection(String name);
+
+        void endSection();
+
+    }
+
+    /**
+     * Receives the outcome of one picture queued with {@link #queuePicture}. Exactly one method
+     * is called, on the thread the HAL delivers callbacks on.
+     */
+    public interface PictureCallback {
+
+        /**
+         * @param timestamp Sensor timestamp of the exposure
+         */
+        void onPictureSaved(long timestamp, long frameNumber);
+
+        /**
+         * @param frameNumber Frame of the failed capture, or -1 if the picture never started
+         *                    because the camera closed
+         */
+        void onPictureFailed(long frameNumber);
+
+    }
+
+    /**
+     * Most pictures {@link #queuePicture} accepts before refusing, counting the one in progress.
+     */
+    public static final int MAX_QUEUED_PICTURES = 16;
+
+    /**
+     * Longest a capture sequence may take, unless {@link #setCaptureTimeout} says otherwise.
+     */
+    public static final long DEFAULT_CAPTURE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * Most still results kept for JPEGs yet to come, and JPEGs kept waiting for their results.
+     */
+    private static final int MAX_UNPAIRED = 8;
+
+    /**
+     * Trace section names of the result processing, indexed by state.
+     */
+    private static final String[] PROCESS_SECTIONS = {  // 每个状态对应的跟踪区段名
+            "process:PREVIEW",
+            "process:WAITING_LOCK",
+            "process:WAITING_PRECAPTURE",
+            "process:WAITING_NON_PRECAPTURE",
+            "process:PICTURE_TAKEN",
+    };
+
+    /**
+     * Stores the pictures, like the fragment's {@code SaveQueue}. The JPEG of a still and the
+     * result of its capture arrive in either order; they are paired by sensor timestamp.
+     */
+    public interface JpegSink {
+
+        /**
+         * @param jpeg      Valid only during the call
+         * @param timestamp Sensor timestamp of the picture
+         * @param result    Result of its capture, with the exposure and sensitivity, or null if
+         *                  it has not arrived yet; {@link #onLateResult} then follows with it
+         *                  unless the capture fails or the camera closes first
+         */
+        void save(ByteBuffer jpeg, long timestamp, long frameNumber, HalResult result)
+                throws IOException;
+
+        /**
+         * @param result Result of a still that {@link #save} got without one
+         */
+        void onLateResult(HalResult result);
+
+    }
+
+    private final CameraHal mHal;
+    private final JpegSink mSink;
+    private final Listener mListener;
+    private final CaptureStateMachine mStateMachine;
+
+    private HalSession.FrameListener mFrameListener;
+    private AnalysisPipeline mPipeline;
+    private long mPipelineCloseTimeoutMs;
+    private SharpnessGate mSharpnessGate;
+    private Tracer mTracer = NO_TRACER;
+    private long mCaptureTimeoutNanos = DEFAULT_CAPTURE_TIMEOUT_NANOS;
+
+    private String mCameraId;
+    private HalDevice mDevice;
+    private HalSession mSession;
+    private boolean mFlashSupported;
+    private OrientationCalculator mOrientation;
+    private volatile int mDeviceOrientation;
+    private int mPreviewTargets = HalRequest.TARGET_PREVIEW | HalRequest.TARGET_YUV;
+    private HalRequest mPreviewRequest;
+    private boolean m3ALocked;
+
+    /**
+     * Pictures waiting for the current one to finish, and pictures whose still request was sent
+     * and whose JPEG has not arrived yet. With 3A locked, a still can fail while the JPEG of an
+     * earlier one is pending, so outcomes are matched by frame number and timestamp, not order.
+     */
+    private final ArrayDeque<PictureCallback> mQueued = new ArrayDeque<>();
+    private final ArrayList<Picture> mInFlight = new ArrayList<>();
+
+    /**
+     * Results of stills whose JPEG has not arrived, and sensor timestamps of JPEGs saved before
+     * their result, oldest first.
+     */
+    private final ArrayList<HalResult> mStillResults = new ArrayList<>();
+    private final ArrayList<Long> mResultsAwaited = new ArrayList<>();
+
+    private long mPicturesSaved;
+
+    public CaptureController(CameraHal hal, JpegSink sink, Listener listener,
+                             CaptureStateMachine.Listener stateListener) {
+        mHal = hal;
+        mSink = sink;
+        mListener = listener;
+        mStateMachine = new CaptureStateMachine(stateListener);
+    }
+
+    public CaptureStateMachine getStateMachine() {
+        return mStateMachine;
+    }
+
+    /**
+     * Receives the YUV preview frames of the sessions created from now on, like the fragment's
+     * analysis reader.
+     */
+    public void setFrameListener(HalSession.FrameListener listener) {
+        mFrameListener = listener;
+    }
+
+    /**
+     * Feeds the YUV preview frames of the sessions created from now on to {@code pipeline},
+     * instead of a frame listener. The frames are images of the session's reader, so the
+     * pipeline is closed before the camera closes or goes away, and reopened for the next
+     * session.
+     *
+     * @param closeTimeoutMs How long closing the camera waits for running analyzers
+     */
+    public void setAnalysisPipeline(final AnalysisPipeline pipeline, long closeTimeoutMs) {
+        mPipeline = pipeline;
+        mPipelineCloseTimeoutMs = closeTimeoutMs;
+        setFrameListener(pipeline == null ? null : new HalSession.FrameListener() {
+            @Override
+            public void onFrame(Frame frame) {
+                pipeline.submit(frame);
+            }
+        });
+    }
+
+    /**
+     * Makes every capture sequence wait for a sharp frame once focus is locked.
+     *
+     * @param gate The gate, or null to capture as soon as focus is locked
+     */
+    public void setSharpnessGate(SharpnessGate gate) {
+        mSharpnessGate = gate;
+        mStateMachine.setGate(gate);
+    }
+
+    /**
+     * @param tracer Receives the sections of the flow, or null for none
+     */
+    public void setTracer(Tracer tracer) {
+        mTracer = tracer == null ? NO_TRACER : tracer;
+    }
+
+    /**
+     * @param nanos Longest a capture sequence may take before the controller gives up on it and
+     *              returns to preview, or 0 to wait forever
+     */
+    public void setCaptureTimeout(long nanos) {
+        mCaptureTimeoutNanos = nanos;
+    }
+
+    /**
+     * @return The id of the camera opened or being opened, or null
+     */
+    public String getCameraId() {
+        return mCameraId;
+    }
+
+    public boolean isPreviewing() {
+        return mSession != null;
+    }
+
+    public long getPicturesSaved() {
+        return mPicturesSaved;
+    }
+
+    /**
+     * @return Pictures queued or in progress, up to {@link #MAX_QUEUED_PICTURES}
+     */
+    public int getQueuedPictures() {
+        return mQueued.size() + mInFlight.size();
+    }
+
+    public boolean is3ALocked() {
+        return m3ALocked;
+    }
+
+    /**
+     * Selects the streams of the repeating request that keeps 3A running between pictures. A
+     * headless capture passes {@code TARGET_YUV} alone, so no preview is rendered and the small
+     * YUV stream is the only one the sensor feeds until a picture is taken. Call before
+     * {@link #open(String)}.
+     *
+     * @param targets {@code HalRequest.TARGET_*} bits, without {@code TARGET_JPEG}
+     */
+    public void setPreviewTargets(int targets) {
+        if (targets == 0 || (targets & HalRequest.TARGET_JPEG) != 0) {
+            throw new IllegalArgumentException("Invalid preview targets " + targets);
+        }
+        mPreviewTargets = targets;
+    }
+
+    /**
+     * @param rotation Display rotation the JPEG orientation of still captures is derived from,
+     *                 a {@code Surface.ROTATION_*} value
+     */
+    public void setDisplayRotation(int rotation) {
+        mDeviceOrientation = OrientationCalculator.deviceOrientation(rotation);
+    }
+
+    /**
+     * @param orientation Device orientation the JPEG orientation of still captures is derived
+     *                    from, clockwise degrees from the natural orientation
+     */
+    public void setDeviceOrientation(int orientation) {
+        mDeviceOrientation = orientation;
+    }
+
+    /**
+     * Opens {@code cameraId} and starts the preview once it is open.
+     */
+    public void open(String cameraId) throws HalException {
+        CameraInfo info = mHal.getCameraInfo(cameraId);
+        mFlashSupported = info.isFlashSupported();
+        mOrientation = new OrientationCalculator(info.getSensorOrientation(), info.getFacing());
+        mCameraId = cameraId;
+        try {
+            mHal.openCamera(cameraId, mDeviceCallback);
+        } catch (HalException e) {
+            mCameraId = null;   // 没有打开，queuePicture不能再接受照片
+            throw e;
+        }
+    }
+
+    public void close() {
+        mCameraId = null;
+        m3ALocked = false;
+        mHal.removeCallbacks(mCaptureTimeout);
+        closePipeline();    // 分析器可能还在读取即将关闭的ImageReader中的图像
+        if (mSession != null) {
+            mSession.close();
+            mSession = null;
+        }
+        if (mDevice != null) {
+            mDevice.close();
+            mDevice = null;
+        }
+        reopenPipeline();   // 下一个会话继续送帧
+        failPictures();
+        mStateMachine.setState(CaptureStateMachine.STATE_PREVIEW);
+    }
+
+    /**
+     * Closes the current camera and opens the next one that faces the other way, or simply the
+     * next one if all face the same way.
+     *
+     * @return The id of the camera being opened
+     */
+    public String switchCamera() throws HalException {
+        List<String> ids = mHal.getCameraIds();
+        int[] facings = new int[ids.size()];
+        for (int i = 0; i < facings.length; i++) {
+            facings[i] = mHal.getCameraInfo(ids.get(i)).getFacing();
+        }
+        String next = nextCamera(ids, facings, mCameraId);
+        close();
+        open(next);
+        return next;
+    }
+
+    /**
+     * Picks the camera {@link #switchCamera()} opens: the next one after {@code current}, in the
+     * order of {@code ids}, that faces the other way, or simply the next one if all face the same
+     * way.
+     *
+     * @param facings The {@code CameraInfo.LENS_FACING_*} of each camera, in the order of ids
+     * @param current The camera open now, or null for none
+     */
+    public static String nextCamera(List<String> ids, int[] facings, String current) {
+        int start = Math.max(0, ids.indexOf(current));
+        int facing = current == null || !ids.contains(current) ? -1 : facings[start];
+        String next = ids.get((start + 1) % ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            int index = (start + i) % ids.size();
+            if (facings[index] != facing) {
+                next = ids.get(index);
+                break;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Starts a still capture, as the fragment's {@code lockFocus()}.
+     *
+     * @return False if the preview is not running or a capture is already in progress
+     */
+    public boolean takePicture() {
+        if (mSession == null || mStateMachine.getState() != CaptureStateMachine.STATE_PREVIEW
+                || !mQueued.isEmpty()) {
+            return false;
+        }
+        return queuePicture(NO_CALLBACK);
+    }
+
+    /**
+     * Queues a still capture behind the ones in progress, for triggers that must not be dropped
+     * while the previous picture is being taken. Each picture runs the full sequence unless 3A
+     * is locked, in which case it is captured on the next frame. A picture queued while the
+     * camera is still opening is held until the preview starts, and fails if it never does.
+     *
+     * @return False if no camera is open or opening, or {@link #MAX_QUEUED_PICTURES} are pending
+     */
+    public boolean queuePicture(PictureCallback callback) {
+        if (mCameraId == null || getQueuedPictures() >= MAX_QUEUED_PICTURES) {
+            return false;
+        }
+        mQueued.add(callback);
+        startNextPicture();
+        return true;
+    }
+
+    /**
+     * Locks or unlocks focus and exposure between pictures, so that a series of pictures shares
+     * the same 3A and each is captured without waiting for convergence.
+     *
+     * @return False if the preview is not running or a capture is in progress
+     */
+    public boolean set3ALocked(boolean locked) {
+        if (mSession == null || mStateMachine.getState() != CaptureStateMachine.STATE_PREVIEW) {
+            return false;
+        }
+        if (locked == m3ALocked) {
+            return true;
+        }
+        m3ALocked = locked;
+        mPreviewRequest = previewBuilder().build();
+        try {
+            mSession.capture(previewBuilder().setAfTrigger(locked ? HalRequest.AF_TRIGGER_START
+                    : HalRequest.AF_TRIGGER_CANCEL).build(), mCaptureCallback);
+            mSession.setRepeatingRequest(mPreviewRequest, mCaptureCallback);
+        } catch (HalException e) {
+            mListener.onAccessError(e);
+        }
+        return true;
+    }
+
+    private void startNextPicture() {
+        if (mSession == null || mQueued.isEmpty()
+                || mStateMachine.getState() != CaptureStateMachine.STATE_PREVIEW) {
+            return;
+        }
+        mInFlight.add(new Picture(mQueued.poll()));
+        mHal.removeCallbacks(mCaptureTimeout);
+        if (mCaptureTimeoutNanos > 0) {
+            mHal.postDelayed(mCaptureTimeout, mCaptureTimeoutNanos);
+        }
+        if (m3ALocked) {
+            // Focus and exposure are already held; skip the lock and precapture sequence.
+            mStateMachine.setState(CaptureStateMachine.STATE_PICTURE_TAKEN);
+            captureStillPicture();
+            return;
+        }
+        if (mSharpnessGate != null) {
+            mSharpnessGate.reset();
+        }
+        mStateMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        submit(previewBuilder().setAfTrigger(HalRequest.AF_TRIGGER_START).build());
+    }
+
+    private void failPictures() {   // 相机关闭时，通知所有尚未完成的照片失败
+        for (Picture picture : mInFlight) {
+            picture.mCallback.onPictureFailed(-1);
+        }
+        mInFlight.clear();
+        mStillResults.clear();
+        mResultsAwaited.clear();
+        while (!mQueued.isEmpty()) {
+            mQueued.poll().onPictureFailed(-1);
+        }
+    }
+
+    private HalRequest.Builder previewBuilder() {
+        return new HalRequest.Builder(HalRequest.TEMPLATE_PREVIEW)
+                .addTarget(mPreviewTargets)
+                .setAfMode(HalRequest.AF_MODE_CONTINUOUS_PICTURE)
+                .setAeMode(mFlashSupported ? HalRequest.AE_MODE_ON_AUTO_FLASH
+                        : HalRequest.AE_MODE_ON)
+                .setAeLock(m3ALocked);
+    }
+
+    private void submit(HalRequest request) {
+        try {
+            mSession.capture(request, mCaptureCallback);
+        } catch (HalException e) {
+            mListener.onAccessError(e);
+        }
+    }
+
+    private void captureStillPicture() {
+        mTracer.beginSection("captureStillPicture");
+        try {
+            captureStillPictureTraced();
+        } finally {
+            mTracer.endSection();
+        }
+    }
+
+    private void captureStillPictureTraced() {
+        HalRequest still = new HalRequest.Builder(HalRequest.TEMPLATE_STILL_CAPTURE)
+                .addTarget(HalRequest.TARGET_JPEG)
+                .setAfMode(HalRequest.AF_MODE_CONTINUOUS_PICTURE)
+                .setAeMode(mFlashSupported ? HalRequest.AE_MODE_ON_AUTO_FLASH
+                        : HalRequest.AE_MODE_ON)
+                .setAeLock(m3ALocked)
+                .setJpegOrientation(mOrientation.getJpegOrientationForDevice(mDeviceOrientation))
+                .build();
+        try {
+            mSession.stopRepeating();
+            mSession.abortCaptures();
+            // The picture started last; the ones before it are only waiting for their JPEGs.
+            Picture picture = mInFlight.isEmpty() ? new Picture(NO_CALLBACK)
+                    : mInFlight.get(mInFlight.size() - 1);
+            mSession.capture(still, new StillCallback(picture));
+        } catch (HalException e) {
+            mListener.onAccessError(e);
+        }
+    }
+
+    private void unlockFocus() {
+        mHal.removeCallbacks(mCaptureTimeout);
+        if (mSession == null) {
+            return;
+        }
+        try {
+            if (!m3ALocked) {
+                mSession.capture(previewBuilder().setAfTrigger(HalRequest.AF_TRIGGER_CANCEL)
+                        .build(), mCaptureCallback);
+            }
+            mStateMachine.setState(CaptureStateMachine.STATE_PREVIEW);
+            mSession.setRepeatingRequest(mPreviewRequest, mCaptureCallback);
+        } catch (HalException e) {
+            mListener.onAccessError(e);
+            return;
+        }
+        startNextPicture();
+    }
+
+    private void onDeviceGone(HalDevice device) {
+        if (mDevice != device) {
+            if (mDevice == null && device.getId().equals(mCameraId)) {
+                failPictures();     // 打开失败，排队等预览的照片不会再开始
+            }
+            device.close();
+            return;
+        }
+        mHal.removeCallbacks(mCaptureTimeout);
+        closePipeline();
+        device.close();
+        mDevice = null;
+        mSession = null;
+        m3ALocked = false;
+        reopenPipeline();
+        failPictures();
+    }
+
+    private void closePipeline() {
+        if (mPipeline != null && !mPipeline.close(mPipelineCloseTimeoutMs)) {
+            mListener.onAnalysisCloseTimeout();
+        }
+    }
+
+    private void reopenPipeline() {
+        if (mPipeline != null) {
+            mPipeline.reopen();
+        }
+    }
+
+    /**
+     * Gives up on a capture sequence that did not complete in time. The picture fails if its
+     * still request never started; one that did may still deliver its JPEG.
+     */
+    // 拍照流程超时：放弃当前照片并恢复预览，下一张照片才能开始
+    private final Runnable mCaptureTimeout = new Runnable() {
+        @Override
+        public void run() {
+            int state = mStateMachine.getState();
+            if (mSession == null || state == CaptureStateMachine.STATE_PREVIEW) {
+                return;
+            }
+            mListener.onCaptureTimeout(state);
+            int last = mInFlight.size() - 1;
+            if (last >= 0 && mInFlight.get(last).mFrameNumber < 0) {
+                mInFlight.remove(last).mCallback.onPictureFailed(-1);
+            }
+            unlockFocus();
+        }
+    };
+
+    private final CameraHal.DeviceCallback mDeviceCallback = new CameraHal.DeviceCallback() {
+
+        @Override
+        public void onOpened(HalDevice device) {
+            if (!device.getId().equals(mCameraId)) {
+                // Closed or switched away while opening.
+                device.close();
+                return;
+            }
+            mDevice = device;
+            mListener.onCameraOpened(mCameraId);
+            mTracer.beginSection("createCameraPreviewSession");
+            try {
+                device.createCaptureSession(mSessionCallback);
+            } catch (HalException e) {
+                mListener.onAccessError(e);
+            } finally {
+                mTracer.endSection();
+            }
+        }
+
+        @Override
+        public void onDisconnected(HalDevice device) {
+            onDeviceGone(device);
+            mListener.onDisconnected(device.getId());
+        }
+
+        @Override
+        public void onError(HalDevice device, int error) {
+            onDeviceGone(device);
+            mListener.onCameraError(device.getId(), error);
+        }
+
+    };
+
+    private final HalDevice.SessionCallback mSessionCallback = new HalDevice.SessionCallback() {
+
+        @Override
+        public void onConfigured(HalSession session) {
+            mTracer.beginSection("onConfigured");
+            try {
+                startPreview(session);
+            } finally {
+                mTracer.endSection();
+            }
+        }
+
+        private void startPreview(HalSession session) {
+            // The camera is already closed
+            if (mDevice != session.getDevice()) {
+                return;
+            }
+            mSession = session;
+            session.setJpegListener(mJpegListener);
+            session.setFrameListener(mFrameListener);
+            mPreviewRequest = previewBuilder().build();
+            mStateMachine.setState(CaptureStateMachine.STATE_PREVIEW);
+            try {
+                session.setRepeatingRequest(mPreviewRequest, mCaptureCallback);
+            } catch (HalException e) {
+                mListener.onAccessError(e);
+                return;
+            }
+            mListener.onPreviewStarted(mCameraId);
+            startNextPicture();     // 相机打开期间排队的照片
+        }
+
+        @Override
+        public void onConfigureFailed() {
+            failPictures();
+            mListener.onConfigureFailed(mCameraId);
+        }
+
+    };
+
+    private final HalSession.CaptureCallback mCaptureCallback = new HalSession.CaptureCallback() {
+
+        @Override
+        public void onCaptureStarted(HalRequest request, long timestamp, long frameNumber) {
+            mListener.onFrameStarted(request, timestamp, frameNumber);
+        }
+
+        @Override
+        public void onCaptureCompleted(HalRequest request, HalResult result) {
+            if (mSession == null) {
+                return;
+            }
+            mListener.onFrameCompleted(request, result);
+            int state = mStateMachine.getState();
+            if (state == CaptureStateMachine.STATE_PREVIEW
+                    || state == CaptureStateMachine.STATE_PICTURE_TAKEN) {
+                // We have nothing to do when the camera preview is working normally.
+                return;
+            }
+            mTracer.beginSection(PROCESS_SECTIONS[state]);
+            try {
+                process(state, result);
+            } finally {
+                mTracer.endSection();
+            }
+        }
+
+        private void process(int state, HalResult result) {
+            int action = mStateMachine.onResult(result.getAfState(), result.getAeState(),
+                    result.getTimestamp());
+            if (action != CaptureStateMachine.ACTION_NONE) {
+                mListener.onAction(state, action);
+            }
+            switch (action) {
+                case CaptureStateMachine.ACTION_PRECAPTURE:
+                    submit(previewBuilder()
+                            .setAePrecaptureTrigger(HalRequest.AE_PRECAPTURE_TRIGGER_START)
+                            .build());
+                    break;
+                case CaptureStateMachine.ACTION_CAPTURE:
+                    captureStillPicture();
+                    break;
+            }
+        }
+
+        @Override
+        public void onCaptureFailed(HalRequest request, long frameNumber, int reason) {
+            mListener.onFrameFailed(request, frameNumber, reason);
+        }
+
+        @Override
+        public void onCaptureBufferLost(HalRequest request, long frameNumber) {
+            mListener.onFrameBufferLost(request, frameNumber);
+        }
+
+    };
+
+    /**
+     * Follows the still request of one picture.
+     */
+    private final class StillCallback extends HalSession.CaptureCallback {
+
+        private final Picture mPicture;
+
+        StillCallback(Picture picture) {
+            mPicture = picture;
+        }
+
+        @Override
+        public void onCaptureStarted(HalRequest request, long timestamp, long frameNumber) {
+            mPicture.mFrameNumber = frameNumber;
+            mPicture.mTimestamp = timestamp;
+            mListener.onFrameStarted(request, timestamp, frameNumber);
+        }
+
+        @Override
+        public void onCaptureCompleted(HalRequest request, HalResult result) {
+            mListener.onFrameCompleted(request, result);
+            if (mResultsAwaited.remove(Long.valueOf(result.getTimestamp()))) {
+                mSink.onLateResult(result); // JPEG先到，结果后到
+            } else {
+                keepUnpaired(mStillResults, result);
+            }
+            unlockFocus();
+        }
+
+        @Override
+        public void onCaptureFailed(HalRequest request, long frameNumber, int reason) {
+            mListener.onFrameFailed(request, frameNumber, reason);
+            // Recover right away rather than waiting for the capture timeout.
+            Picture picture = takeInFlight(frameNumber, -1);
+            if (picture == null && mInFlight.remove(mPicture)) {
+                picture = mPicture; // 失败前没有收到onCaptureStarted
+            }
+            if (picture != null) {
+                picture.mCallback.onPictureFailed(frameNumber);
+            }
+            mListener.onCaptureFailed(frameNumber);
+            unlockFocus();
+        }
+
+        @Override
+        public void onCaptureBufferLost(HalRequest request, long frameNumber) {
+            mListener.onFrameBufferLost(request, frameNumber);
+        }
+
+    }
+
+    /**
+     * Removes the in-flight picture with {@code frameNumber} or, failing that, with
+     * {@code timestamp}.
+     *
+     * @return The picture, or null if none matches
+     */
+    private Picture takeInFlight(long frameNumber, long timestamp) {
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < mInFlight.size(); i++) {
+                Picture picture = mInFlight.get(i);
+                if (pass == 0 ? frameNumber >= 0 && picture.mFrameNumber == frameNumber
+                        : timestamp >= 0 && picture.mTimestamp == timestamp) {
+                    return mInFlight.remove(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the still result with {@code timestamp}.
+     *
+     * @return The result, or null if it has not arrived
+     */
+    private HalResult takeStillResult(long timestamp) {
+        for (int i = 0; i < mStillResults.size(); i++) {
+            if (mStillResults.get(i).getTimestamp() == timestamp) {
+                return mStillResults.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private static <T> void keepUnpaired(List<T> list, T item) {
+        if (list.size() >= MAX_UNPAIRED) {
+            list.remove(0); // 配对的另一半不会再来了
+        }
+        list.add(item);
+    }
+
+    private final HalSession.JpegListener mJpegListener = new HalSession.JpegListener() {
+
+        @Override
+        public void onJpeg(ByteBuffer jpeg, long timestamp, long frameNumber) {
+            Picture picture = takeInFlight(frameNumber, timestamp);
+            PictureCallback callback = picture == null ? NO_CALLBACK : picture.mCallback;
+            HalResult result = takeStillResult(timestamp);
+            try {
+                mSink.save(jpeg, timestamp, frameNumber, result);
+                if (result == null) {
+                    keepUnpaired(mResultsAwaited, timestamp);
+                }
+                mPicturesSaved++;
+                mListener.onPictureSaved(frameNumber);
+            } catch (IOException e) {
+                mListener.onSaveFailed(frameNumber, e);
+                callback.onPictureFailed(frameNumber);
+                return;
+            }
+            callback.onPictureSaved(timestamp, frameNumber);
+        }
+
+    };
+
+    /**
+     * A picture whose still request was sent.
+     */
+    private static final class Picture {
+
+        final PictureCallback mCallback;
+
+        /**
+         * Set when its capture starts; -1 until then.
+         */
+        long mFrameNumber = -1;
+        long mTimestamp = -1;
+
+        Picture(PictureCallback callback) {
+            mCallback = callback;
+        }
+
+    }
+
+    private static final Tracer NO_TRACER = new Tracer() {
+
+        @Override
+        public void beginSection(String name) {
+        }
+
+        @Override
+        public void endSection() {
+        }
+
+    };
+
+    private static final PictureCallback NO_CALLBACK = new PictureCallback() {
+
+        @Override
+        public void onPictureSaved(long timestamp, long frameNumber) {
+        }
+
+        @Override
+        public void onPictureFailed(long frameNumber) {
+        }
+
+    };
+
+}
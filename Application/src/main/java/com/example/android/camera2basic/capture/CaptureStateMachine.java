@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+/**
+ * The still capture sequence of the sample: lock focus, run the precapture sequence if exposure
+ * needs it, capture, and return to preview.
+ *
+ * <p>The caller sends the requests; this class only decides, from the AF and AE states of each
+ * result, what to do next. It is shared by the fragment, which feeds it Camera2 results, and by
+ * {@link CaptureController}, which feeds it results of a {@code CameraHal}, so that the sequence
+ * can be tested and replayed on a desktop JVM. States use the {@link HalResult} constants, which
+ * have the same values as Camera2's; {@link HalResult#STATE_UNAVAILABLE} stands for null.</p>
+ *
+ * <p>The state is written from the thread the results arrive on and may be read from any
+ * thread.</p>
+ */
+// 拍照状态机：根据每个结果的对焦和曝光状态决定下一步操作，由Fragment和CaptureController共用
+public final class CaptureStateMachine {
+
+    /**
+     * Camera state: Showing camera preview.
+     */
+    public static final int STATE_PREVIEW = 0;  // 相机预览状态
+
+    /**
+     * Camera state: Waiting for the focus to be locked.
+     */
+    public static final int STATE_WAITING_LOCK = 1;    // 等待对焦状态
+
+    /**
+     * Camera state: Waiting for the exposure to be precapture state.
+     */
+    public static final int STATE_WAITING_PRECAPTURE = 2;  // 等待曝光状态
+
+    /**
+     * Camera state: Waiting for the exposure state to be something other than precapture.
+     */
+    public static final int STATE_WAITING_NON_PRECAPTURE = 3;  // 等待曝光状态
+
+    /**
+     * Camera state: Picture was taken.
+     */
+    public static final int STATE_PICTURE_TAKEN = 4;   // 拍照状态
+
+    /**
+     * Number of states, for tables indexed by state.
+     */
+    public static final int STATE_COUNT = 5;
+
+    /**
+     * Results of {@link #onResult}: nothing to do, send the precapture trigger, or capture the
+     * still picture.
+     */
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_PRECAPTURE = 1;
+    public static final int ACTION_CAPTURE = 2;
+
+    /**
+     * Observes state transitions, on the thread that caused them.
+     */
+    public interface Listener {
+
+        void onStateChanged(int from, int to);
+
+    }
+
+    /**
+     * Decides whether a result with focus locked is good enough to capture, for example by
+     * checking the sharpness of the preview. Asked once per such result.
+     */
+    public interface Gate {
+
+        /**
+         * @param timestamp Sensor timestamp of the result, or 0 if unknown
+         */
+        boolean isReady(long timestamp);
+
+    }
+
+    private final Listener mListener;
+
+    private volatile Gate mGate;
+
+    private volatile int mState = STATE_PREVIEW;
+
+    /**
+     * @param listener Notified of every transition, or null
+     */
+    public CaptureStateMachine(Listener listener) {
+        mListener = listener;
+    }
+
+    public void setGate(Gate gate) {
+        mGate = gate;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Moves to {@code state}, as the caller does when it sends the focus lock trigger or goes
+     * back to preview.
+     */
+    public void setState(int state) {
+        int from = mState;
+        mState = state;
+        if (mListener != null) {
+            mListener.onStateChanged(from, state);
+        }
+    }
+
+    /**
+     * Advances the sequence with the 3A state of a partial or complete result.
+     *
+     * @return {@link #ACTION_NONE}, {@link #ACTION_PRECAPTURE} or {@link #ACTION_CAPTURE}. The
+     * state already reflects the action when this returns.
+     */
+    public int onResult(int afState, int aeState, long timestamp) {
+        switch (mState) {
+            case STATE_WAITING_LOCK: {
+                if (afState == HalResult.STATE_UNAVAILABLE) {
+                    // No AF on this device; capture right away.
+                    setState(STATE_PICTURE_TAKEN);
+                    return ACTION_CAPTURE;
+                }
+                if (afState != HalResult.AF_STATE_FOCUSED_LOCKED
+                        && afState != HalResult.AF_STATE_NOT_FOCUSED_LOCKED) {
+                    return ACTION_NONE;
+                }
+                Gate gate = mGate;
+                if (gate != null && !gate.isReady(timestamp)) {
+                    return ACTION_NONE;
+                }
+                // CONTROL_AE_STATE can be null on some devices
+                if (aeState == HalResult.STATE_UNAVAILABLE
+                        || aeState == HalResult.AE_STATE_CONVERGED) {
+                    setState(STATE_PICTURE_TAKEN);
+                    return ACTION_CAPTURE;
+                }
+                setState(STATE_WAITING_PRECAPTURE);
+                return ACTION_PRECAPTURE;
+            }
+            case STATE_WAITING_PRECAPTURE: {
+                if (aeState == HalResult.STATE_UNAVAILABLE
+                        || aeState == HalResult.AE_STATE_PRECAPTURE
+                        || aeState == HalResult.AE_STATE_FLASH_REQUIRED) {
+                    setState(STATE_WAITING_NON_PRECAPTURE);
+                }
+                return ACTION_NONE;
+            }
+            case STATE_WAITING_NON_PRECAPTURE: {
+                if (aeState != HalResult.AE_STATE_PRECAPTURE) {
+                    setState(STATE_PICTURE_TAKEN);
+                    return ACTION_CAPTURE;
+                }
+                return ACTION_NONE;
+            }
+            default:
+                // We have nothing to do when the camera preview is working normally.
+                return ACTION_NONE;
+        }
+    }
+
+    public static String stateName(int state) {
+        switch (state) {
+            case STATE_PREVIEW:
+                return "PREVIEW";
+            case STATE_WAITING_LOCK:
+                return "WAITING_LOCK";
+            case STATE_WAITING_PRECAPTURE:
+                return "WAITING_PRECAPTURE";
+            case STATE_WAITING_NON_PRECAPTURE:
+                return "WAITING_NON_PRECAPTURE";
+            case STATE_PICTURE_TAKEN:
+                return "PICTURE_TAKEN";
+            default:
+                return "UNKNOWN(" + state + ")";
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+/**
+ * The binary format of capture result logs, written by {@link ResultLogWriter} and read by
+ * {@link ResultLogReader}.
+ *
+ * <p>A log starts with the {@link #MAGIC} number and the {@link #VERSION} byte, followed by
+ * records. Every record is a type byte and the {@link System#nanoTime()} delta to the previous
+ * record as an unsigned varint. Results add the frame number and sensor timestamp deltas to the
+ * previous result as zigzag varints, and the AF, AE and AWB states as one byte each, 0xFF when
+ * the device did not report the state. A result at 30 fps takes about 13 bytes.</p>
+ */
+// 拍照结果日志的二进制格式：记录3A状态、时间戳和帧号，供JVM上重放状态机
+public final class ResultLog {
+
+    public static final int MAGIC = 0x43524C47;  // "CRLG"
+    public static final int VERSION = 1;
+
+    /**
+     * Record types: a complete or partial result, the start of a capture sequence, an action the
+     * app took on a result, and the return to preview.
+     */
+    public static final int TYPE_RESULT = 1;
+    public static final int TYPE_PARTIAL = 2;
+    public static final int TYPE_TRIGGER = 3;
+    public static final int TYPE_ACTION = 4;
+    public static final int TYPE_UNLOCK = 5;
+
+    static final int STATE_ABSENT = 0xFF;
+
+    private ResultLog() {
+    }
+
+    public static String typeName(int type) {
+        switch (type) {
+            case TYPE_RESULT:
+                return "RESULT";
+            case TYPE_PARTIAL:
+                return "PARTIAL";
+            case TYPE_TRIGGER:
+                return "TRIGGER";
+            case TYPE_ACTION:
+                return "ACTION";
+            case TYPE_UNLOCK:
+                return "UNLOCK";
+            default:
+                return "UNKNOWN(" + type + ")";
+        }
+    }
+
+}
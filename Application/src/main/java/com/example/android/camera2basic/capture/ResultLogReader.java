@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a {@link ResultLog} record by record. {@link #next()} decodes a record into the fields
+ * of this reader, so iterating does not allocate. A log cut short by a crash ends at the last
+ * complete record.
+ */
+// 结果日志读取器：逐条解码，不分配对象
+public final class ResultLogReader implements Closeable {
+
+    private final InputStream mInput;
+
+    private int mType;
+    private long mNanos;
+    private long mFrameNumber;
+    private long mTimestamp;
+    private int mAfState;
+    private int mAeState;
+    private int mAwbState;
+    private int mAction;
+
+    /**
+     * @param input The log, preferably buffered; closed with this reader
+     * @throws IOException If {@code input} does not start with a supported log header
+     */
+    public ResultLogReader(InputStream input) throws IOException {
+        mInput = input;
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = magic << 8 | readByte();
+        }
+        if (magic != ResultLog.MAGIC) {
+            throw new IOException("Not a capture result log.");
+        }
+        int version = readByte();
+        if (version != ResultLog.VERSION) {
+            throw new IOException("Unsupported result log version " + version);
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return False at the end of the log
+     */
+    public boolean next() throws IOException {
+        int type = mInput.read();
+        if (type < 0) {
+            return false;
+        }
+        try {
+            mNanos += readUnsigned();
+            switch (type) {
+                case ResultLog.TYPE_RESULT:
+                case ResultLog.TYPE_PARTIAL:
+                    mFrameNumber += readSigned();
+                    mTimestamp += readSigned();
+                    mAfState = readState();
+                    mAeState = readState();
+                    mAwbState = readState();
+                    break;
+                case ResultLog.TYPE_ACTION:
+                    mAction = readByte();
+                    break;
+                case ResultLog.TYPE_TRIGGER:
+                case ResultLog.TYPE_UNLOCK:
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type);
+            }
+        } catch (EOFException e) {
+            // The app died while writing the last record.
+            return false;
+        }
+        mType = type;
+        return true;
+    }
+
+    /**
+     * @return One of the {@code ResultLog.TYPE_*} values.
+     */
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the record, relative to the start of the log.
+     */
+    public long getNanos() {
+        return mNanos;
+    }
+
+    /**
+     * @return Frame number of the last result read.
+     */
+    public long getFrameNumber() {
+        return mFrameNumber;
+    }
+
+    /**
+     * @return Sensor timestamp of the last result read.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * @return AF state of the last result read, or {@link HalResult#STATE_UNAVAILABLE}.
+     */
+    public int getAfState() {
+        return mAfState;
+    }
+
+    public int getAeState() {
+        return mAeState;
+    }
+
+    public int getAwbState() {
+        return mAwbState;
+    }
+
+    /**
+     * @return Action of the last {@link ResultLog#TYPE_ACTION} record read.
+     */
+    public int getAction() {
+        return mAction;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+
+    private int readState() throws IOException {
+        int state = readByte();
+        return state == ResultLog.STATE_ABSENT ? HalResult.STATE_UNAVAILABLE : state;
+    }
+
+    private long readSigned() throws IOException {
+        long value = readUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsigned() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    private int readByte() throws IOException {
+        int b = mInput.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Appends capture results and capture sequence events to a {@link ResultLog}.
+ *
+ * <p>Records are encoded into a small buffer that goes to the stream only when it is full, so
+ * logging a result does not touch the disk or allocate. Methods are synchronized: results arrive
+ * on the camera thread while taps start sequences from the UI thread.</p>
+ */
+// 结果日志写入器：先编码到缓冲区，缓冲区满了才写入流
+public final class ResultLogWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Longest record: type, three 10-byte varints and three states.
+     */
+    private static final int MAX_RECORD = 1 + 3 * 10 + 3;
+
+    private final OutputStream mOutput;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mLength;
+
+    private long mLastNanos;
+    private long mLastFrameNumber;
+    private long mLastTimestamp;
+    private long mRecords;
+    private boolean mClosed;
+
+    /**
+     * @param output       Receives the log; closed with this writer
+     * @param startNanos   {@link System#nanoTime()} the first record's delta is relative to
+     */
+    public ResultLogWriter(OutputStream output, long startNanos) throws IOException {
+        mOutput = output;
+        mLastNanos = startNanos;
+        writeInt(ResultLog.MAGIC);
+        mBuffer[mLength++] = (byte) ResultLog.VERSION;
+    }
+
+    /**
+     * Logs the 3A state of a result. States are {@link HalResult} values, with
+     * {@link HalResult#STATE_UNAVAILABLE} for null.
+     */
+    public synchronized void writeResult(long nanos, boolean partial, long frameNumber,
+            long timestamp, int afState, int aeState, int awbState) throws IOException {
+        if (!begin(partial ? ResultLog.TYPE_PARTIAL : ResultLog.TYPE_RESULT, nanos)) {
+            return;
+        }
+        writeSigned(frameNumber - mLastFrameNumber);
+        writeSigned(timestamp - mLastTimestamp);
+        mLastFrameNumber = frameNumber;
+        mLastTimestamp = timestamp;
+        mBuffer[mLength++] = state(afState);
+        mBuffer[mLength++] = state(aeState);
+        mBuffer[mLength++] = state(awbState);
+    }
+
+    /**
+     * Logs the start of a capture sequence, when the focus lock trigger is sent.
+     */
+    public synchronized void writeTrigger(long nanos) throws IOException {
+        begin(ResultLog.TYPE_TRIGGER, nanos);
+    }
+
+    /**
+     * Logs an action the app took on the result logged last, one of the
+     * {@code CaptureStateMachine.ACTION_*} values.
+     */
+    public synchronized void writeAction(long nanos, int action) throws IOException {
+        if (begin(ResultLog.TYPE_ACTION, nanos)) {
+            mBuffer[mLength++] = (byte) action;
+        }
+    }
+
+    /**
+     * Logs the return to preview at the end of a capture sequence.
+     */
+    public synchronized void writeUnlock(long nanos) throws IOException {
+        begin(ResultLog.TYPE_UNLOCK, nanos);
+    }
+
+    /**
+     * @return Number of records written so far.
+     */
+    public synchronized long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * Writes out the buffered records.
+     */
+    public synchronized void flush() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        drain();
+        mOutput.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            drain();
+        } finally {
+            mOutput.close();
+        }
+    }
+
+    /**
+     * Makes room for a record and writes its type and time.
+     *
+     * @return False if the writer is closed and the record must be dropped
+     */
+    private boolean begin(int type, long nanos) throws IOException {
+        if (mClosed) {
+            return false;
+        }
+        if (mLength + MAX_RECORD > mBuffer.length) {
+            drain();
+        }
+        mBuffer[mLength++] = (byte) type;
+        // nanoTime() is monotonic, but guard against callers passing stale readings.
+        writeUnsigned(Math.max(0, nanos - mLastNanos));
+        mLastNanos = Math.max(mLastNanos, nanos);
+        mRecords++;
+        return true;
+    }
+
+    private void drain() throws IOException {
+        if (mLength > 0) {
+            mOutput.write(mBuffer, 0, mLength);
+            mLength = 0;
+        }
+    }
+
+    private static byte state(int state) {
+        return (byte) (state < 0 ? ResultLog.STATE_ABSENT : state);
+    }
+
+    private void writeSigned(long value) {
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsigned(long value) {
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        mBuffer[mLength++] = (byte) (value >>> 24);
+        mBuffer[mLength++] = (byte) (value >>> 16);
+        mBuffer[mLength++] = (byte) (value >>> 8);
+        mBuffer[mLength++] = (byte) value;
+    }
+
+}
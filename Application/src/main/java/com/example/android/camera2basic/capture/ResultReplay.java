@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a {@link ResultLog} through a fresh {@link CaptureStateMachine} as fast as it can read
+ * it, to see how the current state machine would have handled the 3A sequences a device
+ * produced in the field.
+ *
+ * <p>Every trigger in the log starts a sequence. The shutter lag of a sequence is the log time
+ * from its trigger to the result on which the replayed machine decides to capture. A sequence
+ * is stuck when that does not happen within the timeout, before the app returned to preview,
+ * before the next trigger or before the log ends; stuck sequences are counted by the state they
+ * were stuck in. Results on which the replayed machine and the recorded app acted differently
+ * are counted as divergences. No sharpness gate is applied.</p>
+ *
+ * <p>Run {@link #main} with log files to print a report for each.</p>
+ */
+// 拍照结果重放：把记录的结果送入新的状态机，统计快门延迟分布和卡住的状态
+public final class ResultReplay {
+
+    private final long mTimeoutNanos;
+
+    private final CaptureStateMachine mMachine = new CaptureStateMachine(null);
+
+    private final LatencyHistogram mShutterLag = new LatencyHistogram();
+    private final long[] mStuckByState = new long[CaptureStateMachine.STATE_COUNT];
+    private long mSequences;
+    private long mCaptures;
+    private long mResults;
+    private long mDivergences;
+    private long mLogNanos;
+    private long mWallNanos;
+
+    /**
+     * Whether a sequence is running and has not captured yet.
+     */
+    private boolean mWaiting;
+    private long mTriggerNanos;
+
+    /**
+     * What the replayed machine did on the last result, until the log shows what the app did.
+     */
+    private int mReplayedAction = CaptureStateMachine.ACTION_NONE;
+
+    /**
+     * @param timeoutNanos How long a sequence may take before it counts as stuck
+     */
+    public ResultReplay(long timeoutNanos) {
+        mTimeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Replays all records of {@code reader}. May be called again with further logs; the
+     * statistics accumulate.
+     */
+    public void replay(ResultLogReader reader) throws IOException {
+        long start = System.nanoTime();
+        long first = -1;
+        long last = 0;
+        while (reader.next()) {
+            long nanos = reader.getNanos();
+            if (first < 0) {
+                first = nanos;
+            }
+            last = nanos;
+            if (mWaiting && nanos - mTriggerNanos > mTimeoutNanos) {
+                endSequence(true);
+            }
+            switch (reader.getType()) {
+                case ResultLog.TYPE_TRIGGER:
+                    endSequence(mWaiting);
+                    mSequences++;
+                    mWaiting = true;
+                    mTriggerNanos = nanos;
+                    mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+                    break;
+                case ResultLog.TYPE_RESULT:
+                case ResultLog.TYPE_PARTIAL:
+                    onResult(reader, nanos);
+                    break;
+                case ResultLog.TYPE_ACTION:
+                    if (reader.getAction() != mReplayedAction) {
+                        mDivergences++;
+                    }
+                    mReplayedAction = CaptureStateMachine.ACTION_NONE;
+                    break;
+                case ResultLog.TYPE_UNLOCK:
+                    endSequence(mWaiting);
+                    break;
+            }
+        }
+        endSequence(mWaiting);
+        mReplayedAction = CaptureStateMachine.ACTION_NONE;
+        mWallNanos += System.nanoTime() - start;
+        if (first >= 0) {
+            mLogNanos += last - first;
+        }
+    }
+
+    private void onResult(ResultLogReader reader, long nanos) {
+        mResults++;
+        if (mReplayedAction != CaptureStateMachine.ACTION_NONE) {
+            // The app did not act on the previous result, but the replayed machine did.
+            mDivergences++;
+        }
+        int action = mMachine.onResult(reader.getAfState(), reader.getAeState(),
+                reader.getTimestamp());
+        mReplayedAction = action;
+        if (action == CaptureStateMachine.ACTION_CAPTURE && mWaiting) {
+            mWaiting = false;
+            mCaptures++;
+            mShutterLag.record(nanos - mTriggerNanos);
+        }
+    }
+
+    private void endSequence(boolean stuck) {
+        if (stuck) {
+            mStuckByState[mMachine.getState()]++;
+        }
+        mWaiting = false;
+        if (mMachine.getState() != CaptureStateMachine.STATE_PREVIEW) {
+            mMachine.setState(CaptureStateMachine.STATE_PREVIEW);
+        }
+    }
+
+    /**
+     * @return Log time from trigger to capture, over all sequences that captured.
+     */
+    public LatencyHistogram getShutterLag() {
+        return mShutterLag;
+    }
+
+    public long getSequenceCount() {
+        return mSequences;
+    }
+
+    public long getCaptureCount() {
+        return mCaptures;
+    }
+
+    public long getResultCount() {
+        return mResults;
+    }
+
+    public long getDivergenceCount() {
+        return mDivergences;
+    }
+
+    /**
+     * @return Number of sequences stuck in {@code state}, a {@code CaptureStateMachine} state.
+     */
+    public long getStuckCount(int state) {
+        return mStuckByState[state];
+    }
+
+    public long getStuckCount() {
+        long total = 0;
+        for (long count : mStuckByState) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return How many times faster than real time the logs were replayed.
+     */
+    public double getSpeedup() {
+        return mWallNanos == 0 ? 0 : (double) mLogNanos / mWallNanos;
+    }
+
+    public void report(PrintWriter writer) {
+        writer.println("sequences=" + mSequences + " captures=" + mCaptures + " stuck="
+                + getStuckCount() + " results=" + mResults + " divergences=" + mDivergences);
+        writer.println("shutter lag: " + mShutterLag);
+        for (int state = 0; state < mStuckByState.length; state++) {
+            if (mStuckByState[state] > 0) {
+                writer.println("  stuck in " + CaptureStateMachine.stateName(state) + ": "
+                        + mStuckByState[state]);
+            }
+        }
+        writer.println(String.format("replayed %.1f s of log in %.1f ms, %.0fx real time",
+                mLogNanos / 1e9, mWallNanos / 1e6, getSpeedup()));
+    }
+
+    /**
+     * Usage: {@code ResultReplay [-timeout <ms>] <log>...}
+     */
+    public static void main(String[] args) throws IOException {
+        long timeoutMs = 5000;
+        int first = 0;
+        if (args.length >= 2 && "-timeout".equals(args[0])) {
+            timeoutMs = Long.parseLong(args[1]);
+            first = 2;
+        }
+        if (first >= args.length) {
+            System.err.println("Usage: ResultReplay [-timeout <ms>] <log>...");
+            System.exit(2);
+        }
+        PrintWriter writer = new PrintWriter(System.out, true);
+        for (int i = first; i < args.length; i++) {
+            ResultReplay replay = new ResultReplay(TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            ResultLogReader reader = new ResultLogReader(
+                    new BufferedInputStream(new FileInputStream(args[i])));
+            try {
+                replay.replay(reader);
+            } finally {
+                reader.close();
+            }
+            writer.println(args[i] + ":");
+            replay.report(writer);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.metrics.StripedCounter;
+import com.example.android.camera2basic.storage.BufferPool;
+import com.example.android.camera2basic.storage.CaptureMetadata;
+import com.example.android.camera2basic.storage.SaveQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Copies each picture of a {@link CaptureController} into a {@link SaveQueue}, so the camera
+ * thread never waits for the file system and the JPEG reader gets its image back right away.
+ *
+ * <p>A JPEG whose capture result has not arrived is held in a pooled copy until it does, so the
+ * file gets the exposure and sensitivity. Only the newest one is held: another JPEG, or
+ * {@link #flush()} once the camera is closed, saves it without them. A picture counts as saved
+ * once it is copied; the queue journals what it cannot write before it stops. Like the
+ * controller, it must be called on the thread the HAL delivers callbacks on.</p>
+ */
+// 把照片交给保存队列：结果先到时直接复制，JPEG先到时在缓冲池中等待结果
+public final class SaveQueueSink implements CaptureController.JpegSink {
+
+    /**
+     * Picks the file of each picture.
+     */
+    public interface FileNamer {
+
+        File getFile(long timestamp, long frameNumber);
+
+    }
+
+    private final SaveQueue mQueue;
+    private final BufferPool mPool;
+    private final FileNamer mNamer;
+    private final StripedCounter mDropped;
+
+    private volatile String mRigId;
+
+    /**
+     * Pooled copy of the JPEG that arrived before the result of its capture, or null.
+     */
+    private ByteBuffer mPendingJpeg;
+    private File mPendingFile;
+    private long mPendingTimestamp;
+    private long mPendingFrameNumber;
+
+    /**
+     * @param pool    The pool of {@code queue}
+     * @param dropped Counts held pictures the queue refused because it was stopped
+     */
+    public SaveQueueSink(SaveQueue queue, BufferPool pool, FileNamer namer,
+                         StripedCounter dropped) {
+        mQueue = queue;
+        mPool = pool;
+        mNamer = namer;
+        mDropped = dropped;
+    }
+
+    /**
+     * @param rigId Written into the pictures saved from now on, or null for none
+     */
+    public void setRigId(String rigId) {
+        mRigId = rigId;
+    }
+
+    /**
+     * @return Whether a JPEG is waiting for the result of its capture
+     */
+    public boolean hasPending() {
+        return mPendingJpeg != null;
+    }
+
+    @Override
+    public void save(ByteBuffer jpeg, long timestamp, long frameNumber, HalResult result)
+            throws IOException {
+        File file = mNamer.getFile(timestamp, frameNumber);
+        if (result != null) {
+            if (!mQueue.submit(jpeg, file, frameNumber,   // 复制后立即返回，由保存线程写入
+                    buildMetadata(timestamp, frameNumber, result))) {
+                throw new IOException("Save queue stopped, dropping " + file);
+            }
+            return;
+        }
+        // 结果尚未到达：复制到缓冲池中等待，Image立即归还
+        submitPending(null);
+        mPendingJpeg = mPool.acquire(jpeg.remaining());
+        mPendingJpeg.put(jpeg.duplicate());
+        mPendingJpeg.flip();
+        mPendingFile = file;
+        mPendingTimestamp = timestamp;
+        mPendingFrameNumber = frameNumber;
+    }
+
+    @Override
+    public void onLateResult(HalResult result) {
+        if (mPendingJpeg != null && mPendingTimestamp == result.getTimestamp()) {
+            submitPending(result);
+        }
+    }
+
+    /**
+     * Saves the held JPEG, if any, without exposure and sensitivity. Call once the camera is
+     * closed, since its result can no longer arrive.
+     */
+    public void flush() {
+        submitPending(null);
+    }
+
+    private void submitPending(HalResult result) {
+        if (mPendingJpeg == null) {
+            return;
+        }
+        CaptureMetadata metadata = buildMetadata(mPendingTimestamp, mPendingFrameNumber, result);
+        if (!mQueue.submitPooled(mPendingJpeg, mPendingFile, mPendingFrameNumber, metadata)) {
+            mDropped.increment();
+        }
+        mPendingJpeg = null;    // 缓冲区已交给保存队列
+        mPendingFile = null;
+    }
+
+    private CaptureMetadata buildMetadata(long timestamp, long frameNumber, HalResult result) {
+        CaptureMetadata.Builder builder = new CaptureMetadata.Builder()
+                .setFrameNumber(frameNumber)
+                .setSensorTimestamp(timestamp)
+                .setRigId(mRigId);
+        if (result != null) {
+            builder.setExposureTime(result.getExposureTime())
+                    .setSensitivity(result.getSensitivity());
+        }
+        return builder.build();
+    }
+
+}
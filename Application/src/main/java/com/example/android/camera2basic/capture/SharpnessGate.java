@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.analysis.SharpnessAnalyzer;
+import com.example.android.camera2basic.analysis.SharpnessStats;
+
+/**
+ * The optional sharpness check of a still capture. The AF state alone is not trusted, since some
+ * devices report a lock on a blurry frame, so once focus is locked the capture waits for a frame
+ * from after the lock whose center scores at least the threshold. After a number of results
+ * without one it captures anyway, so a scene without detail never blocks the shutter.
+ *
+ * <p>{@link CaptureController} resets it at the start of every capture sequence and asks it on
+ * the thread the results arrive on. The threshold may be set from any thread.</p>
+ */
+// 清晰度门限：对焦锁定后等待一帧足够清晰的画面再拍照，等待太久则照常拍照
+public final class SharpnessGate implements CaptureStateMachine.Gate {
+
+    private final SharpnessAnalyzer mAnalyzer;
+    private final SharpnessStats mStats;
+    private final int mMaxWaits;
+
+    private volatile float mThreshold;
+
+    /**
+     * Results seen with focus locked but no sharp frame in the current sequence.
+     */
+    private int mWaits;
+
+    private volatile long mGiveUps;
+
+    /**
+     * @param analyzer Scores the preview frames
+     * @param maxWaits Results to wait for a sharp frame once focus is locked
+     */
+    public SharpnessGate(SharpnessAnalyzer analyzer, int maxWaits) {
+        mAnalyzer = analyzer;
+        mStats = analyzer.newStats();
+        mMaxWaits = maxWaits;
+    }
+
+    /**
+     * @param threshold Minimum center score of {@link SharpnessAnalyzer}, or 0 to capture as
+     *                  soon as focus is locked
+     */
+    public void setThreshold(float threshold) {
+        mThreshold = threshold;
+    }
+
+    public float getThreshold() {
+        return mThreshold;
+    }
+
+    /**
+     * @return Sequences that captured without a sharp frame because the wait ran out
+     */
+    public long getGiveUps() {
+        return mGiveUps;
+    }
+
+    /**
+     * Starts the wait of a new capture sequence.
+     */
+    public void reset() {
+        mWaits = 0;
+    }
+
+    @Override
+    public boolean isReady(long timestamp) {
+        float threshold = mThreshold;
+        if (threshold <= 0) {
+            return true;
+        }
+        if (++mWaits > mMaxWaits) {
+            mGiveUps++;
+            return true;
+        }
+        SharpnessStats stats = mAnalyzer.getLatest(mStats);
+        if (timestamp != 0 && stats.timestamp < timestamp) {
+            // The newest analyzed frame predates the lock.
+            return false;
+        }
+        return stats.centerScore >= threshold;
+    }
+
+}
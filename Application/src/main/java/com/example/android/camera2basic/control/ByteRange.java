@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+/**
+ * Parses the HTTP {@code Range} header of a request for a file of known length.
+ *
+ * <p>Only a single byte range is supported: {@code bytes=first-last}, {@code bytes=first-} and
+ * {@code bytes=-suffix}. As RFC 7233 allows, a header that is malformed or asks for several
+ * ranges is ignored and the whole file is served.</p>
+ */
+// 解析HTTP Range请求头，只支持单个字节区间，用于断点续传
+public final class ByteRange {
+
+    /**
+     * No usable range; serve the whole file with status 200.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * A satisfiable range; serve it with status 206.
+     */
+    public static final int PARTIAL = 1;
+
+    /**
+     * A valid range that starts past the end of the file; answer 416.
+     */
+    public static final int UNSATISFIABLE = 2;
+
+    private static final String PREFIX = "bytes=";
+
+    private ByteRange() {
+    }
+
+    /**
+     * @param header The value of the {@code Range} header, or null
+     * @param length Length of the file
+     * @param out    Receives the first and last offset, inclusive, when {@link #PARTIAL} is
+     *               returned
+     * @return {@link #NONE}, {@link #PARTIAL} or {@link #UNSATISFIABLE}
+     */
+    public static int parse(String header, long length, long[] out) {
+        if (header == null || !header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            return NONE;
+        }
+        String spec = header.substring(PREFIX.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return NONE;
+        }
+        long first = parseNumber(spec, 0, dash);
+        long last = parseNumber(spec, dash + 1, spec.length());
+        if (dash == 0) {
+            // A suffix: the last N bytes.
+            if (last < 0) {
+                return NONE;
+            }
+            if (last == 0 || length == 0) {
+                return UNSATISFIABLE;
+            }
+            out[0] = Math.max(0, length - last);
+            out[1] = length - 1;
+            return PARTIAL;
+        }
+        if (first < 0) {
+            return NONE;
+        }
+        if (dash == spec.length() - 1) {
+            last = Long.MAX_VALUE;
+        } else if (last < first) {
+            // Includes a malformed last offset, which parses as -1.
+            return NONE;
+        }
+        if (first >= length) {
+            return UNSATISFIABLE;
+        }
+        out[0] = first;
+        out[1] = Math.min(last, length - 1);
+        return PARTIAL;
+    }
+
+    /**
+     * @return The decimal number in {@code [start, end)} of {@code s}, or -1 if there is none
+     */
+    private static long parseNumber(String s, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+}
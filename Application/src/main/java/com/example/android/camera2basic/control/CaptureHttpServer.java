@@ -0,0 +1,787 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import com.example.android.camera2basic.metrics.Gauge;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves the capture directory and the metrics over HTTP/1.1, so rigs can pull pictures
+ * without {@code adb pull}.
+ *
+ * <ul>
+ * <li>{@code GET /captures} lists the files as JSON: name, size and modification time.</li>
+ * <li>{@code GET /captures/<name>} serves a file, honoring single {@code Range} requests so
+ * interrupted pulls can resume.</li>
+ * <li>{@code GET /metrics} prints the {@link MetricsRegistry}.</li>
+ * <li>{@code GET /stream.mjpeg} streams the live preview as
+ * {@code multipart/x-mixed-replace}, if a {@link MjpegStreamer} is set.</li>
+ * </ul>
+ *
+ * <p>One selector thread serves every client. Connections are kept alive and pipelined requests
+ * are answered in order. File bodies go from the {@link FileChannel} to the socket with
+ * {@link FileChannel#transferTo}, which lets the kernel copy them without passing through the
+ * Java heap; a connection stops reading while its response is being written, so a slow client
+ * only ever holds one open file. The server is bound to the loopback address, where hosts reach
+ * it through {@code adb forward}, unless another address is given.</p>
+ *
+ * <p>Stream clients each have a single slot holding the newest frame they have not been sent.
+ * A frame published while a client is still writing the previous one replaces whatever waits in
+ * its slot, so a slow client skips frames instead of buffering them. All clients send the same
+ * encoded bytes with a gathering write of the part header, the JPEG and the trailer.</p>
+ */
+// 本地HTTP服务器：单个Selector线程处理所有客户端，列出照片、零拷贝发送文件(支持Range断点续传)、输出指标
+public final class CaptureHttpServer {
+
+    private static final String TAG = "CaptureHttpServer";
+
+    private static final String CAPTURES = "/captures";
+    private static final String METRICS = "/metrics";
+    private static final String STREAM = "/stream.mjpeg";
+
+    private static final String BOUNDARY = "mjpegframe";
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * Longest request head accepted, request line and headers included.
+     */
+    private static final int MAX_REQUEST_HEAD = 8192;
+
+    /**
+     * Largest chunk handed to {@link FileChannel#transferTo} at once, so one large file does
+     * not keep the selector thread in a single call.
+     */
+    private static final long MAX_TRANSFER = 512 * 1024;
+
+    /**
+     * How long accepting pauses after it failed, so a lack of file descriptors does not spin the
+     * selector on a client it cannot accept.
+     */
+    private static final long ACCEPT_RETRY_MS = 100;
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDir;
+    private final MetricsRegistry mMetrics;
+
+    private final StripedCounter mRequests;
+    private final StripedCounter mErrors;
+    private final StripedCounter mBytesSent;
+    private final StripedCounter mAccepted;
+    private final Gauge mOpenConnections;
+    private final LatencyHistogram mResponseLatency;
+    private final StripedCounter mStreamFramesSent;
+    private final StripedCounter mStreamFramesSkipped;
+    private final Gauge mStreamClients;
+
+    private MjpegStreamer mStream;
+
+    /**
+     * Stream clients, only touched on the selector thread.
+     */
+    private final ArrayList<Connection> mStreaming = new ArrayList<>();
+
+    /**
+     * The newest frame published since the selector thread last looked.
+     */
+    private final AtomicReference<MjpegStreamer.EncodedFrame> mPublished =
+            new AtomicReference<>();
+
+    private Selector mSelector;
+    private ServerSocketChannel mServerChannel;
+    private Thread mThread;
+    private volatile boolean mRunning;
+    private int mConnections;
+
+    /**
+     * @param dir     Directory whose files are served
+     * @param metrics Registry the server reports to and serves at {@code /metrics}
+     */
+    public CaptureHttpServer(File dir, MetricsRegistry metrics) {
+        mDir = dir;
+        mMetrics = metrics;
+        mRequests = metrics.counter("http.requests");
+        mErrors = metrics.counter("http.errors");
+        mBytesSent = metrics.counter("http.bytes_sent");
+        mAccepted = metrics.counter("http.connections");
+        mOpenConnections = metrics.gauge("http.open_connections");
+        mResponseLatency = metrics.histogram("http.response");
+        mStreamFramesSent = metrics.counter("stream.frames_sent");
+        mStreamFramesSkipped = metrics.counter("stream.frames_skipped");
+        mStreamClients = metrics.gauge("stream.clients");
+    }
+
+    /**
+     * Serves {@code stream} at {@code /stream.mjpeg}. Call before {@link #start(int)}.
+     */
+    public void setStream(MjpegStreamer stream) {
+        mStream = stream;
+    }
+
+    /**
+     * Starts listening on {@code port} of the loopback address.
+     *
+     * @param port The port, or 0 to choose a free one; see {@link #getPort()}
+     */
+    public void start(int port) throws IOException {
+        start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Starts listening on {@code port} of {@code address}.
+     *
+     * @param address The address, or null for every interface, which lets viewers on the LAN
+     *                watch the stream
+     */
+    public synchronized void start(InetAddress address, int port) throws IOException {
+        if (mSelector != null) {
+            throw new IllegalStateException("Already started");
+        }
+        Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(new InetSocketAddress(address, port), 128);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        mSelector = selector;
+        mServerChannel = serverChannel;
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, TAG);
+        mThread.start();
+    }
+
+    /**
+     * @return The port listened on, or -1 if not started
+     */
+    public synchronized int getPort() {
+        return mServerChannel == null ? -1 : mServerChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops listening and disconnects every client.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (mSelector == null) {
+                return;
+            }
+            thread = mThread;
+            mThread = null;
+            // The loop closes the channels and the selector on its way out.
+            mRunning = false;
+            mSelector.wakeup();
+            mSelector = null;
+            mServerChannel = null;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        Selector selector;
+        ServerSocketChannel serverChannel;
+        synchronized (this) {
+            selector = mSelector;
+            serverChannel = mServerChannel;
+        }
+        SelectionKey acceptKey = serverChannel.keyFor(selector);
+        boolean acceptPaused = false;
+        try {
+            while (mRunning) {
+                if (acceptPaused) {
+                    selector.select(ACCEPT_RETRY_MS);
+                    acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                    acceptPaused = false;
+                } else {
+                    selector.select();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        if (!accept(selector, serverChannel)) {
+                            key.interestOps(0); // 暂停接受连接，稍后重试
+                            acceptPaused = true;
+                        }
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        } else if (key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (IOException e) {
+                        // Reset by the client.
+                        connection.close();
+                    }
+                }
+                MjpegStreamer.EncodedFrame frame = mPublished.getAndSet(null);
+                if (frame != null) {
+                    for (int i = mStreaming.size() - 1; i >= 0; i--) {
+                        Connection connection = mStreaming.get(i);
+                        try {
+                            connection.offerFrame(frame);
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            mErrors.increment();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            closeQuietly(serverChannel);
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * Accepts the pending clients. A failure only costs the client it happened on, so running
+     * out of file descriptors or a client that resets right away never stops the server.
+     *
+     * @return False if accepting itself failed, and should pause
+     */
+    private boolean accept(Selector selector, ServerSocketChannel serverChannel) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                // EMFILE and the like: the client stays pending until accepting resumes.
+                mErrors.increment();
+                return false;
+            }
+            if (channel == null) {
+                return true;
+            }
+            Connection connection = new Connection(channel);
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                connection.mKey = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                mErrors.increment();
+                closeQuietly(channel);  // 只放弃这一个连接
+                continue;
+            }
+            mAccepted.increment();
+            mOpenConnections.set(++mConnections);
+        }
+    }
+
+    private final MjpegStreamer.Listener mStreamListener = new MjpegStreamer.Listener() {
+
+        @Override
+        public void onFrameEncoded(MjpegStreamer.EncodedFrame frame) {
+            // Only the newest frame matters; wake the selector unless one is already pending.
+            if (mPublished.getAndSet(frame) == null) {
+                Selector selector;
+                synchronized (CaptureHttpServer.this) {
+                    selector = mSelector;
+                }
+                if (selector != null) {
+                    selector.wakeup();
+                }
+            }
+        }
+
+    };
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to release.
+        }
+    }
+
+    /**
+     * @return The JSON list of the capture directory
+     */
+    private String listCaptures() {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files);
+        StringBuilder json = new StringBuilder("[");
+        boolean first = true;
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":\"");
+            appendJsonString(json, file.getName());
+            json.append("\",\"size\":").append(file.length())
+                    .append(",\"modified\":").append(file.lastModified()).append('}');
+        }
+        return json.append("]\n").toString();
+    }
+
+    private static void appendJsonString(StringBuilder json, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+    }
+
+    /**
+     * @return The file named by the last path segment, or null if it is not a plain file
+     * directly inside the capture directory
+     */
+    private File resolve(String name) {
+        if (name.isEmpty() || name.indexOf('/') >= 0 || name.equals(".") || name.equals("..")) {
+            return null;
+        }
+        File file = new File(mDir, name);
+        return file.isFile() ? file : null;
+    }
+
+    private static String contentType(String name) {
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (name.endsWith(".json")) {
+            return "application/json";
+        }
+        if (name.endsWith(".txt")) {
+            return "text/plain; charset=utf-8";
+        }
+        return "application/octet-stream";
+    }
+
+    private static String reasonOf(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 206:
+                return "Partial Content";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 416:
+                return "Range Not Satisfiable";
+            case 431:
+                return "Request Header Fields Too Large";
+            default:
+                return "Internal Server Error";
+        }
+    }
+
+    /**
+     * One client: reads a request head, writes its response, then reads the next one.
+     */
+    private final class Connection {
+
+        final SocketChannel mChannel;
+        SelectionKey mKey;
+
+        final ByteBuffer mIn = ByteBuffer.allocate(MAX_REQUEST_HEAD);
+
+        /**
+         * Buffers of the response or stream part being written, sent with one gathering write.
+         */
+        ByteBuffer[] mOut;
+        FileChannel mFile;
+        long mFilePosition;
+        long mFileRemaining;
+        boolean mKeepAlive;
+        long mRequestNanos;
+        boolean mClosed;
+
+        boolean mStreamClient;
+        MjpegStreamer.EncodedFrame mPendingFrame;
+
+        Connection(SocketChannel channel) {
+            mChannel = channel;
+        }
+
+        void onReadable() throws IOException {
+            int read = mChannel.read(mIn);
+            if (read < 0) {
+                close();
+                return;
+            }
+            if (mStreamClient) {
+                // A stream never ends by itself; anything the client sends is ignored.
+                mIn.clear();
+                return;
+            }
+            processInput();
+        }
+
+        /**
+         * Starts the response to the request at the start of {@link #mIn}, if it is complete.
+         */
+        private void processInput() throws IOException {
+            int end = findHeadEnd();
+            if (end < 0) {
+                if (!mIn.hasRemaining()) {
+                    mRequestNanos = System.nanoTime();
+                    mKeepAlive = false;
+                    respond(431, "text/plain", "Request head too large\n", false);
+                }
+                return;
+            }
+            String head = new String(mIn.array(), 0, end, US_ASCII);
+            // Keep the bytes of pipelined requests for later.
+            mIn.flip();
+            mIn.position(end + 4);
+            mIn.compact();
+            mRequestNanos = System.nanoTime();
+            mRequests.increment();
+            handle(head);
+        }
+
+        private int findHeadEnd() {
+            byte[] bytes = mIn.array();
+            int limit = mIn.position() - 3;
+            for (int i = 0; i < limit; i++) {
+                if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r'
+                        && bytes[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void handle(String head) throws IOException {
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                mKeepAlive = false;
+                respond(400, "text/plain", "Bad request\n", false);
+                return;
+            }
+            String method = requestLine[0];
+            String range = null;
+            mKeepAlive = requestLine[2].equals("HTTP/1.1");
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = lines[i].substring(0, colon).trim();
+                String value = lines[i].substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Range")) {
+                    range = value;
+                } else if (name.equalsIgnoreCase("Connection")) {
+                    if (value.equalsIgnoreCase("close")) {
+                        mKeepAlive = false;
+                    } else if (value.equalsIgnoreCase("keep-alive")) {
+                        mKeepAlive = true;
+                    }
+                }
+            }
+            boolean headOnly = method.equals("HEAD");
+            if (!headOnly && !method.equals("GET")) {
+                respond(405, "text/plain", "Only GET and HEAD are supported\n", false);
+                return;
+            }
+            String path;
+            try {
+                path = new URI(requestLine[1]).getPath();
+            } catch (URISyntaxException e) {
+                path = null;
+            }
+            if (path == null) {
+                respond(400, "text/plain", "Bad path\n", headOnly);
+            } else if (path.equals(CAPTURES) || path.equals(CAPTURES + "/")) {
+                respond(200, "application/json", listCaptures(), headOnly);
+            } else if (path.startsWith(CAPTURES + "/")) {
+                serveFile(path.substring(CAPTURES.length() + 1), range, headOnly);
+            } else if (path.equals(STREAM) && mStream != null && !headOnly) {
+                startStream();
+            } else if (path.equals(METRICS)) {
+                StringWriter text = new StringWriter();
+                mMetrics.dump("", new PrintWriter(text));
+                respond(200, "text/plain; charset=utf-8", text.toString(), headOnly);
+            } else {
+                respond(404, "text/plain", "Not found\n", headOnly);
+            }
+        }
+
+        private void serveFile(String name, String range, boolean headOnly) throws IOException {
+            File file = resolve(name);
+            FileChannel channel = null;
+            if (file != null) {
+                try {
+                    channel = new FileInputStream(file).getChannel();
+                } catch (IOException e) {
+                    // Deleted since the check.
+                }
+            }
+            if (channel == null) {
+                respond(404, "text/plain", "Not found\n", headOnly);
+                return;
+            }
+            long length = channel.size();
+            long[] bounds = new long[2];
+            int status;
+            StringBuilder extra = new StringBuilder("Accept-Ranges: bytes\r\n");
+            switch (ByteRange.parse(range, length, bounds)) {
+                case ByteRange.PARTIAL:
+                    status = 206;
+                    extra.append("Content-Range: bytes ").append(bounds[0]).append('-')
+                            .append(bounds[1]).append('/').append(length).append("\r\n");
+                    break;
+                case ByteRange.UNSATISFIABLE:
+                    closeQuietly(channel);
+                    mErrors.increment();
+                    mOut = new ByteBuffer[]{head(416, "text/plain",
+                            "Content-Range: bytes */" + length + "\r\n", 0)};
+                    startWriting();
+                    return;
+                default:
+                    status = 200;
+                    bounds[0] = 0;
+                    bounds[1] = length - 1;
+                    break;
+            }
+            long count = bounds[1] - bounds[0] + 1;
+            mOut = new ByteBuffer[]{head(status, contentType(name), extra.toString(), count)};
+            if (headOnly || count == 0) {
+                closeQuietly(channel);
+            } else {
+                mFile = channel;
+                mFilePosition = bounds[0];
+                mFileRemaining = count;
+            }
+            startWriting();
+        }
+
+        private void respond(int status, String contentType, String body, boolean headOnly)
+                throws IOException {
+            if (status >= 400) {
+                mErrors.increment();
+            }
+            byte[] bytes = body.getBytes(UTF_8);
+            ByteBuffer head = head(status, contentType, "", bytes.length);
+            mOut = headOnly ? new ByteBuffer[]{head}
+                    : new ByteBuffer[]{head, ByteBuffer.wrap(bytes)};
+            startWriting();
+        }
+
+        private void startStream() throws IOException {
+            mStreamClient = true;
+            mKeepAlive = false;
+            mIn.clear();
+            String head = "HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n"
+                    + "Cache-Control: no-cache\r\n"
+                    + "Connection: close\r\n\r\n";
+            mOut = new ByteBuffer[]{ByteBuffer.wrap(head.getBytes(US_ASCII))};
+            // Show the last frame right away instead of waiting for the next one.
+            mPendingFrame = mStream.getLatest();
+            mStreaming.add(this);
+            mStreamClients.set(mStreaming.size());
+            if (mStreaming.size() == 1) {
+                mStream.addListener(mStreamListener);
+            }
+            startWriting();
+        }
+
+        /**
+         * Puts {@code frame} in this client's slot and starts sending it if the client is idle.
+         */
+        void offerFrame(MjpegStreamer.EncodedFrame frame) throws IOException {
+            if (mPendingFrame != null) {
+                mStreamFramesSkipped.increment();
+            }
+            mPendingFrame = frame;
+            if (mOut == null) {
+                startFrame();
+            }
+        }
+
+        private void startFrame() throws IOException {
+            MjpegStreamer.EncodedFrame frame = mPendingFrame;
+            mPendingFrame = null;
+            byte[] jpeg = frame.getJpeg();
+            String partHead = "--" + BOUNDARY + "\r\n"
+                    + "Content-Type: image/jpeg\r\n"
+                    + "Content-Length: " + jpeg.length + "\r\n"
+                    + "X-Timestamp: " + frame.getTimestamp() + "\r\n\r\n";
+            mOut = new ByteBuffer[]{ByteBuffer.wrap(partHead.getBytes(US_ASCII)),
+                    ByteBuffer.wrap(jpeg), ByteBuffer.wrap(CRLF)};
+            startWriting();
+        }
+
+        private ByteBuffer head(int status, String contentType, String extra, long length) {
+            String head = "HTTP/1.1 " + status + " " + reasonOf(status) + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Length: " + length + "\r\n"
+                    + extra
+                    + "Connection: " + (mKeepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+            return ByteBuffer.wrap(head.getBytes(US_ASCII));
+        }
+
+        private void startWriting() throws IOException {
+            // Stop reading until the response is out; pipelined requests wait in mIn.
+            mKey.interestOps(SelectionKey.OP_WRITE);
+            onWritable();
+        }
+
+        void onWritable() throws IOException {
+            if (mOut != null) {
+                mBytesSent.add(mChannel.write(mOut));
+                if (mOut[mOut.length - 1].hasRemaining()) {
+                    return;
+                }
+                mOut = null;
+            }
+            if (mStreamClient) {
+                onStreamWriteDone();
+                return;
+            }
+            while (mFile != null && mFileRemaining > 0) {
+                long sent = mFile.transferTo(mFilePosition,
+                        Math.min(mFileRemaining, MAX_TRANSFER), mChannel);
+                if (sent <= 0) {
+                    // The socket buffer is full; wait for the next OP_WRITE.
+                    return;
+                }
+                mBytesSent.add(sent);
+                mFilePosition += sent;
+                mFileRemaining -= sent;
+            }
+            onResponseDone();
+        }
+
+        private void onStreamWriteDone() throws IOException {
+            if (mRequestNanos != 0) {
+                // The response head; frames are not requests.
+                mResponseLatency.recordSince(mRequestNanos);
+                mRequestNanos = 0;
+            } else {
+                mStreamFramesSent.increment();
+            }
+            if (mPendingFrame != null) {
+                startFrame();
+            } else {
+                // Idle until the next frame; keep reading to notice the client leaving.
+                mKey.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void onResponseDone() throws IOException {
+            mResponseLatency.recordSince(mRequestNanos);
+            closeQuietly(mFile);
+            mFile = null;
+            if (!mKeepAlive) {
+                close();
+                return;
+            }
+            mKey.interestOps(SelectionKey.OP_READ);
+            if (mIn.position() > 0) {
+                processInput();
+            }
+        }
+
+        void close() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            closeQuietly(mFile);
+            mFile = null;
+            if (mKey != null) {
+                mKey.cancel();
+            }
+            closeQuietly(mChannel);
+            mOpenConnections.set(--mConnections);
+            if (mStreamClient) {
+                mStreaming.remove(this);
+                mStreamClients.set(mStreaming.size());
+                if (mStreaming.isEmpty()) {
+                    // Nobody watches; let the streamer stop encoding.
+                    mStream.removeListener(mStreamListener);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.analysis.FrameAnalyzer;
+import com.example.android.camera2basic.analysis.Nv21Scaler;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Turns the analysis stream into JPEG frames for live MJPEG viewers.
+ *
+ * <p>Frames are downscaled with a {@link Nv21Scaler}, throttled to the configured rate by
+ * their sensor timestamps and compressed by an {@link Encoder}. Each frame is encoded once and
+ * the same bytes are handed to every {@link Listener}; nothing is encoded while no listener is
+ * registered. Listeners are expected to keep only the latest frame for each client, see
+ * {@link CaptureHttpServer#setStream(MjpegStreamer)}.</p>
+ */
+// MJPEG推流：从分析帧缩小、限速并压缩成JPEG，每帧只编码一次，分发给所有监听者，没有观众时不编码
+public final class MjpegStreamer implements FrameAnalyzer {
+
+    /**
+     * Compresses an NV21 image, e.g. with {@code android.graphics.YuvImage}.
+     */
+    public interface Encoder {
+
+        void encode(byte[] nv21, int width, int height, int quality, OutputStream out)
+                throws IOException;
+
+    }
+
+    /**
+     * Receives every encoded frame, on the analysis thread.
+     */
+    public interface Listener {
+
+        void onFrameEncoded(EncodedFrame frame);
+
+    }
+
+    /**
+     * One JPEG of the stream, shared read-only by all clients.
+     */
+    public static final class EncodedFrame {
+
+        private final byte[] mJpeg;
+        private final long mTimestamp;
+        private final long mSequence;
+
+        EncodedFrame(byte[] jpeg, long timestamp, long sequence) {
+            mJpeg = jpeg;
+            mTimestamp = timestamp;
+            mSequence = sequence;
+        }
+
+        /**
+         * @return The JPEG bytes, which must not be modified
+         */
+        public byte[] getJpeg() {
+            return mJpeg;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        /**
+         * @return The position of this frame in the stream, counting from 0
+         */
+        public long getSequence() {
+            return mSequence;
+        }
+
+    }
+
+    private final Encoder mEncoder;
+    private final Nv21Scaler mScaler;
+    private final ByteArrayOutputStream mOut = new ByteArrayOutputStream(64 * 1024);
+
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private final StripedCounter mEncoded;
+    private final StripedCounter mThrottled;
+    private final StripedCounter mErrors;
+    private final LatencyHistogram mEncodeLatency;
+
+    private volatile long mIntervalNanos;
+    private volatile int mQuality = 70;
+    private volatile EncodedFrame mLatest;
+
+    private long mLastTimestamp = Long.MIN_VALUE;
+    private long mSequence;
+
+    /**
+     * @param maxWidth Largest width of the streamed frames
+     * @param fps      Highest frame rate of the stream
+     */
+    public MjpegStreamer(Encoder encoder, int maxWidth, float fps, MetricsRegistry metrics) {
+        mEncoder = encoder;
+        mScaler = new Nv21Scaler(maxWidth);
+        setFrameRate(fps);
+        mEncoded = metrics.counter("stream.encoded");
+        mThrottled = metrics.counter("stream.throttled");
+        mErrors = metrics.counter("stream.encode_errors");
+        mEncodeLatency = metrics.histogram("stream.encode");
+    }
+
+    public void setFrameRate(float fps) {
+        if (!(fps > 0)) {
+            throw new IllegalArgumentException("Frame rate must be positive.");
+        }
+        mIntervalNanos = (long) (1e9 / fps);
+    }
+
+    /**
+     * @param quality JPEG quality, 1 to 100
+     */
+    public void setQuality(int quality) {
+        if (quality < 1 || quality > 100) {
+            throw new IllegalArgumentException("Quality must be between 1 and 100.");
+        }
+        mQuality = quality;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return The last frame encoded, or null; lets a new client start without waiting
+     */
+    public EncodedFrame getLatest() {
+        return mLatest;
+    }
+
+    @Override
+    public void analyze(Frame frame) {
+        if (mListeners.isEmpty()) {
+            return;
+        }
+        long timestamp = frame.getTimestamp();
+        // Allow a little jitter, so 30 fps input streamed at 15 fps keeps every other frame.
+        if (mLastTimestamp != Long.MIN_VALUE
+                && timestamp - mLastTimestamp < mIntervalNanos - mIntervalNanos / 8) {
+            mThrottled.increment();
+            return;
+        }
+        mLastTimestamp = timestamp;
+        long start = System.nanoTime();
+        byte[] nv21 = mScaler.convert(frame);
+        mOut.reset();
+        try {
+            mEncoder.encode(nv21, mScaler.getWidth(), mScaler.getHeight(), mQuality, mOut);
+        } catch (IOException e) {
+            mErrors.increment();
+            return;
+        }
+        // The one copy per frame; every client sends these same bytes.
+        EncodedFrame encoded = new EncodedFrame(mOut.toByteArray(), timestamp, mSequence++);
+        mEncodeLatency.recordSince(start);
+        mEncoded.increment();
+        mLatest = encoded;
+        for (Listener listener : mListeners) {
+            listener.onFrameEncoded(encoded);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The binary protocol of {@link TriggerServer}, shared with test clients.
+ *
+ * <p>All values are big-endian. A request is {@value #REQUEST_SIZE} bytes: a 32-bit tag chosen
+ * by the client, an 8-bit opcode, a reserved byte and a 16-bit argument. Every response starts
+ * with a {@value #HEADER_SIZE}-byte header: the tag and opcode of the request, an 8-bit status
+ * and the 16-bit length of the payload that follows. A capture or burst request gets one
+ * response per picture, each carrying the sensor timestamp and frame number of the picture;
+ * every other request gets exactly one response. Responses to different requests may
+ * interleave, so clients match them by tag.</p>
+ */
+// 触发协议：8字节定长请求，响应为8字节头加负载，拍照响应带传感器时间戳和帧号
+public final class TriggerProtocol {
+
+    public static final int REQUEST_SIZE = 8;
+    public static final int HEADER_SIZE = 8;
+
+    /**
+     * Takes one picture. Payload of each response: see {@link #PICTURE_SIZE}.
+     */
+    public static final int OP_CAPTURE = 1;
+
+    /**
+     * Takes {@code argument} pictures, one response each.
+     */
+    public static final int OP_BURST = 2;
+
+    /**
+     * Locks 3A if {@code argument} is 1, unlocks it if 0. No payload.
+     */
+    public static final int OP_LOCK_3A = 3;
+
+    /**
+     * Payload: see {@link #STATUS_SIZE}.
+     */
+    public static final int OP_STATUS = 4;
+
+    /**
+     * Payload: the UTF-8 name of the last picture saved.
+     */
+    public static final int OP_LAST_FILE = 5;
+
+    public static final int STATUS_OK = 0;
+
+    /**
+     * Too many pictures queued, or a capture is in progress.
+     */
+    public static final int STATUS_BUSY = 1;
+
+    /**
+     * The camera is not open, or nothing was saved yet.
+     */
+    public static final int STATUS_UNAVAILABLE = 2;
+
+    /**
+     * The capture or the save failed.
+     */
+    public static final int STATUS_FAILED = 3;
+
+    public static final int STATUS_BAD_REQUEST = 4;
+
+    /**
+     * Picture payload: 64-bit sensor timestamp, 0 if the picture failed, and 64-bit frame
+     * number, -1 if it never started.
+     */
+    public static final int PICTURE_SIZE = 16;
+
+    /**
+     * Status payload: 8-bit capture state, 8-bit {@code FLAG_*} bits, 16-bit pictures queued,
+     * 64-bit pictures saved and 64-bit sensor timestamp of the last picture.
+     */
+    public static final int STATUS_SIZE = 20;
+
+    public static final int FLAG_PREVIEWING = 1;
+    public static final int FLAG_3A_LOCKED = 1 << 1;
+
+    /**
+     * Largest burst a single request may ask for.
+     */
+    public static final int MAX_BURST = 16;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * State of the capture target reported by {@link #OP_STATUS}.
+     */
+    public static final class Status {
+
+        /**
+         * A {@code CaptureStateMachine.STATE_*} value.
+         */
+        public int state;
+
+        public boolean previewing;
+        public boolean locked;
+        public int queued;
+        public long saved;
+        public long lastTimestamp;
+
+        void write(ByteBuffer buffer) {
+            buffer.put((byte) state);
+            buffer.put((byte) ((previewing ? FLAG_PREVIEWING : 0) | (locked ? FLAG_3A_LOCKED : 0)));
+            buffer.putShort((short) Math.min(queued, 0xFFFF));
+            buffer.putLong(saved);
+            buffer.putLong(lastTimestamp);
+        }
+
+        /**
+         * Reads a status payload, as a client does.
+         */
+        public void read(ByteBuffer buffer) {
+            state = buffer.get() & 0xFF;
+            int flags = buffer.get() & 0xFF;
+            previewing = (flags & FLAG_PREVIEWING) != 0;
+            locked = (flags & FLAG_3A_LOCKED) != 0;
+            queued = buffer.getShort() & 0xFFFF;
+            saved = buffer.getLong();
+            lastTimestamp = buffer.getLong();
+        }
+
+    }
+
+    private TriggerProtocol() {
+    }
+
+    /**
+     * Writes a request, as a client does.
+     */
+    public static void putRequest(ByteBuffer buffer, int tag, int op, int argument) {
+        buffer.putInt(tag);
+        buffer.put((byte) op);
+        buffer.put((byte) 0);
+        buffer.putShort((short) argument);
+    }
+
+    static void putHeader(ByteBuffer buffer, int tag, int op, int status, int length) {
+        buffer.putInt(tag);
+        buffer.put((byte) op);
+        buffer.put((byte) status);
+        buffer.putShort((short) length);
+    }
+
+}
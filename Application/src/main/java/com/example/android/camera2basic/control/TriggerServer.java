@@ -0,0 +1,417 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import com.example.android.camera2basic.capture.CaptureController;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Accepts capture triggers from a test-bench controller, in the binary protocol of
+ * {@link TriggerProtocol}.
+ *
+ * <p>Clients come from an {@link Acceptor}; on a device that is a local socket, which a controller
+ * on a host reaches through {@code adb forward tcp:<port> localabstract:<name>}. Taking pictures
+ * through the server bypasses the camera permission, so only clients whose uid is one of the
+ * allowed uids are served, and at most {@link #MAX_CONNECTIONS} at a time. Every connection has a
+ * reader thread that decodes requests and hands them straight to the {@link Target}, and a writer
+ * thread that sends responses from a bounded queue, so picture callbacks never block the camera
+ * thread. A client that stops reading until its queue overflows is disconnected; a client that
+ * hangs up gets no further responses, but the pictures it queued are still taken.</p>
+ */
+// 触发服务器：只接受允许的uid的本地连接，接收测试台的二进制拍照命令，每个连接一个读线程和一个写线程
+public final class TriggerServer {
+
+    /**
+     * What the requests act on. Methods are called on connection threads; implementations hand
+     * them to the camera thread.
+     */
+    public interface Target {
+
+        /**
+         * Queues up to {@code count} pictures.
+         *
+         * @return The number of pictures queued; {@code callback} is called once for each
+         */
+        int capture(int count, CaptureController.PictureCallback callback);
+
+        /**
+         * @return A {@code TriggerProtocol.STATUS_*} value
+         */
+        int set3ALocked(boolean locked);
+
+        void getStatus(TriggerProtocol.Status status);
+
+        /**
+         * @return The name of the last picture saved, or null
+         */
+        String getLastFile();
+
+    }
+
+    /**
+     * Where clients connect.
+     */
+    public interface Acceptor {
+
+        /**
+         * Blocks until a client connects.
+         *
+         * @throws IOException Once {@link #close()} was called, or if the socket fails
+         */
+        Link accept() throws IOException;
+
+        /**
+         * Stops listening and wakes {@link #accept()}.
+         */
+        void close();
+
+    }
+
+    /**
+     * One connected client.
+     */
+    public interface Link {
+
+        /**
+         * @return The uid of the client's process
+         */
+        int getPeerUid() throws IOException;
+
+        InputStream getInputStream() throws IOException;
+
+        OutputStream getOutputStream() throws IOException;
+
+        /**
+         * Closes the link and wakes threads blocked reading or writing it.
+         */
+        void close();
+
+    }
+
+    private static final String TAG = "TriggerServer";
+
+    /**
+     * Responses a connection may have waiting before it is dropped.
+     */
+    private static final int MAX_PENDING_RESPONSES = 256;
+
+    /**
+     * Clients served at a time; each one costs two threads.
+     */
+    public static final int MAX_CONNECTIONS = 4;
+
+    private static final byte[] CLOSE = new byte[0];
+
+    private final Target mTarget;
+    private final int[] mAllowedUids;
+
+    private final StripedCounter mRequests;
+    private final StripedCounter mBadRequests;
+    private final StripedCounter mConnections;
+    private final StripedCounter mRejected;
+    private final StripedCounter mOverflows;
+    private final LatencyHistogram mPictureLatency;
+
+    private final CopyOnWriteArraySet<Connection> mOpen = new CopyOnWriteArraySet<>();
+
+    private Acceptor mAcceptor;
+    private Thread mAcceptThread;
+
+    /**
+     * @param allowedUids The uids of the processes that may connect
+     */
+    public TriggerServer(Target target, MetricsRegistry metrics, int... allowedUids) {
+        mTarget = target;
+        mAllowedUids = allowedUids.clone();
+        mRequests = metrics.counter("trigger.requests");
+        mBadRequests = metrics.counter("trigger.bad_requests");
+        mConnections = metrics.counter("trigger.connections");
+        mRejected = metrics.counter("trigger.rejected");
+        mOverflows = metrics.counter("trigger.overflows");
+        mPictureLatency = metrics.histogram("trigger.request_to_picture");
+    }
+
+    /**
+     * Starts serving the clients of {@code acceptor}, which is closed by {@link #close()}.
+     */
+    public synchronized void start(final Acceptor acceptor) {
+        if (mAcceptor != null) {
+            throw new IllegalStateException("Already started");
+        }
+        mAcceptor = acceptor;
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept(acceptor);
+            }
+        }, TAG);
+        mAcceptThread.start();
+    }
+
+    /**
+     * @return The number of connected clients
+     */
+    public int getConnectionCount() {
+        return mOpen.size();
+    }
+
+    /**
+     * Stops listening and disconnects every client.
+     */
+    public void close() {
+        Thread acceptThread;
+        synchronized (this) {
+            if (mAcceptor == null) {
+                return;
+            }
+            mAcceptor.close();
+            mAcceptor = null;
+            acceptThread = mAcceptThread;
+            mAcceptThread = null;
+        }
+        for (Connection connection : mOpen) {
+            connection.close();
+        }
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept(Acceptor acceptor) {
+        int count = 0;
+        while (true) {
+            Link link;
+            try {
+                link = acceptor.accept();
+            } catch (IOException e) {
+                // Closed by close().
+                return;
+            }
+            if (!isAllowed(link) || mOpen.size() >= MAX_CONNECTIONS) {
+                // 未授权的进程或连接数已满：直接断开，不为其创建线程
+                mRejected.increment();
+                link.close();
+                continue;
+            }
+            mConnections.increment();
+            Connection connection = new Connection(link);
+            mOpen.add(connection);
+            count++;
+            new Thread(connection.mReader, TAG + "-" + count + "-read").start();
+            new Thread(connection.mWriter, TAG + "-" + count + "-write").start();
+        }
+    }
+
+    private boolean isAllowed(Link link) {
+        int uid;
+        try {
+            uid = link.getPeerUid();
+        } catch (IOException e) {
+            return false;
+        }
+        for (int allowed : mAllowedUids) {
+            if (uid == allowed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One client: decodes its requests and sends its responses.
+     */
+    private final class Connection {
+
+        final Link mLink;
+        final BlockingQueue<byte[]> mResponses =
+                new ArrayBlockingQueue<>(MAX_PENDING_RESPONSES + 1);
+        volatile boolean mClosed;
+
+        Connection(Link link) {
+            mLink = link;
+        }
+
+        void close() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mOpen.remove(this);
+            mLink.close();
+            // Wake the writer; the spare slot of the queue guarantees room.
+            mResponses.clear();
+            mResponses.offer(CLOSE);
+        }
+
+        void send(int tag, int op, int status, ByteBuffer payload) {
+            if (mClosed) {
+                return;
+            }
+            int length = payload == null ? 0 : payload.remaining();
+            ByteBuffer response = ByteBuffer.allocate(TriggerProtocol.HEADER_SIZE + length);
+            TriggerProtocol.putHeader(response, tag, op, status, length);
+            if (payload != null) {
+                response.put(payload);
+            }
+            if (mResponses.remainingCapacity() <= 1 || !mResponses.offer(response.array())) {
+                // The client stopped reading; do not buffer for it without bound.
+                mOverflows.increment();
+                close();
+            }
+        }
+
+        void sendPicture(int tag, int op, int status, long timestamp, long frameNumber) {
+            ByteBuffer payload = ByteBuffer.allocate(TriggerProtocol.PICTURE_SIZE);
+            payload.putLong(timestamp).putLong(frameNumber).flip();
+            send(tag, op, status, payload);
+        }
+
+        private void handle(ByteBuffer request, long receivedNanos) {
+            final int tag = request.getInt();
+            final int op = request.get() & 0xFF;
+            request.get();
+            int argument = request.getShort() & 0xFFFF;
+            switch (op) {
+                case TriggerProtocol.OP_CAPTURE:
+                    capture(tag, op, 1, receivedNanos);
+                    break;
+                case TriggerProtocol.OP_BURST:
+                    if (argument < 1 || argument > TriggerProtocol.MAX_BURST) {
+                        badRequest(tag, op);
+                        break;
+                    }
+                    capture(tag, op, argument, receivedNanos);
+                    break;
+                case TriggerProtocol.OP_LOCK_3A:
+                    if (argument > 1) {
+                        badRequest(tag, op);
+                        break;
+                    }
+                    send(tag, op, mTarget.set3ALocked(argument == 1), null);
+                    break;
+                case TriggerProtocol.OP_STATUS: {
+                    TriggerProtocol.Status status = new TriggerProtocol.Status();
+                    mTarget.getStatus(status);
+                    ByteBuffer payload = ByteBuffer.allocate(TriggerProtocol.STATUS_SIZE);
+                    status.write(payload);
+                    payload.flip();
+                    send(tag, op, TriggerProtocol.STATUS_OK, payload);
+                    break;
+                }
+                case TriggerProtocol.OP_LAST_FILE: {
+                    String name = mTarget.getLastFile();
+                    if (name == null) {
+                        send(tag, op, TriggerProtocol.STATUS_UNAVAILABLE, null);
+                        break;
+                    }
+                    byte[] bytes = name.getBytes(TriggerProtocol.UTF_8);
+                    ByteBuffer payload = ByteBuffer.wrap(bytes, 0, Math.min(bytes.length, 0xFFFF));
+                    send(tag, op, TriggerProtocol.STATUS_OK, payload);
+                    break;
+                }
+                default:
+                    badRequest(tag, op);
+                    break;
+            }
+        }
+
+        private void badRequest(int tag, int op) {
+            mBadRequests.increment();
+            send(tag, op, TriggerProtocol.STATUS_BAD_REQUEST, null);
+        }
+
+        private void capture(final int tag, final int op, int count, final long receivedNanos) {
+            int queued = mTarget.capture(count, new CaptureController.PictureCallback() {
+                @Override
+                public void onPictureSaved(long timestamp, long frameNumber) {
+                    mPictureLatency.recordSince(receivedNanos);
+                    sendPicture(tag, op, TriggerProtocol.STATUS_OK, timestamp, frameNumber);
+                }
+
+                @Override
+                public void onPictureFailed(long frameNumber) {
+                    sendPicture(tag, op, TriggerProtocol.STATUS_FAILED, 0, frameNumber);
+                }
+            });
+            // Answer the pictures that were not queued right away, so every one gets a response.
+            for (int i = queued; i < count; i++) {
+                sendPicture(tag, op, TriggerProtocol.STATUS_BUSY, 0, -1);
+            }
+        }
+
+        final Runnable mReader = new Runnable() {
+            @Override
+            public void run() {
+                byte[] bytes = new byte[TriggerProtocol.REQUEST_SIZE];
+                ByteBuffer request = ByteBuffer.wrap(bytes);
+                try {
+                    DataInputStream input = new DataInputStream(mLink.getInputStream());
+                    while (!mClosed) {
+                        input.readFully(bytes);
+                        long receivedNanos = System.nanoTime();
+                        mRequests.increment();
+                        request.clear();
+                        handle(request, receivedNanos);
+                    }
+                } catch (EOFException e) {
+                    // The client hung up.
+                } catch (IOException e) {
+                    // Reset by the client or closed by close().
+                } finally {
+                    close();
+                }
+            }
+        };
+
+        final Runnable mWriter = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    OutputStream output = mLink.getOutputStream();
+                    while (true) {
+                        byte[] response = mResponses.take();
+                        if (response == CLOSE) {
+                            return;
+                        }
+                        output.write(response);
+                    }
+                } catch (IOException e) {
+                    close();
+                } catch (InterruptedException e) {
+                    close();
+                }
+            }
+        };
+
+    }
+
+}
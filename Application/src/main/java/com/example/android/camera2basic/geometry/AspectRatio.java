@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+/**
+ * Aspect ratio arithmetic for the preview view, on plain ints so it can be tested on the JVM.
+ */
+// 宽高比计算：约分比较和按比例测量，供AutoFitTextureView使用
+public final class AspectRatio {
+
+    private AspectRatio() {
+    }
+
+    /**
+     * @return The greatest common divisor of two non-negative numbers; {@code gcd(0, 0)} is 0.
+     */
+    public static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Reduces {@code width:height} to lowest terms, so that 4:3 and 1440:1080 compare equal.
+     * A ratio with a zero side means no ratio and reduces to 0:0.
+     *
+     * @param out Receives the reduced width and height
+     */
+    public static void reduce(int width, int height, int[] out) {
+        if (width == 0 || height == 0) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+        int divisor = gcd(width, height);
+        out[0] = width / divisor;
+        out[1] = height / divisor;
+    }
+
+    /**
+     * Measures the largest size of ratio {@code ratioWidth:ratioHeight} that fits in
+     * {@code width x height}. Without a ratio the available size is used.
+     *
+     * @param out Receives the measured width and height
+     */
+    public static void fit(int width, int height, int ratioWidth, int ratioHeight, int[] out) {
+        if (ratioWidth == 0 || ratioHeight == 0) {
+            out[0] = width;
+            out[1] = height;
+        } else if ((long) width * ratioHeight < (long) height * ratioWidth) {
+            out[0] = width;
+            out[1] = (int) ((long) width * ratioHeight / ratioWidth);
+        } else {
+            out[0] = (int) ((long) height * ratioWidth / ratioHeight);
+            out[1] = height;
+        }
+    }
+
+}
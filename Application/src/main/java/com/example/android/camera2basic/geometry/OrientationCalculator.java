@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.geometry;
+
+import com.example.android.camera2basic.hal.CameraInfo;
+
+/**
+ * Orientation math of one camera, fixed by its sensor orientation and lens facing.
+ *
+ * <p>Everything a capture needs is precomputed into small tables when the camera is opened, so
+ * the capture path only reads an array. Instances are immutable and can be shared between
+ * threads; a camera switch simply creates a new one.</p>
+ *
+ * <p>Display rotations are the {@code Surface.ROTATION_*} values, see
+ * {@link PreviewTransform#ROTATION_0}. Device orientations are clockwise degrees from the
+ * natural orientation, as reported by {@code OrientationEventListener}. Lens facings are the
+ * {@link CameraInfo} values, which equal Camera2's.</p>
+ */
+// 每个相机的方向计算器：按传感器方向和镜头朝向预先计算查找表，拍照时只需查表
+public final class OrientationCalculator {
+
+    private final int mSensorOrientation;
+    private final int mLensFacing;
+
+    /**
+     * JPEG orientation by display rotation, and by device orientation in quarter turns.
+     */
+    private final int[] mJpegByRotation = new int[4];
+    private final int[] mJpegByDevice = new int[4];
+
+    /**
+     * Whether the sensor's width runs along the display's height, by display rotation.
+     */
+    private final boolean[] mSwapped = new boolean[4];
+
+    /**
+     * @param sensorOrientation {@code SENSOR_ORIENTATION}: 0, 90, 180 or 270
+     * @param lensFacing        {@code LENS_FACING}
+     */
+    public OrientationCalculator(int sensorOrientation, int lensFacing) {
+        if (sensorOrientation % 90 != 0 || sensorOrientation < 0 || sensorOrientation >= 360) {
+            throw new IllegalArgumentException("Invalid sensor orientation " + sensorOrientation);
+        }
+        mSensorOrientation = sensorOrientation;
+        mLensFacing = lensFacing;
+        for (int quarter = 0; quarter < 4; quarter++) {
+            mJpegByDevice[quarter] = jpegOrientation(sensorOrientation, lensFacing, quarter * 90);
+            mJpegByRotation[quarter] = jpegOrientation(sensorOrientation, lensFacing,
+                    deviceOrientation(quarter));
+            mSwapped[quarter] = (sensorOrientation / 90 + quarter) % 2 == 1;
+        }
+    }
+
+    /**
+     * Rotation of the JPEG that makes it upright for a device held at
+     * {@code deviceOrientation}. A front camera is mirrored, so it turns the other way.
+     *
+     * @param deviceOrientation Clockwise degrees, a multiple of 90
+     */
+    public static int jpegOrientation(int sensorOrientation, int lensFacing,
+            int deviceOrientation) {
+        if (lensFacing == CameraInfo.LENS_FACING_FRONT) {
+            deviceOrientation = -deviceOrientation;
+        }
+        return ((sensorOrientation + deviceOrientation) % 360 + 360) % 360;
+    }
+
+    /**
+     * @return The clockwise device orientation at which the display shows {@code rotation}: the
+     * content is rotated the opposite way to the device.
+     */
+    public static int deviceOrientation(int displayRotation) {
+        return (360 - rotationDegrees(displayRotation)) % 360;
+    }
+
+    /**
+     * @return {@code displayRotation} in degrees.
+     */
+    public static int rotationDegrees(int displayRotation) {
+        if (displayRotation < PreviewTransform.ROTATION_0
+                || displayRotation > PreviewTransform.ROTATION_270) {
+            throw new IllegalArgumentException("Invalid display rotation " + displayRotation);
+        }
+        return displayRotation * 90;
+    }
+
+    public int getSensorOrientation() {
+        return mSensorOrientation;
+    }
+
+    public int getLensFacing() {
+        return mLensFacing;
+    }
+
+    /**
+     * @return The {@code JPEG_ORIENTATION} for a capture while the display is at
+     * {@code displayRotation}.
+     */
+    public int getJpegOrientation(int displayRotation) {
+        return mJpegByRotation[displayRotation & 3];
+    }
+
+    /**
+     * @param deviceOrientation Clockwise degrees, already quantized to a multiple of 90
+     * @return The {@code JPEG_ORIENTATION} for a capture with the device held that way.
+     */
+    public int getJpegOrientationForDevice(int deviceOrientation) {
+        return mJpegByDevice[(deviceOrientation / 90) & 3];
+    }
+
+    /**
+     * @return Whether sizes in sensor coordinates must be swapped to compare them with view
+     * sizes while the display is at {@code displayRotation}.
+     */
+    public boolean isDimensionSwapped(int displayRotation) {
+        return mSwapped[displayRotation & 3];
+    }
+
+    @Override
+    public String toString() {
+        return "OrientationCalculator{sensor=" + mSensorOrientation + " facing=" + mLensFacing
+                + "}";
+    }
+
+}
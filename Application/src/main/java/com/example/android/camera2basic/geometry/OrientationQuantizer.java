@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+/**
+ * Snaps raw device orientation readings to quarter turns, with hysteresis.
+ *
+ * <p>A reading near the boundary between two quarters would otherwise flip the result back and
+ * forth. The current quarter is kept until a reading is more than {@code 45 + hysteresis}
+ * degrees away from it. Readings are clockwise degrees from the natural orientation, as
+ * delivered by {@code OrientationEventListener}; {@link #UNKNOWN} readings, e.g. while the
+ * device lies flat, keep the current quarter.</p>
+ *
+ * <p>{@link #update} is called from the sensor thread; {@link #getOrientation} is a volatile read
+ * and can be called from any thread.</p>
+ */
+// 设备方向量化：把传感器角度吸附到0/90/180/270，带滞回区间，避免在边界附近来回跳变
+public final class OrientationQuantizer {
+
+    /**
+     * Same value as {@code OrientationEventListener.ORIENTATION_UNKNOWN}.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final int mHysteresis;
+
+    private volatile int mOrientation = UNKNOWN;
+
+    /**
+     * @param hysteresis Degrees beyond the 45 degree midpoint a reading must reach to switch
+     *                   quarters, 0 to 44
+     */
+    public OrientationQuantizer(int hysteresis) {
+        if (hysteresis < 0 || hysteresis >= 45) {
+            throw new IllegalArgumentException("Invalid hysteresis " + hysteresis);
+        }
+        mHysteresis = hysteresis;
+    }
+
+    /**
+     * @return The current orientation, 0, 90, 180 or 270, or {@link #UNKNOWN} before the first
+     * reading.
+     */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    /**
+     * Seeds the orientation, e.g. from the display rotation before the sensor reports.
+     *
+     * @param orientation 0, 90, 180, 270 or {@link #UNKNOWN}
+     */
+    public void reset(int orientation) {
+        if (orientation != UNKNOWN && (orientation % 90 != 0 || orientation < 0
+                || orientation >= 360)) {
+            throw new IllegalArgumentException("Invalid orientation " + orientation);
+        }
+        mOrientation = orientation;
+    }
+
+    /**
+     * @param degrees Raw reading, 0 to 359, or {@link #UNKNOWN}
+     * @return Whether the quantized orientation changed
+     */
+    public boolean update(int degrees) {
+        if (degrees == UNKNOWN) {
+            return false;
+        }
+        degrees = (degrees % 360 + 360) % 360;
+        int current = mOrientation;
+        if (current != UNKNOWN) {
+            int distance = Math.abs(degrees - current);
+            if (distance > 180) {
+                distance = 360 - distance;
+            }
+            if (distance <= 45 + mHysteresis) {
+                return false;
+            }
+        }
+        int next = (degrees + 45) / 90 % 4 * 90;
+        if (next == current) {
+            return false;
+        }
+        mOrientation = next;
+        return true;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.geometry;
+
+/**
+ * The matrix that maps the camera preview buffer onto the texture view, as a 3x3 row-major
+ * array in the layout of {@code Matrix.setValues}.
+ *
+ * <p>Computes in closed form what {@code setRectToRect}, {@code postScale} and
+ * {@code postRotate} build step by step, so the math can be tested and measured on a plain
+ * JVM.</p>
+ */
+// 预览变换矩阵的纯Java计算，结果与android.graphics.Matrix的逐步运算一致
+public final class PreviewTransform {
+
+    /**
+     * Display rotations, with the values of {@code Surface.ROTATION_*}.
+     */
+    public static final int ROTATION_0 = 0;
+    public static final int ROTATION_90 = 1;
+    public static final int ROTATION_180 = 2;
+    public static final int ROTATION_270 = 3;
+
+    private PreviewTransform() {
+    }
+
+    /**
+     * Fills {@code out} with the transform of a preview buffer of {@code previewWidth x
+     * previewHeight}, in sensor orientation, shown in a view of {@code viewWidth x viewHeight}
+     * while the display is at {@code rotation}. In landscape the buffer is scaled to cover the
+     * view and rotated about its center; upside down it is only rotated.
+     *
+     * @param out Receives the 9 matrix values
+     */
+    public static void compute(int viewWidth, int viewHeight, int previewWidth,
+            int previewHeight, int rotation, float[] out) {
+        float centerX = viewWidth / 2f;
+        float centerY = viewHeight / 2f;
+        if (ROTATION_90 == rotation || ROTATION_270 == rotation) {
+            // setRectToRect(view, buffer centered in view, FILL); the buffer is width-height
+            // swapped because the sensor is landscape.
+            float scaleX = (float) previewHeight / viewWidth;
+            float scaleY = (float) previewWidth / viewHeight;
+            // postScale(scale, scale, centerX, centerY)
+            float scale = Math.max(
+                    (float) viewHeight / previewHeight,
+                    (float) viewWidth / previewWidth);
+            float a = scale * scaleX;
+            float e = scale * scaleY;
+            float dx = -scale * previewHeight / 2f;
+            float dy = -scale * previewWidth / 2f;
+            // postRotate(90 * (rotation - 2), centerX, centerY): -90 or 90 degrees.
+            float sin = ROTATION_90 == rotation ? -1f : 1f;
+            out[0] = 0f;
+            out[1] = -sin * e;
+            out[2] = -sin * dy + centerX;
+            out[3] = sin * a;
+            out[4] = 0f;
+            out[5] = sin * dx + centerY;
+        } else if (ROTATION_180 == rotation) {
+            out[0] = -1f;
+            out[1] = 0f;
+            out[2] = 2f * centerX;
+            out[3] = 0f;
+            out[4] = -1f;
+            out[5] = 2f * centerY;
+        } else {
+            out[0] = 1f;
+            out[1] = 0f;
+            out[2] = 0f;
+            out[3] = 0f;
+            out[4] = 1f;
+            out[5] = 0f;
+        }
+        out[6] = 0f;
+        out[7] = 0f;
+        out[8] = 1f;
+    }
+
+    /**
+     * Post-scales {@code values} about the view center so that content of
+     * {@code contentWidth:contentHeight}, which the view would otherwise stretch to its own
+     * shape, covers the view with its aspect ratio kept. The overflow is cropped evenly on both
+     * sides.
+     */
+    public static void centerCrop(int viewWidth, int viewHeight, int contentWidth,
+            int contentHeight, float[] values) {
+        float scale = Math.max((float) viewWidth / contentWidth,
+                (float) viewHeight / contentHeight);
+        float scaleX = scale * contentWidth / viewWidth;
+        float scaleY = scale * contentHeight / viewHeight;
+        float centerX = viewWidth / 2f;
+        float centerY = viewHeight / 2f;
+        // S * M, with S = scale(scaleX, scaleY) about the center; the last row stays 0 0 1.
+        for (int column = 0; column < 3; column++) {
+            float x = values[column];
+            float y = values[3 + column];
+            float w = values[6 + column];
+            values[column] = scaleX * x + centerX * (1f - scaleX) * w;
+            values[3 + column] = scaleY * y + centerY * (1f - scaleY) * w;
+        }
+    }
+
+    /**
+     * Maps the point {@code (x, y)} through {@code values}, for tests and hit testing.
+     *
+     * @param point Receives the mapped x and y
+     */
+    public static void mapPoint(float[] values, float x, float y, float[] point) {
+        point[0] = values[0] * x + values[1] * y + values[2];
+        point[1] = values[3] * x + values[4] * y + values[5];
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+/**
+ * Remembers the inputs of the last {@link PreviewTransform} and recomputes only when one of them
+ * changes, so the view is not handed an identical matrix on every layout pass.
+ *
+ * <p>The sensor orientation and lens facing do not enter the math, the {@code SurfaceTexture}
+ * already compensates them, but they are part of the key: a camera switch changes that
+ * compensation, so the transform must be applied again even if the sizes match.</p>
+ *
+ * <p>In center-crop mode the view fills its parent instead of matching the preview's aspect
+ * ratio. At rotations 90 and 270 the transform already scales the buffer to cover the view; at
+ * 0 and 180 the buffer, upright in the display orientation with its sides swapped from the
+ * sensor's, is additionally cropped with {@link PreviewTransform#centerCrop}.</p>
+ *
+ * <p>Not thread safe; use it from the thread that applies the transform.</p>
+ */
+// 预览变换缓存：以视图尺寸、预览尺寸、旋转、传感器方向和镜头朝向为键，输入不变时不重新计算
+public final class PreviewTransformCache {
+
+    private final float[] mValues = new float[9];
+
+    private boolean mCenterCrop;
+
+    private boolean mValid;
+    private int mViewWidth;
+    private int mViewHeight;
+    private int mPreviewWidth;
+    private int mPreviewHeight;
+    private int mRotation;
+    private int mSensorOrientation;
+    private int mLensFacing;
+
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * Recomputes the transform if any input differs from the last call.
+     *
+     * @return Whether the values changed and must be applied to the view
+     */
+    public boolean update(int viewWidth, int viewHeight, int previewWidth, int previewHeight,
+            int rotation, int sensorOrientation, int lensFacing) {
+        if (mValid && viewWidth == mViewWidth && viewHeight == mViewHeight
+                && previewWidth == mPreviewWidth && previewHeight == mPreviewHeight
+                && rotation == mRotation && sensorOrientation == mSensorOrientation
+                && lensFacing == mLensFacing) {
+            mHits++;
+            return false;
+        }
+        PreviewTransform.compute(viewWidth, viewHeight, previewWidth, previewHeight, rotation,
+                mValues);
+        if (mCenterCrop && (rotation == PreviewTransform.ROTATION_0
+                || rotation == PreviewTransform.ROTATION_180)) {
+            PreviewTransform.centerCrop(viewWidth, viewHeight, previewHeight, previewWidth,
+                    mValues);
+        }
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+        mPreviewWidth = previewWidth;
+        mPreviewHeight = previewHeight;
+        mRotation = rotation;
+        mSensorOrientation = sensorOrientation;
+        mLensFacing = lensFacing;
+        mValid = true;
+        mMisses++;
+        return true;
+    }
+
+    /**
+     * Selects center-crop mode; the next {@link #update} recomputes if the mode changed.
+     */
+    public void setCenterCrop(boolean centerCrop) {
+        if (centerCrop != mCenterCrop) {
+            mCenterCrop = centerCrop;
+            mValid = false;
+        }
+    }
+
+    public boolean isCenterCrop() {
+        return mCenterCrop;
+    }
+
+    /**
+     * Forces the next {@link #update} to recompute, e.g. when the view was recreated and lost its
+     * transform.
+     */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * @return The values of the last computed transform, in the layout of
+     * {@code Matrix.setValues}. The array is reused; do not modify it.
+     */
+    public float[] getValues() {
+        return mValues;
+    }
+
+    public long getHits() {
+        return mHits;
+    }
+
+    public long getMisses() {
+        return mMisses;
+    }
+
+}
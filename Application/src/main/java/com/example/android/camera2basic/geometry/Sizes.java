@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.geometry;
+
+import com.example.android.camera2basic.hal.Resolution;
+
+import java.util.Comparator;
+
+/**
+ * Output size selection, independent of {@code android.util.Size}.
+ */
+// 输出尺寸的选择，不依赖android.util.Size
+public final class Sizes {
+
+    /**
+     * Compares two {@link Resolution}s based on their areas.
+     */
+    public static final Comparator<Resolution> BY_AREA = new Comparator<Resolution>() {
+        @Override
+        public int compare(Resolution lhs, Resolution rhs) {
+            return Long.signum(lhs.getArea() - rhs.getArea());
+        }
+    };
+
+    private Sizes() {
+    }
+
+    /**
+     * Given {@code choices} of sizes supported by a camera, chooses the smallest one that is at
+     * least as large as the respective texture view size, at most as large as the respective max
+     * size, and whose aspect ratio matches {@code aspectRatio}. If no such size exists, chooses
+     * the largest one that is at most as large as the max size and has the aspect ratio.
+     *
+     * <p>Makes a single pass without allocating. Among sizes of equal area the first one wins, as
+     * with {@code Collections.min} and {@code max}.</p>
+     *
+     * @return The optimal size, or null if no size has the aspect ratio and fits the max size
+     */
+    public static Resolution chooseOptimalSize(Resolution[] choices, int textureViewWidth,
+            int textureViewHeight, int maxWidth, int maxHeight, Resolution aspectRatio) {
+        int w = aspectRatio.getWidth();
+        int h = aspectRatio.getHeight();
+        Resolution smallestBigEnough = null;
+        Resolution largestNotBigEnough = null;
+        for (Resolution option : choices) {
+            int width = option.getWidth();
+            int height = option.getHeight();
+            if (width > maxWidth || height > maxHeight || height != width * h / w) {
+                continue;
+            }
+            if (width >= textureViewWidth && height >= textureViewHeight) {
+                if (smallestBigEnough == null
+                        || option.getArea() < smallestBigEnough.getArea()) {
+                    smallestBigEnough = option;
+                }
+            } else if (largestNotBigEnough == null
+                    || option.getArea() > largestNotBigEnough.getArea()) {
+                largestNotBigEnough = option;
+            }
+        }
+        return smallestBigEnough != null ? smallestBigEnough : largestNotBigEnough;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+import java.util.List;
+
+/**
+ * The part of {@code CameraManager} the capture flow uses: listing,
+ * describing and opening cameras.
+ *
+ * <p>This package mirrors the shape of the Camera2 API with plain Java types, so that the capture
+ * flow can run against a scripted fake on a desktop JVM; see
+ * {@link com.example.android.camera2basic.hal.fake.FakeCameraHal}. Callbacks are delivered on a
+ * thread chosen by the implementation, one at a time.</p>
+ */
+// 相机硬件抽象：对应CameraManager，可以用假实现在JVM上运行整个拍照流程
+public interface CameraHal {
+
+    /**
+     * Receives the state of an opened device, the counterpart of
+     * {@code CameraDevice.StateCallback}.
+     */
+    interface DeviceCallback {
+
+        void onOpened(HalDevice device);
+
+        void onDisconnected(HalDevice device);
+
+        /**
+         * @param error One of the {@code HalDevice.ERROR_*} values
+         */
+        void onError(HalDevice device, int error);
+
+    }
+
+    List<String> getCameraIds() throws HalException;
+
+    CameraInfo getCameraInfo(String cameraId) throws HalException;
+
+    /**
+     * Opens a camera. Exactly one of the callback's methods reports the outcome.
+     */
+    void openCamera(String cameraId, DeviceCallback callback) throws HalException;
+
+    /**
+     * Runs {@code task} on the thread the callbacks are delivered on, {@code delayNanos} from
+     * now, like {@code Handler.postDelayed}. Used for the timeouts of the capture flow.
+     */
+    void postDelayed(Runnable task, long delayNanos);
+
+    /**
+     * Removes the runs of {@code task} that have not started yet.
+     */
+    void removeCallbacks(Runnable task);
+
+}
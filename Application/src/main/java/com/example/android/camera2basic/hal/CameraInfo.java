@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The static characteristics of one camera that the capture flow needs, the counterpart of
+ * {@code CameraCharacteristics}.
+ */
+// 相机的静态特性：朝向、传感器方向、闪光灯和支持的输出尺寸
+public final class CameraInfo {
+
+    /**
+     * Same values as {@code CameraCharacteristics.LENS_FACING_*}.
+     */
+    public static final int LENS_FACING_FRONT = 0;
+    public static final int LENS_FACING_BACK = 1;
+    public static final int LENS_FACING_EXTERNAL = 2;
+
+    private final String mId;
+    private final int mFacing;
+    private final int mSensorOrientation;
+    private final boolean mFlashSupported;
+    private final List<Resolution> mPreviewSizes;
+    private final List<Resolution> mJpegSizes;
+    private final List<Resolution> mYuvSizes;
+    private final boolean mRealtimeTimestamps;
+
+    private CameraInfo(Builder builder) {
+        mId = builder.mId;
+        mFacing = builder.mFacing;
+        mSensorOrientation = builder.mSensorOrientation;
+        mFlashSupported = builder.mFlashSupported;
+        mPreviewSizes = Collections.unmodifiableList(new ArrayList<>(builder.mPreviewSizes));
+        mJpegSizes = Collections.unmodifiableList(new ArrayList<>(builder.mJpegSizes));
+        mYuvSizes = Collections.unmodifiableList(new ArrayList<>(builder.mYuvSizes));
+        mRealtimeTimestamps = builder.mRealtimeTimestamps;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public int getFacing() {
+        return mFacing;
+    }
+
+    /**
+     * @return Clockwise rotation of the sensor relative to the device's natural orientation
+     */
+    public int getSensorOrientation() {
+        return mSensorOrientation;
+    }
+
+    public boolean isFlashSupported() {
+        return mFlashSupported;
+    }
+
+    public List<Resolution> getPreviewSizes() {
+        return mPreviewSizes;
+    }
+
+    public List<Resolution> getJpegSizes() {
+        return mJpegSizes;
+    }
+
+    public List<Resolution> getYuvSizes() {
+        return mYuvSizes;
+    }
+
+    /**
+     * @return Whether sensor timestamps are on the {@code elapsedRealtimeNanos} clock, and so
+     * comparable with the time frames are shown
+     */
+    public boolean hasRealtimeTimestamps() {
+        return mRealtimeTimestamps;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraInfo{id=" + mId + " facing=" + mFacing + " orientation="
+                + mSensorOrientation + " flash=" + mFlashSupported + "}";
+    }
+
+    public static final class Builder {
+
+        private final String mId;
+        private int mFacing = LENS_FACING_BACK;
+        private int mSensorOrientation = 90;
+        private boolean mFlashSupported;
+        private final List<Resolution> mPreviewSizes = new ArrayList<>();
+        private final List<Resolution> mJpegSizes = new ArrayList<>();
+        private final List<Resolution> mYuvSizes = new ArrayList<>();
+        private boolean mRealtimeTimestamps;
+
+        public Builder(String id) {
+            mId = id;
+        }
+
+        public Builder setFacing(int facing) {
+            mFacing = facing;
+            return this;
+        }
+
+        public Builder setSensorOrientation(int sensorOrientation) {
+            mSensorOrientation = sensorOrientation;
+            return this;
+        }
+
+        public Builder setFlashSupported(boolean flashSupported) {
+            mFlashSupported = flashSupported;
+            return this;
+        }
+
+        public Builder addPreviewSize(int width, int height) {
+            mPreviewSizes.add(new Resolution(width, height));
+            return this;
+        }
+
+        public Builder addJpegSize(int width, int height) {
+            mJpegSizes.add(new Resolution(width, height));
+            return this;
+        }
+
+        public Builder addYuvSize(int width, int height) {
+            mYuvSizes.add(new Resolution(width, height));
+            return this;
+        }
+
+        public Builder setRealtimeTimestamps(boolean realtimeTimestamps) {
+            mRealtimeTimestamps = realtimeTimestamps;
+            return this;
+        }
+
+        public CameraInfo build() {
+            return new CameraInfo(this);
+        }
+
+    }
+
+}
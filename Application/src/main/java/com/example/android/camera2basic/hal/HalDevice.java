@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+/**
+ * An opened camera, the counterpart of {@code CameraDevice}.
+ */
+// 已打开的相机，对应CameraDevice
+public interface HalDevice {
+
+    /**
+     * Same values as {@code CameraDevice.StateCallback.ERROR_*}.
+     */
+    int ERROR_CAMERA_IN_USE = 1;
+    int ERROR_MAX_CAMERAS_IN_USE = 2;
+    int ERROR_CAMERA_DISABLED = 3;
+    int ERROR_CAMERA_DEVICE = 4;
+    int ERROR_CAMERA_SERVICE = 5;
+
+    /**
+     * Receives the outcome of {@link #createCaptureSession}, the counterpart of
+     * {@code CameraCaptureSession.StateCallback}.
+     */
+    interface SessionCallback {
+
+        void onConfigured(HalSession session);
+
+        void onConfigureFailed();
+
+    }
+
+    String getId();
+
+    /**
+     * Creates a session with one output per {@code HalRequest.TARGET_*} stream. Any previous
+     * session of this device is closed.
+     */
+    void createCaptureSession(SessionCallback callback) throws HalException;
+
+    void close();
+
+}
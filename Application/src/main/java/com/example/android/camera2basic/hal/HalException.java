@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+/**
+ * Thrown when the camera cannot be accessed, the counterpart of
+ * {@code CameraAccessException}.
+ */
+// 相机无法访问时抛出，对应CameraAccessException
+public class HalException extends Exception {
+
+    /**
+     * Same values as {@code CameraAccessException}'s reasons.
+     */
+    public static final int CAMERA_DISABLED = 1;
+    public static final int CAMERA_DISCONNECTED = 2;
+    public static final int CAMERA_ERROR = 3;
+
+    private final int mReason;
+
+    public HalException(int reason, String message) {
+        super(message);
+        mReason = reason;
+    }
+
+    public int getReason() {
+        return mReason;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+/**
+ * An immutable capture request, the counterpart of {@code CaptureRequest}, limited to the
+ * controls the capture flow sets. Control values are the same as the Camera2 constants.
+ */
+// 捕获请求，只包含拍照流程用到的控制项，取值与Camera2常量相同
+public final class HalRequest {
+
+    public static final int TEMPLATE_PREVIEW = 1;
+    public static final int TEMPLATE_STILL_CAPTURE = 2;
+
+    /**
+     * Output streams, combined as a bit mask.
+     */
+    public static final int TARGET_PREVIEW = 1;
+    public static final int TARGET_YUV = 1 << 1;
+    public static final int TARGET_JPEG = 1 << 2;
+
+    public static final int AF_MODE_AUTO = 1;
+    public static final int AF_MODE_CONTINUOUS_PICTURE = 4;
+
+    public static final int AF_TRIGGER_IDLE = 0;
+    public static final int AF_TRIGGER_START = 1;
+    public static final int AF_TRIGGER_CANCEL = 2;
+
+    public static final int AE_MODE_ON = 1;
+    public static final int AE_MODE_ON_AUTO_FLASH = 2;
+
+    public static final int AE_PRECAPTURE_TRIGGER_IDLE = 0;
+    public static final int AE_PRECAPTURE_TRIGGER_START = 1;
+
+    private final int mTemplate;
+    private final int mTargets;
+    private final int mAfMode;
+    private final int mAfTrigger;
+    private final int mAeMode;
+    private final int mAePrecaptureTrigger;
+    private final boolean mAeLock;
+    private final int mJpegOrientation;
+
+    private HalRequest(Builder builder) {
+        mTemplate = builder.mTemplate;
+        mTargets = builder.mTargets;
+        mAfMode = builder.mAfMode;
+        mAfTrigger = builder.mAfTrigger;
+        mAeMode = builder.mAeMode;
+        mAePrecaptureTrigger = builder.mAePrecaptureTrigger;
+        mAeLock = builder.mAeLock;
+        mJpegOrientation = builder.mJpegOrientation;
+    }
+
+    public int getTemplate() {
+        return mTemplate;
+    }
+
+    public int getTargets() {
+        return mTargets;
+    }
+
+    public boolean hasTarget(int target) {
+        return (mTargets & target) != 0;
+    }
+
+    public int getAfMode() {
+        return mAfMode;
+    }
+
+    public int getAfTrigger() {
+        return mAfTrigger;
+    }
+
+    public int getAeMode() {
+        return mAeMode;
+    }
+
+    public int getAePrecaptureTrigger() {
+        return mAePrecaptureTrigger;
+    }
+
+    public boolean isAeLock() {
+        return mAeLock;
+    }
+
+    public int getJpegOrientation() {
+        return mJpegOrientation;
+    }
+
+    @Override
+    public String toString() {
+        return "HalRequest{template=" + mTemplate + " targets=" + mTargets + " afTrigger="
+                + mAfTrigger + " aePrecaptureTrigger=" + mAePrecaptureTrigger + " aeLock=" + mAeLock
+                + "}";
+    }
+
+    /**
+     * Mutable builder, reused across requests like {@code CaptureRequest.Builder}.
+     */
+    public static final class Builder {
+
+        private final int mTemplate;
+        private int mTargets;
+        private int mAfMode = AF_MODE_AUTO;
+        private int mAfTrigger = AF_TRIGGER_IDLE;
+        private int mAeMode = AE_MODE_ON;
+        private int mAePrecaptureTrigger = AE_PRECAPTURE_TRIGGER_IDLE;
+        private boolean mAeLock;
+        private int mJpegOrientation;
+
+        public Builder(int template) {
+            mTemplate = template;
+        }
+
+        public Builder addTarget(int target) {
+            mTargets |= target;
+            return this;
+        }
+
+        public Builder setAfMode(int afMode) {
+            mAfMode = afMode;
+            return this;
+        }
+
+        public Builder setAfTrigger(int afTrigger) {
+            mAfTrigger = afTrigger;
+            return this;
+        }
+
+        public Builder setAeMode(int aeMode) {
+            mAeMode = aeMode;
+            return this;
+        }
+
+        public Builder setAePrecaptureTrigger(int aePrecaptureTrigger) {
+            mAePrecaptureTrigger = aePrecaptureTrigger;
+            return this;
+        }
+
+        public Builder setAeLock(boolean aeLock) {
+            mAeLock = aeLock;
+            return this;
+        }
+
+        public Builder setJpegOrientation(int jpegOrientation) {
+            mJpegOrientation = jpegOrientation;
+            return this;
+        }
+
+        public HalRequest build() {
+            return new HalRequest(this);
+        }
+
+    }
+
+}
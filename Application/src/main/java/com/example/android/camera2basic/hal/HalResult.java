@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+/**
+ * The 3A state and exposure of a completed capture, the counterpart of
+ * {@code TotalCaptureResult}. State values are the same as the
+ * {@code CaptureResult.CONTROL_*_STATE_*} constants.
+ */
+// 捕获结果中的3A状态和曝光参数，取值与CaptureResult常量相同
+public final class HalResult {
+
+    /**
+     * Reported for a state the device does not provide, where Camera2 returns null.
+     */
+    public static final int STATE_UNAVAILABLE = -1;
+
+    public static final int AF_STATE_INACTIVE = 0;
+    public static final int AF_STATE_PASSIVE_SCAN = 1;
+    public static final int AF_STATE_PASSIVE_FOCUSED = 2;
+    public static final int AF_STATE_ACTIVE_SCAN = 3;
+    public static final int AF_STATE_FOCUSED_LOCKED = 4;
+    public static final int AF_STATE_NOT_FOCUSED_LOCKED = 5;
+    public static final int AF_STATE_PASSIVE_UNFOCUSED = 6;
+
+    public static final int AE_STATE_INACTIVE = 0;
+    public static final int AE_STATE_SEARCHING = 1;
+    public static final int AE_STATE_CONVERGED = 2;
+    public static final int AE_STATE_LOCKED = 3;
+    public static final int AE_STATE_FLASH_REQUIRED = 4;
+    public static final int AE_STATE_PRECAPTURE = 5;
+
+    public static final int AWB_STATE_INACTIVE = 0;
+    public static final int AWB_STATE_SEARCHING = 1;
+    public static final int AWB_STATE_CONVERGED = 2;
+    public static final int AWB_STATE_LOCKED = 3;
+
+    private final long mFrameNumber;
+    private final long mTimestamp;
+    private final int mAfState;
+    private final int mAeState;
+    private final int mAwbState;
+    private final long mExposureTime;
+    private final int mSensitivity;
+
+    public HalResult(long frameNumber, long timestamp, int afState, int aeState, int awbState) {
+        this(frameNumber, timestamp, afState, aeState, awbState, -1, -1);
+    }
+
+    /**
+     * @param exposureTime Exposure time in nanoseconds, or -1 if not reported
+     * @param sensitivity  ISO sensitivity, or -1 if not reported
+     */
+    public HalResult(long frameNumber, long timestamp, int afState, int aeState, int awbState,
+            long exposureTime, int sensitivity) {
+        mFrameNumber = frameNumber;
+        mTimestamp = timestamp;
+        mAfState = afState;
+        mAeState = aeState;
+        mAwbState = awbState;
+        mExposureTime = exposureTime;
+        mSensitivity = sensitivity;
+    }
+
+    public long getFrameNumber() {
+        return mFrameNumber;
+    }
+
+    /**
+     * @return The sensor timestamp in nanoseconds
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public int getAfState() {
+        return mAfState;
+    }
+
+    public int getAeState() {
+        return mAeState;
+    }
+
+    public int getAwbState() {
+        return mAwbState;
+    }
+
+    /**
+     * @return The exposure time in nanoseconds, or -1 if not reported
+     */
+    public long getExposureTime() {
+        return mExposureTime;
+    }
+
+    /**
+     * @return The ISO sensitivity, or -1 if not reported
+     */
+    public int getSensitivity() {
+        return mSensitivity;
+    }
+
+    @Override
+    public String toString() {
+        return "HalResult{frame=" + mFrameNumber + " af=" + mAfState + " ae=" + mAeState
+                + " awb=" + mAwbState + "}";
+    }
+
+}
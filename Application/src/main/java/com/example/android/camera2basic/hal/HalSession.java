@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal;
+
+import com.example.android.camera2basic.analysis.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A configured capture session, the counterpart of
+ * {@code CameraCaptureSession} together with the image readers behind
+ * its outputs.
+ */
+// 捕获会话，对应CameraCaptureSession以及其输出的ImageReader
+public interface HalSession {
+
+    /**
+     * Receives the progress of submitted requests, the counterpart of
+     * {@code CameraCaptureSession.CaptureCallback}.
+     */
+    abstract class CaptureCallback {
+
+        public void onCaptureStarted(HalRequest request, long timestamp, long frameNumber) {
+        }
+
+        public void onCaptureCompleted(HalRequest request, HalResult result) {
+        }
+
+        /**
+         * @param reason Same values as {@code CaptureFailure.REASON_*}
+         */
+        public void onCaptureFailed(HalRequest request, long frameNumber, int reason) {
+        }
+
+        public void onCaptureBufferLost(HalRequest request, long frameNumber) {
+        }
+
+    }
+
+    /**
+     * Receives the frames of {@link HalRequest#TARGET_YUV}.
+     */
+    interface FrameListener {
+
+        /**
+         * @param frame A frame whose single reference passes to the listener
+         */
+        void onFrame(Frame frame);
+
+    }
+
+    /**
+     * Receives the pictures of {@link HalRequest#TARGET_JPEG}.
+     */
+    interface JpegListener {
+
+        /**
+         * @param jpeg        The encoded picture, valid only during the call
+         * @param frameNumber Frame number of the request the picture belongs to
+         */
+        void onJpeg(ByteBuffer jpeg, long timestamp, long frameNumber);
+
+    }
+
+    HalDevice getDevice();
+
+    void setFrameListener(FrameListener listener);
+
+    void setJpegListener(JpegListener listener);
+
+    void setRepeatingRequest(HalRequest request, CaptureCallback callback) throws HalException;
+
+    void capture(HalRequest request, CaptureCallback callback) throws HalException;
+
+    void stopRepeating() throws HalException;
+
+    /**
+     * Discards the single requests that have not started yet.
+     */
+    void abortCaptures() throws HalException;
+
+    void close();
+
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal.fake;
+
+import com.example.android.camera2basic.hal.CameraHal;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalDevice;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.HalRequest;
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.hal.HalSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * One camera of a {@link FakeCameraHal}: its behavior, latencies and injected faults.
+ *
+ * <p>An open session runs one request per frame interval while it has any, single requests
+ * before the repeating one, like a real device. Each frame reports its start right away, its
+ * result and YUV frame after the result latency, and its JPEG after the JPEG latency. All times
+ * are virtual; see {@link FakeCameraHal}.</p>
+ */
+// 假相机：可配置帧率、各项延迟、3A脚本和注入的故障
+public final class FakeCamera {
+
+    /**
+     * Same value as {@code CaptureFailure.REASON_ERROR}.
+     */
+    public static final int REASON_ERROR = 0;
+
+    private static final long MILLIS = 1000000L;
+
+    private final FakeCameraHal mHal;
+    private final CameraInfo mInfo;
+
+    private long mFrameIntervalNanos = 33333333L;
+    private long mOpenLatencyNanos = 50 * MILLIS;
+    private long mConfigureLatencyNanos = 100 * MILLIS;
+    private long mResultLatencyNanos = 66 * MILLIS;
+    private long mJpegLatencyNanos = 150 * MILLIS;
+    private int mYuvWidth = 640;
+    private int mYuvHeight = 480;
+    private int mJpegWidth = 640;
+    private int mJpegHeight = 480;
+    private int mJpegPadding;
+    private long mExposureTime = 10 * MILLIS;
+    private int mSensitivity = 100;
+    private ResultScript mScript = new ResultScript.Builder().build();
+
+    private int mOpenError;
+    private boolean mFailNextConfigure;
+    private long mDisconnectAfterNanos = -1;
+    private int mFailCaptures;
+    private int mStillsBeforeFailure = -1;
+    private boolean mAccessError;
+
+    private Device mDevice;
+    private int mOpenCount;
+    private long mFramesStarted;
+    private int mTargetsStarted;
+
+    FakeCamera(FakeCameraHal hal, CameraInfo info) {
+        mHal = hal;
+        mInfo = info;
+    }
+
+    public CameraInfo getInfo() {
+        return mInfo;
+    }
+
+    public FakeCamera setFrameInterval(long nanos) {
+        mFrameIntervalNanos = nanos;
+        return this;
+    }
+
+    public FakeCamera setOpenLatency(long nanos) {
+        mOpenLatencyNanos = nanos;
+        return this;
+    }
+
+    public FakeCamera setConfigureLatency(long nanos) {
+        mConfigureLatencyNanos = nanos;
+        return this;
+    }
+
+    /**
+     * @param nanos Time from the start of a frame to its result and YUV frame
+     */
+    public FakeCamera setResultLatency(long nanos) {
+        mResultLatencyNanos = nanos;
+        return this;
+    }
+
+    /**
+     * @param nanos Time from the start of a still frame to its JPEG
+     */
+    public FakeCamera setJpegLatency(long nanos) {
+        mJpegLatencyNanos = nanos;
+        return this;
+    }
+
+    public FakeCamera setYuvSize(int width, int height) {
+        mYuvWidth = width;
+        mYuvHeight = height;
+        return this;
+    }
+
+    /**
+     * @param padding Extra bytes in every JPEG, to reach a realistic file size
+     */
+    public FakeCamera setJpegSize(int width, int height, int padding) {
+        mJpegWidth = width;
+        mJpegHeight = height;
+        mJpegPadding = padding;
+        return this;
+    }
+
+    /**
+     * @param exposureTime Exposure time in nanoseconds reported by every result, or -1
+     * @param sensitivity  ISO sensitivity reported by every result, or -1
+     */
+    public FakeCamera setExposure(long exposureTime, int sensitivity) {
+        mExposureTime = exposureTime;
+        mSensitivity = sensitivity;
+        return this;
+    }
+
+    public FakeCamera setScript(ResultScript script) {
+        mScript = script;
+        return this;
+    }
+
+    /**
+     * Makes the next open report {@code error} instead of opening.
+     *
+     * @param error One of the {@code HalDevice.ERROR_*} values
+     */
+    public FakeCamera failNextOpen(int error) {
+        mOpenError = error;
+        return this;
+    }
+
+    public FakeCamera failNextConfigure() {
+        mFailNextConfigure = true;
+        return this;
+    }
+
+    /**
+     * Makes the next opened device disconnect {@code nanos} after it opened.
+     */
+    public FakeCamera disconnectAfter(long nanos) {
+        mDisconnectAfterNanos = nanos;
+        return this;
+    }
+
+    /**
+     * Makes the next {@code count} frames fail instead of producing a result and images.
+     */
+    public FakeCamera failNextCaptures(int count) {
+        mFailCaptures = count;
+        return this;
+    }
+
+    /**
+     * Lets the next {@code stills} still captures through and fails the one after them, for
+     * failures in the middle of a burst.
+     */
+    public FakeCamera failStillAfter(int stills) {
+        mStillsBeforeFailure = stills;
+        return this;
+    }
+
+    /**
+     * Makes every device and session call throw a {@link HalException}, as when the camera is
+     * taken by a higher-priority client.
+     */
+    public FakeCamera setAccessError(boolean accessError) {
+        mAccessError = accessError;
+        return this;
+    }
+
+    public int getOpenCount() {
+        return mOpenCount;
+    }
+
+    public long getFramesStarted() {
+        return mFramesStarted;
+    }
+
+    /**
+     * @return The union of the {@code HalRequest.TARGET_*} streams of all requests started
+     */
+    public int getTargetsStarted() {
+        return mTargetsStarted;
+    }
+
+    /**
+     * @return Whether a device of this camera is open
+     */
+    public boolean isOpen() {
+        return mDevice != null;
+    }
+
+    void open(final CameraHal.DeviceCallback callback) throws HalException {
+        checkAccess();
+        final Device device = new Device(callback);
+        final int error = mOpenError;
+        final long disconnectAfter = mDisconnectAfterNanos;
+        mOpenError = 0;
+        mDisconnectAfterNanos = -1;
+        mHal.post(mOpenLatencyNanos, new Runnable() {
+            @Override
+            public void run() {
+                if (error != 0) {
+                    callback.onError(device, error);
+                    return;
+                }
+                if (mDevice != null) {
+                    // Like Camera2, a new client evicts the previous one.
+                    Device previous = mDevice;
+                    previous.closeInternal();
+                    previous.mCallback.onDisconnected(previous);
+                }
+                mDevice = device;
+                mOpenCount++;
+                callback.onOpened(device);
+                if (disconnectAfter >= 0) {
+                    mHal.post(disconnectAfter, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mDevice == device) {
+                                device.closeInternal();
+                                callback.onDisconnected(device);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void checkAccess() throws HalException {
+        if (mAccessError) {
+            throw new HalException(HalException.CAMERA_DISCONNECTED,
+                    "Camera " + mInfo.getId() + " is in use by another client");
+        }
+    }
+
+    private final class Device implements HalDevice {
+
+        final CameraHal.DeviceCallback mCallback;
+        Session mSession;
+        boolean mClosed;
+
+        Device(CameraHal.DeviceCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public String getId() {
+            return mInfo.getId();
+        }
+
+        @Override
+        public void createCaptureSession(final SessionCallback callback) throws HalException {
+            checkAccess();
+            if (mClosed) {
+                throw new HalException(HalException.CAMERA_ERROR, "Device is closed");
+            }
+            if (mSession != null) {
+                mSession.close();
+            }
+            final Session session = new Session(this);
+            mSession = session;
+            final boolean fail = mFailNextConfigure;
+            mFailNextConfigure = false;
+            mHal.post(mConfigureLatencyNanos, new Runnable() {
+                @Override
+                public void run() {
+                    if (session.mClosed) {
+                        return;
+                    }
+                    if (fail) {
+                        session.mClosed = true;
+                        callback.onConfigureFailed();
+                    } else {
+                        callback.onConfigured(session);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            closeInternal();
+        }
+
+        void closeInternal() {
+            mClosed = true;
+            if (mSession != null) {
+                mSession.close();
+                mSession = null;
+            }
+            if (mDevice == this) {
+                mDevice = null;
+            }
+        }
+
+    }
+
+    private final class Session implements HalSession {
+
+        private final Device mOwner;
+
+        private final ArrayDeque<HalRequest> mRequests = new ArrayDeque<>();
+        private final ArrayDeque<CaptureCallback> mCallbacks = new ArrayDeque<>();
+        private HalRequest mRepeating;
+        private CaptureCallback mRepeatingCallback;
+
+        private FrameListener mFrameListener;
+        private JpegListener mJpegListener;
+
+        private boolean mTicking;
+        private long mLastTick = Long.MIN_VALUE / 2;
+        private long mFrameNumber;
+
+        /**
+         * Frames since the AF and precapture triggers, or -1 when idle.
+         */
+        private int mAfFrames = -1;
+        private int mAeFrames = -1;
+
+        boolean mClosed;
+
+        private final Runnable mTick = new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        };
+
+        Session(Device owner) {
+            mOwner = owner;
+        }
+
+        @Override
+        public HalDevice getDevice() {
+            return mOwner;
+        }
+
+        @Override
+        public void setFrameListener(FrameListener listener) {
+            mFrameListener = listener;
+        }
+
+        @Override
+        public void setJpegListener(JpegListener listener) {
+            mJpegListener = listener;
+        }
+
+        @Override
+        public void setRepeatingRequest(HalRequest request, CaptureCallback callback)
+                throws HalException {
+            checkOpen();
+            mRepeating = request;
+            mRepeatingCallback = callback;
+            schedule();
+        }
+
+        @Override
+        public void capture(HalRequest request, CaptureCallback callback) throws HalException {
+            checkOpen();
+            mRequests.add(request);
+            mCallbacks.add(callback);
+            schedule();
+        }
+
+        @Override
+        public void stopRepeating() throws HalException {
+            checkOpen();
+            mRepeating = null;
+            mRepeatingCallback = null;
+        }
+
+        @Override
+        public void abortCaptures() throws HalException {
+            checkOpen();
+            mRequests.clear();
+            mCallbacks.clear();
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+            mRequests.clear();
+            mCallbacks.clear();
+            mRepeating = null;
+        }
+
+        private void checkOpen() throws HalException {
+            checkAccess();
+            if (mClosed) {
+                throw new HalException(HalException.CAMERA_ERROR, "Session is closed");
+            }
+        }
+
+        /**
+         * Starts the frame loop if it is idle, keeping the cadence of the previous frames.
+         */
+        private void schedule() {
+            if (!mTicking) {
+                mTicking = true;
+                long next = Math.max(mHal.now(), mLastTick + mFrameIntervalNanos);
+                mHal.post(next - mHal.now(), mTick);
+            }
+        }
+
+        private void tick() {
+            mTicking = false;
+            if (mClosed) {
+                return;
+            }
+            final HalRequest request;
+            final CaptureCallback callback;
+            if (!mRequests.isEmpty()) {
+                request = mRequests.poll();
+                callback = mCallbacks.poll();
+            } else if (mRepeating != null) {
+                request = mRepeating;
+                callback = mRepeatingCallback;
+            } else {
+                return;
+            }
+            mLastTick = mHal.now();
+            final long frameNumber = mFrameNumber++;
+            final long timestamp = mHal.now();
+            mFramesStarted++;
+            mTargetsStarted |= request.getTargets();
+
+            if (request.getAfTrigger() == HalRequest.AF_TRIGGER_START) {
+                mAfFrames = 0;
+            } else if (request.getAfTrigger() == HalRequest.AF_TRIGGER_CANCEL) {
+                mAfFrames = -1;
+                mAeFrames = -1;
+            }
+            if (request.getAePrecaptureTrigger() == HalRequest.AE_PRECAPTURE_TRIGGER_START) {
+                mAeFrames = 0;
+            }
+            final HalResult result = new HalResult(frameNumber, timestamp,
+                    mScript.getAfState(mAfFrames), mScript.getAeState(mAeFrames),
+                    mScript.getAwbState(), mExposureTime, mSensitivity);
+            if (mAfFrames >= 0) {
+                mAfFrames++;
+            }
+            if (mAeFrames >= 0) {
+                mAeFrames++;
+            }
+            boolean fail = mFailCaptures > 0;
+            if (fail) {
+                mFailCaptures--;
+            }
+            if (request.hasTarget(HalRequest.TARGET_JPEG) && mStillsBeforeFailure >= 0) {
+                fail |= mStillsBeforeFailure == 0;
+                mStillsBeforeFailure--;
+            }
+            final boolean failed = fail;
+
+            if (callback != null) {
+                callback.onCaptureStarted(request, timestamp, frameNumber);
+            }
+            mHal.post(mResultLatencyNanos, new Runnable() {
+                @Override
+                public void run() {
+                    if (mClosed) {
+                        return;
+                    }
+                    if (!failed && request.hasTarget(HalRequest.TARGET_YUV)
+                            && mFrameListener != null) {
+                        mFrameListener.onFrame(SyntheticImages.createYuv(mYuvWidth, mYuvHeight,
+                                frameNumber, timestamp));
+                    }
+                    if (callback == null) {
+                        return;
+                    }
+                    if (failed) {
+                        callback.onCaptureFailed(request, frameNumber, REASON_ERROR);
+                    } else {
+                        callback.onCaptureCompleted(request, result);
+                    }
+                }
+            });
+            if (!failed && request.hasTarget(HalRequest.TARGET_JPEG)) {
+                mHal.post(mJpegLatencyNanos, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mClosed || mJpegListener == null) {
+                            return;
+                        }
+                        byte[] jpeg = SyntheticImages.createJpeg(mJpegWidth, mJpegHeight,
+                                "frame " + frameNumber, mJpegPadding);
+                        mJpegListener.onJpeg(ByteBuffer.wrap(jpeg), timestamp, frameNumber);
+                    }
+                });
+            }
+            schedule();
+        }
+
+    }
+
+}
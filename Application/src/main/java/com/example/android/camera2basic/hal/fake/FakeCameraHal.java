@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal.fake;
+
+import com.example.android.camera2basic.hal.CameraHal;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A {@link CameraHal} on a virtual clock, for tests and benchmarks on a desktop JVM.
+ *
+ * <p>Nothing happens on its own: every latency, frame and callback is an event in a queue ordered
+ * by virtual time, and {@link #runFor} or {@link #runUntil} executes the due events on the calling
+ * thread. A run is therefore deterministic and as fast as the code under test, unless
+ * {@link #setRealtime} paces it to the wall clock. Not thread-safe; call it, and the sessions it
+ * creates, from one thread only.</p>
+ */
+// 运行在虚拟时钟上的假相机：所有延迟、帧和回调都是按虚拟时间排序的事件，调用线程逐个执行
+public final class FakeCameraHal implements CameraHal {
+
+    /**
+     * A condition for {@link #runUntil}, checked after every event. It may be checked more than
+     * once per event, so it must not have side effects.
+     */
+    public interface Condition {
+
+        boolean isMet();
+
+    }
+
+    private final Map<String, FakeCamera> mCameras = new LinkedHashMap<>();
+
+    private final PriorityQueue<Event> mEvents = new PriorityQueue<>();
+
+    private long mNow;
+    private long mNextSequence;
+    private boolean mRealtime;
+
+    /**
+     * Adds a camera. Its id is the one in {@code info}.
+     */
+    public FakeCamera addCamera(CameraInfo info) {
+        FakeCamera camera = new FakeCamera(this, info);
+        mCameras.put(info.getId(), camera);
+        return camera;
+    }
+
+    public FakeCamera getCamera(String cameraId) {
+        return mCameras.get(cameraId);
+    }
+
+    /**
+     * @return The virtual time in nanoseconds; sensor timestamps use the same clock.
+     */
+    public long now() {
+        return mNow;
+    }
+
+    /**
+     * Makes {@link #runFor} and {@link #runUntil} sleep so that virtual time advances no faster
+     * than the wall clock, to watch the fake at its real frame rate.
+     */
+    public void setRealtime(boolean realtime) {
+        mRealtime = realtime;
+    }
+
+    /**
+     * Executes the events due within the next {@code nanos} of virtual time, then advances the
+     * clock to the end of that span.
+     *
+     * @return The number of events executed
+     */
+    public int runFor(long nanos) {
+        long end = mNow + nanos;
+        int count = run(end, null);
+        mNow = end;
+        return count;
+    }
+
+    /**
+     * Executes events until {@code condition} holds or {@code maxNanos} of virtual time passed.
+     *
+     * @return Whether the condition holds
+     */
+    public boolean runUntil(Condition condition, long maxNanos) {
+        if (condition.isMet()) {
+            return true;
+        }
+        long end = mNow + maxNanos;
+        run(end, condition);
+        if (condition.isMet()) {
+            return true;
+        }
+        mNow = end;
+        return false;
+    }
+
+    private int run(long end, Condition condition) {
+        long wallStart = System.nanoTime();
+        long virtualStart = mNow;
+        int count = 0;
+        while (!mEvents.isEmpty() && mEvents.peek().mTime <= end) {
+            Event event = mEvents.poll();
+            if (mRealtime) {
+                sleepUntil(wallStart + (event.mTime - virtualStart));
+            }
+            mNow = event.mTime;
+            event.mTask.run();
+            count++;
+            if (condition != null && condition.isMet()) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static void sleepUntil(long wallTime) {
+        long remaining = wallTime - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Schedules {@code task} to run {@code delayNanos} from now. Tasks due at the same time run
+     * in the order they were posted.
+     */
+    void post(long delayNanos, Runnable task) {
+        mEvents.add(new Event(mNow + Math.max(0, delayNanos), mNextSequence++, task));
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayNanos) {
+        post(delayNanos, task);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        Iterator<Event> events = mEvents.iterator();
+        while (events.hasNext()) {
+            if (events.next().mTask == task) {
+                events.remove();
+            }
+        }
+    }
+
+    @Override
+    public List<String> getCameraIds() {
+        return new ArrayList<>(mCameras.keySet());
+    }
+
+    @Override
+    public CameraInfo getCameraInfo(String cameraId) throws HalException {
+        return find(cameraId).getInfo();
+    }
+
+    @Override
+    public void openCamera(String cameraId, DeviceCallback callback) throws HalException {
+        find(cameraId).open(callback);
+    }
+
+    private FakeCamera find(String cameraId) throws HalException {
+        FakeCamera camera = mCameras.get(cameraId);
+        if (camera == null) {
+            throw new HalException(HalException.CAMERA_ERROR, "No camera " + cameraId);
+        }
+        return camera;
+    }
+
+    private static final class Event implements Comparable<Event> {
+
+        final long mTime;
+        final long mSequence;
+        final Runnable mTask;
+
+        Event(long time, long sequence, Runnable task) {
+            mTime = time;
+            mSequence = sequence;
+            mTask = task;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (mTime != other.mTime) {
+                return mTime < other.mTime ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal.fake;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+/**
+ * The 3A states a {@link FakeCamera} reports, as scripted sequences.
+ *
+ * <p>Without a trigger, every result reports the idle AF and AE states. From the frame that
+ * carries the AF trigger, results walk through the AF sequence, one entry per frame, and then
+ * repeat its last entry; the AE sequence starts the same way at the precapture trigger. An AF
+ * cancel returns both to idle. Any entry may be {@link HalResult#STATE_UNAVAILABLE} to model
+ * devices that report null.</p>
+ */
+// 假相机的3A状态脚本：触发后逐帧给出脚本中的状态，最后一个状态保持不变
+public final class ResultScript {
+
+    private final int mAfIdle;
+    private final int[] mAfAfterTrigger;
+    private final int mAeIdle;
+    private final int[] mAeAfterPrecapture;
+    private final int mAwb;
+
+    private ResultScript(Builder builder) {
+        mAfIdle = builder.mAfIdle;
+        mAfAfterTrigger = builder.mAfAfterTrigger;
+        mAeIdle = builder.mAeIdle;
+        mAeAfterPrecapture = builder.mAeAfterPrecapture;
+        mAwb = builder.mAwb;
+    }
+
+    /**
+     * A device whose focus locks {@code frames} frames after the trigger and whose exposure is
+     * already converged, so no precapture sequence runs.
+     */
+    public static ResultScript focusLocksAfter(int frames) {
+        int[] af = new int[frames + 1];
+        for (int i = 0; i < frames; i++) {
+            af[i] = HalResult.AF_STATE_ACTIVE_SCAN;
+        }
+        af[frames] = HalResult.AF_STATE_FOCUSED_LOCKED;
+        return new Builder().setAfAfterTrigger(af).build();
+    }
+
+    /**
+     * @param framesSinceTrigger Frames since the AF trigger, counting its own frame as 0, or
+     *                           -1 when no trigger is active
+     */
+    public int getAfState(int framesSinceTrigger) {
+        return pick(mAfIdle, mAfAfterTrigger, framesSinceTrigger);
+    }
+
+    /**
+     * @param framesSinceTrigger Frames since the precapture trigger, counting its own frame as
+     *                           0, or -1 when no trigger is active
+     */
+    public int getAeState(int framesSinceTrigger) {
+        return pick(mAeIdle, mAeAfterPrecapture, framesSinceTrigger);
+    }
+
+    public int getAwbState() {
+        return mAwb;
+    }
+
+    private static int pick(int idle, int[] sequence, int index) {
+        if (index < 0 || sequence.length == 0) {
+            return idle;
+        }
+        return sequence[Math.min(index, sequence.length - 1)];
+    }
+
+    public static final class Builder {
+
+        private int mAfIdle = HalResult.AF_STATE_PASSIVE_FOCUSED;
+        private int[] mAfAfterTrigger = {
+                HalResult.AF_STATE_ACTIVE_SCAN,
+                HalResult.AF_STATE_ACTIVE_SCAN,
+                HalResult.AF_STATE_ACTIVE_SCAN,
+                HalResult.AF_STATE_FOCUSED_LOCKED,
+        };
+        private int mAeIdle = HalResult.AE_STATE_CONVERGED;
+        private int[] mAeAfterPrecapture = {
+                HalResult.AE_STATE_PRECAPTURE,
+                HalResult.AE_STATE_PRECAPTURE,
+                HalResult.AE_STATE_PRECAPTURE,
+                HalResult.AE_STATE_CONVERGED,
+        };
+        private int mAwb = HalResult.AWB_STATE_CONVERGED;
+
+        public Builder setAfIdle(int state) {
+            mAfIdle = state;
+            return this;
+        }
+
+        public Builder setAfAfterTrigger(int... states) {
+            mAfAfterTrigger = states.clone();
+            return this;
+        }
+
+        public Builder setAeIdle(int state) {
+            mAeIdle = state;
+            return this;
+        }
+
+        public Builder setAeAfterPrecapture(int... states) {
+            mAeAfterPrecapture = states.clone();
+            return this;
+        }
+
+        public Builder setAwb(int state) {
+            mAwb = state;
+            return this;
+        }
+
+        public ResultScript build() {
+            return new ResultScript(this);
+        }
+
+    }
+
+}
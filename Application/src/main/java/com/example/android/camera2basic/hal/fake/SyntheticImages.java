@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.hal.fake;
+
+import com.example.android.camera2basic.analysis.Frame;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Generates the images a {@link FakeCamera} delivers.
+ */
+// 生成假相机输出的YUV帧和JPEG图片
+public final class SyntheticImages {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Width of the bright bar that moves across the YUV frames.
+     */
+    private static final int BAR_WIDTH = 16;
+
+    /**
+     * Horizontal distance the bar moves per frame.
+     */
+    private static final int BAR_STEP = 8;
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Creates an I420 frame with a diagonal luma gradient and a bright vertical bar whose position
+     * depends on {@code sequence}, so consecutive frames differ like a slowly panning scene.
+     */
+    public static Frame createYuv(int width, int height, long sequence, long timestamp) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        byte[] luma = new byte[width * height];
+        int bar = (int) ((sequence * BAR_STEP) % width);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int value = (x + y) * 255 / (width + height);
+                if (x >= bar && x < bar + BAR_WIDTH) {
+                    value = 235;
+                }
+                luma[row + x] = (byte) value;
+            }
+        }
+        byte[] chroma = new byte[chromaWidth * chromaHeight];
+        Arrays.fill(chroma, (byte) 128);
+        Frame frame = new Frame(width, height);
+        frame.setPlane(Frame.PLANE_Y, ByteBuffer.wrap(luma), width, 1);
+        frame.setPlane(Frame.PLANE_U, ByteBuffer.wrap(chroma), chromaWidth, 1);
+        frame.setPlane(Frame.PLANE_V, ByteBuffer.wrap(chroma.clone()), chromaWidth, 1);
+        frame.setSequence(sequence);
+        frame.setTimestamp(timestamp);
+        return frame;
+    }
+
+    /**
+     * Encodes a valid baseline JPEG of a uniform gray image.
+     *
+     * <p>Every 8x8 block has a zero DC difference and no AC coefficient, and the Huffman tables
+     * hold just those two symbols, so the entropy-coded data is two bits per block. Any decoder
+     * accepts the result, and the marker layout is the one a camera writes.</p>
+     *
+     * @param comment Stored in a COM segment, for example the frame number
+     * @param padding Extra bytes in additional COM segments, to reach a realistic file size
+     */
+    public static byte[] createJpeg(int width, int height, String comment, int padding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512 + padding);
+        out.write(0xFF);
+        out.write(0xD8);    // SOI
+
+        // APP0 JFIF 1.1, no density, no thumbnail.
+        writeSegment(out, 0xE0, new byte[]{
+                'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0});
+
+        writeSegment(out, 0xFE, comment.getBytes(US_ASCII));
+        byte[] filler = new byte[Math.min(padding, 0xFFFF - 2)];
+        int remaining = padding;
+        while (remaining > 0) {
+            int length = Math.min(remaining, filler.length);
+            writeSegment(out, 0xFE, filler, length);
+            remaining -= length;
+        }
+
+        // DQT: table 0, all ones.
+        byte[] dqt = new byte[65];
+        for (int i = 1; i < dqt.length; i++) {
+            dqt[i] = 1;
+        }
+        writeSegment(out, 0xDB, dqt);
+
+        // SOF0: 8 bit, one component with id 1, no subsampling, table 0.
+        writeSegment(out, 0xC0, new byte[]{
+                8, (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width,
+                1, 1, 0x11, 0});
+
+        // DHT: DC table 0 and AC table 0, each with the single symbol 0 coded as '0'.
+        writeSegment(out, 0xC4, huffmanTable(0x00));
+        writeSegment(out, 0xC4, huffmanTable(0x10));
+
+        // SOS: component 1 with tables 0/0, full spectral range.
+        writeSegment(out, 0xDA, new byte[]{1, 1, 0, 0, 63, 0});
+
+        // Two zero bits per block, padded with ones to a whole byte.
+        long blocks = (long) ((width + 7) / 8) * ((height + 7) / 8);
+        long bits = blocks * 2;
+        int bytes = (int) ((bits + 7) / 8);
+        for (int i = 0; i < bytes - 1; i++) {
+            out.write(0);
+        }
+        int used = (int) (bits - (long) (bytes - 1) * 8);
+        out.write(0xFF >> used);
+
+        out.write(0xFF);
+        out.write(0xD9);    // EOI
+        return out.toByteArray();
+    }
+
+    private static byte[] huffmanTable(int classAndId) {
+        byte[] table = new byte[1 + 16 + 1];
+        table[0] = (byte) classAndId;
+        table[1] = 1;   // One code of length 1.
+        table[17] = 0;  // The symbol.
+        return table;
+    }
+
+    private static void writeSegment(ByteArrayOutputStream out, int marker, byte[] payload) {
+        writeSegment(out, marker, payload, payload.length);
+    }
+
+    private static void writeSegment(ByteArrayOutputStream out, int marker, byte[] payload,
+                                     int length) {
+        out.write(0xFF);
+        out.write(marker);
+        out.write((length + 2) >> 8);
+        out.write(length + 2);
+        out.write(payload, 0, length);
+    }
+
+}
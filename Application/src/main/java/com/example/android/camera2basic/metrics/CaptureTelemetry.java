@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.metrics;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Tracks the timing of capture results to detect preview stutter and skipped frames.
+ *
+ * <p>Sensor timestamps of the last {@code capacity} completed frames are kept in a primitive
+ * ring. From it, {@link #snapshot(Snapshot)} derives the rolling frame rate and percentiles of the
+ * frame interval and of its jitter (deviation from the median interval). Frame numbers that never
+ * produced a result count as dropped, intervals longer than 1.5 median intervals count as late.
+ * Failures and lost buffers reported by the session are counted as well.</p>
+ *
+ * <p>Results arrive on a single callback thread, and dumps are rare, so one uncontended lock
+ * guards all state. Neither recording nor taking a snapshot allocates.</p>
+ */
+// 拍摄遥测：用定长的原始类型环形缓冲区记录帧时间戳，计算帧率、抖动和丢帧
+public final class CaptureTelemetry {
+
+    /**
+     * Derived statistics over the current ring window.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Frames per second over the window.
+         */
+        public double fps;
+
+        public long intervalP50Nanos;
+        public long intervalP99Nanos;
+
+        /**
+         * Percentiles of the absolute deviation of each interval from the median interval.
+         */
+        public long jitterP50Nanos;
+        public long jitterP99Nanos;
+
+        /**
+         * Completed frames since creation.
+         */
+        public long frames;
+
+        /**
+         * Frame numbers that produced neither a result nor a failure.
+         */
+        public long droppedFrames;
+
+        /**
+         * Intervals longer than 1.5 times the median, i.e. frames the HAL skipped silently.
+         */
+        public long lateFrames;
+
+        public long failures;
+        public long bufferLosses;
+
+        @Override
+        public String toString() {
+            return String.format("fps=%.2f interval p50=%.2fms p99=%.2fms jitter p50=%.2fms"
+                            + " p99=%.2fms frames=%d dropped=%d late=%d failed=%d lost=%d",
+                    fps, intervalP50Nanos / 1e6, intervalP99Nanos / 1e6,
+                    jitterP50Nanos / 1e6, jitterP99Nanos / 1e6, frames, droppedFrames,
+                    lateFrames, failures, bufferLosses);
+        }
+
+    }
+
+    private final int mCapacity;
+
+    /**
+     * Sensor timestamps of the last frames, oldest at {@code mHead - mSize}.
+     */
+    private final long[] mTimestamps;
+    private int mHead;
+    private int mSize;
+
+    /**
+     * Scratch space for percentiles, so snapshots do not allocate.
+     */
+    private final long[] mScratch;
+
+    private long mLastFrameNumber = -1;
+    private long mMedianInterval;
+
+    private long mFrames;
+    private long mDroppedFrames;
+    private long mLateFrames;
+    private long mFailures;
+    private long mBufferLosses;
+
+    /**
+     * @param capacity Number of recent frames the rolling statistics are computed over
+     */
+    public CaptureTelemetry(int capacity) {
+        if (capacity < 3) {
+            throw new IllegalArgumentException("Capacity must be at least 3.");
+        }
+        mCapacity = capacity;
+        mTimestamps = new long[capacity];
+        mScratch = new long[capacity];
+    }
+
+    /**
+     * Starts a new window, e.g. when a new session starts and frame numbers restart. Counters
+     * are kept.
+     */
+    public synchronized void onSessionStarted() {
+        mHead = 0;
+        mSize = 0;
+        mLastFrameNumber = -1;
+        mMedianInterval = 0;
+    }
+
+    /**
+     * Records a completed capture.
+     *
+     * @param frameNumber     {@code CaptureResult#getFrameNumber()}
+     * @param sensorTimestamp {@code CaptureResult#SENSOR_TIMESTAMP} in nanoseconds
+     */
+    public synchronized void onCaptureCompleted(long frameNumber, long sensorTimestamp) {
+        mFrames++;
+        onFrameNumber(frameNumber);
+        if (mSize > 0) {
+            long previous = mTimestamps[(mHead - 1 + mCapacity) % mCapacity];
+            if (sensorTimestamp <= previous) {
+                // Results of different requests may complete slightly out of sensor order.
+                return;
+            }
+            long interval = sensorTimestamp - previous;
+            if (mMedianInterval > 0 && interval * 2 > mMedianInterval * 3) {
+                mLateFrames++;
+            }
+        }
+        mTimestamps[mHead] = sensorTimestamp;
+        mHead = (mHead + 1) % mCapacity;
+        if (mSize < mCapacity) {
+            mSize++;
+        }
+        // Refresh the reference interval once per window instead of on every frame.
+        if (mHead == 0 || (mMedianInterval == 0 && mSize >= 3)) {
+            mMedianInterval = intervalPercentile(50);
+        }
+    }
+
+    /**
+     * Records a failed capture.
+     */
+    public synchronized void onCaptureFailed(long frameNumber) {
+        mFailures++;
+        onFrameNumber(frameNumber);
+    }
+
+    /**
+     * Records an output buffer the camera could not fill.
+     */
+    public synchronized void onCaptureBufferLost() {
+        mBufferLosses++;
+    }
+
+    /**
+     * Computes the statistics of the current window into {@code out}.
+     *
+     * @return {@code out}
+     */
+    public synchronized Snapshot snapshot(Snapshot out) {
+        out.frames = mFrames;
+        out.droppedFrames = mDroppedFrames;
+        out.lateFrames = mLateFrames;
+        out.failures = mFailures;
+        out.bufferLosses = mBufferLosses;
+        if (mSize < 2) {
+            out.fps = 0;
+            out.intervalP50Nanos = out.intervalP99Nanos = 0;
+            out.jitterP50Nanos = out.jitterP99Nanos = 0;
+            return out;
+        }
+        long oldest = mTimestamps[(mHead - mSize + mCapacity) % mCapacity];
+        long newest = mTimestamps[(mHead - 1 + mCapacity) % mCapacity];
+        out.fps = (mSize - 1) * 1e9 / (newest - oldest);
+        int count = fillIntervals();
+        Arrays.sort(mScratch, 0, count);
+        long median = mScratch[percentileIndex(count, 50)];
+        out.intervalP50Nanos = median;
+        out.intervalP99Nanos = mScratch[percentileIndex(count, 99)];
+        for (int i = 0; i < count; i++) {
+            mScratch[i] = Math.abs(mScratch[i] - median);
+        }
+        Arrays.sort(mScratch, 0, count);
+        out.jitterP50Nanos = mScratch[percentileIndex(count, 50)];
+        out.jitterP99Nanos = mScratch[percentileIndex(count, 99)];
+        return out;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print("CaptureTelemetry: ");
+        writer.println(snapshot(new Snapshot()));
+    }
+
+    private void onFrameNumber(long frameNumber) {
+        if (mLastFrameNumber >= 0 && frameNumber > mLastFrameNumber + 1) {
+            mDroppedFrames += frameNumber - mLastFrameNumber - 1;
+        }
+        if (frameNumber > mLastFrameNumber) {
+            mLastFrameNumber = frameNumber;
+        }
+    }
+
+    /**
+     * Writes the intervals of the window into {@link #mScratch}.
+     *
+     * @return The number of intervals
+     */
+    private int fillIntervals() {
+        int start = (mHead - mSize + mCapacity) % mCapacity;
+        long previous = mTimestamps[start];
+        for (int i = 1; i < mSize; i++) {
+            long timestamp = mTimestamps[(start + i) % mCapacity];
+            mScratch[i - 1] = timestamp - previous;
+            previous = timestamp;
+        }
+        return mSize - 1;
+    }
+
+    private long intervalPercentile(int percentile) {
+        int count = fillIntervals();
+        Arrays.sort(mScratch, 0, count);
+        return mScratch[percentileIndex(count, percentile)];
+    }
+
+    private static int percentileIndex(int count, int percentile) {
+        return Math.min(count - 1, (int) ((long) count * percentile / 100));
+    }
+
+}
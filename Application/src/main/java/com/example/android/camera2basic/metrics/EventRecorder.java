@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.metrics;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-capacity flight recorder of recent events, for post-mortem diagnosis.
+ *
+ * <p>Every event is four longs in a preallocated ring: a {@link System#nanoTime()} timestamp,
+ * the event type packed with the recording thread's id, and two arguments. Any thread can record
+ * without locks or allocation: a sequence number is claimed with one atomic increment, its slot
+ * is marked as being written with a compare-and-set, filled, and published with the sequence
+ * number. All of these are volatile stores, so no reader sees the new data before the mark. Only
+ * one writer owns a slot at a time: if the ring wraps around onto a slot that a stalled writer
+ * still owns, or that already holds a newer event, the event is dropped. {@link #dump} reads a slot's sequence number
+ * before and after its data, with volatile loads that keep that order, and skips slots that
+ * were being written or overwritten meanwhile.</p>
+ */
+// 无锁的事件环形缓冲区，用于崩溃或出错后的事后分析
+public final class EventRecorder {
+
+    private static final int FIELDS = 4;
+    private static final int TIMESTAMP = 0;
+    private static final int TYPE_AND_THREAD = 1;
+    private static final int ARG0 = 2;
+    private static final int ARG1 = 3;
+
+    private final int mMask;
+    private final String[] mTypeNames;
+
+    private final AtomicLongArray mSlots;
+
+    /**
+     * Sequence number plus one of the event in each slot; its negation while it is being written.
+     */
+    private final AtomicLongArray mPublished;
+
+    private final AtomicLong mNext = new AtomicLong();
+
+    /**
+     * @param capacity  Number of events kept, rounded up to a power of two
+     * @param typeNames Names of the event types, indexed by type, used when dumping
+     */
+    public EventRecorder(int capacity, String[] typeNames) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mTypeNames = typeNames.clone();
+        mSlots = new AtomicLongArray(size * FIELDS);
+        mPublished = new AtomicLongArray(size);
+    }
+
+    public void record(int type) {
+        record(type, 0, 0);
+    }
+
+    public void record(int type, long arg0) {
+        record(type, arg0, 0);
+    }
+
+    /**
+     * Records an event. Safe to call from any thread.
+     */
+    public void record(int type, long arg0, long arg1) {
+        long timestamp = System.nanoTime();
+        long sequence = mNext.getAndIncrement();
+        int slot = (int) sequence & mMask;
+        int base = slot * FIELDS;
+        if (!claim(slot, sequence)) {
+            return;
+        }
+        // Volatile stores throughout: a lazySet of the data could become visible before the mark.
+        mSlots.set(base + TIMESTAMP, timestamp);
+        mSlots.set(base + TYPE_AND_THREAD,
+                (Thread.currentThread().getId() << 16) | (type & 0xFFFF));
+        mSlots.set(base + ARG0, arg0);
+        mSlots.set(base + ARG1, arg1);
+        mPublished.set(slot, sequence + 1);
+    }
+
+    /**
+     * Marks {@code slot} as being written with {@code sequence}.
+     *
+     * @return False if another writer owns the slot, or it holds a newer event
+     */
+    private boolean claim(int slot, long sequence) {
+        while (true) {
+            long published = mPublished.get(slot);
+            if (published < 0 || published > sequence) {
+                return false;
+            }
+            if (mPublished.compareAndSet(slot, published, -(sequence + 1))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return Number of events recorded since creation, including overwritten ones.
+     */
+    public long getRecorded() {
+        return mNext.get();
+    }
+
+    /**
+     * Writes the retained events, oldest first, one per line. Times are relative to the newest
+     * event, so the newest event reads as {@code +0.000ms}.
+     */
+    public void dump(PrintWriter writer) {
+        long end = mNext.get();
+        long start = Math.max(0, end - (mMask + 1));
+        long newest = 0;
+        if (end > 0) {
+            newest = mSlots.get((int) ((end - 1) & mMask) * FIELDS + TIMESTAMP);
+        }
+        writer.println("events " + start + ".." + end + " wallClock=" + System.currentTimeMillis()
+                + " nanoTime=" + System.nanoTime());
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mMask;
+            int base = slot * FIELDS;
+            if (mPublished.get(slot) != sequence + 1) {
+                continue;
+            }
+            long timestamp = mSlots.get(base + TIMESTAMP);
+            long typeAndThread = mSlots.get(base + TYPE_AND_THREAD);
+            long arg0 = mSlots.get(base + ARG0);
+            long arg1 = mSlots.get(base + ARG1);
+            // Volatile loads are not reordered, so this check follows the data loads.
+            if (mPublished.get(slot) != sequence + 1) {
+                // Overwritten by a newer event while we were reading it.
+                continue;
+            }
+            int type = (int) (typeAndThread & 0xFFFF);
+            String name = type < mTypeNames.length ? mTypeNames[type] : "type" + type;
+            writer.println(String.format("%d %+.3fms tid=%d %s %d %d", sequence,
+                    (timestamp - newest) / 1e6, typeAndThread >>> 16, name, arg0, arg1));
+        }
+        writer.flush();
+    }
+
+}
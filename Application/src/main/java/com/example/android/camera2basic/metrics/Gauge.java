@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.metrics;
+
+/**
+ * A value that is set rather than accumulated, such as a queue depth or a pool size.
+ */
+// 仪表：记录当前值，例如队列深度
+public final class Gauge {
+
+    private volatile long mValue;
+
+    public void set(long value) {
+        mValue = value;
+    }
+
+    public long get() {
+        return mValue;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.metrics;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named counters, gauges and latency histograms of the camera pipeline.
+ *
+ * <p>Metrics are looked up once, typically into fields, and then updated without locks from any
+ * thread. Only registering a new name touches the underlying map.</p>
+ */
+// 指标注册表：按名字管理计数器、仪表和延迟直方图
+public final class MetricsRegistry {
+
+    private final ConcurrentMap<String, StripedCounter> mCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> mGauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+
+    public StripedCounter counter(String name) {
+        StripedCounter counter = mCounters.get(name);
+        if (counter == null) {
+            StripedCounter created = new StripedCounter();
+            counter = mCounters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public Gauge gauge(String name) {
+        Gauge gauge = mGauges.get(name);
+        if (gauge == null) {
+            Gauge created = new Gauge();
+            gauge = mGauges.putIfAbsent(name, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = mHistograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Prints every metric, one per line, sorted by name.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        for (Map.Entry<String, StripedCounter> entry : new TreeMap<>(mCounters).entrySet()) {
+            writer.print(prefix);
+            writer.println(entry.getKey() + " = " + entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(mGauges).entrySet()) {
+            writer.print(prefix);
+            writer.println(entry.getKey() + " = " + entry.getValue().get());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(mHistograms).entrySet()) {
+            if (entry.getValue().getCount() == 0) {
+                continue;
+            }
+            writer.print(prefix);
+            writer.println(entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads updates from different threads over separate cache lines, so the
+ * camera, result and I/O threads can increment it without contending on a single word.
+ * Reads sum all stripes and are therefore slower than updates.
+ */
+// 分段计数器：不同线程更新不同的缓存行，避免多线程竞争
+public final class StripedCounter {
+
+    /**
+     * Longs per stripe, so that every stripe sits on its own 64-byte cache line.
+     */
+    private static final int PADDING = 8;
+
+    private static final int MAX_STRIPES = 16;
+
+    private final AtomicLongArray mCells;
+    private final int mMask;
+
+    public StripedCounter() {
+        int stripes = 1;
+        int wanted = Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors());
+        while (stripes < wanted) {
+            stripes <<= 1;
+        }
+        mMask = stripes - 1;
+        mCells = new AtomicLongArray(stripes * PADDING);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        mCells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    /**
+     * @return The sum of all stripes. Concurrent updates may or may not be included.
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i <= mMask; i++) {
+            sum += mCells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        // Thread ids are small and sequential; mix them so neighbours land on different stripes.
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 59) & mMask;
+    }
+
+}
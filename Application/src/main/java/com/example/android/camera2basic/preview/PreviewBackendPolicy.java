@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.preview;
+
+/**
+ * Decides whether the preview is shown through a {@code SurfaceView} or a {@code TextureView}.
+ *
+ * <p>A {@code SurfaceView} hands the camera buffers straight to the system compositor, usually as
+ * a hardware overlay, which saves the GPU composition pass on the app's UI thread and the frame
+ * of latency it adds. It cannot apply a transform, so a {@code TextureView} is kept whenever one
+ * is required, e.g. to crop the preview. Before API 24 a {@code SurfaceView} does not move and
+ * resize in sync with the rest of the window, so older devices keep the {@code TextureView}
+ * too.</p>
+ */
+// 预览后端选择策略：能用SurfaceView时优先使用，需要变换矩阵或系统版本过低时使用TextureView
+public final class PreviewBackendPolicy {
+
+    /**
+     * Let {@link #select} decide.
+     */
+    public static final int BACKEND_AUTO = 0;
+    public static final int BACKEND_TEXTURE_VIEW = 1;
+    public static final int BACKEND_SURFACE_VIEW = 2;
+
+    /**
+     * {@code Build.VERSION_CODES.N}, the first release whose {@code SurfaceView} position stays in
+     * sync with the view hierarchy.
+     */
+    public static final int MIN_SURFACE_VIEW_SDK = 24;
+
+    private PreviewBackendPolicy() {
+    }
+
+    /**
+     * @param sdkInt            {@code Build.VERSION.SDK_INT}
+     * @param transformRequired Whether the preview needs a transform beyond what the camera
+     *                          applies to a surface on its own
+     * @param preferred         {@link #BACKEND_AUTO}, or the backend the user asked for
+     * @return {@link #BACKEND_TEXTURE_VIEW} or {@link #BACKEND_SURFACE_VIEW}
+     */
+    public static int select(int sdkInt, boolean transformRequired, int preferred) {
+        if (transformRequired || preferred == BACKEND_TEXTURE_VIEW) {
+            return BACKEND_TEXTURE_VIEW;
+        }
+        if (preferred == BACKEND_SURFACE_VIEW) {
+            return BACKEND_SURFACE_VIEW;
+        }
+        if (preferred != BACKEND_AUTO) {
+            throw new IllegalArgumentException("Unknown backend " + preferred);
+        }
+        return sdkInt >= MIN_SURFACE_VIEW_SDK ? BACKEND_SURFACE_VIEW : BACKEND_TEXTURE_VIEW;
+    }
+
+    /**
+     * @return A short name for logs and metrics.
+     */
+    public static String nameOf(int backend) {
+        switch (backend) {
+            case BACKEND_TEXTURE_VIEW:
+                return "texture";
+            case BACKEND_SURFACE_VIEW:
+                return "surface";
+            default:
+                return "auto";
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+import com.example.android.camera2basic.metrics.Gauge;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Recycles direct {@link ByteBuffer}s for copies of camera images.
+ *
+ * <p>Capacities are rounded up to size classes: four classes per power of two above
+ * {@link #MIN_CAPACITY}, so a buffer wastes at most a fifth of its capacity and JPEGs of one
+ * camera, whose sizes vary with the scene, share a class or two. Idle buffers are kept up to a
+ * memory cap; buffers released beyond it are left to the garbage collector. {@link #trim} drops
+ * idle buffers when the system is low on memory.</p>
+ */
+// 直接内存缓冲池：按尺寸分级复用direct ByteBuffer，限制空闲内存上限，内存紧张时可以裁剪
+public final class BufferPool {
+
+    /**
+     * Smallest capacity handed out.
+     */
+    public static final int MIN_CAPACITY = 64 * 1024;
+
+    private final long mMaxIdleBytes;
+
+    /**
+     * Idle buffers by capacity, largest last. Guarded by this.
+     */
+    private final TreeMap<Integer, ArrayDeque<ByteBuffer>> mIdle = new TreeMap<>();
+    private long mIdleBytes;
+
+    private final StripedCounter mHits;
+    private final StripedCounter mMisses;
+    private final StripedCounter mDiscarded;
+    private final StripedCounter mTrimmed;
+    private final Gauge mIdleGauge;
+
+    /**
+     * @param maxIdleBytes Most memory kept in idle buffers
+     */
+    public BufferPool(long maxIdleBytes, MetricsRegistry metrics) {
+        if (maxIdleBytes < 0) {
+            throw new IllegalArgumentException("Negative cap: " + maxIdleBytes);
+        }
+        mMaxIdleBytes = maxIdleBytes;
+        mHits = metrics.counter("pool.hits");
+        mMisses = metrics.counter("pool.misses");
+        mDiscarded = metrics.counter("pool.discarded");
+        mTrimmed = metrics.counter("pool.trimmed_bytes");
+        mIdleGauge = metrics.gauge("pool.idle_bytes");
+    }
+
+    /**
+     * @return The capacity of the buffers that hold {@code size} bytes
+     */
+    public static int capacityFor(int size) {
+        if (size <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        int step = Integer.highestOneBit(size - 1) / 4;
+        return (int) Math.min(Integer.MAX_VALUE, ((long) size + step - 1) / step * step);
+    }
+
+    /**
+     * @return A direct buffer with position 0 and limit {@code size}, pooled or new
+     */
+    public ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        int capacity = capacityFor(size);
+        ByteBuffer buffer = null;
+        synchronized (this) {
+            ArrayDeque<ByteBuffer> idle = mIdle.get(capacity);
+            if (idle != null) {
+                buffer = idle.poll();
+                if (idle.isEmpty()) {
+                    mIdle.remove(capacity);
+                }
+                mIdleBytes -= capacity;
+                mIdleGauge.set(mIdleBytes);
+            }
+        }
+        if (buffer == null) {
+            mMisses.increment();
+            buffer = ByteBuffer.allocateDirect(capacity);
+        } else {
+            mHits.increment();
+            buffer.clear();
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer from {@link #acquire}. The caller must not touch it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity != capacityFor(capacity)) {
+            throw new IllegalArgumentException("Not a pooled buffer: " + buffer);
+        }
+        synchronized (this) {
+            if (mIdleBytes + capacity <= mMaxIdleBytes) {
+                ArrayDeque<ByteBuffer> idle = mIdle.get(capacity);
+                if (idle == null) {
+                    idle = new ArrayDeque<>();
+                    mIdle.put(capacity, idle);
+                }
+                idle.push(buffer);
+                mIdleBytes += capacity;
+                mIdleGauge.set(mIdleBytes);
+                return;
+            }
+        }
+        mDiscarded.increment();
+    }
+
+    /**
+     * Drops idle buffers, largest first, until at most {@code maxIdleBytes} remain idle.
+     *
+     * @return The number of bytes dropped
+     */
+    public synchronized long trim(long maxIdleBytes) {
+        long trimmed = 0;
+        Iterator<Map.Entry<Integer, ArrayDeque<ByteBuffer>>> classes
+                = mIdle.descendingMap().entrySet().iterator();
+        while (mIdleBytes > maxIdleBytes && classes.hasNext()) {
+            Map.Entry<Integer, ArrayDeque<ByteBuffer>> entry = classes.next();
+            ArrayDeque<ByteBuffer> idle = entry.getValue();
+            while (mIdleBytes > maxIdleBytes && !idle.isEmpty()) {
+                idle.poll();
+                mIdleBytes -= entry.getKey();
+                trimmed += entry.getKey();
+            }
+            if (idle.isEmpty()) {
+                classes.remove();
+            }
+        }
+        mTrimmed.add(trimmed);
+        mIdleGauge.set(mIdleBytes);
+        return trimmed;
+    }
+
+    /**
+     * @return Memory held by idle buffers
+     */
+    public synchronized long getIdleBytes() {
+        return mIdleBytes;
+    }
+
+}
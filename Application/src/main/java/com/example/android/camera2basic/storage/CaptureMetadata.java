@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+/**
+ * The capture settings and identity written into a saved JPEG by {@link JpegMetadataInjector}.
+ * Values that are not known are left out of the file.
+ */
+// 写入JPEG的拍摄元数据：曝光时间、ISO、帧号、设备编号和传感器时间戳，未知的项不写
+public final class CaptureMetadata {
+
+    /**
+     * Value of the numeric fields that are not known.
+     */
+    public static final long UNKNOWN = -1;
+
+    private final long mExposureTime;
+    private final int mSensitivity;
+    private final long mFrameNumber;
+    private final long mSensorTimestamp;
+    private final String mRigId;
+
+    private CaptureMetadata(Builder builder) {
+        mExposureTime = builder.mExposureTime;
+        mSensitivity = builder.mSensitivity;
+        mFrameNumber = builder.mFrameNumber;
+        mSensorTimestamp = builder.mSensorTimestamp;
+        mRigId = builder.mRigId;
+    }
+
+    /**
+     * @return The exposure time in nanoseconds, or {@link #UNKNOWN}
+     */
+    public long getExposureTime() {
+        return mExposureTime;
+    }
+
+    /**
+     * @return The ISO sensitivity, or {@link #UNKNOWN}
+     */
+    public int getSensitivity() {
+        return mSensitivity;
+    }
+
+    public long getFrameNumber() {
+        return mFrameNumber;
+    }
+
+    /**
+     * @return The sensor timestamp in nanoseconds, or {@link #UNKNOWN}
+     */
+    public long getSensorTimestamp() {
+        return mSensorTimestamp;
+    }
+
+    /**
+     * @return The name of the capture rig, or null
+     */
+    public String getRigId() {
+        return mRigId;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureMetadata{frame=" + mFrameNumber + " timestamp=" + mSensorTimestamp
+                + " exposure=" + mExposureTime + " iso=" + mSensitivity + " rig=" + mRigId + "}";
+    }
+
+    public static final class Builder {
+
+        private long mExposureTime = UNKNOWN;
+        private int mSensitivity = (int) UNKNOWN;
+        private long mFrameNumber = UNKNOWN;
+        private long mSensorTimestamp = UNKNOWN;
+        private String mRigId;
+
+        public Builder setExposureTime(long exposureTime) {
+            mExposureTime = exposureTime;
+            return this;
+        }
+
+        public Builder setSensitivity(int sensitivity) {
+            mSensitivity = sensitivity;
+            return this;
+        }
+
+        public Builder setFrameNumber(long frameNumber) {
+            mFrameNumber = frameNumber;
+            return this;
+        }
+
+        public Builder setSensorTimestamp(long sensorTimestamp) {
+            mSensorTimestamp = sensorTimestamp;
+            return this;
+        }
+
+        public Builder setRigId(String rigId) {
+            mRigId = rigId;
+            return this;
+        }
+
+        public CaptureMetadata build() {
+            return new CaptureMetadata(this);
+        }
+
+    }
+
+}
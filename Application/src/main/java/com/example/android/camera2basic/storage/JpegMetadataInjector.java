@@ -0,0 +1,355 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds {@link CaptureMetadata} to an encoded JPEG without decoding it or copying it.
+ *
+ * <p>{@link #inject} walks the marker segments in front of the image data and returns the
+ * JPEG as a list of buffers for a gathering write: slices of the original buffer, with new APP1
+ * segments in between. An XMP packet carrying every field replaces any XMP segment of the
+ * source. An EXIF segment with the exposure time, the sensitivity and an image id is added when
+ * the source has none; an EXIF segment written by the camera is kept, since it already holds
+ * the same exposure along with the orientation and thumbnail. New segments follow SOI, or the
+ * JFIF APP0 segment that must come first, except that the XMP packet follows the camera's EXIF
+ * segment: readers look for EXIF in the first APP1 segment.</p>
+ */
+// JPEG元数据注入：只解析图像数据之前的标记段，用原缓冲区的切片加上新的APP1段组成分散写入的缓冲区数组
+public final class JpegMetadataInjector {
+
+    /**
+     * Namespace of the XMP properties.
+     */
+    public static final String XMP_NAMESPACE = "http://ns.example.com/camera2basic/1.0/";
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP0 = 0xE0;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_APP15 = 0xEF;
+    private static final int MARKER_COM = 0xFE;
+
+    /**
+     * Largest payload of a segment, after its two length bytes.
+     */
+    private static final int MAX_PAYLOAD = 0xFFFF - 2;
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] EXIF_ID = "Exif\0\0".getBytes(US_ASCII);
+    private static final byte[] XMP_ID = "http://ns.adobe.com/xap/1.0/\0".getBytes(US_ASCII);
+    private static final byte[] XMP_EXTENSION_ID
+            = "http://ns.adobe.com/xmp/extension/\0".getBytes(US_ASCII);
+
+    private static final int TIFF_SHORT = 3;
+    private static final int TIFF_LONG = 4;
+    private static final int TIFF_ASCII = 2;
+    private static final int TIFF_RATIONAL = 5;
+    private static final int TIFF_UNDEFINED = 7;
+
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_EXPOSURE_TIME = 0x829A;
+    private static final int TAG_SENSITIVITY = 0x8827;
+    private static final int TAG_EXIF_VERSION = 0x9000;
+    private static final int TAG_IMAGE_UNIQUE_ID = 0xA420;
+
+    /**
+     * Length of ImageUniqueID: 32 hex digits and the terminator.
+     */
+    private static final int UNIQUE_ID_LENGTH = 33;
+
+    private JpegMetadataInjector() {
+    }
+
+    /**
+     * Splits the remaining bytes of {@code jpeg} around the new metadata segments. The returned
+     * buffers share the content of {@code jpeg}, whose position is left unchanged; they are
+     * valid as long as it is.
+     *
+     * @throws IOException If the header segments are malformed, or the metadata does not fit a
+     *                     segment
+     */
+    public static ByteBuffer[] inject(ByteBuffer jpeg, CaptureMetadata metadata)
+            throws IOException {
+        int start = jpeg.position();
+        int end = jpeg.limit();
+        if (end - start < 4 || u8(jpeg, start) != 0xFF || u8(jpeg, start + 1) != MARKER_SOI) {
+            throw new IOException("Not a JPEG");
+        }
+        int insert = start + 2;
+        if (markerAt(jpeg, insert, end) == MARKER_APP0) {
+            insert = segmentEnd(jpeg, insert, end);
+        }
+
+        // Ranges of the source to keep, from the insertion point up to the image data.
+        List<int[]> kept = new ArrayList<>();
+        int exifEnd = -1;
+        int runStart = insert;
+        int offset = insert;
+        while (true) {
+            int marker = markerAt(jpeg, offset, end);
+            if (marker < 0 || !(marker >= MARKER_APP0 && marker <= MARKER_APP15
+                    || marker == MARKER_COM)) {
+                break;
+            }
+            int segmentEnd = segmentEnd(jpeg, offset, end);
+            if (marker == MARKER_APP1) {
+                if (hasId(jpeg, offset, segmentEnd, EXIF_ID)) {
+                    if (exifEnd < 0) {
+                        exifEnd = segmentEnd;
+                    }
+                } else if (hasId(jpeg, offset, segmentEnd, XMP_ID)
+                        || hasId(jpeg, offset, segmentEnd, XMP_EXTENSION_ID)) {
+                    // Replaced by ours; an extension belongs to the packet it extends.
+                    if (offset > runStart) {
+                        kept.add(new int[]{runStart, offset});
+                    }
+                    runStart = segmentEnd;
+                }
+            }
+            offset = segmentEnd;
+        }
+        if (end > runStart) {
+            kept.add(new int[]{runStart, end});
+        }
+
+        ByteBuffer xmp = buildXmp(metadata);
+        List<ByteBuffer> parts = new ArrayList<>(kept.size() + 4);
+        parts.add(slice(jpeg, start, insert));
+        if (exifEnd < 0) {
+            parts.add(buildExif(metadata));
+            parts.add(xmp);
+        }
+        for (int[] range : kept) {
+            if (range[0] < exifEnd && exifEnd <= range[1]) {
+                // 相机的EXIF段保持为第一个APP1段，XMP紧随其后
+                parts.add(slice(jpeg, range[0], exifEnd));
+                parts.add(xmp);
+                if (exifEnd < range[1]) {
+                    parts.add(slice(jpeg, exifEnd, range[1]));
+                }
+            } else {
+                parts.add(slice(jpeg, range[0], range[1]));
+            }
+        }
+        return parts.toArray(new ByteBuffer[parts.size()]);
+    }
+
+    /**
+     * @return The APP1 segment, marker included, with an EXIF block of the metadata
+     */
+    static ByteBuffer buildExif(CaptureMetadata metadata) {
+        int entries = 2;    // ExifVersion and ImageUniqueID
+        if (metadata.getExposureTime() > 0) {
+            entries++;
+        }
+        if (metadata.getSensitivity() >= 0) {
+            entries++;
+        }
+        int ifd0 = 8;
+        int exifIfd = ifd0 + 2 + 12 + 4;
+        int values = exifIfd + 2 + 12 * entries + 4;
+        int tiffLength = values + 8 + UNIQUE_ID_LENGTH;
+        ByteBuffer segment = ByteBuffer.allocate(4 + EXIF_ID.length + tiffLength)
+                .order(ByteOrder.BIG_ENDIAN);
+        segment.put((byte) 0xFF).put((byte) MARKER_APP1)
+                .putShort((short) (segment.capacity() - 2)).put(EXIF_ID);
+        ByteBuffer tiff = segment.slice();
+
+        tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(ifd0);
+        tiff.putShort((short) 1);
+        putEntry(tiff, TAG_EXIF_IFD, TIFF_LONG, 1, exifIfd);
+        tiff.putInt(0);
+
+        // Entries in ascending tag order, values after the IFD.
+        int valueOffset = values;
+        tiff.putShort((short) entries);
+        long exposure = metadata.getExposureTime();
+        if (exposure > 0) {
+            putEntry(tiff, TAG_EXPOSURE_TIME, TIFF_RATIONAL, 1, valueOffset);
+            long[] rational = exposureRational(exposure);
+            tiff.putInt(valueOffset, (int) rational[0]);
+            tiff.putInt(valueOffset + 4, (int) rational[1]);
+            valueOffset += 8;
+        }
+        int sensitivity = metadata.getSensitivity();
+        if (sensitivity >= 0) {
+            putEntry(tiff, TAG_SENSITIVITY, TIFF_SHORT, 1, Math.min(sensitivity, 0xFFFF) << 16);
+        }
+        putEntry(tiff, TAG_EXIF_VERSION, TIFF_UNDEFINED, 4,
+                ('0' << 24) | ('2' << 16) | ('3' << 8) | '0');
+        putEntry(tiff, TAG_IMAGE_UNIQUE_ID, TIFF_ASCII, UNIQUE_ID_LENGTH, valueOffset);
+        tiff.putInt(0);
+        // Sensor timestamp and frame number, unique per capture.
+        byte[] id = (hex(metadata.getSensorTimestamp()) + hex(metadata.getFrameNumber()))
+                .getBytes(US_ASCII);
+        tiff.position(valueOffset);
+        tiff.put(id).put((byte) 0);
+
+        segment.clear();
+        return segment;
+    }
+
+    /**
+     * @return The APP1 segment, marker included, with an XMP packet of the metadata
+     * @throws IOException If the packet does not fit a segment
+     */
+    static ByteBuffer buildXmp(CaptureMetadata metadata) throws IOException {
+        StringBuilder packet = new StringBuilder(512);
+        packet.append("<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>")
+                .append("<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">")
+                .append("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">")
+                .append("<rdf:Description rdf:about=\"\" xmlns:cb=\"").append(XMP_NAMESPACE)
+                .append('"');
+        appendProperty(packet, "ExposureTime", metadata.getExposureTime());
+        appendProperty(packet, "Sensitivity", metadata.getSensitivity());
+        appendProperty(packet, "FrameNumber", metadata.getFrameNumber());
+        appendProperty(packet, "SensorTimestamp", metadata.getSensorTimestamp());
+        if (metadata.getRigId() != null) {
+            packet.append(" cb:RigId=\"");
+            appendEscaped(packet, metadata.getRigId());
+            packet.append('"');
+        }
+        packet.append("/></rdf:RDF></x:xmpmeta><?xpacket end=\"w\"?>");
+        byte[] bytes = packet.toString().getBytes(UTF_8);
+        int payload = XMP_ID.length + bytes.length;
+        if (payload > MAX_PAYLOAD) {
+            throw new IOException("XMP packet of " + bytes.length + " bytes");
+        }
+        ByteBuffer segment = ByteBuffer.allocate(4 + payload);
+        segment.put((byte) 0xFF).put((byte) MARKER_APP1).putShort((short) (payload + 2))
+                .put(XMP_ID).put(bytes);
+        segment.flip();
+        return segment;
+    }
+
+    /**
+     * @return The exposure in seconds as an unsigned TIFF rational
+     */
+    static long[] exposureRational(long nanos) {
+        long numerator = nanos;
+        long denominator = 1000000000L;
+        long gcd = gcd(numerator, denominator);
+        numerator /= gcd;
+        denominator /= gcd;
+        while (numerator > 0xFFFFFFFFL && denominator > 1) {
+            numerator /= 10;
+            denominator /= 10;
+        }
+        return new long[]{Math.min(numerator, 0xFFFFFFFFL), denominator};
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static void putEntry(ByteBuffer ifd, int tag, int type, int count, int value) {
+        ifd.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+
+    private static String hex(long value) {
+        String digits = Long.toHexString(value);
+        StringBuilder padded = new StringBuilder(16);
+        for (int i = digits.length(); i < 16; i++) {
+            padded.append('0');
+        }
+        return padded.append(digits).toString();
+    }
+
+    private static void appendProperty(StringBuilder packet, String name, long value) {
+        if (value >= 0) {
+            packet.append(" cb:").append(name).append("=\"").append(value).append('"');
+        }
+    }
+
+    private static void appendEscaped(StringBuilder packet, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    packet.append("&amp;");
+                    break;
+                case '<':
+                    packet.append("&lt;");
+                    break;
+                case '>':
+                    packet.append("&gt;");
+                    break;
+                case '"':
+                    packet.append("&quot;");
+                    break;
+                default:
+                    packet.append(c);
+            }
+        }
+    }
+
+    /**
+     * @return The marker of the segment at {@code offset}, or -1 if there is none
+     */
+    private static int markerAt(ByteBuffer jpeg, int offset, int end) {
+        if (offset + 4 > end || u8(jpeg, offset) != 0xFF) {
+            return -1;
+        }
+        return u8(jpeg, offset + 1);
+    }
+
+    private static int segmentEnd(ByteBuffer jpeg, int offset, int end) throws IOException {
+        int length = (u8(jpeg, offset + 2) << 8) | u8(jpeg, offset + 3);
+        if (length < 2 || offset + 2 + length > end) {
+            throw new IOException("Truncated segment at " + offset);
+        }
+        return offset + 2 + length;
+    }
+
+    private static boolean hasId(ByteBuffer jpeg, int offset, int segmentEnd, byte[] id) {
+        int payload = offset + 4;
+        if (segmentEnd - payload < id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (jpeg.get(payload + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer slice(ByteBuffer jpeg, int from, int to) {
+        ByteBuffer slice = jpeg.duplicate();
+        slice.limit(to).position(from);
+        return slice;
+    }
+
+    private static int u8(ByteBuffer buffer, int index) {
+        return buffer.get(index) & 0xFF;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes encoded JPEG buffers to files with one of several I/O strategies.
+ *
+ * <p>The buffer handed over by the camera is usually direct, so the channel strategy writes it
+ * without copying it onto the Java heap first. The stream strategy copies through a reused
+ * array in chunks, and the mapped strategy copies into a memory-mapped file. Not thread-safe;
+ * use one writer per saving thread.</p>
+ */
+// JPEG写文件器：支持流、通道和内存映射三种写入方式，由基准测试决定默认值
+public final class JpegWriter {
+
+    /**
+     * Copies through a reused heap array into a {@link FileOutputStream}.
+     */
+    public static final int STRATEGY_STREAM = 0;
+
+    /**
+     * Writes the buffer straight to a {@link FileChannel}.
+     */
+    public static final int STRATEGY_CHANNEL = 1;
+
+    /**
+     * Copies the buffer into a read-write mapping of the file. The mapping is only released when
+     * it is garbage collected, and its pages are written back whenever the kernel decides.
+     */
+    public static final int STRATEGY_MAPPED = 2;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final int mStrategy;
+
+    /**
+     * Chunk of the stream strategy, allocated on first use.
+     */
+    private byte[] mChunk;
+
+    public JpegWriter(int strategy) {
+        if (strategy < STRATEGY_STREAM || strategy > STRATEGY_MAPPED) {
+            throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+        mStrategy = strategy;
+    }
+
+    public int getStrategy() {
+        return mStrategy;
+    }
+
+    /**
+     * Writes the remaining bytes of {@code buffer} to {@code file}, replacing its content. The
+     * position of {@code buffer} is left unchanged.
+     *
+     * @return The number of bytes written
+     */
+    public long write(ByteBuffer buffer, File file) throws IOException {
+        return write(new ByteBuffer[]{buffer}, file);
+    }
+
+    /**
+     * Writes the remaining bytes of {@code buffers}, one after the other, to {@code file},
+     * replacing its content. The channel strategy does it with gathering writes. The positions
+     * of {@code buffers} are left unchanged.
+     *
+     * @return The number of bytes written
+     */
+    public long write(ByteBuffer[] buffers, File file) throws IOException {
+        ByteBuffer[] sources = new ByteBuffer[buffers.length];
+        long size = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            sources[i] = buffers[i].duplicate();
+            size += sources[i].remaining();
+        }
+        switch (mStrategy) {
+            case STRATEGY_CHANNEL:
+                return writeChannel(sources, size, file);
+            case STRATEGY_MAPPED:
+                return writeMapped(sources, size, file);
+            default:
+                return writeStream(sources, file);
+        }
+    }
+
+    private long writeStream(ByteBuffer[] sources, File file) throws IOException {
+        if (mChunk == null) {
+            mChunk = new byte[CHUNK_SIZE];
+        }
+        byte[] chunk = mChunk;
+        long written = 0;
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            for (ByteBuffer source : sources) {
+                while (source.hasRemaining()) {
+                    int count = Math.min(chunk.length, source.remaining());
+                    source.get(chunk, 0, count);
+                    output.write(chunk, 0, count);
+                    written += count;
+                }
+            }
+        } finally {
+            output.close();
+        }
+        return written;
+    }
+
+    private static long writeChannel(ByteBuffer[] sources, long size, File file)
+            throws IOException {
+        long written = 0;
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            FileChannel channel = output.getChannel();
+            while (written < size) {
+                written += channel.write(sources);
+            }
+        } finally {
+            output.close();
+        }
+        return written;
+    }
+
+    private static long writeMapped(ByteBuffer[] sources, long size, File file)
+            throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = output.getChannel();
+            // Mapping extends the file but never shrinks it.
+            channel.truncate(size);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (ByteBuffer source : sources) {
+                mapped.put(source);
+            }
+        } finally {
+            output.close();
+        }
+        return size;
+    }
+
+}
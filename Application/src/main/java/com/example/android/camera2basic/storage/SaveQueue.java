@@ -0,0 +1,561 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+import com.example.android.camera2basic.metrics.Gauge;
+import com.example.android.camera2basic.metrics.LatencyHistogram;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Saves JPEGs on its own thread, so that no accepted picture is lost when the camera and its
+ * threads shut down.
+ *
+ * <p>{@link #submit} copies the picture out of the camera's buffer right away, so the caller can
+ * close its {@code Image} and the reader can be closed at any time. The writer thread writes each
+ * picture to a temporary file and renames it into place, so a file is either complete or absent.
+ * {@link #stop} waits for the queue to drain; whatever is still pending when the timeout expires
+ * is appended to a spill journal and synced to disk. {@link #start} replays the journal before
+ * anything else, so pictures spilled by a previous run, or by a process that was killed after
+ * pausing, end up in their files.</p>
+ *
+ * <p>Pictures submitted with {@link CaptureMetadata} get it injected by
+ * {@link JpegMetadataInjector} as they are written or journaled; the journal holds the final
+ * bytes. A picture whose header cannot be parsed is saved as it came.</p>
+ *
+ * <p>Journal records carry a CRC, and replay stops at the first torn or corrupt record. Replay is
+ * idempotent: the journal is deleted only once every record was written.</p>
+ */
+// 持久化保存队列：立即把图像数据复制出来，在独立线程写文件；暂停时先排空，超时未写的照片写入溢出日志，下次启动时恢复
+public final class SaveQueue {
+
+    /**
+     * Receives the outcome of every picture, on the writer thread, or on the thread calling
+     * {@link #stop} for pictures that were spilled.
+     */
+    public interface Listener {
+
+        void onSaved(long frameNumber, File file, long bytes);
+
+        void onSaveFailed(long frameNumber, File file, IOException e);
+
+        /**
+         * The picture was journaled and will be written by the next {@link #start}.
+         */
+        void onSpilled(long frameNumber, File file);
+
+    }
+
+    private static final int JOURNAL_MAGIC = 0x43535031;    // "CSP1"
+    private static final int RECORD_MAGIC = 0x53415645;     // "SAVE"
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 4 + 4 + 4;
+    private static final int MAX_PATH_BYTES = 4096;
+    private static final int MAX_PICTURE_BYTES = 64 * 1024 * 1024;
+
+    private static final int CRC_CHUNK = 16 * 1024;
+
+    private static final String TEMP_SUFFIX = ".part";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mJournal;
+    private final JpegWriter mWriter;
+    private final BufferPool mPool;
+    private final Listener mListener;
+
+    private final StripedCounter mBytes;
+    private final StripedCounter mErrors;
+    private final StripedCounter mSpilled;
+    private final StripedCounter mRecovered;
+    private final StripedCounter mMetadataErrors;
+    private final Gauge mDepth;
+    private final LatencyHistogram mWriteLatency;
+    private final LatencyHistogram mCopyLatency;
+
+    /*
+     * State shared with the writer thread, guarded by this.
+     */
+    private final ArrayDeque<Entry> mQueue = new ArrayDeque<>();
+    private Entry mWriting;
+    private Writer mThread;
+
+    /**
+     * A writer thread left behind by {@link #stop} while it was still writing.
+     */
+    private Thread mPrevious;
+    private boolean mAccepting;
+
+    /**
+     * @param journal Spill journal, next to the pictures so it survives with them
+     * @param writer  Used only on the writer thread
+     * @param pool    Provides the copies, which go back to it once written
+     */
+    public SaveQueue(File journal, JpegWriter writer, BufferPool pool, MetricsRegistry metrics,
+            Listener listener) {
+        mJournal = journal;
+        mWriter = writer;
+        mPool = pool;
+        mListener = listener;
+        mBytes = metrics.counter("save.bytes");
+        mErrors = metrics.counter("save.errors");
+        mSpilled = metrics.counter("save.spilled");
+        mRecovered = metrics.counter("save.recovered");
+        mMetadataErrors = metrics.counter("save.metadata_errors");
+        mDepth = metrics.gauge("save.pending");
+        mWriteLatency = metrics.histogram("save.write");
+        mCopyLatency = metrics.histogram("save.copy");
+    }
+
+    /**
+     * Starts the writer thread, which replays the journal before the first submitted picture.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        mAccepting = true;
+        mThread = new Writer(mPrevious);
+        mPrevious = null;
+        mThread.start();
+    }
+
+    /**
+     * Copies the remaining bytes of {@code jpeg} and queues them for {@code file}. The position
+     * of {@code jpeg} is left unchanged, and the buffer may be released as soon as this returns.
+     *
+     * @return False if the queue is stopped; the picture is not saved
+     */
+    public boolean submit(ByteBuffer jpeg, File file, long frameNumber) {
+        return submit(jpeg, file, frameNumber, null);
+    }
+
+    /**
+     * Like {@link #submit(ByteBuffer, File, long)}, and writes {@code metadata} into the file.
+     *
+     * @param metadata Null to save the JPEG as it is
+     */
+    public boolean submit(ByteBuffer jpeg, File file, long frameNumber,
+            CaptureMetadata metadata) {
+        long start = System.nanoTime();
+        int size = jpeg.remaining();
+        synchronized (this) {
+            if (!mAccepting) {
+                return false;
+            }
+        }
+        // A single bulk copy, outside the lock so the writer is never held up by it.
+        ByteBuffer copy = mPool.acquire(size);
+        copy.put(jpeg.duplicate());
+        copy.flip();
+        mCopyLatency.recordSince(start);
+        return submitPooled(copy, file, frameNumber, metadata);
+    }
+
+    /**
+     * Queues {@code copy} without copying it again, for a caller that had to copy the JPEG
+     * before it could submit it. The queue owns the buffer from then on, and gives it back to the
+     * pool once written, or right away if stopped.
+     *
+     * @param copy A buffer acquired from the pool of this queue, holding the JPEG between its
+     *             position and limit
+     * @return False if the queue is stopped; the picture is not saved
+     */
+    public boolean submitPooled(ByteBuffer copy, File file, long frameNumber,
+            CaptureMetadata metadata) {
+        synchronized (this) {
+            if (!mAccepting) {
+                mPool.release(copy);
+                return false;
+            }
+            mQueue.add(new Entry(copy, file, frameNumber, metadata));
+            mDepth.set(getPending());
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * @return Pictures accepted and not written yet
+     */
+    public synchronized int getPending() {
+        return mQueue.size() + (mWriting == null ? 0 : 1);
+    }
+
+    /**
+     * Waits until every picture submitted so far is written.
+     *
+     * @return Whether the queue drained within {@code timeoutMs}
+     */
+    public synchronized boolean drain(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (getPending() > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting pictures, waits up to {@code timeoutMs} for the queue to drain, and
+     * journals whatever is left, including a picture still being written.
+     *
+     * @return The number of pictures journaled
+     */
+    public int stop(long timeoutMs) {
+        Writer thread;
+        Entry writing = null;
+        List<Entry> left = new ArrayList<>();
+        synchronized (this) {
+            if (mThread == null) {
+                return 0;
+            }
+            mAccepting = false;
+            drain(timeoutMs);
+            thread = mThread;
+            thread.mStopped = true;
+            mThread = null;
+            if (mWriting != null) {
+                // The writer may finish it too; replaying the journal rewrites the same bytes.
+                writing = mWriting;
+                left.add(mWriting);
+                mWriting = null;
+                mPrevious = thread;
+            }
+            left.addAll(mQueue);
+            mQueue.clear();
+            mDepth.set(0);
+            notifyAll();
+        }
+        if (!left.isEmpty()) {
+            spill(left);
+            for (Entry entry : left) {
+                if (entry != writing) {
+                    mPool.release(entry.mData);
+                }
+            }
+        }
+        if (left.isEmpty()) {
+            joinQuietly(thread);
+        }
+        return left.size();
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop(Writer self) {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                while (mQueue.isEmpty() && !self.mStopped) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only stop() ends the loop.
+                    }
+                }
+                if (self.mStopped) {
+                    // The queue may belong to a writer started since; leave it to that one.
+                    return;
+                }
+                entry = mQueue.poll();
+                mWriting = entry;
+            }
+            write(entry);
+            synchronized (this) {
+                if (mWriting == entry) {
+                    mWriting = null;
+                    mPool.release(entry.mData);
+                }
+                // Otherwise stop() took it for the journal and leaves the buffer to the GC.
+                mDepth.set(getPending());
+                notifyAll();
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        long start = System.nanoTime();
+        try {
+            long written = writeAtomically(parts(entry), entry.mFile);
+            mBytes.add(written);
+            mWriteLatency.recordSince(start);
+            mListener.onSaved(entry.mFrameNumber, entry.mFile, written);
+        } catch (IOException e) {
+            mErrors.increment();
+            mListener.onSaveFailed(entry.mFrameNumber, entry.mFile, e);
+        }
+    }
+
+    /**
+     * @return The buffers of the file, with the metadata segments between slices of the picture
+     */
+    private ByteBuffer[] parts(Entry entry) {
+        if (entry.mMetadata != null) {
+            try {
+                return JpegMetadataInjector.inject(entry.mData, entry.mMetadata);
+            } catch (IOException e) {
+                mMetadataErrors.increment();
+            }
+        }
+        return new ByteBuffer[]{entry.mData};
+    }
+
+    private long writeAtomically(ByteBuffer[] data, File file) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        long written = mWriter.write(data, temp);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp + " to " + file);
+        }
+        return written;
+    }
+
+    /**
+     * Appends {@code entries} to the journal and syncs it.
+     */
+    private void spill(List<Entry> entries) {
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(mJournal, true);
+            FileChannel channel = output.getChannel();
+            byte[] scratch = new byte[CRC_CHUNK];
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(4).putInt(JOURNAL_MAGIC);
+                header.flip();
+                writeFully(channel, new ByteBuffer[]{header});
+            }
+            for (Entry entry : entries) {
+                byte[] path = entry.mFile.getPath().getBytes(UTF_8);
+                ByteBuffer[] parts = parts(entry);
+                ByteBuffer[] record = new ByteBuffer[parts.length + 2];
+                CRC32 crc = new CRC32();
+                crc.update(path);
+                int length = 0;
+                for (int i = 0; i < parts.length; i++) {
+                    record[i + 2] = parts[i].duplicate();
+                    update(crc, parts[i], scratch);
+                    length += parts[i].remaining();
+                }
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+                header.putInt(RECORD_MAGIC).putLong(entry.mFrameNumber).putInt(path.length)
+                        .putInt(length).putInt((int) crc.getValue());
+                header.flip();
+                record[0] = header;
+                record[1] = ByteBuffer.wrap(path);
+                // One gathering write per record: header, path and picture.
+                writeFully(channel, record);
+            }
+            channel.force(true);
+            for (Entry entry : entries) {
+                mSpilled.increment();
+                mListener.onSpilled(entry.mFrameNumber, entry.mFile);
+            }
+        } catch (IOException e) {
+            for (Entry entry : entries) {
+                mErrors.increment();
+                mListener.onSaveFailed(entry.mFrameNumber, entry.mFile, e);
+            }
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    // The data was already forced to disk, or the failure reported.
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds the remaining bytes of {@code data} to {@code crc} in chunks, without moving its
+     * position; {@link CRC32} takes no buffers before API 26.
+     */
+    private static void update(CRC32 crc, ByteBuffer data, byte[] scratch) {
+        ByteBuffer source = data.duplicate();
+        while (source.hasRemaining()) {
+            int length = Math.min(scratch.length, source.remaining());
+            source.get(scratch, 0, length);
+            crc.update(scratch, 0, length);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * Writes every picture of the journal, then deletes it if all of them were written.
+     *
+     * @return The number of pictures recovered
+     */
+    int recover() {
+        if (!mJournal.exists()) {
+            return 0;
+        }
+        int recovered = 0;
+        boolean complete = true;
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(mJournal)));
+            if (input.readInt() != JOURNAL_MAGIC) {
+                throw new IOException("Not a spill journal: " + mJournal);
+            }
+            while (true) {
+                int magic;
+                try {
+                    magic = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long frameNumber = input.readLong();
+                int pathLength = input.readInt();
+                int dataLength = input.readInt();
+                int crc = input.readInt();
+                if (magic != RECORD_MAGIC || pathLength <= 0 || pathLength > MAX_PATH_BYTES
+                        || dataLength < 0 || dataLength > MAX_PICTURE_BYTES) {
+                    throw new IOException("Corrupt record in " + mJournal);
+                }
+                byte[] path = new byte[pathLength];
+                byte[] data = new byte[dataLength];
+                input.readFully(path);
+                input.readFully(data);
+                CRC32 check = new CRC32();
+                check.update(path);
+                check.update(data);
+                if ((int) check.getValue() != crc) {
+                    throw new IOException("Corrupt record in " + mJournal);
+                }
+                File file = new File(new String(path, UTF_8));
+                try {
+                    long written = writeAtomically(new ByteBuffer[]{ByteBuffer.wrap(data)},
+                            file);
+                    recovered++;
+                    mRecovered.increment();
+                    mListener.onSaved(frameNumber, file, written);
+                } catch (IOException e) {
+                    complete = false;
+                    mErrors.increment();
+                    mListener.onSaveFailed(frameNumber, file, e);
+                }
+            }
+        } catch (EOFException e) {
+            // A record torn by a crash while spilling; everything before it was replayed.
+        } catch (IOException e) {
+            // Unreadable from here on; keep what was replayed and drop the rest.
+            mErrors.increment();
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // Only read from.
+                }
+            }
+        }
+        if (complete) {
+            mJournal.delete();
+        }
+        return recovered;
+    }
+
+    /**
+     * The writer thread of one {@link #start()}. Its own stop flag ends it even if the queue is
+     * started again before it finishes the picture it was writing.
+     */
+    private final class Writer extends Thread {
+
+        private final Thread mPredecessor;
+
+        /**
+         * Set by {@link #stop}; guarded by the queue.
+         */
+        boolean mStopped;
+
+        Writer(Thread predecessor) {
+            super("SaveQueue");
+            mPredecessor = predecessor;
+        }
+
+        @Override
+        public void run() {
+            if (mPredecessor != null) {
+                // It may still write a picture that is also in the journal, with the same
+                // writer and temporary file.
+                joinQuietly(mPredecessor);
+            }
+            recover();
+            writeLoop(this);
+        }
+
+    }
+
+    /**
+     * One accepted picture.
+     */
+    private static final class Entry {
+
+        final ByteBuffer mData;
+        final File mFile;
+        final long mFrameNumber;
+        final CaptureMetadata mMetadata;
+
+        Entry(ByteBuffer data, File file, long frameNumber, CaptureMetadata metadata) {
+            mData = data;
+            mFile = file;
+            mFrameNumber = frameNumber;
+            mMetadata = metadata;
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnalysisPipelineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static class RecordingAnalyzer implements FrameAnalyzer {
+
+        final List<Long> mSequences = new ArrayList<>();
+
+        @Override
+        public void analyze(Frame frame) {
+            mSequences.add(frame.getSequence());
+        }
+
+    }
+
+    private static class CountingFrame extends Frame {
+
+        int mReleased;
+
+        CountingFrame(long sequence) {
+            super(2, 2);
+            setSequence(sequence);
+        }
+
+        @Override
+        protected void onReleased() {
+            mReleased++;
+        }
+
+    }
+
+    @Test
+    public void dropsFramesWhileClosedAndDeliversAfterReopen() {
+        AnalysisPipeline pipeline = new AnalysisPipeline(DIRECT);
+        RecordingAnalyzer analyzer = new RecordingAnalyzer();
+        pipeline.addAnalyzer(analyzer);
+        pipeline.submit(new CountingFrame(1));
+        assertTrue(pipeline.close(100));
+
+        CountingFrame dropped = new CountingFrame(2);
+        pipeline.submit(dropped);
+        assertEquals(1, dropped.mReleased);
+
+        pipeline.reopen();
+        CountingFrame delivered = new CountingFrame(3);
+        pipeline.submit(delivered);
+        assertEquals(1, delivered.mReleased);
+        assertEquals(2, analyzer.mSequences.size());
+        assertEquals(3L, (long) analyzer.mSequences.get(1));
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSequenceTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int ROW_STRIDE = 80;
+    private static final long FRAME_NS = 20000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void replaysRecordedFramesPixelForPixel() throws IOException {
+        File file = record(5, 100);
+        FrameSequence sequence = FrameSequence.open(file);
+        try {
+            assertEquals(WIDTH, sequence.getWidth());
+            assertEquals(HEIGHT, sequence.getHeight());
+            assertEquals(5, sequence.getFrameCount());
+            for (int i = 0; i < 5; i++) {
+                Frame original = createFrame(i);
+                Frame replayed = sequence.getFrame(i);
+                assertEquals(original.getTimestamp(), replayed.getTimestamp());
+                assertEquals(original.getSequence(), replayed.getSequence());
+                assertTrue(replayed.getPlane(Frame.PLANE_Y).isDirect());
+                assertPlaneEquals(original, replayed, Frame.PLANE_Y, WIDTH, HEIGHT);
+                assertPlaneEquals(original, replayed, Frame.PLANE_U, WIDTH / 2, HEIGHT / 2);
+                assertPlaneEquals(original, replayed, Frame.PLANE_V, WIDTH / 2, HEIGHT / 2);
+            }
+        } finally {
+            sequence.close();
+        }
+    }
+
+    @Test
+    public void stopsAtTheFrameLimitAndSkipsOtherSizes() throws IOException {
+        File file = mFolder.newFile("limit.yuvs");
+        FrameRecorder recorder = new FrameRecorder(file, 3);
+        for (int i = 0; i < 5; i++) {
+            recorder.analyze(createFrame(i));
+        }
+        recorder.analyze(new FrameBuilder(32, 24).build());
+        recorder.close();
+        assertEquals(3, recorder.getFrameCount());
+        assertEquals(3, recorder.getSkippedCount());
+        FrameSequence sequence = FrameSequence.open(file);
+        assertEquals(3, sequence.getFrameCount());
+        sequence.close();
+    }
+
+    @Test
+    public void readsRecordingsThatWereNeverClosed() throws IOException {
+        File file = mFolder.newFile("crash.yuvs");
+        FrameRecorder recorder = new FrameRecorder(file, 100);
+        for (int i = 0; i < 4; i++) {
+            recorder.analyze(createFrame(i));
+        }
+        // Cut the last frame short, as if the app died while writing it.
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(raw.length() - 10);
+        raw.close();
+        FrameSequence sequence = FrameSequence.open(file);
+        assertEquals(3, sequence.getFrameCount());
+        assertEquals(2 * FRAME_NS, sequence.getTimestamp(2));
+        sequence.close();
+        recorder.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = mFolder.newFile("other.bin");
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(1000);
+        raw.close();
+        FrameSequence.open(file);
+    }
+
+    @Test
+    public void playsAtRecordedPace() throws Exception {
+        FrameSequence sequence = FrameSequence.open(record(6, 100));
+        FrameSequencePlayer player = new FrameSequencePlayer(sequence);
+        final List<Long> sequences = new ArrayList<>();
+        FrameAnalyzer analyzer = new FrameAnalyzer() {
+            @Override
+            public void analyze(Frame frame) {
+                sequences.add(frame.getSequence());
+            }
+        };
+        player.setSpeed(1);
+        long start = System.nanoTime();
+        assertEquals(6, player.play(analyzer));
+        long elapsed = System.nanoTime() - start;
+        assertTrue("played in " + elapsed + " ns", elapsed >= 5 * FRAME_NS);
+
+        player.setSpeed(0);
+        assertEquals(6, player.play(analyzer));
+        assertEquals(12, sequences.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(Long.valueOf(1000 + i), sequences.get(i));
+            assertEquals(Long.valueOf(1000 + i), sequences.get(6 + i));
+        }
+        sequence.close();
+    }
+
+    @Test
+    public void playsIntoAPipeline() throws Exception {
+        FrameSequence sequence = FrameSequence.open(record(10, 100));
+        AnalysisPipeline pipeline = new AnalysisPipeline(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        LumaHistogramAnalyzer luma = new LumaHistogramAnalyzer(4);
+        pipeline.addAnalyzer(luma);
+        assertEquals(10, new FrameSequencePlayer(sequence).play(pipeline));
+        assertEquals(10, pipeline.getStats(luma).getProcessed());
+        assertTrue(pipeline.close(1000));
+        sequence.close();
+    }
+
+    private File record(int frames, int maxFrames) throws IOException {
+        File file = mFolder.newFile();
+        FrameRecorder recorder = new FrameRecorder(file, maxFrames);
+        for (int i = 0; i < frames; i++) {
+            recorder.analyze(createFrame(i));
+        }
+        recorder.close();
+        return file;
+    }
+
+    private static Frame createFrame(int index) {
+        Frame frame = new FrameBuilder(WIDTH, HEIGHT).seed(index).build();
+        frame.setTimestamp(index * FRAME_NS);
+        frame.setSequence(1000 + index);
+        return frame;
+    }
+
+    private static void assertPlaneEquals(Frame expected, Frame actual, int plane, int width,
+            int height) {
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                assertEquals("plane " + plane + " at " + column + "," + row,
+                        sample(expected, plane, column, row), sample(actual, plane, column, row));
+            }
+        }
+    }
+
+    private static int sample(Frame frame, int plane, int column, int row) {
+        return frame.getPlane(plane).get(row * frame.getRowStride(plane)
+                + column * frame.getPixelStride(plane)) & 0xFF;
+    }
+
+    /**
+     * Builds NV12 frames with padded rows, as cameras deliver them.
+     */
+    private static final class FrameBuilder {
+
+        private final int mWidth;
+        private final int mHeight;
+        private int mSeed;
+
+        FrameBuilder(int width, int height) {
+            mWidth = width;
+            mHeight = height;
+        }
+
+        FrameBuilder seed(int seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        Frame build() {
+            ByteBuffer y = ByteBuffer.allocateDirect(ROW_STRIDE * mHeight);
+            for (int i = 0; i < y.capacity(); i++) {
+                y.put(i, (byte) (i * 7 + mSeed * 13));
+            }
+            ByteBuffer uv = ByteBuffer.allocateDirect(ROW_STRIDE * (mHeight / 2));
+            for (int i = 0; i < uv.capacity(); i++) {
+                uv.put(i, (byte) (i * 3 + mSeed));
+            }
+            uv.position(1);
+            ByteBuffer v = uv.slice();
+            uv.position(0);
+            Frame frame = new Frame(mWidth, mHeight);
+            frame.setPlane(Frame.PLANE_Y, y, ROW_STRIDE, 1);
+            frame.setPlane(Frame.PLANE_U, uv, ROW_STRIDE, 2);
+            frame.setPlane(Frame.PLANE_V, v, ROW_STRIDE, 2);
+            return frame;
+        }
+
+    }
+
+}
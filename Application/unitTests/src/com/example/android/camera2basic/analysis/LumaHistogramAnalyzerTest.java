@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class LumaHistogramAnalyzerTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void countsTheExtremesInTheirOwnBins() {
+        int[] luma = {0, 1, 2, 3, 252, 253, 254, 255};
+        ExposureStats stats = analyze(new LumaHistogramAnalyzer(1), frame(luma, 4, 2, 4, 1));
+        assertEquals(8, stats.samples);
+        for (int value : luma) {
+            assertEquals("bin " + value, 1, stats.histogram[value]);
+        }
+        assertEquals(8, sum(stats.histogram));
+        // Levels 0 to 2 are clipped shadows, 253 to 255 clipped highlights.
+        assertEquals(37.5f, stats.shadowClipPercent, EPSILON);
+        assertEquals(37.5f, stats.highlightClipPercent, EPSILON);
+        assertEquals((0 + 1 + 2 + 3 + 252 + 253 + 254 + 255) / 8f, stats.mean, EPSILON);
+    }
+
+    @Test
+    public void samplesEveryStepthPixelOfPaddedRows() {
+        // 5x3 with a row stride of 8; the padding and the skipped pixels must not be counted.
+        int width = 5;
+        int height = 3;
+        int rowStride = 8;
+        int[] luma = new int[rowStride * height];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = 200;
+        }
+        for (int row = 0; row < height; row += 2) {
+            for (int column = 0; column < width; column += 2) {
+                luma[row * rowStride + column] = 10;
+            }
+        }
+        ExposureStats stats = analyze(new LumaHistogramAnalyzer(2),
+                frame(luma, width, height, rowStride, 1));
+        assertEquals(6, stats.samples);
+        assertEquals(6, stats.histogram[10]);
+        assertEquals(6, sum(stats.histogram));
+        assertEquals(10f, stats.mean, EPSILON);
+    }
+
+    @Test
+    public void followsThePixelStride() {
+        // Interleaved luma, as in a semi-planar buffer: every other byte belongs to the image.
+        int[] luma = {50, 255, 60, 255, 70, 255, 80, 255};
+        ExposureStats stats = analyze(new LumaHistogramAnalyzer(1), frame(luma, 2, 2, 4, 2));
+        assertEquals(4, stats.samples);
+        assertEquals(0, stats.histogram[255]);
+        assertEquals(65f, stats.mean, EPSILON);
+    }
+
+    @Test
+    public void percentilesIgnoreTheOutermostPercent() {
+        int[] luma = new int[100];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = 100;
+        }
+        luma[0] = 0;
+        luma[99] = 255;
+        ExposureStats stats = analyze(new LumaHistogramAnalyzer(1), frame(luma, 10, 10, 10, 1));
+        assertEquals(100, stats.lowPercentile);
+        assertEquals(100, stats.highPercentile);
+        assertEquals(0f, stats.dynamicRangeStops, EPSILON);
+    }
+
+    @Test
+    public void dynamicRangeSpansThePercentiles() {
+        int[] luma = new int[200];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = i < 100 ? 15 : 255;
+        }
+        ExposureStats stats = analyze(new LumaHistogramAnalyzer(1), frame(luma, 20, 10, 20, 1));
+        assertEquals(15, stats.lowPercentile);
+        assertEquals(255, stats.highPercentile);
+        assertEquals(4f, stats.dynamicRangeStops, EPSILON);
+    }
+
+    @Test
+    public void publishesTheNewestFrame() {
+        LumaHistogramAnalyzer analyzer = new LumaHistogramAnalyzer(1);
+        Frame first = frame(new int[] {0, 0, 0, 0}, 2, 2, 2, 1);
+        first.setSequence(7);
+        analyzer.analyze(first);
+        Frame second = frame(new int[] {90, 90, 90, 90}, 2, 2, 2, 1);
+        second.setSequence(8);
+        second.setTimestamp(1234);
+        ExposureStats stats = analyze(analyzer, second);
+        assertEquals(8, stats.sequence);
+        assertEquals(1234, stats.timestamp);
+        assertEquals(0, stats.histogram[0]);
+        assertEquals(4, stats.histogram[90]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAStepOfZero() {
+        new LumaHistogramAnalyzer(0);
+    }
+
+    private static ExposureStats analyze(LumaHistogramAnalyzer analyzer, Frame frame) {
+        analyzer.analyze(frame);
+        return analyzer.getLatest(new ExposureStats());
+    }
+
+    private static Frame frame(int[] luma, int width, int height, int rowStride,
+            int pixelStride) {
+        ByteBuffer y = ByteBuffer.allocateDirect(luma.length);
+        for (int i = 0; i < luma.length; i++) {
+            y.put(i, (byte) luma[i]);
+        }
+        Frame frame = new Frame(width, height);
+        frame.setPlane(Frame.PLANE_Y, y, rowStride, pixelStride);
+        return frame;
+    }
+
+    private static int sum(int[] histogram) {
+        int total = 0;
+        for (int count : histogram) {
+            total += count;
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MotionAnalyzerTest {
+
+    private static final int SIZE = 64;
+    private static final int GRID = 4;
+    private static final int BLOCK = SIZE / GRID;
+    private static final long SECOND = 1000000000L;
+
+    private final int[] mScene = new int[SIZE * SIZE];
+    private final List<Long> mMotion = new ArrayList<>();
+    private MotionAnalyzer mAnalyzer;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < mScene.length; i++) {
+            mScene[i] = 40 + random.nextInt(160);
+        }
+        mAnalyzer = new MotionAnalyzer(GRID, GRID, 4);
+        mAnalyzer.setTriggerFraction(0.05f);
+        mAnalyzer.setCooldown(2 * SECOND);
+        mAnalyzer.setListener(new MotionAnalyzer.Listener() {
+            @Override
+            public void onMotion(float fraction, long timestamp) {
+                mMotion.add(timestamp);
+            }
+        });
+    }
+
+    @Test
+    public void stillScenesDoNotTrigger() {
+        for (int i = 0; i < 5; i++) {
+            mAnalyzer.analyze(frame(i * SECOND, 0));
+        }
+        assertEquals(0, mMotion.size());
+        assertEquals(0f, mAnalyzer.getLastFraction(), 0);
+    }
+
+    @Test
+    public void brightnessChangesAreNotMotion() {
+        mAnalyzer.analyze(frame(0, 0));
+        mAnalyzer.analyze(frame(SECOND, 30));
+        mAnalyzer.analyze(frame(2 * SECOND, -20));
+        assertEquals(0, mMotion.size());
+    }
+
+    @Test
+    public void triggersOnAMovingBlock() {
+        mAnalyzer.analyze(frame(0, 0));
+        move(5);
+        mAnalyzer.analyze(frame(SECOND, 0));
+        assertEquals(1, mMotion.size());
+        assertEquals(SECOND, (long) mMotion.get(0));
+        assertEquals(1f / (GRID * GRID), mAnalyzer.getLastFraction(), 1e-6f);
+        assertEquals(1, mAnalyzer.getTriggerCount());
+    }
+
+    @Test
+    public void needsTheTriggerFraction() {
+        mAnalyzer.setTriggerFraction(0.1f);
+        mAnalyzer.analyze(frame(0, 0));
+        move(5);
+        mAnalyzer.analyze(frame(SECOND, 0));
+        assertEquals(0, mMotion.size());
+        move(6);
+        move(9);
+        mAnalyzer.analyze(frame(2 * SECOND, 0));
+        assertEquals(1, mMotion.size());
+    }
+
+    @Test
+    public void waitsForTheCooldown() {
+        mAnalyzer.analyze(frame(0, 0));
+        for (int i = 1; i <= 4; i++) {
+            move(i);
+            mAnalyzer.analyze(frame(i * SECOND, 0));
+        }
+        // Motion at 1 s triggers, 2 s is within the cooldown, 3 s triggers again, 4 s does not.
+        assertEquals(2, mMotion.size());
+        assertEquals(SECOND, (long) mMotion.get(0));
+        assertEquals(3 * SECOND, (long) mMotion.get(1));
+    }
+
+    @Test
+    public void ignoresBlocksOutsideTheMask() {
+        boolean[] mask = new boolean[GRID * GRID];
+        mask[0] = true;
+        mask[1] = true;
+        mAnalyzer.setRegionMask(mask);
+        mAnalyzer.analyze(frame(0, 0));
+        move(5);
+        mAnalyzer.analyze(frame(SECOND, 0));
+        assertEquals(0, mMotion.size());
+        move(1);
+        mAnalyzer.analyze(frame(2 * SECOND, 0));
+        assertEquals(1, mMotion.size());
+        assertEquals(0.5f, mAnalyzer.getLastFraction(), 1e-6f);
+    }
+
+    @Test
+    public void resetForgetsThePreviousFrameAndTheCooldown() {
+        mAnalyzer.analyze(frame(10 * SECOND, 0));
+        move(5);
+        mAnalyzer.analyze(frame(11 * SECOND, 0));
+        assertEquals(1, mMotion.size());
+
+        // A different camera, whose clock starts lower: its first frame is not compared with
+        // the old camera's, and the old trigger time does not hold back its motion.
+        mAnalyzer.reset();
+        move(7);
+        mAnalyzer.analyze(frame(SECOND, 0));
+        assertEquals(1, mMotion.size());
+        move(7);
+        mAnalyzer.analyze(frame(2 * SECOND, 0));
+        assertEquals(2, mMotion.size());
+        assertEquals(2 * SECOND, (long) mMotion.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMasksOfTheWrongSize() {
+        mAnalyzer.setRegionMask(new boolean[GRID * GRID - 1]);
+    }
+
+    /**
+     * Changes the content of one block, numbered row by row.
+     */
+    private void move(int block) {
+        int left = (block % GRID) * BLOCK;
+        int top = (block / GRID) * BLOCK;
+        for (int y = top; y < top + BLOCK; y++) {
+            for (int x = left; x < left + BLOCK; x++) {
+                mScene[y * SIZE + x] = 240 - mScene[y * SIZE + x];
+            }
+        }
+    }
+
+    /**
+     * @return The scene with every pixel brightened by {@code offset}, in padded rows
+     */
+    private Frame frame(long timestamp, int offset) {
+        int rowStride = SIZE + 16;
+        ByteBuffer y = ByteBuffer.allocateDirect(rowStride * SIZE);
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                y.put(row * rowStride + column, (byte) (mScene[row * SIZE + column] + offset));
+            }
+        }
+        Frame frame = new Frame(SIZE, SIZE);
+        frame.setPlane(Frame.PLANE_Y, y, rowStride, 1);
+        frame.setTimestamp(timestamp);
+        return frame;
+    }
+
+}
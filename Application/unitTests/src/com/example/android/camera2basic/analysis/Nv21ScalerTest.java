@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class Nv21ScalerTest {
+
+    /**
+     * Creates a frame with semi-planar chroma and padded rows, whose samples encode their
+     * coordinates: luma {@code x + y}, Cb {@code x}, Cr {@code y}.
+     */
+    private static Frame createFrame(int width, int height) {
+        int rowStride = width + 16;
+        ByteBuffer y = ByteBuffer.allocateDirect(rowStride * height);
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                y.put(row * rowStride + column, (byte) (column + row));
+            }
+        }
+        // NV12-like: U and V share one interleaved buffer, V one byte after U.
+        ByteBuffer chroma = ByteBuffer.allocateDirect(rowStride * height / 2);
+        for (int row = 0; row < height / 2; row++) {
+            for (int column = 0; column < width / 2; column++) {
+                chroma.put(row * rowStride + 2 * column, (byte) column);
+                chroma.put(row * rowStride + 2 * column + 1, (byte) row);
+            }
+        }
+        ByteBuffer u = chroma.duplicate();
+        chroma.position(1);
+        ByteBuffer v = chroma.slice();
+        Frame frame = new Frame(width, height);
+        frame.setPlane(Frame.PLANE_Y, y, rowStride, 1);
+        frame.setPlane(Frame.PLANE_U, u, rowStride, 2);
+        frame.setPlane(Frame.PLANE_V, v, rowStride, 2);
+        return frame;
+    }
+
+    @Test
+    public void keepsFramesWithinTheLimit() {
+        Nv21Scaler scaler = new Nv21Scaler(64);
+        byte[] out = scaler.convert(createFrame(64, 48));
+        assertEquals(64, scaler.getWidth());
+        assertEquals(48, scaler.getHeight());
+        assertEquals(64 * 48 * 3 / 2, out.length);
+        assertEquals(10 + 20, out[20 * 64 + 10]);
+        // Chroma of output block (5, 7): V first, then U.
+        int chroma = 64 * 48 + 7 * 64 + 2 * 5;
+        assertEquals(7, out[chroma]);
+        assertEquals(5, out[chroma + 1]);
+    }
+
+    @Test
+    public void samplesEveryFactorthPixel() {
+        Nv21Scaler scaler = new Nv21Scaler(40);
+        assertEquals(3, scaler.factorFor(100));
+        byte[] out = scaler.convert(createFrame(100, 60));
+        // 100 / 3 = 33, rounded down to even.
+        assertEquals(32, scaler.getWidth());
+        assertEquals(20, scaler.getHeight());
+        assertEquals(32 * 20 * 3 / 2, out.length);
+        for (int row = 0; row < 20; row++) {
+            for (int column = 0; column < 32; column++) {
+                assertEquals((byte) (3 * column + 3 * row), out[row * 32 + column]);
+            }
+        }
+        int chroma = 32 * 20;
+        for (int row = 0; row < 10; row++) {
+            for (int column = 0; column < 16; column++) {
+                assertEquals(3 * row, out[chroma + row * 32 + 2 * column]);
+                assertEquals(3 * column, out[chroma + row * 32 + 2 * column + 1]);
+            }
+        }
+    }
+
+    @Test
+    public void reusesTheOutputForFramesOfTheSameSize() {
+        Nv21Scaler scaler = new Nv21Scaler(32);
+        byte[] first = scaler.convert(createFrame(64, 48));
+        assertSame(first, scaler.convert(createFrame(64, 48)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinyLimits() {
+        new Nv21Scaler(1);
+    }
+
+}
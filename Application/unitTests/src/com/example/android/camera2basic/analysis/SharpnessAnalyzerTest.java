@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharpnessAnalyzerTest {
+
+    private static final int SIZE = 96;
+    private static final float EPSILON = 1e-3f;
+
+    /**
+     * Luma of a synthetic picture at a pixel.
+     */
+    private interface Picture {
+        int luma(int x, int y);
+    }
+
+    private static final Picture FLAT = new Picture() {
+        @Override
+        public int luma(int x, int y) {
+            return 128;
+        }
+    };
+
+    private static final Picture RAMP = new Picture() {
+        @Override
+        public int luma(int x, int y) {
+            return x;
+        }
+    };
+
+    private static final Picture STEP = new Picture() {
+        @Override
+        public int luma(int x, int y) {
+            return x < SIZE / 2 ? 0 : 240;
+        }
+    };
+
+    private static final Picture SOFT_STEP = new Picture() {
+        @Override
+        public int luma(int x, int y) {
+            return Math.max(0, Math.min(240, (x - SIZE / 2 + 16) * 240 / 32));
+        }
+    };
+
+    /**
+     * A 2x2 pixel checkerboard in the middle of the picture, black elsewhere.
+     */
+    private static final Picture CENTER_TEXTURE = new Picture() {
+        @Override
+        public int luma(int x, int y) {
+            boolean inside = x >= 40 && x < 56 && y >= 40 && y < 56;
+            return inside && ((x / 2 + y / 2) % 2 == 0) ? 200 : 0;
+        }
+    };
+
+    @Test
+    public void flatFramesScoreZero() {
+        assertEquals(0f, score(SharpnessAnalyzer.METHOD_LAPLACIAN, FLAT).score, EPSILON);
+        assertEquals(0f, score(SharpnessAnalyzer.METHOD_TENENGRAD, FLAT).score, EPSILON);
+    }
+
+    @Test
+    public void scoresARampExactly() {
+        // Reduced by 2, column c of the ramp sums to 8c + 2: no curvature, and a Sobel gradient
+        // of 4 * 16 = 64, which is 256 in 8-bit units squared.
+        SharpnessStats laplacian = score(SharpnessAnalyzer.METHOD_LAPLACIAN, RAMP);
+        SharpnessStats tenengrad = score(SharpnessAnalyzer.METHOD_TENENGRAD, RAMP);
+        for (int i = 0; i < 9; i++) {
+            assertEquals("tile " + i, 0f, laplacian.tiles[i], EPSILON);
+            assertEquals("tile " + i, 256f, tenengrad.tiles[i], EPSILON);
+        }
+    }
+
+    @Test
+    public void sharpEdgesScoreHigherThanSoftOnes() {
+        for (int method : new int[] {SharpnessAnalyzer.METHOD_LAPLACIAN,
+                SharpnessAnalyzer.METHOD_TENENGRAD}) {
+            float sharp = score(method, STEP).score;
+            float soft = score(method, SOFT_STEP).score;
+            assertTrue("method " + method + ": " + sharp + " vs " + soft, sharp > 2 * soft);
+        }
+    }
+
+    @Test
+    public void scoresEachTileOnItsOwn() {
+        SharpnessStats stats = score(SharpnessAnalyzer.METHOD_LAPLACIAN, CENTER_TEXTURE);
+        assertTrue(stats.tiles[4] > 0);
+        for (int i = 0; i < 9; i++) {
+            if (i != 4) {
+                assertEquals("tile " + i, 0f, stats.tiles[i], EPSILON);
+            }
+        }
+        assertEquals(stats.tiles[4], stats.centerScore, EPSILON);
+        assertEquals(stats.tiles[4] / 9, stats.score, EPSILON);
+    }
+
+    @Test
+    public void ignoresRowPaddingAndFollowsThePixelStride() {
+        SharpnessStats packed = score(SharpnessAnalyzer.METHOD_TENENGRAD,
+                frame(STEP, SIZE + 1, 1));
+        SharpnessStats padded = score(SharpnessAnalyzer.METHOD_TENENGRAD,
+                frame(STEP, 2 * SIZE + 32, 2));
+        for (int i = 0; i < 9; i++) {
+            assertEquals("tile " + i, packed.tiles[i], padded.tiles[i], EPSILON);
+        }
+    }
+
+    @Test
+    public void publishesTheSequenceAndTimestamp() {
+        Frame frame = frame(RAMP, SIZE, 1);
+        frame.setSequence(12);
+        frame.setTimestamp(3456);
+        SharpnessAnalyzer analyzer = new SharpnessAnalyzer(SharpnessAnalyzer.METHOD_LAPLACIAN,
+                2, 3, 3);
+        analyzer.analyze(frame);
+        SharpnessStats stats = analyzer.getLatest(analyzer.newStats());
+        assertEquals(12, stats.sequence);
+        assertEquals(3456, stats.timestamp);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownMethods() {
+        new SharpnessAnalyzer(2, 2, 3, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAScaleBelowTwo() {
+        new SharpnessAnalyzer(SharpnessAnalyzer.METHOD_LAPLACIAN, 1, 3, 3);
+    }
+
+    private static SharpnessStats score(int method, Picture picture) {
+        return score(method, frame(picture, SIZE, 1));
+    }
+
+    private static SharpnessStats score(int method, Frame frame) {
+        SharpnessAnalyzer analyzer = new SharpnessAnalyzer(method, 2, 3, 3);
+        analyzer.analyze(frame);
+        return analyzer.getLatest(analyzer.newStats());
+    }
+
+    /**
+     * @return A {@code SIZE}-square frame whose padding and skipped bytes are all white
+     */
+    private static Frame frame(Picture picture, int rowStride, int pixelStride) {
+        ByteBuffer y = ByteBuffer.allocateDirect(rowStride * SIZE);
+        for (int i = 0; i < y.capacity(); i++) {
+            y.put(i, (byte) 255);
+        }
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                y.put(row * rowStride + column * pixelStride, (byte) picture.luma(column, row));
+            }
+        }
+        Frame frame = new Frame(SIZE, SIZE);
+        frame.setPlane(Frame.PLANE_Y, y, rowStride, pixelStride);
+        return frame;
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class YuvToRgbConverterTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    private static final int ROW_STRIDE = 48;
+
+    private static final int I420 = 0;
+    private static final int NV12 = 1;
+    private static final int NV21 = 2;
+
+    @Test
+    public void convertsI420() {
+        assertMatchesReference(I420);
+    }
+
+    @Test
+    public void convertsNv12() {
+        assertMatchesReference(NV12);
+    }
+
+    @Test
+    public void convertsNv21() {
+        assertMatchesReference(NV21);
+    }
+
+    @Test
+    public void bandsOnAPoolGiveTheSamePixels() {
+        Image image = new Image(WIDTH, HEIGHT, 3);
+        Frame frame = image.pack(NV21);
+        int[] single = new int[WIDTH * HEIGHT];
+        YuvToRgbConverter converter = new YuvToRgbConverter(1);
+        converter.convert(frame, single);
+        converter.close();
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            int[] banded = new int[WIDTH * HEIGHT];
+            new YuvToRgbConverter(pool, 5).convert(frame, banded);
+            for (int i = 0; i < single.length; i++) {
+                assertEquals("pixel " + i, single[i], banded[i]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void writesIntBuffersFromTheStart() {
+        Image image = new Image(WIDTH, HEIGHT, 4);
+        Frame frame = image.pack(I420);
+        int[] array = new int[WIDTH * HEIGHT];
+        YuvToRgbConverter converter = new YuvToRgbConverter(1);
+        converter.convert(frame, array);
+        IntBuffer buffer = ByteBuffer.allocateDirect(4 * array.length).asIntBuffer();
+        buffer.position(7);
+        converter.convert(frame, buffer);
+        assertEquals(7, buffer.position());
+        for (int i = 0; i < array.length; i++) {
+            assertEquals("pixel " + i, array[i], buffer.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSmallOutputs() {
+        Frame frame = new Image(WIDTH, HEIGHT, 5).pack(NV12);
+        new YuvToRgbConverter(1).convert(frame, new int[WIDTH * HEIGHT - 1]);
+    }
+
+    private static void assertMatchesReference(int layout) {
+        Image image = new Image(WIDTH, HEIGHT, layout);
+        int[] out = new int[WIDTH * HEIGHT];
+        YuvToRgbConverter converter = new YuvToRgbConverter(1);
+        converter.convert(image.pack(layout), out);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int column = 0; column < WIDTH; column++) {
+                int expected = image.reference(column, row);
+                int actual = out[row * WIDTH + column];
+                String where = "pixel " + column + "," + row;
+                assertEquals(where, 0xFF, actual >>> 24);
+                // Fixed-point rounding may differ from the reference by one step.
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int difference = ((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF);
+                    assertTrue(where + ": " + Integer.toHexString(expected) + " vs "
+                            + Integer.toHexString(actual), Math.abs(difference) <= 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * A random picture at full luma and half chroma resolution, packed into camera layouts with
+     * padded rows.
+     */
+    private static final class Image {
+
+        final int mWidth;
+        final int mHeight;
+        final int mChromaWidth;
+        final int mChromaHeight;
+        final int[] mY;
+        final int[] mU;
+        final int[] mV;
+
+        Image(int width, int height, long seed) {
+            mWidth = width;
+            mHeight = height;
+            mChromaWidth = (width + 1) / 2;
+            mChromaHeight = (height + 1) / 2;
+            Random random = new Random(seed);
+            mY = fill(random, width * height);
+            mU = fill(random, mChromaWidth * mChromaHeight);
+            mV = fill(random, mChromaWidth * mChromaHeight);
+            // Saturated corners, so that clamping is exercised.
+            mU[0] = 255;
+            mV[0] = 255;
+            mU[mU.length - 1] = 0;
+            mV[mV.length - 1] = 0;
+        }
+
+        private static int[] fill(Random random, int count) {
+            int[] samples = new int[count];
+            for (int i = 0; i < count; i++) {
+                samples[i] = random.nextInt(256);
+            }
+            return samples;
+        }
+
+        Frame pack(int layout) {
+            ByteBuffer y = ByteBuffer.allocateDirect(ROW_STRIDE * mHeight);
+            for (int row = 0; row < mHeight; row++) {
+                for (int column = 0; column < mWidth; column++) {
+                    y.put(row * ROW_STRIDE + column, (byte) mY[row * mWidth + column]);
+                }
+            }
+            Frame frame = new Frame(mWidth, mHeight);
+            frame.setPlane(Frame.PLANE_Y, y, ROW_STRIDE, 1);
+            if (layout == I420) {
+                frame.setPlane(Frame.PLANE_U, planar(mU), ROW_STRIDE / 2, 1);
+                frame.setPlane(Frame.PLANE_V, planar(mV), ROW_STRIDE / 2, 1);
+                return frame;
+            }
+            int[] first = layout == NV12 ? mU : mV;
+            int[] second = layout == NV12 ? mV : mU;
+            ByteBuffer chroma = ByteBuffer.allocateDirect(ROW_STRIDE * mChromaHeight);
+            for (int row = 0; row < mChromaHeight; row++) {
+                for (int column = 0; column < mChromaWidth; column++) {
+                    int index = row * ROW_STRIDE + 2 * column;
+                    chroma.put(index, (byte) first[row * mChromaWidth + column]);
+                    chroma.put(index + 1, (byte) second[row * mChromaWidth + column]);
+                }
+            }
+            chroma.position(1);
+            ByteBuffer offset = chroma.slice();
+            chroma.position(0);
+            frame.setPlane(layout == NV12 ? Frame.PLANE_U : Frame.PLANE_V, chroma, ROW_STRIDE, 2);
+            frame.setPlane(layout == NV12 ? Frame.PLANE_V : Frame.PLANE_U, offset, ROW_STRIDE, 2);
+            return frame;
+        }
+
+        private ByteBuffer planar(int[] samples) {
+            ByteBuffer plane = ByteBuffer.allocateDirect(ROW_STRIDE / 2 * mChromaHeight);
+            for (int row = 0; row < mChromaHeight; row++) {
+                for (int column = 0; column < mChromaWidth; column++) {
+                    plane.put(row * (ROW_STRIDE / 2) + column,
+                            (byte) samples[row * mChromaWidth + column]);
+                }
+            }
+            return plane;
+        }
+
+        /**
+         * @return The pixel in floating point full-range BT.601, as JFIF defines it
+         */
+        int reference(int column, int row) {
+            double luma = mY[row * mWidth + column];
+            int chroma = (row / 2) * mChromaWidth + column / 2;
+            double cb = mU[chroma] - 128;
+            double cr = mV[chroma] - 128;
+            return 0xFF000000
+                    | (round(luma + 1.402 * cr) << 16)
+                    | (round(luma - 0.344136 * cb - 0.714136 * cr) << 8)
+                    | round(luma + 1.772 * cb);
+        }
+
+        private static int round(double value) {
+            return (int) Math.max(0, Math.min(255, Math.round(value)));
+        }
+
+    }
+
+}
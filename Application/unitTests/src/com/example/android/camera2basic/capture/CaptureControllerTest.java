@@ -0,0 +1,689 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.analysis.AnalysisPipeline;
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.analysis.FrameAnalyzer;
+import com.example.android.camera2basic.analysis.SharpnessAnalyzer;
+import com.example.android.camera2basic.analysis.SharpnessStats;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalDevice;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.HalRequest;
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.hal.HalSession;
+import com.example.android.camera2basic.hal.fake.FakeCamera;
+import com.example.android.camera2basic.hal.fake.FakeCameraHal;
+import com.example.android.camera2basic.hal.fake.ResultScript;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureControllerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeCameraHal mHal;
+    private FakeCamera mBack;
+    private FakeCamera mFront;
+
+    private final List<Integer> mTransitions = new ArrayList<>();
+    private final List<String> mEvents = new ArrayList<>();
+    private final List<byte[]> mSaved = new ArrayList<>();
+    private final List<HalResult> mSavedResults = new ArrayList<>();
+    private final List<HalResult> mLateResults = new ArrayList<>();
+
+    private CaptureController mController;
+
+    @Before
+    public void setUp() {
+        mHal = new FakeCameraHal();
+        mBack = mHal.addCamera(new CameraInfo.Builder("0")
+                .setFacing(CameraInfo.LENS_FACING_BACK)
+                .setSensorOrientation(90)
+                .setFlashSupported(true)
+                .build());
+        mFront = mHal.addCamera(new CameraInfo.Builder("1")
+                .setFacing(CameraInfo.LENS_FACING_FRONT)
+                .setSensorOrientation(270)
+                .build());
+        mController = new CaptureController(mHal, new CaptureController.JpegSink() {
+            @Override
+            public void save(ByteBuffer jpeg, long timestamp, long frameNumber,
+                    HalResult result) {
+                byte[] bytes = new byte[jpeg.remaining()];
+                jpeg.get(bytes);
+                mSaved.add(bytes);
+                mSavedResults.add(result);
+            }
+
+            @Override
+            public void onLateResult(HalResult result) {
+                mLateResults.add(result);
+            }
+        }, new RecordingListener(), new CaptureStateMachine.Listener() {
+            @Override
+            public void onStateChanged(int from, int to) {
+                mTransitions.add(to);
+            }
+        });
+    }
+
+    private void startPreview(String cameraId) throws HalException {
+        mController.open(cameraId);
+        assertTrue(mHal.runUntil(new FakeCameraHal.Condition() {
+            @Override
+            public boolean isMet() {
+                return mController.isPreviewing();
+            }
+        }, SECOND));
+        mTransitions.clear();
+    }
+
+    private boolean runUntilSaved(final int count) {
+        return mHal.runUntil(new FakeCameraHal.Condition() {
+            @Override
+            public boolean isMet() {
+                return mSaved.size() >= count;
+            }
+        }, 5 * SECOND);
+    }
+
+    @Test
+    public void takesPictureOnceFocusLocks() throws Exception {
+        startPreview("0");
+        assertTrue(mController.takePicture());
+        assertFalse("Second tap during a capture", mController.takePicture());
+        assertTrue(runUntilSaved(1));
+        mHal.runFor(SECOND / 10);
+
+        assertEquals(Arrays.asList(
+                CaptureStateMachine.STATE_WAITING_LOCK,
+                CaptureStateMachine.STATE_PICTURE_TAKEN,
+                CaptureStateMachine.STATE_PREVIEW), mTransitions);
+        assertEquals(CaptureStateMachine.STATE_PREVIEW, mController.getStateMachine().getState());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(mSaved.get(0)));
+        assertNotNull(image);
+        assertEquals(640, image.getWidth());
+        assertTrue(mController.takePicture());
+    }
+
+    @Test
+    public void runsPrecaptureWhenFlashIsRequired() throws Exception {
+        mBack.setScript(new ResultScript.Builder()
+                .setAeIdle(HalResult.AE_STATE_FLASH_REQUIRED)
+                .setAeAfterPrecapture(HalResult.AE_STATE_SEARCHING,
+                        HalResult.AE_STATE_PRECAPTURE, HalResult.AE_STATE_PRECAPTURE,
+                        HalResult.AE_STATE_CONVERGED)
+                .build());
+        startPreview("0");
+        mController.takePicture();
+        assertTrue(runUntilSaved(1));
+
+        assertEquals(Arrays.asList(
+                CaptureStateMachine.STATE_WAITING_LOCK,
+                CaptureStateMachine.STATE_WAITING_PRECAPTURE,
+                CaptureStateMachine.STATE_WAITING_NON_PRECAPTURE,
+                CaptureStateMachine.STATE_PICTURE_TAKEN,
+                CaptureStateMachine.STATE_PREVIEW), mTransitions);
+    }
+
+    @Test
+    public void capturesWithoutAfOrAeStates() throws Exception {
+        mBack.setScript(new ResultScript.Builder()
+                .setAfIdle(HalResult.STATE_UNAVAILABLE)
+                .setAfAfterTrigger(HalResult.STATE_UNAVAILABLE)
+                .setAeIdle(HalResult.STATE_UNAVAILABLE)
+                .build());
+        startPreview("0");
+        mController.takePicture();
+        assertTrue(runUntilSaved(1));
+    }
+
+    @Test
+    public void timesOutWhenFocusNeverLocks() throws Exception {
+        mBack.setScript(new ResultScript.Builder()
+                .setAfAfterTrigger(HalResult.AF_STATE_ACTIVE_SCAN)
+                .build());
+        mController.setCaptureTimeout(2 * SECOND);
+        startPreview("0");
+        RecordingCallback callback = new RecordingCallback();
+        mController.queuePicture(callback);
+        mHal.runFor(SECOND);
+        assertEquals(CaptureStateMachine.STATE_WAITING_LOCK,
+                mController.getStateMachine().getState());
+        mHal.runFor(2 * SECOND);
+
+        assertEquals(Arrays.asList("preview 0",
+                "timeout " + CaptureStateMachine.STATE_WAITING_LOCK), mEvents);
+        assertEquals(Arrays.asList(-1L), callback.mFailed);
+        assertEquals(CaptureStateMachine.STATE_PREVIEW, mController.getStateMachine().getState());
+        // Focus locks again: the next picture goes through.
+        mBack.setScript(new ResultScript.Builder().build());
+        mController.takePicture();
+        assertTrue(runUntilSaved(1));
+    }
+
+    @Test
+    public void waitsForASharpFrameOnceFocusLocks() throws Exception {
+        final float[] centerScore = {0f};
+        SharpnessGate gate = new SharpnessGate(new SharpnessAnalyzer(
+                SharpnessAnalyzer.METHOD_LAPLACIAN, 2, 3, 3) {
+            @Override
+            public SharpnessStats getLatest(SharpnessStats out) {
+                out.timestamp = Long.MAX_VALUE;
+                out.centerScore = centerScore[0];
+                return out;
+            }
+        }, 10);
+        gate.setThreshold(50f);
+        mController.setSharpnessGate(gate);
+        startPreview("0");
+        mController.takePicture();
+        mHal.runFor(SECOND / 10);
+        assertEquals(CaptureStateMachine.STATE_WAITING_LOCK,
+                mController.getStateMachine().getState());
+        centerScore[0] = 80f;
+        assertTrue(runUntilSaved(1));
+        assertEquals(0, gate.getGiveUps());
+
+        // A blurry scene captures anyway after the maximum wait.
+        centerScore[0] = 0f;
+        mController.takePicture();
+        assertTrue(runUntilSaved(2));
+        assertEquals(1, gate.getGiveUps());
+    }
+
+    @Test
+    public void recoversFromFailedStillCapture() throws Exception {
+        startPreview("0");
+        mController.takePicture();
+        // Fail the still frame only: it is the first frame after focus locks.
+        mHal.runUntil(new FakeCameraHal.Condition() {
+            @Override
+            public boolean isMet() {
+                return mController.getStateMachine().getState()
+                        == CaptureStateMachine.STATE_PICTURE_TAKEN;
+            }
+        }, SECOND);
+        mBack.failNextCaptures(1);
+        mHal.runFor(SECOND);
+
+        assertEquals(0, mSaved.size());
+        assertTrue(mEvents.contains("failed"));
+        assertEquals(CaptureStateMachine.STATE_PREVIEW, mController.getStateMachine().getState());
+        mController.takePicture();
+        assertTrue(runUntilSaved(1));
+    }
+
+    @Test
+    public void switchesBetweenFacings() throws Exception {
+        startPreview("0");
+        assertEquals("1", mController.switchCamera());
+        mHal.runFor(SECOND);
+        assertTrue(mController.isPreviewing());
+        assertFalse(mBack.isOpen());
+        assertTrue(mFront.isOpen());
+
+        mController.takePicture();
+        assertTrue(runUntilSaved(1));
+        assertEquals("0", mController.switchCamera());
+        mHal.runFor(SECOND);
+        assertTrue(mBack.isOpen());
+        assertEquals(Arrays.asList("preview 0", "preview 1", "saved", "preview 0"), mEvents);
+    }
+
+    @Test
+    public void nextCameraFacesTheOtherWay() {
+        List<String> ids = Arrays.asList("0", "1", "2");
+        int[] facings = {CameraInfo.LENS_FACING_BACK, CameraInfo.LENS_FACING_BACK,
+                CameraInfo.LENS_FACING_FRONT};
+        assertEquals("2", CaptureController.nextCamera(ids, facings, "0"));
+        assertEquals("2", CaptureController.nextCamera(ids, facings, "1"));
+        assertEquals("0", CaptureController.nextCamera(ids, facings, "2"));
+    }
+
+    @Test
+    public void nextCameraTakesTheNextOneOfTheSameFacing() {
+        List<String> ids = Arrays.asList("0", "1");
+        int[] facings = {CameraInfo.LENS_FACING_BACK, CameraInfo.LENS_FACING_BACK};
+        assertEquals("1", CaptureController.nextCamera(ids, facings, "0"));
+        assertEquals("0", CaptureController.nextCamera(ids, facings, "1"));
+    }
+
+    @Test
+    public void nextCameraWithoutCurrentTakesTheSecond() {
+        List<String> ids = Arrays.asList("0", "1");
+        int[] facings = {CameraInfo.LENS_FACING_BACK, CameraInfo.LENS_FACING_FRONT};
+        assertEquals("1", CaptureController.nextCamera(ids, facings, null));
+        assertEquals("1", CaptureController.nextCamera(ids, facings, "5"));
+    }
+
+    @Test
+    public void reportsOpenError() throws Exception {
+        mBack.failNextOpen(HalDevice.ERROR_CAMERA_IN_USE);
+        mController.open("0");
+        mHal.runFor(SECOND);
+        assertFalse(mController.isPreviewing());
+        assertEquals(Arrays.asList("error 0 " + HalDevice.ERROR_CAMERA_IN_USE), mEvents);
+    }
+
+    @Test
+    public void reportsConfigureFailure() throws Exception {
+        mBack.failNextConfigure();
+        mController.open("0");
+        mHal.runFor(SECOND);
+        assertFalse(mController.isPreviewing());
+        assertEquals(Arrays.asList("error 0 " + HalDevice.ERROR_CAMERA_DEVICE), mEvents);
+    }
+
+    @Test
+    public void reportsDisconnect() throws Exception {
+        mBack.disconnectAfter(SECOND);
+        startPreview("0");
+        mHal.runFor(2 * SECOND);
+        assertFalse(mController.isPreviewing());
+        assertFalse(mController.takePicture());
+        assertEquals(Arrays.asList("preview 0", "disconnected 0"), mEvents);
+    }
+
+    @Test
+    public void reportsAccessErrors() throws Exception {
+        startPreview("0");
+        mBack.setAccessError(true);
+        mController.takePicture();
+        assertEquals("access " + HalException.CAMERA_DISCONNECTED, mEvents.get(1));
+    }
+
+    @Test
+    public void deliversPreviewFramesAtTheFrameRate() throws Exception {
+        final long[] frames = new long[1];
+        mController.setFrameListener(new HalSession.FrameListener() {
+            @Override
+            public void onFrame(Frame frame) {
+                frames[0]++;
+                frame.release();
+            }
+        });
+        mBack.setFrameInterval(SECOND / 30);
+        startPreview("0");
+        // Skip the frames still in flight at the start.
+        mHal.runFor(SECOND);
+        long before = frames[0];
+        mHal.runFor(SECOND);
+        assertEquals(30, frames[0] - before);
+    }
+
+    @Test
+    public void keepsAnalyzingAfterSwitchingCameras() throws Exception {
+        final long[] analyzed = new long[1];
+        mController.setAnalysisPipeline(countingPipeline(analyzed), 100);
+        startPreview("0");
+        mHal.runFor(SECOND);
+        assertTrue(analyzed[0] > 0);
+
+        mController.switchCamera();
+        mHal.runFor(SECOND / 2);
+        long before = analyzed[0];
+        mHal.runFor(SECOND);
+        assertTrue(analyzed[0] > before);
+    }
+
+    @Test
+    public void keepsAnalyzingAfterReopeningTheSameCamera() throws Exception {
+        final long[] analyzed = new long[1];
+        mController.setAnalysisPipeline(countingPipeline(analyzed), 100);
+        startPreview("0");
+        mHal.runFor(SECOND);
+
+        // The fragment closes and reopens the camera when it switches preview backends.
+        mController.close();
+        startPreview("0");
+        long before = analyzed[0];
+        mHal.runFor(SECOND);
+        assertTrue(analyzed[0] > before);
+    }
+
+    /**
+     * @return A pipeline that counts the frames it analyzes in {@code analyzed[0]}, on the
+     * thread that submits them
+     */
+    private static AnalysisPipeline countingPipeline(final long[] analyzed) {
+        AnalysisPipeline pipeline = new AnalysisPipeline(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        pipeline.addAnalyzer(new FrameAnalyzer() {
+            @Override
+            public void analyze(Frame frame) {
+                analyzed[0]++;
+            }
+        });
+        return pipeline;
+    }
+
+    @Test
+    public void capturesHeadlessWithoutAPreviewStream() throws Exception {
+        mController.setPreviewTargets(HalRequest.TARGET_YUV);
+        startPreview("0");
+        assertTrue(mController.takePicture());
+        assertTrue(runUntilSaved(1));
+        mHal.runFor(SECOND / 10);
+
+        assertEquals(CaptureStateMachine.STATE_PREVIEW, mController.getStateMachine().getState());
+        assertEquals(HalRequest.TARGET_YUV | HalRequest.TARGET_JPEG, mBack.getTargetsStarted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsJpegAsAPreviewTarget() {
+        mController.setPreviewTargets(HalRequest.TARGET_YUV | HalRequest.TARGET_JPEG);
+    }
+
+    @Test
+    public void runsQueuedPicturesBackToBack() throws Exception {
+        startPreview("0");
+        RecordingCallback callback = new RecordingCallback();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(mController.queuePicture(callback));
+        }
+        assertFalse("Tap while pictures are queued", mController.takePicture());
+        assertEquals(3, mController.getQueuedPictures());
+        assertTrue(runUntilSaved(3));
+
+        assertEquals(3, callback.mFrames.size());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(callback.mTimestamps.get(i) > 0);
+            if (i > 0) {
+                assertTrue(callback.mFrames.get(i) > callback.mFrames.get(i - 1));
+            }
+        }
+        assertEquals(0, mController.getQueuedPictures());
+    }
+
+    @Test
+    public void refusesPicturesBeyondTheQueueLimit() throws Exception {
+        startPreview("0");
+        RecordingCallback callback = new RecordingCallback();
+        for (int i = 0; i < CaptureController.MAX_QUEUED_PICTURES; i++) {
+            assertTrue(mController.queuePicture(callback));
+        }
+        assertFalse(mController.queuePicture(callback));
+    }
+
+    @Test
+    public void holdsPicturesQueuedWhileTheCameraOpens() throws Exception {
+        assertFalse(mController.queuePicture(new RecordingCallback()));
+        mController.open("0");
+        RecordingCallback callback = new RecordingCallback();
+        assertTrue(mController.queuePicture(callback));
+        assertTrue(runUntilSaved(1));
+        assertEquals(1, callback.mTimestamps.size());
+    }
+
+    @Test
+    public void failsPicturesQueuedWhenTheCameraDoesNotOpen() throws Exception {
+        mBack.failNextOpen(HalDevice.ERROR_CAMERA_IN_USE);
+        mController.open("0");
+        RecordingCallback callback = new RecordingCallback();
+        assertTrue(mController.queuePicture(callback));
+        mHal.runFor(SECOND);
+        assertEquals(Arrays.asList(-1L), callback.mFailed);
+        assertEquals(0, mController.getQueuedPictures());
+
+        mBack.failNextConfigure();
+        mController.open("0");
+        assertTrue(mController.queuePicture(callback));
+        mHal.runFor(SECOND);
+        assertEquals(Arrays.asList(-1L, -1L), callback.mFailed);
+        assertEquals(0, mController.getQueuedPictures());
+    }
+
+    @Test
+    public void capturesWithoutTheLockSequenceWhile3AIsLocked() throws Exception {
+        startPreview("0");
+        assertTrue(mController.set3ALocked(true));
+        mHal.runFor(SECOND / 10);
+        RecordingCallback callback = new RecordingCallback();
+        mController.queuePicture(callback);
+        mController.queuePicture(callback);
+        assertTrue(runUntilSaved(2));
+        mHal.runFor(SECOND / 10);
+
+        assertEquals(Arrays.asList(
+                CaptureStateMachine.STATE_PICTURE_TAKEN,
+                CaptureStateMachine.STATE_PREVIEW,
+                CaptureStateMachine.STATE_PICTURE_TAKEN,
+                CaptureStateMachine.STATE_PREVIEW), mTransitions);
+        assertTrue(mController.is3ALocked());
+        assertTrue(mController.set3ALocked(false));
+        assertFalse(mController.is3ALocked());
+    }
+
+    @Test
+    public void matchesOutcomesOfAnOutOfOrderBurst() throws Exception {
+        // JPEGs take longer than results, so the second still fails while the first JPEG is
+        // still being encoded, and the third starts before either JPEG arrives.
+        mBack.setJpegLatency(SECOND / 2).failStillAfter(1);
+        startPreview("0");
+        assertTrue(mController.set3ALocked(true));
+        mHal.runFor(SECOND / 10);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        RecordingCallback third = new RecordingCallback();
+        mController.queuePicture(first);
+        mController.queuePicture(second);
+        mController.queuePicture(third);
+        assertTrue(runUntilSaved(2));
+        mHal.runFor(SECOND / 10);
+
+        assertEquals(1, second.mFailed.size());
+        assertTrue(second.mTimestamps.isEmpty());
+        assertEquals(1, first.mFrames.size());
+        assertEquals(1, third.mFrames.size());
+        assertTrue(first.mFailed.isEmpty());
+        assertTrue(third.mFailed.isEmpty());
+        long failedFrame = second.mFailed.get(0);
+        assertTrue(first.mFrames.get(0) < failedFrame);
+        assertTrue(third.mFrames.get(0) > failedFrame);
+        assertTrue(first.mTimestamps.get(0) < third.mTimestamps.get(0));
+        assertEquals(0, mController.getQueuedPictures());
+    }
+
+    @Test
+    public void passesTheExposureWithTheJpeg() throws Exception {
+        mBack.setExposure(20000000L, 800);
+        startPreview("0");
+        assertTrue(mController.takePicture());
+        assertTrue(runUntilSaved(1));
+
+        HalResult result = mSavedResults.get(0);
+        assertNotNull(result);
+        assertEquals(20000000L, result.getExposureTime());
+        assertEquals(800, result.getSensitivity());
+        assertTrue(mLateResults.isEmpty());
+    }
+
+    @Test
+    public void passesTheResultOfAnEarlyJpegLater() throws Exception {
+        mBack.setExposure(20000000L, 800).setJpegLatency(SECOND / 20)
+                .setResultLatency(SECOND / 10);
+        startPreview("0");
+        final List<Long> timestamps = new ArrayList<>();
+        assertTrue(mController.queuePicture(new CaptureController.PictureCallback() {
+            @Override
+            public void onPictureSaved(long timestamp, long frameNumber) {
+                timestamps.add(timestamp);
+            }
+
+            @Override
+            public void onPictureFailed(long frameNumber) {
+            }
+        }));
+        assertTrue(runUntilSaved(1));
+        assertNull(mSavedResults.get(0));
+        assertTrue(mHal.runUntil(new FakeCameraHal.Condition() {
+            @Override
+            public boolean isMet() {
+                return !mLateResults.isEmpty();
+            }
+        }, SECOND));
+
+        HalResult late = mLateResults.get(0);
+        assertEquals((long) timestamps.get(0), late.getTimestamp());
+        assertEquals(20000000L, late.getExposureTime());
+        assertEquals(800, late.getSensitivity());
+    }
+
+    @Test
+    public void failsQueuedPicturesWhenClosed() throws Exception {
+        startPreview("0");
+        RecordingCallback callback = new RecordingCallback();
+        mController.queuePicture(callback);
+        mController.queuePicture(callback);
+        mController.close();
+
+        assertEquals(Arrays.asList(-1L, -1L), callback.mFailed);
+        assertEquals(0, mController.getQueuedPictures());
+    }
+
+    @Test
+    public void savesPicturesToFiles() throws Exception {
+        final File dir = mFolder.newFolder();
+        mBack.setJpegSize(1280, 720, 100000);
+        CaptureController controller = new CaptureController(mHal,
+                new CaptureController.JpegSink() {
+                    @Override
+                    public void save(ByteBuffer jpeg, long timestamp, long frameNumber,
+                            HalResult result) throws IOException {
+                        FileOutputStream output = new FileOutputStream(
+                                new File(dir, frameNumber + ".jpg"));
+                        try {
+                            output.getChannel().write(jpeg);
+                        } finally {
+                            output.close();
+                        }
+                    }
+
+                    @Override
+                    public void onLateResult(HalResult result) {
+                    }
+                }, new RecordingListener(), null);
+        controller.open("0");
+        mHal.runFor(SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(controller.takePicture());
+            mHal.runFor(SECOND);
+        }
+
+        assertEquals(3, controller.getPicturesSaved());
+        File[] files = dir.listFiles();
+        assertEquals(3, files.length);
+        for (File file : files) {
+            assertTrue(file.length() > 100000);
+            BufferedImage image = ImageIO.read(file);
+            assertEquals(1280, image.getWidth());
+            assertEquals(720, image.getHeight());
+        }
+    }
+
+    private static final class RecordingCallback implements CaptureController.PictureCallback {
+
+        final List<Long> mTimestamps = new ArrayList<>();
+        final List<Long> mFrames = new ArrayList<>();
+        final List<Long> mFailed = new ArrayList<>();
+
+        @Override
+        public void onPictureSaved(long timestamp, long frameNumber) {
+            mTimestamps.add(timestamp);
+            mFrames.add(frameNumber);
+        }
+
+        @Override
+        public void onPictureFailed(long frameNumber) {
+            mFailed.add(frameNumber);
+        }
+
+    }
+
+    private final class RecordingListener extends CaptureController.Listener {
+
+        @Override
+        public void onPreviewStarted(String cameraId) {
+            mEvents.add("preview " + cameraId);
+        }
+
+        @Override
+        public void onPictureSaved(long frameNumber) {
+            mEvents.add("saved");
+        }
+
+        @Override
+        public void onCaptureFailed(long frameNumber) {
+            mEvents.add("failed");
+        }
+
+        @Override
+        public void onCameraError(String cameraId, int error) {
+            mEvents.add("error " + cameraId + " " + error);
+        }
+
+        @Override
+        public void onDisconnected(String cameraId) {
+            mEvents.add("disconnected " + cameraId);
+        }
+
+        @Override
+        public void onAccessError(HalException e) {
+            mEvents.add("access " + e.getReason());
+        }
+
+        @Override
+        public void onCaptureTimeout(int state) {
+            mEvents.add("timeout " + state);
+        }
+
+    }
+
+}
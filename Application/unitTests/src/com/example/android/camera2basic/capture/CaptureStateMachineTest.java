@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CaptureStateMachineTest {
+
+    private static final int UNAVAILABLE = HalResult.STATE_UNAVAILABLE;
+    private static final int SCANNING = HalResult.AF_STATE_ACTIVE_SCAN;
+    private static final int LOCKED = HalResult.AF_STATE_FOCUSED_LOCKED;
+    private static final int CONVERGED = HalResult.AE_STATE_CONVERGED;
+    private static final int PRECAPTURE = HalResult.AE_STATE_PRECAPTURE;
+
+    private final List<Integer> mTransitions = new ArrayList<>();
+    private CaptureStateMachine mMachine;
+
+    @Before
+    public void setUp() {
+        mMachine = new CaptureStateMachine(new CaptureStateMachine.Listener() {
+            @Override
+            public void onStateChanged(int from, int to) {
+                mTransitions.add(to);
+            }
+        });
+    }
+
+    @Test
+    public void previewIgnoresResults() {
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(LOCKED, CONVERGED, 1));
+        assertEquals(CaptureStateMachine.STATE_PREVIEW, mMachine.getState());
+        assertEquals(0, mTransitions.size());
+    }
+
+    @Test
+    public void capturesOnceFocusLocksWithConvergedExposure() {
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(SCANNING, CONVERGED, 1));
+        assertEquals(CaptureStateMachine.ACTION_CAPTURE, mMachine.onResult(LOCKED, CONVERGED, 2));
+        assertEquals(CaptureStateMachine.STATE_PICTURE_TAKEN, mMachine.getState());
+        // Late results of the same sequence do not capture twice.
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(LOCKED, CONVERGED, 3));
+    }
+
+    @Test
+    public void notFocusedLockCapturesToo() {
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        assertEquals(CaptureStateMachine.ACTION_CAPTURE,
+                mMachine.onResult(HalResult.AF_STATE_NOT_FOCUSED_LOCKED, UNAVAILABLE, 1));
+    }
+
+    @Test
+    public void capturesRightAwayWithoutAf() {
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        assertEquals(CaptureStateMachine.ACTION_CAPTURE,
+                mMachine.onResult(UNAVAILABLE, UNAVAILABLE, 1));
+        assertEquals(CaptureStateMachine.STATE_PICTURE_TAKEN, mMachine.getState());
+    }
+
+    @Test
+    public void runsPrecaptureWhenExposureIsNotConverged() {
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        assertEquals(CaptureStateMachine.ACTION_PRECAPTURE,
+                mMachine.onResult(LOCKED, HalResult.AE_STATE_FLASH_REQUIRED, 1));
+        assertEquals(CaptureStateMachine.STATE_WAITING_PRECAPTURE, mMachine.getState());
+        // Results from before the trigger took effect.
+        assertEquals(CaptureStateMachine.ACTION_NONE,
+                mMachine.onResult(LOCKED, HalResult.AE_STATE_SEARCHING, 2));
+        assertEquals(CaptureStateMachine.STATE_WAITING_PRECAPTURE, mMachine.getState());
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(LOCKED, PRECAPTURE, 3));
+        assertEquals(CaptureStateMachine.STATE_WAITING_NON_PRECAPTURE, mMachine.getState());
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(LOCKED, PRECAPTURE, 4));
+        assertEquals(CaptureStateMachine.ACTION_CAPTURE, mMachine.onResult(LOCKED, CONVERGED, 5));
+        assertEquals(Arrays.asList(
+                CaptureStateMachine.STATE_WAITING_LOCK,
+                CaptureStateMachine.STATE_WAITING_PRECAPTURE,
+                CaptureStateMachine.STATE_WAITING_NON_PRECAPTURE,
+                CaptureStateMachine.STATE_PICTURE_TAKEN), mTransitions);
+    }
+
+    @Test
+    public void unavailableExposureSkipsThePrecaptureWait() {
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_PRECAPTURE);
+        assertEquals(CaptureStateMachine.ACTION_NONE,
+                mMachine.onResult(LOCKED, UNAVAILABLE, 1));
+        assertEquals(CaptureStateMachine.ACTION_CAPTURE,
+                mMachine.onResult(LOCKED, UNAVAILABLE, 2));
+    }
+
+    @Test
+    public void gateHoldsTheCaptureUntilReady() {
+        final long[] readyFrom = {3};
+        mMachine.setGate(new CaptureStateMachine.Gate() {
+            @Override
+            public boolean isReady(long timestamp) {
+                return timestamp >= readyFrom[0];
+            }
+        });
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(LOCKED, CONVERGED, 1));
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(LOCKED, CONVERGED, 2));
+        assertEquals(CaptureStateMachine.STATE_WAITING_LOCK, mMachine.getState());
+        assertEquals(CaptureStateMachine.ACTION_CAPTURE, mMachine.onResult(LOCKED, CONVERGED, 3));
+    }
+
+    @Test
+    public void gateIsNotAskedWhileScanning() {
+        mMachine.setGate(new CaptureStateMachine.Gate() {
+            @Override
+            public boolean isReady(long timestamp) {
+                throw new AssertionError("Gate asked before focus locked");
+            }
+        });
+        mMachine.setState(CaptureStateMachine.STATE_WAITING_LOCK);
+        assertEquals(CaptureStateMachine.ACTION_NONE, mMachine.onResult(SCANNING, CONVERGED, 1));
+    }
+
+}
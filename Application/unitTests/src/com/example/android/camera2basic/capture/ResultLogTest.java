@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultLogTest {
+
+    @Test
+    public void roundTripsAllRecordTypes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ResultLogWriter writer = new ResultLogWriter(bytes, 1000);
+        writer.writeResult(1100, true, 7, 5000000000L, HalResult.AF_STATE_ACTIVE_SCAN,
+                HalResult.STATE_UNAVAILABLE, HalResult.AWB_STATE_CONVERGED);
+        writer.writeTrigger(1200);
+        writer.writeAction(1300, CaptureStateMachine.ACTION_PRECAPTURE);
+        // Frame numbers restart when the session is recreated.
+        writer.writeResult(1400, false, 0, 4000000000L, HalResult.AF_STATE_FOCUSED_LOCKED,
+                HalResult.AE_STATE_PRECAPTURE, HalResult.STATE_UNAVAILABLE);
+        writer.writeUnlock(1500);
+        assertEquals(5, writer.getRecordCount());
+        writer.close();
+
+        ResultLogReader reader = read(bytes.toByteArray());
+        assertTrue(reader.next());
+        assertEquals(ResultLog.TYPE_PARTIAL, reader.getType());
+        assertEquals(100, reader.getNanos());
+        assertEquals(7, reader.getFrameNumber());
+        assertEquals(5000000000L, reader.getTimestamp());
+        assertEquals(HalResult.AF_STATE_ACTIVE_SCAN, reader.getAfState());
+        assertEquals(HalResult.STATE_UNAVAILABLE, reader.getAeState());
+        assertEquals(HalResult.AWB_STATE_CONVERGED, reader.getAwbState());
+
+        assertTrue(reader.next());
+        assertEquals(ResultLog.TYPE_TRIGGER, reader.getType());
+        assertEquals(200, reader.getNanos());
+
+        assertTrue(reader.next());
+        assertEquals(ResultLog.TYPE_ACTION, reader.getType());
+        assertEquals(CaptureStateMachine.ACTION_PRECAPTURE, reader.getAction());
+
+        assertTrue(reader.next());
+        assertEquals(ResultLog.TYPE_RESULT, reader.getType());
+        assertEquals(0, reader.getFrameNumber());
+        assertEquals(4000000000L, reader.getTimestamp());
+        assertEquals(HalResult.AE_STATE_PRECAPTURE, reader.getAeState());
+        assertEquals(HalResult.STATE_UNAVAILABLE, reader.getAwbState());
+
+        assertTrue(reader.next());
+        assertEquals(ResultLog.TYPE_UNLOCK, reader.getType());
+        assertEquals(500, reader.getNanos());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void resultsAreCompact() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ResultLogWriter writer = new ResultLogWriter(bytes, 0);
+        for (int i = 1; i <= 1000; i++) {
+            writer.writeResult(i * 33333333L, false, i, 10000000000L + i * 33333333L,
+                    HalResult.AF_STATE_PASSIVE_FOCUSED, HalResult.AE_STATE_CONVERGED,
+                    HalResult.AWB_STATE_CONVERGED);
+        }
+        writer.close();
+        assertTrue(bytes.size() < 1000 * 14);
+    }
+
+    @Test
+    public void truncatedLogEndsAtLastCompleteRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ResultLogWriter writer = new ResultLogWriter(bytes, 0);
+        writer.writeTrigger(10);
+        writer.writeResult(20, false, 1, 1000, 1, 2, 3);
+        writer.close();
+        byte[] log = bytes.toByteArray();
+        ResultLogReader reader = read(Arrays.copyOf(log, log.length - 2));
+        assertTrue(reader.next());
+        assertEquals(ResultLog.TYPE_TRIGGER, reader.getType());
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        read(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0});
+    }
+
+    @Test
+    public void dropsRecordsAfterClose() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ResultLogWriter writer = new ResultLogWriter(bytes, 0);
+        writer.close();
+        writer.writeTrigger(10);
+        assertEquals(5, bytes.size());
+    }
+
+    private static ResultLogReader read(byte[] log) throws IOException {
+        return new ResultLogReader(new ByteArrayInputStream(log));
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResultReplayTest {
+
+    private static final long FRAME_NS = 33333333L;
+    private static final long TIMEOUT_NS = 5000000000L;
+
+    private static final int NONE = HalResult.STATE_UNAVAILABLE;
+    private static final int SCANNING = HalResult.AF_STATE_ACTIVE_SCAN;
+    private static final int LOCKED = HalResult.AF_STATE_FOCUSED_LOCKED;
+    private static final int CONVERGED = HalResult.AE_STATE_CONVERGED;
+    private static final int PRECAPTURE = HalResult.AE_STATE_PRECAPTURE;
+    private static final int FLASH = HalResult.AE_STATE_FLASH_REQUIRED;
+
+    private ByteArrayOutputStream mBytes;
+    private ResultLogWriter mWriter;
+    private long mFrame;
+
+    @Before
+    public void setUp() throws IOException {
+        mBytes = new ByteArrayOutputStream();
+        mWriter = new ResultLogWriter(mBytes, 0);
+    }
+
+    @Test
+    public void measuresShutterLagFromTriggerToCapture() throws IOException {
+        for (int sequence = 0; sequence < 10; sequence++) {
+            results(10, NONE, CONVERGED);
+            trigger();
+            // Focus locks after 1 + sequence frames.
+            results(1 + sequence, SCANNING, CONVERGED);
+            result(LOCKED, CONVERGED);
+            action(CaptureStateMachine.ACTION_CAPTURE);
+            results(3, LOCKED, CONVERGED);
+            unlock();
+        }
+        ResultReplay replay = replay();
+        assertEquals(10, replay.getSequenceCount());
+        assertEquals(10, replay.getCaptureCount());
+        assertEquals(0, replay.getStuckCount());
+        assertEquals(0, replay.getDivergenceCount());
+        assertEquals(10, replay.getShutterLag().getCount());
+        assertEquals(11 * FRAME_NS, replay.getShutterLag().getMax());
+        assertTrue(replay.getShutterLag().getPercentile(50) >= 5 * FRAME_NS);
+    }
+
+    @Test
+    public void capturesAfterThePrecaptureSequence() throws IOException {
+        trigger();
+        result(LOCKED, FLASH);
+        action(CaptureStateMachine.ACTION_PRECAPTURE);
+        results(2, LOCKED, PRECAPTURE);
+        result(LOCKED, CONVERGED);
+        action(CaptureStateMachine.ACTION_CAPTURE);
+        unlock();
+        ResultReplay replay = replay();
+        assertEquals(1, replay.getCaptureCount());
+        assertEquals(4 * FRAME_NS, replay.getShutterLag().getMax());
+        assertEquals(0, replay.getDivergenceCount());
+    }
+
+    @Test
+    public void countsStuckSequencesByState() throws IOException {
+        // Focus never locks; the app's watchdog unlocks after five seconds.
+        trigger();
+        results(200, SCANNING, CONVERGED);
+        unlock();
+        // Exposure never leaves precapture; the log ends first.
+        trigger();
+        result(LOCKED, FLASH);
+        action(CaptureStateMachine.ACTION_PRECAPTURE);
+        results(20, LOCKED, PRECAPTURE);
+        ResultReplay replay = replay();
+        assertEquals(2, replay.getSequenceCount());
+        assertEquals(0, replay.getCaptureCount());
+        assertEquals(1, replay.getStuckCount(CaptureStateMachine.STATE_WAITING_LOCK));
+        assertEquals(1,
+                replay.getStuckCount(CaptureStateMachine.STATE_WAITING_NON_PRECAPTURE));
+    }
+
+    @Test
+    public void aLateCaptureIsStuck() throws IOException {
+        trigger();
+        results((int) (TIMEOUT_NS / FRAME_NS) + 5, SCANNING, CONVERGED);
+        result(LOCKED, CONVERGED);
+        ResultReplay replay = replay();
+        assertEquals(0, replay.getCaptureCount());
+        assertEquals(1, replay.getStuckCount(CaptureStateMachine.STATE_WAITING_LOCK));
+    }
+
+    @Test
+    public void countsDivergingDecisions() throws IOException {
+        trigger();
+        // The app waited here, for example for a sharp frame, but the machine captures.
+        result(LOCKED, CONVERGED);
+        result(LOCKED, CONVERGED);
+        action(CaptureStateMachine.ACTION_CAPTURE);
+        // The app captured although focus was still scanning.
+        trigger();
+        result(SCANNING, CONVERGED);
+        action(CaptureStateMachine.ACTION_CAPTURE);
+        ResultReplay replay = replay();
+        // Each of the three results was acted on differently.
+        assertEquals(3, replay.getDivergenceCount());
+    }
+
+    @Test
+    public void reportsInReadableForm() throws IOException {
+        trigger();
+        result(LOCKED, CONVERGED);
+        action(CaptureStateMachine.ACTION_CAPTURE);
+        unlock();
+        trigger();
+        results(5, SCANNING, CONVERGED);
+        StringWriter out = new StringWriter();
+        replay().report(new PrintWriter(out));
+        String report = out.toString();
+        assertTrue(report, report.contains("sequences=2 captures=1 stuck=1"));
+        assertTrue(report, report.contains("stuck in WAITING_LOCK: 1"));
+    }
+
+    private ResultReplay replay() throws IOException {
+        mWriter.close();
+        ResultReplay replay = new ResultReplay(TIMEOUT_NS);
+        replay.replay(new ResultLogReader(new ByteArrayInputStream(mBytes.toByteArray())));
+        return replay;
+    }
+
+    private void results(int count, int afState, int aeState) throws IOException {
+        for (int i = 0; i < count; i++) {
+            result(afState, aeState);
+        }
+    }
+
+    private void result(int afState, int aeState) throws IOException {
+        mFrame++;
+        mWriter.writeResult(mFrame * FRAME_NS, false, mFrame, mFrame * FRAME_NS, afState,
+                aeState, HalResult.AWB_STATE_CONVERGED);
+    }
+
+    private void trigger() throws IOException {
+        mWriter.writeTrigger(mFrame * FRAME_NS);
+    }
+
+    private void action(int action) throws IOException {
+        mWriter.writeAction(mFrame * FRAME_NS, action);
+    }
+
+    private void unlock() throws IOException {
+        mWriter.writeUnlock(mFrame * FRAME_NS);
+    }
+
+}
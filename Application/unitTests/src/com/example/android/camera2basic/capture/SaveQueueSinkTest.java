@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.hal.HalResult;
+import com.example.android.camera2basic.hal.fake.SyntheticImages;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+import com.example.android.camera2basic.metrics.StripedCounter;
+import com.example.android.camera2basic.storage.BufferPool;
+import com.example.android.camera2basic.storage.JpegWriter;
+import com.example.android.camera2basic.storage.SaveQueue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SaveQueueSinkTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final MetricsRegistry mMetrics = new MetricsRegistry();
+    private final StripedCounter mDropped = new StripedCounter();
+
+    private SaveQueue mQueue;
+    private SaveQueueSink mSink;
+
+    @Before
+    public void setUp() {
+        BufferPool pool = new BufferPool(4 * 1024 * 1024, mMetrics);
+        mQueue = new SaveQueue(new File(mFolder.getRoot(), "journal.bin"),
+                new JpegWriter(JpegWriter.STRATEGY_CHANNEL), pool, mMetrics,
+                new SaveQueue.Listener() {
+                    @Override
+                    public void onSaved(long frameNumber, File file, long bytes) {
+                    }
+
+                    @Override
+                    public void onSaveFailed(long frameNumber, File file, IOException e) {
+                    }
+
+                    @Override
+                    public void onSpilled(long frameNumber, File file) {
+                    }
+                });
+        mQueue.start();
+        mSink = new SaveQueueSink(mQueue, pool, new SaveQueueSink.FileNamer() {
+            @Override
+            public File getFile(long timestamp, long frameNumber) {
+                return file(frameNumber);
+            }
+        }, mDropped);
+        mSink.setRigId("rig-7");
+    }
+
+    @After
+    public void tearDown() {
+        mQueue.stop(1000);
+    }
+
+    @Test
+    public void savesWithTheResult() throws IOException {
+        mSink.save(jpeg(), 1000, 1, new HalResult(1, 1000, 0, 0, 0, 20000000L, 400));
+        assertFalse(mSink.hasPending());
+        assertTrue(mQueue.drain(5000));
+
+        String saved = read(file(1));
+        assertTrue(saved.contains("cb:ExposureTime=\"20000000\""));
+        assertTrue(saved.contains("cb:Sensitivity=\"400\""));
+        assertTrue(saved.contains("cb:RigId=\"rig-7\""));
+    }
+
+    @Test
+    public void holdsAnEarlyJpegUntilItsResult() throws IOException {
+        ByteBuffer jpeg = jpeg();
+        mSink.save(jpeg, 1000, 1, null);
+        assertTrue(mSink.hasPending());
+        // The image goes back to the reader right away.
+        jpeg.clear();
+        jpeg.put(new byte[jpeg.capacity()]);
+        mSink.onLateResult(new HalResult(0, 900, 0, 0, 0, 10000000L, 100));
+        assertTrue(mSink.hasPending());
+        mSink.onLateResult(new HalResult(1, 1000, 0, 0, 0, 20000000L, 400));
+        assertFalse(mSink.hasPending());
+        assertTrue(mQueue.drain(5000));
+
+        String saved = read(file(1));
+        assertTrue(saved.contains("cb:ExposureTime=\"20000000\""));
+        assertTrue(saved.contains("cb:FrameNumber=\"1\""));
+    }
+
+    @Test
+    public void savesHeldJpegsWithoutTheirResults() throws IOException {
+        mSink.save(jpeg(), 1000, 1, null);
+        // A second early JPEG pushes out the first one.
+        mSink.save(jpeg(), 2000, 2, null);
+        assertTrue(mQueue.drain(5000));
+        assertTrue(file(1).exists());
+        assertFalse(read(file(1)).contains("cb:ExposureTime"));
+
+        mSink.flush();
+        assertFalse(mSink.hasPending());
+        assertTrue(mQueue.drain(5000));
+        assertTrue(file(2).exists());
+        assertEquals(0, mDropped.get());
+    }
+
+    @Test
+    public void countsHeldJpegsTheStoppedQueueRefuses() throws IOException {
+        mSink.save(jpeg(), 1000, 1, null);
+        mQueue.stop(1000);
+        mSink.flush();
+        assertEquals(1, mDropped.get());
+        assertFalse(file(1).exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsWhenTheQueueStopped() throws IOException {
+        mQueue.stop(1000);
+        mSink.save(jpeg(), 1000, 1, new HalResult(1, 1000, 0, 0, 0));
+    }
+
+    private File file(long frameNumber) {
+        return new File(mFolder.getRoot(), frameNumber + ".jpg");
+    }
+
+    private static ByteBuffer jpeg() {
+        byte[] bytes = SyntheticImages.createJpeg(64, 48, "still", 1000);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static String read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += input.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+        return new String(bytes, "ISO-8859-1");
+    }
+
+}
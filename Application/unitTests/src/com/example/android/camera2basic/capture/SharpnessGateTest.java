@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.capture;
+
+import com.example.android.camera2basic.analysis.SharpnessAnalyzer;
+import com.example.android.camera2basic.analysis.SharpnessStats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharpnessGateTest {
+
+    private final ScriptedAnalyzer mAnalyzer = new ScriptedAnalyzer();
+    private final SharpnessGate mGate = new SharpnessGate(mAnalyzer, 3);
+
+    @Test
+    public void opensRightAwayWithoutAThreshold() {
+        mAnalyzer.set(0, 0f);
+        assertTrue(mGate.isReady(1000));
+        assertEquals(0, mGate.getGiveUps());
+    }
+
+    @Test
+    public void waitsForASharpFrameFromAfterTheLock() {
+        mGate.setThreshold(10f);
+        mAnalyzer.set(900, 50f);
+        assertFalse("Sharp, but before the lock", mGate.isReady(1000));
+        mAnalyzer.set(1100, 5f);
+        assertFalse(mGate.isReady(1000));
+        mAnalyzer.set(1200, 50f);
+        assertTrue(mGate.isReady(1000));
+        assertEquals(0, mGate.getGiveUps());
+    }
+
+    @Test
+    public void givesUpAfterTheMaximumWait() {
+        mGate.setThreshold(10f);
+        mAnalyzer.set(2000, 5f);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(mGate.isReady(1000));
+        }
+        assertTrue(mGate.isReady(1000));
+        assertEquals(1, mGate.getGiveUps());
+
+        // Each capture sequence waits anew.
+        mGate.reset();
+        assertFalse(mGate.isReady(1000));
+    }
+
+    /**
+     * Reports the scores set by the test instead of analyzing frames.
+     */
+    private static final class ScriptedAnalyzer extends SharpnessAnalyzer {
+
+        private long mTimestamp;
+        private float mCenterScore;
+
+        ScriptedAnalyzer() {
+            super(METHOD_LAPLACIAN, 2, 3, 3);
+        }
+
+        void set(long timestamp, float centerScore) {
+            mTimestamp = timestamp;
+            mCenterScore = centerScore;
+        }
+
+        @Override
+        public SharpnessStats getLatest(SharpnessStats out) {
+            out.timestamp = mTimestamp;
+            out.centerScore = mCenterScore;
+            return out;
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteRangeTest {
+
+    private final long[] mBounds = new long[2];
+
+    private void assertPartial(String header, long length, long first, long last) {
+        assertEquals(header, ByteRange.PARTIAL, ByteRange.parse(header, length, mBounds));
+        assertEquals(first, mBounds[0]);
+        assertEquals(last, mBounds[1]);
+    }
+
+    @Test
+    public void parsesClosedRanges() {
+        assertPartial("bytes=0-499", 1000, 0, 499);
+        assertPartial("bytes=500-999", 1000, 500, 999);
+        assertPartial("bytes=0-0", 1000, 0, 0);
+        assertPartial("BYTES= 10-20", 1000, 10, 20);
+    }
+
+    @Test
+    public void clampsTheEndToTheFile() {
+        assertPartial("bytes=900-5000", 1000, 900, 999);
+        assertPartial("bytes=900-", 1000, 900, 999);
+    }
+
+    @Test
+    public void parsesSuffixRanges() {
+        assertPartial("bytes=-100", 1000, 900, 999);
+        assertPartial("bytes=-5000", 1000, 0, 999);
+    }
+
+    @Test
+    public void reportsRangesPastTheEnd() {
+        assertEquals(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000, mBounds));
+        assertEquals(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=2000-3000", 1000, mBounds));
+        assertEquals(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000, mBounds));
+        assertEquals(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0, mBounds));
+    }
+
+    @Test
+    public void ignoresMalformedAndMultipleRanges() {
+        String[] headers = {null, "", "bytes", "bytes=", "bytes=-", "bytes=a-b", "bytes=5-1",
+                "bytes=1-x", "items=0-1", "bytes=0-1,5-6", "bytes=99999999999999999999-"};
+        for (String header : headers) {
+            assertEquals(header, ByteRange.NONE, ByteRange.parse(header, 1000, mBounds));
+        }
+    }
+
+}
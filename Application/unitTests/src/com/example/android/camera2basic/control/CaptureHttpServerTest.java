@@ -0,0 +1,383 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import com.example.android.camera2basic.hal.fake.SyntheticImages;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureHttpServerTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final MetricsRegistry mMetrics = new MetricsRegistry();
+    private CaptureHttpServer mServer;
+    private MjpegStreamer mStreamer;
+    private int mEncoded;
+    private byte[] mLarge;
+    private byte[] mSmall;
+
+    @Before
+    public void setUp() throws IOException {
+        File dir = mFolder.newFolder();
+        Random random = new Random(1);
+        mLarge = new byte[3 * 1024 * 1024 + 17];
+        random.nextBytes(mLarge);
+        mSmall = new byte[1000];
+        random.nextBytes(mSmall);
+        write(new File(dir, "large.jpg"), mLarge);
+        write(new File(dir, "small.jpg"), mSmall);
+        new File(dir, "subdir").mkdir();
+        write(new File(mFolder.getRoot(), "secret.txt"), new byte[]{1});
+        mStreamer = new MjpegStreamer(new MjpegStreamer.Encoder() {
+            @Override
+            public void encode(byte[] nv21, int width, int height, int quality,
+                               OutputStream out) throws IOException {
+                // The encode count followed by padding, standing for a sizable JPEG.
+                out.write(ByteBuffer.allocate(4).putInt(mEncoded++).array());
+                out.write(new byte[256 * 1024]);
+            }
+        }, 320, 1000, mMetrics);
+        mServer = new CaptureHttpServer(dir, mMetrics);
+        mServer.setStream(mStreamer);
+        mServer.start(0);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.close();
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + mServer.getPort() + path).openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        input.close();
+        return output.toByteArray();
+    }
+
+    /**
+     * Sends {@code request} on a raw socket and returns everything until the server closes.
+     */
+    private String exchange(String request) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), mServer.getPort());
+        try {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes("US-ASCII"));
+            return new String(readAll(socket.getInputStream()), "ISO-8859-1");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void listsTheCaptures() throws IOException {
+        HttpURLConnection connection = open("/captures");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("application/json", connection.getContentType());
+        String json = new String(readAll(connection.getInputStream()), "UTF-8");
+
+        assertTrue(json, json.startsWith("[{\"name\":\"large.jpg\",\"size\":" + mLarge.length));
+        assertTrue(json, json.contains("{\"name\":\"small.jpg\",\"size\":1000,"));
+        assertTrue("Directories are not listed", !json.contains("subdir"));
+    }
+
+    @Test
+    public void servesWholeFiles() throws IOException {
+        HttpURLConnection connection = open("/captures/large.jpg");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("image/jpeg", connection.getContentType());
+        assertEquals("bytes", connection.getHeaderField("Accept-Ranges"));
+        assertEquals(mLarge.length, connection.getContentLength());
+        assertArrayEquals(mLarge, readAll(connection.getInputStream()));
+    }
+
+    @Test
+    public void servesRanges() throws IOException {
+        HttpURLConnection connection = open("/captures/large.jpg");
+        connection.setRequestProperty("Range", "bytes=1000000-");
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("bytes 1000000-" + (mLarge.length - 1) + "/" + mLarge.length,
+                connection.getHeaderField("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(mLarge, 1000000, mLarge.length),
+                readAll(connection.getInputStream()));
+
+        connection = open("/captures/small.jpg");
+        connection.setRequestProperty("Range", "bytes=-10");
+        assertEquals(206, connection.getResponseCode());
+        assertArrayEquals(Arrays.copyOfRange(mSmall, 990, 1000),
+                readAll(connection.getInputStream()));
+    }
+
+    @Test
+    public void rejectsRangesPastTheEnd() throws IOException {
+        HttpURLConnection connection = open("/captures/small.jpg");
+        connection.setRequestProperty("Range", "bytes=1000-");
+        assertEquals(416, connection.getResponseCode());
+        assertEquals("bytes */1000", connection.getHeaderField("Content-Range"));
+    }
+
+    @Test
+    public void answersHeadWithoutABody() throws IOException {
+        String response = exchange("HEAD /captures/small.jpg HTTP/1.1\r\n"
+                + "Connection: close\r\n\r\n");
+        assertTrue(response, response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response, response.contains("Content-Length: 1000\r\n"));
+        assertTrue(response, response.endsWith("\r\n\r\n"));
+    }
+
+    @Test
+    public void servesTheMetrics() throws IOException {
+        open("/captures").getResponseCode();
+        HttpURLConnection connection = open("/metrics");
+        assertEquals(200, connection.getResponseCode());
+        String text = new String(readAll(connection.getInputStream()), "UTF-8");
+        assertTrue(text, text.contains("http.requests = "));
+        assertTrue(text, text.contains("http.response"));
+    }
+
+    @Test
+    public void refusesPathsOutsideTheDirectory() throws IOException {
+        assertEquals(404, open("/captures/secret.txt").getResponseCode());
+        assertEquals(404, open("/captures/subdir").getResponseCode());
+        assertTrue(exchange("GET /captures/../secret.txt HTTP/1.0\r\n\r\n")
+                .startsWith("HTTP/1.1 404"));
+        assertTrue(exchange("GET /captures/%2e%2e/secret.txt HTTP/1.0\r\n\r\n")
+                .startsWith("HTTP/1.1 404"));
+        assertTrue(exchange("GET /captures/%2e%2e HTTP/1.0\r\n\r\n")
+                .startsWith("HTTP/1.1 404"));
+        assertEquals(404, open("/elsewhere").getResponseCode());
+    }
+
+    @Test
+    public void rejectsBadRequests() throws IOException {
+        assertTrue(exchange("POST /captures HTTP/1.0\r\n\r\n").startsWith("HTTP/1.1 405"));
+        assertTrue(exchange("nonsense\r\n\r\n").startsWith("HTTP/1.1 400"));
+        char[] header = new char[10000];
+        Arrays.fill(header, 'a');
+        assertTrue(exchange("GET /captures HTTP/1.1\r\nX: " + new String(header) + "\r\n\r\n")
+                .startsWith("HTTP/1.1 431"));
+    }
+
+    @Test
+    public void answersPipelinedRequestsInOrder() throws IOException {
+        String response = exchange("GET /captures/small.jpg HTTP/1.1\r\nRange: bytes=0-1\r\n\r\n"
+                + "GET /nothing HTTP/1.1\r\n\r\n"
+                + "GET /captures/small.jpg HTTP/1.1\r\nRange: bytes=2-3\r\n"
+                + "Connection: close\r\n\r\n");
+        int first = response.indexOf("HTTP/1.1 206");
+        int second = response.indexOf("HTTP/1.1 404");
+        int third = response.lastIndexOf("HTTP/1.1 206");
+        assertTrue(response, first == 0 && second > first && third > second);
+        assertTrue(response, response.endsWith(new String(mSmall, 2, 2, "ISO-8859-1")));
+    }
+
+    private Socket openStream() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), mServer.getPort());
+        socket.setSoTimeout(5000);
+        socket.getOutputStream().write("GET /stream.mjpeg HTTP/1.1\r\n\r\n".getBytes("US-ASCII"));
+        return socket;
+    }
+
+    private static String readLine(DataInputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("End of stream");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Reads the next part of a stream, skipping the response head first if needed.
+     *
+     * @return The encode count of the frame
+     */
+    private static int readPart(DataInputStream input) throws IOException {
+        String line;
+        while (!(line = readLine(input)).equals("--mjpegframe")) {
+            assertTrue(line, line.isEmpty() || line.startsWith("HTTP/1.1 200")
+                    || line.startsWith("Content-Type: multipart/x-mixed-replace")
+                    || line.startsWith("Cache-Control") || line.startsWith("Connection"));
+        }
+        int length = -1;
+        while (!(line = readLine(input)).isEmpty()) {
+            if (line.startsWith("Content-Length: ")) {
+                length = Integer.parseInt(line.substring("Content-Length: ".length()));
+            }
+        }
+        byte[] jpeg = new byte[length];
+        input.readFully(jpeg);
+        assertEquals("", readLine(input));
+        return ByteBuffer.wrap(jpeg).getInt();
+    }
+
+    private void awaitStreamClients(long count) throws InterruptedException {
+        for (int i = 0; i < 500 && mMetrics.gauge("stream.clients").get() != count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, mMetrics.gauge("stream.clients").get());
+    }
+
+    @Test
+    public void streamsEveryFrameToEveryClient() throws Exception {
+        Socket first = openStream();
+        Socket second = openStream();
+        try {
+            DataInputStream firstInput = new DataInputStream(first.getInputStream());
+            DataInputStream secondInput = new DataInputStream(second.getInputStream());
+            awaitStreamClients(2);
+            for (int i = 0; i < 5; i++) {
+                mStreamer.analyze(SyntheticImages.createYuv(640, 480, i, i * 100000000L));
+                assertEquals(i, readPart(firstInput));
+                assertEquals(i, readPart(secondInput));
+            }
+            assertEquals("Encoded once per frame", 5, mEncoded);
+        } finally {
+            first.close();
+            second.close();
+        }
+        awaitStreamClients(0);
+        mStreamer.analyze(SyntheticImages.createYuv(640, 480, 5, 500000000L));
+        assertEquals("Nothing encoded without clients", 5, mEncoded);
+    }
+
+    @Test
+    public void skipsFramesForSlowClients() throws Exception {
+        Socket socket = openStream();
+        try {
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            awaitStreamClients(1);
+            // The client reads nothing while 40 frames of 256 KB are published.
+            for (int i = 0; i < 40; i++) {
+                mStreamer.analyze(SyntheticImages.createYuv(640, 480, i, i * 100000000L));
+            }
+            Thread.sleep(100);
+            int received = 0;
+            int last;
+            do {
+                last = readPart(input);
+                received++;
+            } while (last != 39);
+
+            assertTrue("Received " + received, received < 40);
+            assertTrue(mMetrics.counter("stream.frames_skipped").get() > 0);
+            assertEquals(40, mEncoded);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void servesManyConcurrentClients() throws Exception {
+        final int clients = 32;
+        final int requestsPerClient = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                final int client = c;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        Random random = new Random(client);
+                        for (int i = 0; i < requestsPerClient; i++) {
+                            HttpURLConnection connection = open("/captures/large.jpg");
+                            int first = random.nextInt(mLarge.length);
+                            int last = Math.min(mLarge.length - 1,
+                                    first + random.nextInt(512 * 1024));
+                            connection.setRequestProperty("Range",
+                                    "bytes=" + first + "-" + last);
+                            assertEquals(206, connection.getResponseCode());
+                            assertArrayEquals(Arrays.copyOfRange(mLarge, first, last + 1),
+                                    readAll(connection.getInputStream()));
+                        }
+                        return requestsPerClient;
+                    }
+                }));
+            }
+            int completed = 0;
+            for (Future<Integer> result : results) {
+                completed += result.get();
+            }
+            assertEquals(clients * requestsPerClient, completed);
+            assertEquals(clients * requestsPerClient,
+                    mMetrics.counter("http.requests").get());
+            assertEquals(0, mMetrics.counter("http.errors").get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.hal.fake.SyntheticImages;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MjpegStreamerTest {
+
+    private static final long FRAME_NS = 33333333L;
+
+    private final MetricsRegistry mMetrics = new MetricsRegistry();
+    private final CountingEncoder mEncoder = new CountingEncoder();
+
+    private static Frame frame(long sequence) {
+        return SyntheticImages.createYuv(640, 480, sequence, 1000000000L + sequence * FRAME_NS);
+    }
+
+    @Test
+    public void encodesNothingWithoutListeners() {
+        MjpegStreamer streamer = new MjpegStreamer(mEncoder, 320, 30, mMetrics);
+        for (int i = 0; i < 10; i++) {
+            streamer.analyze(frame(i));
+        }
+        assertEquals(0, mEncoder.mCalls);
+        assertNull(streamer.getLatest());
+    }
+
+    @Test
+    public void encodesOncePerFrameForAllListeners() {
+        MjpegStreamer streamer = new MjpegStreamer(mEncoder, 320, 30, mMetrics);
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        streamer.addListener(first);
+        streamer.addListener(second);
+        for (int i = 0; i < 5; i++) {
+            streamer.analyze(frame(i));
+        }
+
+        assertEquals(5, mEncoder.mCalls);
+        assertEquals(5, first.mFrames.size());
+        for (int i = 0; i < 5; i++) {
+            assertSame(first.mFrames.get(i), second.mFrames.get(i));
+            assertEquals(i, first.mFrames.get(i).getSequence());
+        }
+        assertSame(first.mFrames.get(4), streamer.getLatest());
+        assertEquals(5, mMetrics.counter("stream.encoded").get());
+    }
+
+    @Test
+    public void downscalesBeforeEncoding() {
+        MjpegStreamer streamer = new MjpegStreamer(mEncoder, 320, 30, mMetrics);
+        RecordingListener listener = new RecordingListener();
+        streamer.addListener(listener);
+        streamer.setQuality(55);
+        streamer.analyze(frame(0));
+
+        assertArrayEquals(new byte[]{(byte) (320 / 8), (byte) (240 / 8), 55},
+                listener.mFrames.get(0).getJpeg());
+    }
+
+    @Test
+    public void throttlesToTheFrameRate() {
+        MjpegStreamer streamer = new MjpegStreamer(mEncoder, 320, 10, mMetrics);
+        streamer.addListener(new RecordingListener());
+        // Three seconds at 30 fps.
+        for (int i = 0; i < 90; i++) {
+            streamer.analyze(frame(i));
+        }
+        assertEquals(30, mEncoder.mCalls);
+        assertEquals(60, mMetrics.counter("stream.throttled").get());
+    }
+
+    @Test
+    public void stopsEncodingWhenTheLastListenerLeaves() {
+        MjpegStreamer streamer = new MjpegStreamer(mEncoder, 320, 30, mMetrics);
+        RecordingListener listener = new RecordingListener();
+        streamer.addListener(listener);
+        streamer.analyze(frame(0));
+        streamer.removeListener(listener);
+        streamer.analyze(frame(1));
+        assertEquals(1, mEncoder.mCalls);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveFrameRates() {
+        new MjpegStreamer(mEncoder, 320, 0, mMetrics);
+    }
+
+    /**
+     * Writes the size divided by 8 and the quality instead of a JPEG.
+     */
+    private static final class CountingEncoder implements MjpegStreamer.Encoder {
+
+        int mCalls;
+
+        @Override
+        public void encode(byte[] nv21, int width, int height, int quality, OutputStream out)
+                throws IOException {
+            mCalls++;
+            assertEquals(width * height * 3 / 2, nv21.length);
+            out.write(new byte[]{(byte) (width / 8), (byte) (height / 8), (byte) quality});
+        }
+
+    }
+
+    private static final class RecordingListener implements MjpegStreamer.Listener {
+
+        final List<MjpegStreamer.EncodedFrame> mFrames = new ArrayList<>();
+
+        @Override
+        public void onFrameEncoded(MjpegStreamer.EncodedFrame frame) {
+            mFrames.add(frame);
+        }
+
+    }
+
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.control;
+
+import com.example.android.camera2basic.capture.CaptureController;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerServerTest {
+
+    private static final int SHELL_UID = 2000;
+    private static final int APP_UID = 10042;
+
+    private final FakeTarget mTarget = new FakeTarget();
+    private final MetricsRegistry mMetrics = new MetricsRegistry();
+    private TcpAcceptor mAcceptor;
+    private TriggerServer mServer;
+    private Socket mSocket;
+    private DataInputStream mInput;
+    private OutputStream mOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        mAcceptor = new TcpAcceptor();
+        mServer = new TriggerServer(mTarget, mMetrics, SHELL_UID, APP_UID);
+        mServer.start(mAcceptor);
+        mSocket = connect();
+        mInput = new DataInputStream(mSocket.getInputStream());
+        mOutput = mSocket.getOutputStream();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mSocket.close();
+        mServer.close();
+        mTarget.mCamera.shutdownNow();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), mAcceptor.getPort());
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private void send(int tag, int op, int argument) throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(TriggerProtocol.REQUEST_SIZE);
+        TriggerProtocol.putRequest(request, tag, op, argument);
+        mOutput.write(request.array());
+    }
+
+    private Response receive() throws IOException {
+        byte[] header = new byte[TriggerProtocol.HEADER_SIZE];
+        mInput.readFully(header);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        Response response = new Response();
+        response.tag = buffer.getInt();
+        response.op = buffer.get() & 0xFF;
+        response.status = buffer.get() & 0xFF;
+        byte[] payload = new byte[buffer.getShort() & 0xFFFF];
+        mInput.readFully(payload);
+        response.payload = ByteBuffer.wrap(payload);
+        return response;
+    }
+
+    @Test
+    public void answersCaptureWithTheSensorTimestamp() throws IOException {
+        send(7, TriggerProtocol.OP_CAPTURE, 0);
+        Response response = receive();
+
+        assertEquals(7, response.tag);
+        assertEquals(TriggerProtocol.OP_CAPTURE, response.op);
+        assertEquals(TriggerProtocol.STATUS_OK, response.status);
+        assertEquals(TriggerProtocol.PICTURE_SIZE, response.payload.remaining());
+        assertEquals(FakeTarget.timestampOf(0), response.payload.getLong());
+        assertEquals(0, response.payload.getLong());
+    }
+
+    @Test
+    public void answersEveryPictureOfABurst() throws IOException {
+        send(1, TriggerProtocol.OP_BURST, 5);
+        Set<Long> frames = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            Response response = receive();
+            assertEquals(1, response.tag);
+            assertEquals(TriggerProtocol.STATUS_OK, response.status);
+            long timestamp = response.payload.getLong();
+            long frameNumber = response.payload.getLong();
+            assertEquals(FakeTarget.timestampOf(frameNumber), timestamp);
+            frames.add(frameNumber);
+        }
+        assertEquals(5, frames.size());
+    }
+
+    @Test
+    public void reportsPicturesThatDidNotFitTheQueueAsBusy() throws IOException {
+        mTarget.mCapacity = 2;
+        send(3, TriggerProtocol.OP_BURST, 4);
+        int ok = 0;
+        int busy = 0;
+        for (int i = 0; i < 4; i++) {
+            Response response = receive();
+            if (response.status == TriggerProtocol.STATUS_OK) {
+                ok++;
+            } else {
+                assertEquals(TriggerProtocol.STATUS_BUSY, response.status);
+                response.payload.getLong();
+                assertEquals(-1, response.payload.getLong());
+                busy++;
+            }
+        }
+        assertEquals(2, ok);
+        assertEquals(2, busy);
+    }
+
+    @Test
+    public void reportsFailedPictures() throws IOException {
+        mTarget.mFail = true;
+        send(4, TriggerProtocol.OP_CAPTURE, 0);
+        Response response = receive();
+        assertEquals(TriggerProtocol.STATUS_FAILED, response.status);
+        assertEquals(0, response.payload.getLong());
+        assertEquals(0, response.payload.getLong());
+    }
+
+    @Test
+    public void locksAndReportsStatus() throws IOException {
+        send(1, TriggerProtocol.OP_LOCK_3A, 1);
+        assertEquals(TriggerProtocol.STATUS_OK, receive().status);
+        send(2, TriggerProtocol.OP_CAPTURE, 0);
+        receive();
+        send(3, TriggerProtocol.OP_STATUS, 0);
+        Response response = receive();
+
+        assertEquals(3, response.tag);
+        assertEquals(TriggerProtocol.STATUS_SIZE, response.payload.remaining());
+        TriggerProtocol.Status status = new TriggerProtocol.Status();
+        status.read(response.payload);
+        assertTrue(status.locked);
+        assertTrue(status.previewing);
+        assertEquals(1, status.saved);
+        assertEquals(FakeTarget.timestampOf(0), status.lastTimestamp);
+    }
+
+    @Test
+    public void returnsTheLastFile() throws IOException {
+        send(1, TriggerProtocol.OP_LAST_FILE, 0);
+        assertEquals(TriggerProtocol.STATUS_UNAVAILABLE, receive().status);
+
+        send(2, TriggerProtocol.OP_CAPTURE, 0);
+        receive();
+        send(3, TriggerProtocol.OP_LAST_FILE, 0);
+        Response response = receive();
+        assertEquals(TriggerProtocol.STATUS_OK, response.status);
+        assertEquals("headless-0.jpg", new String(response.payload.array(), "UTF-8"));
+    }
+
+    @Test
+    public void rejectsMalformedRequests() throws IOException {
+        send(1, 99, 0);
+        send(2, TriggerProtocol.OP_BURST, 0);
+        send(3, TriggerProtocol.OP_BURST, TriggerProtocol.MAX_BURST + 1);
+        send(4, TriggerProtocol.OP_LOCK_3A, 2);
+        for (int tag = 1; tag <= 4; tag++) {
+            Response response = receive();
+            assertEquals(tag, response.tag);
+            assertEquals(TriggerProtocol.STATUS_BAD_REQUEST, response.status);
+        }
+        assertEquals(0, mTarget.mNextFrame);
+        // The connection survives bad requests.
+        send(5, TriggerProtocol.OP_CAPTURE, 0);
+        assertEquals(TriggerProtocol.STATUS_OK, receive().status);
+    }
+
+    @Test
+    public void servesSeveralClients() throws Exception {
+        Socket other = connect();
+        try {
+            DataInputStream otherInput = new DataInputStream(other.getInputStream());
+            ByteBuffer request = ByteBuffer.allocate(TriggerProtocol.REQUEST_SIZE);
+            TriggerProtocol.putRequest(request, 9, TriggerProtocol.OP_CAPTURE, 0);
+            other.getOutputStream().write(request.array());
+            send(8, TriggerProtocol.OP_CAPTURE, 0);
+
+            assertEquals(8, receive().tag);
+            byte[] response = new byte[TriggerProtocol.HEADER_SIZE + TriggerProtocol.PICTURE_SIZE];
+            otherInput.readFully(response);
+            assertEquals(9, ByteBuffer.wrap(response).getInt());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void disconnectsClientsOnClose() throws IOException {
+        send(1, TriggerProtocol.OP_STATUS, 0);
+        receive();
+        mServer.close();
+        assertEquals(-1, mInput.read());
+        assertEquals(0, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void rejectsClientsWithOtherUids() throws IOException {
+        // A round trip makes sure the server accepted the first client as the shell.
+        send(1, TriggerProtocol.OP_STATUS, 0);
+        receive();
+        mAcceptor.mPeerUid = APP_UID + 1;
+        Socket other = connect();
+        try {
+            assertEquals(-1, other.getInputStream().read());
+        } finally {
+            other.close();
+        }
+        assertEquals(1, mMetrics.counter("trigger.rejected").get());
+
+        mAcceptor.mPeerUid = APP_UID;
+        Socket app = connect();
+        try {
+            ByteBuffer request = ByteBuffer.allocate(TriggerProtocol.REQUEST_SIZE);
+            TriggerProtocol.putRequest(request, 5, TriggerProtocol.OP_STATUS, 0);
+            app.getOutputStream().write(request.array());
+            byte[] header = new byte[TriggerProtocol.HEADER_SIZE];
+            new DataInputStream(app.getInputStream()).readFully(header);
+            assertEquals(5, ByteBuffer.wrap(header).getInt());
+        } finally {
+            app.close();
+        }
+    }
+
+    @Test
+    public void capsTheConnections() throws IOException {
+        send(1, TriggerProtocol.OP_STATUS, 0);
+        receive();
+        Socket[] others = new Socket[TriggerServer.MAX_CONNECTIONS];
+        try {
+            for (int i = 0; i < others.length - 1; i++) {
+                others[i] = connect();
+                // A round trip makes sure the server registered the connection.
+                ByteBuffer request = ByteBuffer.allocate(TriggerProtocol.REQUEST_SIZE);
+                TriggerProtocol.putRequest(request, i, TriggerProtocol.OP_STATUS, 0);
+                others[i].getOutputStream().write(request.array());
+                new DataInputStream(others[i].getInputStream()).readFully(
+                        new byte[TriggerProtocol.HEADER_SIZE + TriggerProtocol.STATUS_SIZE]);
+            }
+            assertEquals(TriggerServer.MAX_CONNECTIONS, mServer.getConnectionCount());
+
+            Socket extra = connect();
+            others[others.length - 1] = extra;
+            assertEquals(-1, extra.getInputStream().read());
+            assertEquals(1, mMetrics.counter("trigger.rejected").get());
+        } finally {
+            for (Socket other : others) {
+                if (other != null) {
+                    other.close();
+                }
+            }
+        }
+    }
+
+    private static final class Response {
+        int tag;
+        int op;
+        int status;
+        ByteBuffer payload;
+    }
+
+    /**
+     * Serves loopback TCP clients, reporting {@link #mPeerUid} as the uid of each.
+     */
+    private static final class TcpAcceptor implements TriggerServer.Acceptor {
+
+        final ServerSocket mServerSocket;
+        volatile int mPeerUid = SHELL_UID;
+
+        TcpAcceptor() throws IOException {
+            mServerSocket = new ServerSocket();
+            mServerSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        }
+
+        int getPort() {
+            return mServerSocket.getLocalPort();
+        }
+
+        @Override
+        public TriggerServer.Link accept() throws IOException {
+            final Socket socket = mServerSocket.accept();
+            socket.setTcpNoDelay(true);
+            final int uid = mPeerUid;
+            return new TriggerServer.Link() {
+                @Override
+                public int getPeerUid() {
+                    return uid;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return socket.getInputStream();
+                }
+
+                @Override
+                public OutputStream getOutputStream() throws IOException {
+                    return socket.getOutputStream();
+                }
+
+                @Override
+                public void close() {
+                    closeQuietly(socket);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            try {
+                mServerSocket.close();
+            } catch (IOException e) {
+                // Nothing left to release.
+            }
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to release.
+            }
+        }
+
+    }
+
+    /**
+     * Completes pictures on its own thread, like the camera thread of the service.
+     */
+    private static final class FakeTarget implements TriggerServer.Target {
+
+        final ExecutorService mCamera = Executors.newSingleThreadExecutor();
+        volatile int mCapacity = Integer.MAX_VALUE;
+        volatile boolean mFail;
+        volatile boolean mLocked;
+        volatile long mNextFrame;
+        volatile long mSaved;
+        volatile long mLastTimestamp;
+
+        static long timestampOf(long frameNumber) {
+            return 1000000000L + frameNumber * 33333333L;
+        }
+
+        @Override
+        public int capture(int count, final CaptureController.PictureCallback callback) {
+            int queued = Math.min(count, mCapacity);
+            for (int i = 0; i < queued; i++) {
+                mCamera.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long frameNumber = mNextFrame++;
+                        if (mFail) {
+                            callback.onPictureFailed(frameNumber);
+                            return;
+                        }
+                        mSaved++;
+                        mLastTimestamp = timestampOf(frameNumber);
+                        callback.onPictureSaved(mLastTimestamp, frameNumber);
+                    }
+                });
+            }
+            return queued;
+        }
+
+        @Override
+        public int set3ALocked(boolean locked) {
+            mLocked = locked;
+            return TriggerProtocol.STATUS_OK;
+        }
+
+        @Override
+        public void getStatus(TriggerProtocol.Status status) {
+            status.previewing = true;
+            status.locked = mLocked;
+            status.saved = mSaved;
+            status.lastTimestamp = mLastTimestamp;
+        }
+
+        @Override
+        public String getLastFile() {
+            return mSaved == 0 ? null : "headless-" + (mNextFrame - 1) + ".jpg";
+        }
+
+    }
+
+}
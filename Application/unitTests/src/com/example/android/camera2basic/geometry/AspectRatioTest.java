@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AspectRatioTest {
+
+    @Test
+    public void reducesToLowestTerms() {
+        int[] out = new int[2];
+        AspectRatio.reduce(1440, 1080, out);
+        assertEquals(4, out[0]);
+        assertEquals(3, out[1]);
+        AspectRatio.reduce(1080, 1920, out);
+        assertEquals(9, out[0]);
+        assertEquals(16, out[1]);
+        AspectRatio.reduce(1000, 997, out);
+        assertEquals(1000, out[0]);
+        assertEquals(997, out[1]);
+    }
+
+    @Test
+    public void zeroSideMeansNoRatio() {
+        int[] out = {7, 7};
+        AspectRatio.reduce(0, 1080, out);
+        assertEquals(0, out[0]);
+        assertEquals(0, out[1]);
+    }
+
+    @Test
+    public void fitsTheLargestSizeOfTheRatio() {
+        int[] out = new int[2];
+        AspectRatio.fit(1080, 2220, 3, 4, out);
+        assertEquals(1080, out[0]);
+        assertEquals(1440, out[1]);
+        AspectRatio.fit(2220, 1080, 4, 3, out);
+        assertEquals(1440, out[0]);
+        assertEquals(1080, out[1]);
+        AspectRatio.fit(1080, 2220, 0, 0, out);
+        assertEquals(1080, out[0]);
+        assertEquals(2220, out[1]);
+    }
+
+    @Test
+    public void fitMatchesForEquivalentRatios() {
+        int[] reduced = new int[2];
+        int[] raw = new int[2];
+        AspectRatio.fit(1081, 1999, 3, 4, reduced);
+        AspectRatio.fit(1081, 1999, 1080, 1440, raw);
+        assertEquals(raw[0], reduced[0]);
+        assertEquals(raw[1], reduced[1]);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+import com.example.android.camera2basic.hal.CameraInfo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrientationCalculatorTest {
+
+    private static final int[] SENSOR_ORIENTATIONS = {0, 90, 180, 270};
+    private static final int[] FACINGS = {
+            CameraInfo.LENS_FACING_FRONT,
+            CameraInfo.LENS_FACING_BACK,
+            CameraInfo.LENS_FACING_EXTERNAL,
+    };
+
+    /**
+     * The table the sample used to keep in {@code ORIENTATIONS}, by display rotation.
+     */
+    private static final int[] SAMPLE_ORIENTATIONS = {90, 0, 270, 180};
+
+    @Test
+    public void backCamerasMatchTheSampleFormula() {
+        for (int sensor : SENSOR_ORIENTATIONS) {
+            for (int facing : new int[]{CameraInfo.LENS_FACING_BACK,
+                    CameraInfo.LENS_FACING_EXTERNAL}) {
+                OrientationCalculator calculator = new OrientationCalculator(sensor, facing);
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    int expected = (SAMPLE_ORIENTATIONS[rotation] + sensor + 270) % 360;
+                    assertEquals(calculator + " rotation " + rotation, expected,
+                            calculator.getJpegOrientation(rotation));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void frontCamerasCompensateTheMirroredRotation() {
+        for (int sensor : SENSOR_ORIENTATIONS) {
+            OrientationCalculator calculator =
+                    new OrientationCalculator(sensor, CameraInfo.LENS_FACING_FRONT);
+            for (int rotation = 0; rotation < 4; rotation++) {
+                assertEquals(calculator + " rotation " + rotation,
+                        (sensor + rotation * 90) % 360, calculator.getJpegOrientation(rotation));
+            }
+        }
+    }
+
+    @Test
+    public void tablesMatchTheFunctionForEveryCombination() {
+        for (int sensor : SENSOR_ORIENTATIONS) {
+            for (int facing : FACINGS) {
+                OrientationCalculator calculator = new OrientationCalculator(sensor, facing);
+                assertEquals(sensor, calculator.getSensorOrientation());
+                assertEquals(facing, calculator.getLensFacing());
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    int device = OrientationCalculator.deviceOrientation(rotation);
+                    assertEquals(OrientationCalculator.jpegOrientation(sensor, facing, device),
+                            calculator.getJpegOrientation(rotation));
+                }
+                for (int device = 0; device < 360; device += 90) {
+                    assertEquals(OrientationCalculator.jpegOrientation(sensor, facing, device),
+                            calculator.getJpegOrientationForDevice(device));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void deviceOrientationIsOppositeToTheDisplayRotation() {
+        assertEquals(0, OrientationCalculator.deviceOrientation(0));
+        assertEquals(270, OrientationCalculator.deviceOrientation(1));
+        assertEquals(180, OrientationCalculator.deviceOrientation(2));
+        assertEquals(90, OrientationCalculator.deviceOrientation(3));
+        for (int rotation = 0; rotation < 4; rotation++) {
+            assertEquals(rotation * 90, OrientationCalculator.rotationDegrees(rotation));
+        }
+    }
+
+    @Test
+    public void swapsDimensionsWhenSensorAndDisplayAreAcross() {
+        for (int sensor : SENSOR_ORIENTATIONS) {
+            for (int facing : FACINGS) {
+                OrientationCalculator calculator = new OrientationCalculator(sensor, facing);
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    boolean expected;
+                    if (rotation == 0 || rotation == 2) {
+                        expected = sensor == 90 || sensor == 270;
+                    } else {
+                        expected = sensor == 0 || sensor == 180;
+                    }
+                    assertEquals(calculator + " rotation " + rotation, expected,
+                            calculator.isDimensionSwapped(rotation));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnalignedSensorOrientation() {
+        new OrientationCalculator(45, CameraInfo.LENS_FACING_BACK);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownDisplayRotation() {
+        OrientationCalculator.rotationDegrees(4);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrientationQuantizerTest {
+
+    @Test
+    public void firstReadingSnapsToTheNearestQuarter() {
+        int[][] cases = {{0, 0}, {44, 0}, {45, 90}, {134, 90}, {180, 180}, {300, 270},
+                {315, 0}, {359, 0}};
+        for (int[] c : cases) {
+            OrientationQuantizer quantizer = new OrientationQuantizer(10);
+            assertTrue(quantizer.update(c[0]));
+            assertEquals("reading " + c[0], c[1], quantizer.getOrientation());
+        }
+    }
+
+    @Test
+    public void holdsTheQuarterInsideTheHysteresisBand() {
+        OrientationQuantizer quantizer = new OrientationQuantizer(10);
+        quantizer.update(90);
+        assertFalse(quantizer.update(50));
+        assertFalse(quantizer.update(35));
+        assertEquals(90, quantizer.getOrientation());
+        assertTrue(quantizer.update(34));
+        assertEquals(0, quantizer.getOrientation());
+        assertFalse(quantizer.update(55));
+        assertEquals(0, quantizer.getOrientation());
+    }
+
+    @Test
+    public void wrapsAroundZero() {
+        OrientationQuantizer quantizer = new OrientationQuantizer(10);
+        quantizer.update(0);
+        assertFalse(quantizer.update(305));
+        assertEquals(0, quantizer.getOrientation());
+        assertTrue(quantizer.update(304));
+        assertEquals(270, quantizer.getOrientation());
+        assertFalse(quantizer.update(325));
+        assertTrue(quantizer.update(326));
+        assertEquals(0, quantizer.getOrientation());
+    }
+
+    @Test
+    public void jitterAtTheBoundaryDoesNotFlip() {
+        OrientationQuantizer quantizer = new OrientationQuantizer(10);
+        quantizer.update(90);
+        int changes = 0;
+        for (int i = 0; i < 100; i++) {
+            if (quantizer.update(i % 2 == 0 ? 130 : 140)) {
+                changes++;
+            }
+        }
+        assertEquals(0, changes);
+        assertEquals(90, quantizer.getOrientation());
+    }
+
+    @Test
+    public void unknownReadingsKeepTheOrientation() {
+        OrientationQuantizer quantizer = new OrientationQuantizer(10);
+        quantizer.reset(270);
+        assertFalse(quantizer.update(OrientationQuantizer.UNKNOWN));
+        assertEquals(270, quantizer.getOrientation());
+        quantizer.reset(OrientationQuantizer.UNKNOWN);
+        assertFalse(quantizer.update(OrientationQuantizer.UNKNOWN));
+        assertEquals(OrientationQuantizer.UNKNOWN, quantizer.getOrientation());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsHysteresisBeyondTheQuarter() {
+        new OrientationQuantizer(45);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PreviewTransformCacheTest {
+
+    private static final int BACK = 1;
+    private static final int FRONT = 0;
+
+    @Test
+    public void matchesTheTransformForEveryRotation() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        float[] expected = new float[9];
+        for (int rotation = PreviewTransform.ROTATION_0;
+                rotation <= PreviewTransform.ROTATION_270; rotation++) {
+            assertTrue(cache.update(2220, 1080, 1440, 1080, rotation, 90, BACK));
+            PreviewTransform.compute(2220, 1080, 1440, 1080, rotation, expected);
+            assertArrayEquals("rotation " + rotation, expected, cache.getValues(), 0f);
+        }
+    }
+
+    @Test
+    public void skipsUnchangedInputs() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        float[] values = cache.getValues();
+        assertTrue(cache.update(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_90, 90, BACK));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(cache.update(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_90, 90,
+                    BACK));
+        }
+        assertSame(values, cache.getValues());
+        assertEquals(10, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void recomputesWhenAnyKeyChanges() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        int[] key = {1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, 90, BACK};
+        update(cache, key);
+        int[][] changes = {{0, 1000}, {1, 2000}, {2, 1920}, {3, 720},
+                {4, PreviewTransform.ROTATION_180}, {5, 270}, {6, FRONT}};
+        for (int[] change : changes) {
+            key[change[0]] = change[1];
+            assertTrue("key " + change[0], update(cache, key));
+            assertFalse("key " + change[0], update(cache, key));
+        }
+    }
+
+    @Test
+    public void invalidateForcesARecompute() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        assertTrue(cache.update(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, 90, BACK));
+        cache.invalidate();
+        assertTrue(cache.update(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, 90, BACK));
+    }
+
+    @Test
+    public void centerCropAppliesOnlyWhereTheViewIsStretched() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        float[] expected = new float[9];
+        cache.update(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, 90, BACK);
+        cache.setCenterCrop(true);
+        assertTrue(cache.update(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, 90, BACK));
+        PreviewTransform.compute(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, expected);
+        PreviewTransform.centerCrop(1080, 2220, 1080, 1440, expected);
+        assertArrayEquals(expected, cache.getValues(), 0f);
+
+        assertTrue(cache.update(2220, 1080, 1440, 1080, PreviewTransform.ROTATION_90, 90, BACK));
+        PreviewTransform.compute(2220, 1080, 1440, 1080, PreviewTransform.ROTATION_90, expected);
+        assertArrayEquals(expected, cache.getValues(), 0f);
+    }
+
+    private static boolean update(PreviewTransformCache cache, int[] key) {
+        return cache.update(key[0], key[1], key[2], key[3], key[4], key[5], key[6]);
+    }
+
+}
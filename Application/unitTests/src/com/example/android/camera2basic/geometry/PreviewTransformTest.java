@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PreviewTransformTest {
+
+    @Test
+    public void centerCropCoversTheViewKeepingTheRatio() {
+        // A 3:4 buffer stretched over a 1080x2220 view; cropped, it must be 1665 wide.
+        float[] values = new float[9];
+        PreviewTransform.compute(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_0, values);
+        PreviewTransform.centerCrop(1080, 2220, 1080, 1440, values);
+        float[] point = new float[2];
+        PreviewTransform.mapPoint(values, 0, 0, point);
+        assertEquals((1080 - 1665) / 2f, point[0], EPSILON);
+        assertEquals(0, point[1], EPSILON);
+        PreviewTransform.mapPoint(values, 1080, 2220, point);
+        assertEquals((1080 + 1665) / 2f, point[0], EPSILON);
+        assertEquals(2220, point[1], EPSILON);
+    }
+
+    @Test
+    public void centerCropKeepsTheUpsideDownRotation() {
+        float[] values = new float[9];
+        PreviewTransform.compute(1080, 2220, 1440, 1080, PreviewTransform.ROTATION_180, values);
+        PreviewTransform.centerCrop(1080, 2220, 1080, 1440, values);
+        float[] point = new float[2];
+        PreviewTransform.mapPoint(values, 0, 0, point);
+        assertEquals((1080 + 1665) / 2f, point[0], EPSILON);
+        assertEquals(2220, point[1], EPSILON);
+        PreviewTransform.mapPoint(values, 540, 1110, point);
+        assertEquals(540, point[0], EPSILON);
+        assertEquals(1110, point[1], EPSILON);
+    }
+
+    private static final float EPSILON = 1e-3f;
+
+    @Test
+    public void identityInNaturalOrientation() {
+        float[] values = new float[9];
+        PreviewTransform.compute(1080, 1440, 1440, 1080, PreviewTransform.ROTATION_0, values);
+        assertMatrix(new float[]{1, 0, 0, 0, 1, 0, 0, 0, 1}, values);
+    }
+
+    @Test
+    public void rotatesUpsideDownAboutTheCenter() {
+        float[] values = new float[9];
+        PreviewTransform.compute(1080, 1440, 1440, 1080, PreviewTransform.ROTATION_180, values);
+        float[] point = new float[2];
+        PreviewTransform.mapPoint(values, 0, 0, point);
+        assertEquals(1080, point[0], EPSILON);
+        assertEquals(1440, point[1], EPSILON);
+    }
+
+    @Test
+    public void matchesStepwiseMatrixInLandscape() {
+        int[][] cases = {
+                {1920, 1080, 1920, 1080},
+                {2220, 1080, 1440, 1080},
+                {1280, 800, 640, 480},
+                {1000, 1000, 1920, 1080},
+        };
+        float[] values = new float[9];
+        for (int[] c : cases) {
+            for (int rotation : new int[]{PreviewTransform.ROTATION_90,
+                    PreviewTransform.ROTATION_270}) {
+                PreviewTransform.compute(c[0], c[1], c[2], c[3], rotation, values);
+                assertMatrix(stepwise(c[0], c[1], c[2], c[3], rotation), values);
+            }
+        }
+    }
+
+    @Test
+    public void landscapeCoversTheView() {
+        float[] values = new float[9];
+        PreviewTransform.compute(2220, 1080, 1440, 1080, PreviewTransform.ROTATION_90, values);
+        // The buffer, rotated into the view, must reach every corner of the view.
+        float[] point = new float[2];
+        float minX = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float[][] corners = {{0, 0}, {2220, 0}, {0, 1080}, {2220, 1080}};
+        for (float[] corner : corners) {
+            PreviewTransform.mapPoint(values, corner[0], corner[1], point);
+            minX = Math.min(minX, point[0]);
+            maxX = Math.max(maxX, point[0]);
+            minY = Math.min(minY, point[1]);
+            maxY = Math.max(maxY, point[1]);
+        }
+        assertEquals(true, minX <= EPSILON && maxX >= 2220 - EPSILON);
+        assertEquals(true, minY <= EPSILON && maxY >= 1080 - EPSILON);
+    }
+
+    /**
+     * Builds the matrix the way the fragment used to: setRectToRect, postScale, postRotate.
+     */
+    private static float[] stepwise(int viewWidth, int viewHeight, int previewWidth,
+            int previewHeight, int rotation) {
+        double centerX = viewWidth / 2.0;
+        double centerY = viewHeight / 2.0;
+        double bufferLeft = centerX - previewHeight / 2.0;
+        double bufferTop = centerY - previewWidth / 2.0;
+        double[] m = {
+                (double) previewHeight / viewWidth, 0, bufferLeft,
+                0, (double) previewWidth / viewHeight, bufferTop,
+                0, 0, 1,
+        };
+        double scale = Math.max((double) viewHeight / previewHeight,
+                (double) viewWidth / previewWidth);
+        m = multiply(new double[]{
+                scale, 0, centerX - scale * centerX,
+                0, scale, centerY - scale * centerY,
+                0, 0, 1,
+        }, m);
+        double radians = Math.toRadians(90 * (rotation - 2));
+        double cos = Math.round(Math.cos(radians));
+        double sin = Math.round(Math.sin(radians));
+        m = multiply(new double[]{
+                cos, -sin, centerX - cos * centerX + sin * centerY,
+                sin, cos, centerY - sin * centerX - cos * centerY,
+                0, 0, 1,
+        }, m);
+        float[] result = new float[9];
+        for (int i = 0; i < 9; i++) {
+            result[i] = (float) m[i];
+        }
+        return result;
+    }
+
+    private static double[] multiply(double[] a, double[] b) {
+        double[] c = new double[9];
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                double sum = 0;
+                for (int k = 0; k < 3; k++) {
+                    sum += a[row * 3 + k] * b[k * 3 + column];
+                }
+                c[row * 3 + column] = sum;
+            }
+        }
+        return c;
+    }
+
+    private static void assertMatrix(float[] expected, float[] actual) {
+        for (int i = 0; i < 9; i++) {
+            assertEquals("value " + i, expected[i], actual[i], EPSILON);
+        }
+    }
+
+}
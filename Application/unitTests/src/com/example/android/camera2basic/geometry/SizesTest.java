@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.geometry;
+
+import com.example.android.camera2basic.hal.Resolution;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SizesTest {
+
+    private static final Resolution[] CHOICES = {
+            new Resolution(4032, 3024),
+            new Resolution(1920, 1080),
+            new Resolution(1440, 1080),
+            new Resolution(1280, 720),
+            new Resolution(960, 720),
+            new Resolution(640, 480),
+            new Resolution(640, 360),
+            new Resolution(320, 240),
+    };
+
+    private static final Resolution WIDE = new Resolution(16, 9);
+    private static final Resolution STANDARD = new Resolution(4, 3);
+
+    @Test
+    public void choosesSmallestThatCoversTheView() {
+        assertSame(CHOICES[3], Sizes.chooseOptimalSize(CHOICES, 1000, 600, 1920, 1080, WIDE));
+        assertSame(CHOICES[4], Sizes.chooseOptimalSize(CHOICES, 700, 500, 1920, 1080, STANDARD));
+    }
+
+    @Test
+    public void fallsBackToLargestWithinTheMaximum() {
+        assertSame(CHOICES[1], Sizes.chooseOptimalSize(CHOICES, 2560, 1440, 1920, 1080, WIDE));
+        assertSame(CHOICES[5], Sizes.chooseOptimalSize(CHOICES, 2000, 1500, 800, 600, STANDARD));
+    }
+
+    @Test
+    public void returnsNullWithoutMatchingAspectRatio() {
+        assertNull(Sizes.chooseOptimalSize(CHOICES, 100, 100, 1920, 1080,
+                new Resolution(1, 1)));
+        assertNull(Sizes.chooseOptimalSize(CHOICES, 100, 100, 200, 200, WIDE));
+    }
+
+    @Test
+    public void firstOfEqualAreasWins() {
+        Resolution first = new Resolution(1280, 720);
+        Resolution second = new Resolution(1280, 720);
+        Resolution[] choices = {first, second};
+        assertSame(first, Sizes.chooseOptimalSize(choices, 640, 360, 1920, 1080, WIDE));
+        assertSame(first, Sizes.chooseOptimalSize(choices, 1920, 1080, 1920, 1080, WIDE));
+    }
+
+    @Test
+    public void sortsByArea() {
+        Resolution[] sorted = CHOICES.clone();
+        Arrays.sort(sorted, Sizes.BY_AREA);
+        for (int i = 1; i < sorted.length; i++) {
+            assertEquals(-1, Sizes.BY_AREA.compare(sorted[i - 1], sorted[i]));
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CaptureTelemetryTest {
+
+    private static final long MS = 1000000L;
+    private static final long FRAME_30FPS = 33333333L;
+
+    private static CaptureTelemetry.Snapshot snapshot(CaptureTelemetry telemetry) {
+        return telemetry.snapshot(new CaptureTelemetry.Snapshot());
+    }
+
+    @Test
+    public void measuresASteadyFrameRate() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(30);
+        for (int i = 0; i < 45; i++) {
+            telemetry.onCaptureCompleted(i, 5 * MS + i * FRAME_30FPS);
+        }
+        CaptureTelemetry.Snapshot snapshot = snapshot(telemetry);
+        assertEquals(30.0, snapshot.fps, 0.001);
+        assertEquals(FRAME_30FPS, snapshot.intervalP50Nanos);
+        assertEquals(FRAME_30FPS, snapshot.intervalP99Nanos);
+        assertEquals(0, snapshot.jitterP50Nanos);
+        assertEquals(0, snapshot.jitterP99Nanos);
+        assertEquals(45, snapshot.frames);
+        assertEquals(0, snapshot.droppedFrames);
+        assertEquals(0, snapshot.lateFrames);
+    }
+
+    @Test
+    public void measuresJitterAroundTheMedian() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(16);
+        long[] intervals = {10, 10, 10, 12, 10, 10, 10, 10, 8, 10, 10};
+        long timestamp = 0;
+        telemetry.onCaptureCompleted(0, timestamp);
+        for (int i = 0; i < intervals.length; i++) {
+            timestamp += intervals[i] * MS;
+            telemetry.onCaptureCompleted(i + 1, timestamp);
+        }
+        CaptureTelemetry.Snapshot snapshot = snapshot(telemetry);
+        assertEquals(10 * MS, snapshot.intervalP50Nanos);
+        assertEquals(12 * MS, snapshot.intervalP99Nanos);
+        assertEquals(0, snapshot.jitterP50Nanos);
+        assertEquals(2 * MS, snapshot.jitterP99Nanos);
+    }
+
+    @Test
+    public void countsMissingFrameNumbersAsDropped() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(8);
+        long[] frameNumbers = {0, 1, 2, 5, 6};
+        for (int i = 0; i < frameNumbers.length; i++) {
+            telemetry.onCaptureCompleted(frameNumbers[i], frameNumbers[i] * 10 * MS);
+        }
+        // A failure accounts for its frame number, so it is not counted as dropped as well.
+        telemetry.onCaptureFailed(7);
+        telemetry.onCaptureCompleted(8, 80 * MS);
+        telemetry.onCaptureBufferLost();
+        CaptureTelemetry.Snapshot snapshot = snapshot(telemetry);
+        assertEquals(2, snapshot.droppedFrames);
+        assertEquals(1, snapshot.failures);
+        assertEquals(1, snapshot.bufferLosses);
+        assertEquals(6, snapshot.frames);
+    }
+
+    @Test
+    public void countsLongIntervalsAsLate() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(30);
+        long timestamp = 0;
+        for (int i = 0; i < 10; i++) {
+            timestamp += 10 * MS;
+            telemetry.onCaptureCompleted(i, timestamp);
+        }
+        timestamp += 25 * MS;
+        telemetry.onCaptureCompleted(10, timestamp);
+        // 1.4 intervals is still on time.
+        timestamp += 14 * MS;
+        telemetry.onCaptureCompleted(11, timestamp);
+        assertEquals(1, snapshot(telemetry).lateFrames);
+    }
+
+    @Test
+    public void ignoresTimestampsOutOfOrder() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(8);
+        telemetry.onCaptureCompleted(0, 10 * MS);
+        telemetry.onCaptureCompleted(1, 20 * MS);
+        telemetry.onCaptureCompleted(2, 40 * MS);
+        telemetry.onCaptureCompleted(3, 30 * MS);
+        telemetry.onCaptureCompleted(4, 50 * MS);
+        CaptureTelemetry.Snapshot snapshot = snapshot(telemetry);
+        assertEquals(5, snapshot.frames);
+        assertEquals(0, snapshot.droppedFrames);
+        assertEquals(10 * MS, snapshot.intervalP50Nanos);
+        assertEquals(20 * MS, snapshot.intervalP99Nanos);
+    }
+
+    @Test
+    public void keepsOnlyTheNewestWindow() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(5);
+        long timestamp = 0;
+        for (int i = 0; i < 15; i++) {
+            timestamp += (i < 10 ? 10 : 20) * MS;
+            telemetry.onCaptureCompleted(i, timestamp);
+        }
+        CaptureTelemetry.Snapshot snapshot = snapshot(telemetry);
+        assertEquals(50.0, snapshot.fps, 0.001);
+        assertEquals(20 * MS, snapshot.intervalP50Nanos);
+    }
+
+    @Test
+    public void newSessionsRestartTheWindowButKeepTheCounters() {
+        CaptureTelemetry telemetry = new CaptureTelemetry(8);
+        for (int i = 0; i < 5; i++) {
+            telemetry.onCaptureCompleted(100 + i, i * 10 * MS);
+        }
+        telemetry.onSessionStarted();
+        telemetry.onCaptureCompleted(0, 5 * MS);
+        CaptureTelemetry.Snapshot snapshot = snapshot(telemetry);
+        assertEquals(0.0, snapshot.fps, 0);
+        assertEquals(6, snapshot.frames);
+        assertEquals(0, snapshot.droppedFrames);
+        telemetry.onCaptureCompleted(1, 15 * MS);
+        assertEquals(100.0, snapshot(telemetry).fps, 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinyWindows() {
+        new CaptureTelemetry(2);
+    }
+
+}
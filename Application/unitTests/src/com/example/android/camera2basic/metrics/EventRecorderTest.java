@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.metrics;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventRecorderTest {
+
+    private static String[] dump(EventRecorder recorder) {
+        StringWriter out = new StringWriter();
+        recorder.dump(new PrintWriter(out));
+        return out.toString().split("\n");
+    }
+
+    @Test
+    public void keepsTheNewestEvents() {
+        EventRecorder recorder = new EventRecorder(4, new String[]{"open", "close"});
+        for (int i = 0; i < 6; i++) {
+            recorder.record(i % 2, i, -i);
+        }
+        String[] lines = dump(recorder);
+        assertEquals(6, recorder.getRecorded());
+        assertEquals(5, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("events 2..6 "));
+        assertTrue(lines[1], lines[1].startsWith("2 ") && lines[1].endsWith(" open 2 -2"));
+        assertTrue(lines[4], lines[4].startsWith("5 +0.000ms ")
+                && lines[4].endsWith(" close 5 -5"));
+    }
+
+    @Test
+    public void neverDumpsTornEvents() throws Exception {
+        final EventRecorder recorder = new EventRecorder(8, new String[]{"event"});
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long value = 0;
+                    while (running.get()) {
+                        value++;
+                        recorder.record(0, value, -value);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        try {
+            for (int round = 0; round < 500; round++) {
+                String[] lines = dump(recorder);
+                for (int i = 1; i < lines.length; i++) {
+                    String[] fields = lines[i].split(" ");
+                    long arg0 = Long.parseLong(fields[fields.length - 2]);
+                    long arg1 = Long.parseLong(fields[fields.length - 1]);
+                    assertEquals(lines[i], arg0, -arg1);
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithoutGaps() {
+        assertEquals(0, LatencyHistogram.lowerBound(0));
+        int last = LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+        for (int i = 0; i < last; i++) {
+            assertEquals("bucket " + i, LatencyHistogram.upperBound(i) + 1,
+                    LatencyHistogram.lowerBound(i + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.lowerBound(i)));
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.upperBound(i)));
+        }
+    }
+
+    @Test
+    public void bucketsAreWithinAQuarterOfTheirValues() {
+        for (int shift = 0; shift < 63; shift++) {
+            for (long value : new long[] {(1L << shift) - 1, 1L << shift, (1L << shift) + 1,
+                    3L << Math.max(0, shift - 2)}) {
+                int index = LatencyHistogram.bucketIndex(value);
+                long lower = LatencyHistogram.lowerBound(index);
+                long upper = LatencyHistogram.upperBound(index);
+                assertTrue(value + " in " + lower + ".." + upper, lower <= value && value <= upper);
+                assertTrue(value + " in " + lower + ".." + upper, upper - lower <= lower / 4);
+            }
+        }
+    }
+
+    @Test
+    public void estimatesPercentilesFromAbove() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getMean());
+        long p50 = histogram.getPercentile(50);
+        assertTrue(String.valueOf(p50), p50 >= 500 && p50 <= 500 * 5 / 4);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 1000);
+        // Never above the largest value recorded.
+        assertEquals(1000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void recordsNegativeValuesAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void emptyHistogramsReadZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void countsEveryRecordFromManyThreads() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long value = (i + 1) * 1000L;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getCount());
+        assertEquals(4000, histogram.getMax());
+        assertEquals(2500, histogram.getMean());
+        assertEquals(4000, histogram.getPercentile(100));
+    }
+
+}
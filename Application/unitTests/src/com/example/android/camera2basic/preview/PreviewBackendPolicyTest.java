@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.preview;
+
+import org.junit.Test;
+
+import static com.example.android.camera2basic.preview.PreviewBackendPolicy.BACKEND_AUTO;
+import static com.example.android.camera2basic.preview.PreviewBackendPolicy.BACKEND_SURFACE_VIEW;
+import static com.example.android.camera2basic.preview.PreviewBackendPolicy.BACKEND_TEXTURE_VIEW;
+import static org.junit.Assert.assertEquals;
+
+public class PreviewBackendPolicyTest {
+
+    @Test
+    public void prefersSurfaceViewWhereItStaysInSync() {
+        assertEquals(BACKEND_SURFACE_VIEW, PreviewBackendPolicy.select(24, false, BACKEND_AUTO));
+        assertEquals(BACKEND_SURFACE_VIEW, PreviewBackendPolicy.select(28, false, BACKEND_AUTO));
+        assertEquals(BACKEND_TEXTURE_VIEW, PreviewBackendPolicy.select(23, false, BACKEND_AUTO));
+        assertEquals(BACKEND_TEXTURE_VIEW, PreviewBackendPolicy.select(21, false, BACKEND_AUTO));
+    }
+
+    @Test
+    public void keepsTextureViewWhenATransformIsRequired() {
+        for (int preferred : new int[]{BACKEND_AUTO, BACKEND_SURFACE_VIEW, BACKEND_TEXTURE_VIEW}) {
+            assertEquals(BACKEND_TEXTURE_VIEW, PreviewBackendPolicy.select(28, true, preferred));
+        }
+    }
+
+    @Test
+    public void honorsAnExplicitChoice() {
+        assertEquals(BACKEND_TEXTURE_VIEW,
+                PreviewBackendPolicy.select(28, false, BACKEND_TEXTURE_VIEW));
+        assertEquals(BACKEND_SURFACE_VIEW,
+                PreviewBackendPolicy.select(21, false, BACKEND_SURFACE_VIEW));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownBackends() {
+        PreviewBackendPolicy.select(28, false, 7);
+    }
+
+}
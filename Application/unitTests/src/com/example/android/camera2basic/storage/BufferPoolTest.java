@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void roundsUpToSizeClasses() {
+        assertEquals(BufferPool.MIN_CAPACITY, BufferPool.capacityFor(0));
+        assertEquals(BufferPool.MIN_CAPACITY, BufferPool.capacityFor(BufferPool.MIN_CAPACITY));
+        assertEquals(80 * 1024, BufferPool.capacityFor(64 * 1024 + 1));
+        assertEquals(1024 * 1024, BufferPool.capacityFor(1024 * 1024));
+        assertEquals(1280 * 1024, BufferPool.capacityFor(1024 * 1024 + 1));
+        for (int size = 1; size < 8 * 1024 * 1024; size = size * 3 / 2 + 7) {
+            int capacity = BufferPool.capacityFor(size);
+            assertTrue(capacity >= size);
+            assertTrue("waste at " + size, size <= BufferPool.MIN_CAPACITY
+                    || capacity - size <= capacity / 5);
+            assertEquals(capacity, BufferPool.capacityFor(capacity));
+        }
+    }
+
+    @Test
+    public void reusesBuffersOfTheSameClass() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        BufferPool pool = new BufferPool(1024 * 1024, metrics);
+        ByteBuffer first = pool.acquire(300 * 1024);
+        assertTrue(first.isDirect());
+        assertEquals(0, first.position());
+        assertEquals(300 * 1024, first.limit());
+        first.put(new byte[1000]);
+        pool.release(first);
+        assertEquals(first.capacity(), pool.getIdleBytes());
+
+        ByteBuffer second = pool.acquire(290 * 1024);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(290 * 1024, second.limit());
+        assertNotSame(first, pool.acquire(600 * 1024));
+        assertEquals(1, metrics.counter("pool.hits").get());
+        assertEquals(2, metrics.counter("pool.misses").get());
+        assertEquals(0, pool.getIdleBytes());
+    }
+
+    @Test
+    public void keepsIdleBuffersUnderTheCap() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        BufferPool pool = new BufferPool(1024 * 1024, metrics);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(300 * 1024);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        // Three 320 KB buffers fit in 1 MB; the fourth is left to the garbage collector.
+        assertEquals(3 * 320 * 1024, pool.getIdleBytes());
+        assertEquals(1, metrics.counter("pool.discarded").get());
+        assertEquals(pool.getIdleBytes(), metrics.gauge("pool.idle_bytes").get());
+    }
+
+    @Test
+    public void trimsLargestBuffersFirst() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        BufferPool pool = new BufferPool(4 * 1024 * 1024, metrics);
+        ByteBuffer small = pool.acquire(100 * 1024);
+        ByteBuffer large = pool.acquire(2 * 1024 * 1024);
+        pool.release(small);
+        pool.release(large);
+        assertEquals(2 * 1024 * 1024, pool.trim(small.capacity()));
+        assertEquals(small.capacity(), pool.getIdleBytes());
+        assertSame(small, pool.acquire(100 * 1024));
+        assertEquals(0, pool.trim(0));
+        assertEquals(2 * 1024 * 1024, metrics.counter("pool.trimmed_bytes").get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignBuffers() {
+        new BufferPool(1024, new MetricsRegistry()).release(ByteBuffer.allocate(64 * 1024));
+    }
+
+}
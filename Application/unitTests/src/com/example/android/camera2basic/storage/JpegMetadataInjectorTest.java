@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+import com.example.android.camera2basic.hal.fake.SyntheticImages;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JpegMetadataInjectorTest {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final CaptureMetadata METADATA = new CaptureMetadata.Builder()
+            .setExposureTime(10000000L)
+            .setSensitivity(400)
+            .setFrameNumber(1234)
+            .setSensorTimestamp(0x1122334455L)
+            .setRigId("rig <7> & \"north\"")
+            .build();
+
+    @Test
+    public void insertsExifAndXmpAfterJfif() throws IOException {
+        byte[] source = SyntheticImages.createJpeg(64, 48, "frame 1234", 20000);
+        ByteBuffer jpeg = ByteBuffer.allocateDirect(source.length);
+        jpeg.put(source).flip();
+        ByteBuffer[] parts = JpegMetadataInjector.inject(jpeg, METADATA);
+        assertEquals(0, jpeg.position());
+        // SOI and APP0, the two new segments, and the rest in one slice.
+        assertEquals(4, parts.length);
+        assertTrue(parts[3].isDirect());
+
+        byte[] result = concat(parts);
+        List<byte[]> segments = segments(result);
+        assertEquals(0xE0, segments.get(0)[1] & 0xFF);
+        byte[] exif = find(segments, "Exif\0\0");
+        assertNotNull(exif);
+        assertSame(segments.get(1), exif);
+        ByteBuffer tiff = ByteBuffer.wrap(exif, 4 + 6, exif.length - 10).slice();
+        long[] exposure = rational(tiff, 0x829A);
+        assertEquals(1, exposure[0]);
+        assertEquals(100, exposure[1]);
+        assertEquals(400, entryValue(tiff, 0x8827) >>> 16);
+        assertEquals("0000001122334455" + "00000000000004d2", ascii(tiff, 0xA420));
+
+        String xmp = new String(find(segments, "http://ns.adobe.com/xap/1.0/\0"), ISO_8859_1);
+        assertTrue(xmp.contains("cb:ExposureTime=\"10000000\""));
+        assertTrue(xmp.contains("cb:Sensitivity=\"400\""));
+        assertTrue(xmp.contains("cb:FrameNumber=\"1234\""));
+        assertTrue(xmp.contains("cb:SensorTimestamp=\"" + 0x1122334455L + "\""));
+        assertTrue(xmp.contains("cb:RigId=\"rig &lt;7&gt; &amp; &quot;north&quot;\""));
+
+        // Everything after APP0 is the source, byte for byte.
+        int app0End = 2 + 2 + 16;
+        int added = result.length - source.length;
+        assertArrayEquals(Arrays.copyOfRange(source, app0End, source.length),
+                Arrays.copyOfRange(result, app0End + added, result.length));
+    }
+
+    @Test
+    public void keepsCameraExifAndReplacesXmp() throws IOException {
+        byte[] cameraExif = segment(0xE1, "Exif\0\0MM\0*camera");
+        byte[] oldXmp = segment(0xE1, "http://ns.adobe.com/xap/1.0/\0<old/>");
+        byte[] source = insertAfterApp0(SyntheticImages.createJpeg(32, 32, "c", 0),
+                cameraExif, oldXmp);
+        ByteBuffer[] parts = JpegMetadataInjector.inject(ByteBuffer.wrap(source), METADATA);
+
+        List<byte[]> segments = segments(concat(parts));
+        int exifCount = 0;
+        for (byte[] segment : segments) {
+            if (startsWith(segment, "Exif\0\0")) {
+                exifCount++;
+                assertArrayEquals(cameraExif, segment);
+            }
+        }
+        assertEquals(1, exifCount);
+        assertArrayEquals(cameraExif, segments.get(1));
+        assertSame(find(segments, "http://ns.adobe.com/xap/1.0/\0"), segments.get(2));
+        String xmp = new String(find(segments, "http://ns.adobe.com/xap/1.0/\0"), ISO_8859_1);
+        assertFalse(xmp.contains("<old/>"));
+        assertTrue(xmp.contains("cb:FrameNumber=\"1234\""));
+    }
+
+    @Test
+    public void insertsXmpAfterCameraExif() throws IOException {
+        byte[] jfif = SyntheticImages.createJpeg(32, 32, "c", 0);
+        int app0End = 2 + 2 + (((jfif[4] & 0xFF) << 8) | (jfif[5] & 0xFF));
+        byte[] cameraExif = segment(0xE1, "Exif\0\0MM\0*camera");
+        byte[] icc = segment(0xE2, "ICC_PROFILE\0");
+        // As a camera writes it: SOI, EXIF and other segments, no JFIF.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jfif, 0, 2);
+        out.write(cameraExif, 0, cameraExif.length);
+        out.write(icc, 0, icc.length);
+        out.write(jfif, app0End, jfif.length - app0End);
+        byte[] source = out.toByteArray();
+
+        List<byte[]> segments = segments(concat(
+                JpegMetadataInjector.inject(ByteBuffer.wrap(source), METADATA)));
+        assertArrayEquals(cameraExif, segments.get(0));
+        assertSame(find(segments, "http://ns.adobe.com/xap/1.0/\0"), segments.get(1));
+        assertArrayEquals(icc, segments.get(2));
+    }
+
+    @Test
+    public void leavesOutUnknownValues() throws IOException {
+        CaptureMetadata metadata = new CaptureMetadata.Builder().setFrameNumber(5).build();
+        ByteBuffer exif = JpegMetadataInjector.buildExif(metadata);
+        byte[] bytes = new byte[exif.remaining()];
+        exif.get(bytes);
+        ByteBuffer tiff = ByteBuffer.wrap(bytes, 10, bytes.length - 10).slice();
+        assertNull(findEntry(tiff, 0x829A));
+        assertNull(findEntry(tiff, 0x8827));
+        assertNotNull(findEntry(tiff, 0x9000));
+
+        ByteBuffer xmp = JpegMetadataInjector.buildXmp(metadata);
+        String packet = new String(xmp.array(), ISO_8859_1);
+        assertFalse(packet.contains("ExposureTime"));
+        assertFalse(packet.contains("RigId"));
+        assertTrue(packet.contains("cb:FrameNumber=\"5\""));
+    }
+
+    @Test
+    public void reducesExposureToTiffRationals() {
+        assertArrayEquals(new long[]{1, 100}, JpegMetadataInjector.exposureRational(10000000L));
+        assertArrayEquals(new long[]{33333333, 1000000000},
+                JpegMetadataInjector.exposureRational(33333333L));
+        assertArrayEquals(new long[]{3, 2}, JpegMetadataInjector.exposureRational(1500000000L));
+        // Too long for nanosecond precision in 32 bits.
+        long[] exposure = JpegMetadataInjector.exposureRational(30000000007L);
+        assertTrue(exposure[0] <= 0xFFFFFFFFL);
+        assertEquals(30.0, (double) exposure[0] / exposure[1], 1e-6);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedHeader() throws IOException {
+        byte[] source = SyntheticImages.createJpeg(32, 32, "c", 0);
+        JpegMetadataInjector.inject(ByteBuffer.wrap(source, 0, 12), METADATA);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonJpeg() throws IOException {
+        JpegMetadataInjector.inject(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5}), METADATA);
+    }
+
+    private static byte[] concat(ByteBuffer[] parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer part : parts) {
+            ByteBuffer copy = part.duplicate();
+            byte[] bytes = new byte[copy.remaining()];
+            copy.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The segments in front of the image data, markers included
+     */
+    private static List<byte[]> segments(byte[] jpeg) {
+        assertEquals(0xFF, jpeg[0] & 0xFF);
+        assertEquals(0xD8, jpeg[1] & 0xFF);
+        List<byte[]> segments = new ArrayList<>();
+        int offset = 2;
+        while ((jpeg[offset + 1] & 0xFF) != 0xDA) {
+            int length = ((jpeg[offset + 2] & 0xFF) << 8) | (jpeg[offset + 3] & 0xFF);
+            segments.add(Arrays.copyOfRange(jpeg, offset, offset + 2 + length));
+            offset += 2 + length;
+        }
+        return segments;
+    }
+
+    private static byte[] find(List<byte[]> segments, String id) {
+        for (byte[] segment : segments) {
+            if ((segment[1] & 0xFF) == 0xE1 && startsWith(segment, id)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] segment, String id) {
+        byte[] bytes = id.getBytes(ISO_8859_1);
+        return segment.length >= 4 + bytes.length
+                && Arrays.equals(bytes, Arrays.copyOfRange(segment, 4, 4 + bytes.length));
+    }
+
+    private static byte[] segment(int marker, String payload) {
+        byte[] bytes = payload.getBytes(ISO_8859_1);
+        byte[] segment = new byte[4 + bytes.length];
+        segment[0] = (byte) 0xFF;
+        segment[1] = (byte) marker;
+        segment[2] = (byte) ((bytes.length + 2) >> 8);
+        segment[3] = (byte) (bytes.length + 2);
+        System.arraycopy(bytes, 0, segment, 4, bytes.length);
+        return segment;
+    }
+
+    private static byte[] insertAfterApp0(byte[] jpeg, byte[]... segments) {
+        int app0End = 2 + 2 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, app0End);
+        for (byte[] segment : segments) {
+            out.write(segment, 0, segment.length);
+        }
+        out.write(jpeg, app0End, jpeg.length - app0End);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The offset of the entry of {@code tag} in the EXIF IFD, or null
+     */
+    private static Integer findEntry(ByteBuffer tiff, int tag) {
+        assertEquals(0x4D4D, tiff.getShort(0) & 0xFFFF);
+        int ifd0 = tiff.getInt(4);
+        assertEquals(0x8769, tiff.getShort(ifd0 + 2) & 0xFFFF);
+        int exifIfd = tiff.getInt(ifd0 + 2 + 8);
+        int count = tiff.getShort(exifIfd) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = exifIfd + 2 + 12 * i;
+            if ((tiff.getShort(entry) & 0xFFFF) == tag) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static int entryValue(ByteBuffer tiff, int tag) {
+        Integer entry = findEntry(tiff, tag);
+        assertNotNull(entry);
+        return tiff.getInt(entry + 8);
+    }
+
+    private static long[] rational(ByteBuffer tiff, int tag) {
+        int offset = entryValue(tiff, tag);
+        return new long[]{
+                tiff.getInt(offset) & 0xFFFFFFFFL, tiff.getInt(offset + 4) & 0xFFFFFFFFL};
+    }
+
+    private static String ascii(ByteBuffer tiff, int tag) {
+        Integer entry = findEntry(tiff, tag);
+        assertNotNull(entry);
+        int count = tiff.getInt(entry + 4);
+        int offset = tiff.getInt(entry + 8);
+        byte[] bytes = new byte[count - 1];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = tiff.get(offset + i);
+        }
+        assertEquals(0, tiff.get(offset + count - 1));
+        return new String(bytes, ISO_8859_1);
+    }
+
+}
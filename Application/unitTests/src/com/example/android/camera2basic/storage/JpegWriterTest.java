@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JpegWriterTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void everyStrategyWritesTheSameBytes() throws IOException {
+        byte[] content = new byte[200 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length + 8);
+        buffer.position(8);
+        buffer.put(content);
+        buffer.position(8);
+        for (int strategy = JpegWriter.STRATEGY_STREAM; strategy <= JpegWriter.STRATEGY_MAPPED;
+                strategy++) {
+            File file = mFolder.newFile("strategy" + strategy + ".jpg");
+            JpegWriter writer = new JpegWriter(strategy);
+            assertEquals(content.length, writer.write(buffer, file));
+            assertEquals(8, buffer.position());
+            assertArrayEquals(content, read(file));
+        }
+    }
+
+    @Test
+    public void replacesLongerContent() throws IOException {
+        File file = mFolder.newFile("shrink.jpg");
+        for (int strategy = JpegWriter.STRATEGY_STREAM; strategy <= JpegWriter.STRATEGY_MAPPED;
+                strategy++) {
+            JpegWriter writer = new JpegWriter(strategy);
+            writer.write(ByteBuffer.wrap(new byte[1000]), file);
+            writer.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), file);
+            assertArrayEquals(new byte[]{1, 2, 3}, read(file));
+        }
+    }
+
+    @Test
+    public void gathersBuffersInOrder() throws IOException {
+        ByteBuffer direct = ByteBuffer.allocateDirect(100 * 1024);
+        while (direct.hasRemaining()) {
+            direct.put((byte) direct.position());
+        }
+        direct.flip();
+        ByteBuffer[] parts = {
+                ByteBuffer.wrap(new byte[]{1, 2}), ByteBuffer.allocate(0), direct,
+                ByteBuffer.wrap(new byte[]{3})};
+        byte[] expected = new byte[2 + direct.remaining() + 1];
+        expected[0] = 1;
+        expected[1] = 2;
+        direct.duplicate().get(expected, 2, direct.remaining());
+        expected[expected.length - 1] = 3;
+        for (int strategy = JpegWriter.STRATEGY_STREAM; strategy <= JpegWriter.STRATEGY_MAPPED;
+                strategy++) {
+            File file = mFolder.newFile("gather" + strategy + ".jpg");
+            assertEquals(expected.length, new JpegWriter(strategy).write(parts, file));
+            assertEquals(0, direct.position());
+            assertArrayEquals(expected, read(file));
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += input.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.storage;
+
+import com.example.android.camera2basic.hal.fake.SyntheticImages;
+import com.example.android.camera2basic.metrics.MetricsRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class SaveQueueTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void savesAndDrains() throws IOException {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        Recorder recorder = new Recorder();
+        MetricsRegistry metrics = new MetricsRegistry();
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, metrics, recorder);
+        queue.start();
+        ByteBuffer source = ByteBuffer.allocateDirect(400 * 1024);
+        for (int i = 0; i < 5; i++) {
+            source.clear();
+            source.put(picture(i, 300 * 1024 + i));
+            source.flip();
+            assertTrue(queue.submit(source, file(i), i));
+            assertEquals(0, source.position());
+            // The caller may reuse its buffer right away.
+            source.clear();
+            source.put(new byte[source.capacity()]);
+        }
+        assertTrue(queue.drain(5000));
+        assertEquals(0, queue.stop(1000));
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(picture(i, 300 * 1024 + i), read(file(i)));
+            assertFalse(new File(file(i).getPath() + ".part").exists());
+        }
+        assertEquals(5, recorder.mSaved.size());
+        assertFalse(journal.exists());
+        assertEquals(0, metrics.counter("save.errors").get());
+        assertFalse(queue.submit(ByteBuffer.wrap(new byte[1]), file(9), 9));
+    }
+
+    @Test
+    public void writesMetadataIntoPictures() throws IOException {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        MetricsRegistry metrics = new MetricsRegistry();
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, metrics, new Recorder());
+        queue.start();
+        byte[] jpeg = SyntheticImages.createJpeg(64, 48, "still", 1000);
+        CaptureMetadata metadata = new CaptureMetadata.Builder().setFrameNumber(42).build();
+        assertTrue(queue.submit(ByteBuffer.wrap(jpeg), file(0), 42, metadata));
+        // Not a JPEG: saved as it is.
+        assertTrue(queue.submit(ByteBuffer.wrap(picture(1, 100)), file(1), 43, metadata));
+        assertTrue(queue.drain(5000));
+        queue.stop(1000);
+
+        byte[] saved = read(file(0));
+        assertTrue(saved.length > jpeg.length);
+        assertTrue(new String(saved, "ISO-8859-1").contains("cb:FrameNumber=\"42\""));
+        assertArrayEquals(picture(1, 100), read(file(1)));
+        assertEquals(1, metrics.counter("save.metadata_errors").get());
+    }
+
+    @Test
+    public void takesOverPooledCopies() throws IOException {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        MetricsRegistry metrics = new MetricsRegistry();
+        BufferPool pool = new BufferPool(4 * 1024 * 1024, metrics);
+        SaveQueue queue = new SaveQueue(journal, new JpegWriter(JpegWriter.STRATEGY_CHANNEL), pool,
+                metrics, new Recorder());
+        queue.start();
+        ByteBuffer copy = pool.acquire(1000);
+        copy.put(picture(0, 1000)).flip();
+        assertTrue(queue.submitPooled(copy, file(0), 0, null));
+        assertTrue(queue.drain(5000));
+        queue.stop(1000);
+
+        assertArrayEquals(picture(0, 1000), read(file(0)));
+        long idle = pool.getIdleBytes();
+        assertTrue(idle >= 1000);
+        // A stopped queue gives the buffer back right away.
+        ByteBuffer late = pool.acquire(1000);
+        assertEquals(0, pool.getIdleBytes());
+        assertFalse(queue.submitPooled(late, file(1), 1, null));
+        assertEquals(idle, pool.getIdleBytes());
+        assertFalse(file(1).exists());
+    }
+
+    @Test
+    public void journalsPendingPicturesAndRecoversThem() throws Exception {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Recorder stuck = new Recorder() {
+            @Override
+            public void onSaved(long frameNumber, File file, long bytes) {
+                super.onSaved(frameNumber, file, bytes);
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, new MetricsRegistry(),
+                stuck);
+        queue.start();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.submit(ByteBuffer.wrap(picture(i, 1000 + i)), file(i), i));
+        }
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        // The writer is stuck on the first picture, so the rest cannot drain.
+        assertEquals(4, queue.stop(50));
+        assertEquals(4, stuck.mSpilled.size());
+        assertTrue(journal.length() > 4 * 1000);
+        release.countDown();
+        for (int i = 1; i < 4; i++) {
+            file(i).delete();
+        }
+
+        Recorder recorder = new Recorder();
+        MetricsRegistry metrics = new MetricsRegistry();
+        SaveQueue next = newQueue(journal, JpegWriter.STRATEGY_STREAM, metrics, recorder);
+        next.start();
+        assertTrue(next.drain(5000));
+        next.stop(1000);
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(picture(i, 1000 + i), read(file(i)));
+        }
+        assertEquals(4, metrics.counter("save.recovered").get());
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void restartEndsTheWriterOfTheStoppedQueue() throws Exception {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ConcurrentMap<Long, Thread> writers = new ConcurrentHashMap<>();
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onSaved(long frameNumber, File file, long bytes) {
+                super.onSaved(frameNumber, file, bytes);
+                if (writers.putIfAbsent(frameNumber, Thread.currentThread()) == null
+                        && frameNumber == 0) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, new MetricsRegistry(),
+                recorder);
+        queue.start();
+        assertTrue(queue.submit(ByteBuffer.wrap(picture(0, 1000)), file(0), 0));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        assertEquals(1, queue.stop(50));
+
+        queue.start();
+        assertTrue(queue.submit(ByteBuffer.wrap(picture(1, 1001)), file(1), 1));
+        release.countDown();
+        assertTrue(queue.drain(5000));
+        Thread stopped = writers.get(0L);
+        stopped.join(5000);
+        assertFalse(stopped.isAlive());
+        // Written by the new writer, after it replayed the journal.
+        assertNotSame(stopped, writers.get(1L));
+        assertEquals(0, queue.stop(1000));
+        assertArrayEquals(picture(0, 1000), read(file(0)));
+        assertArrayEquals(picture(1, 1001), read(file(1)));
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void recoveryStopsAtATornRecord() throws Exception {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        spill(journal, 3);
+        RandomAccessFile torn = new RandomAccessFile(journal, "rw");
+        try {
+            // Cut the last record in the middle of its picture.
+            torn.setLength(torn.length() - 500);
+        } finally {
+            torn.close();
+        }
+
+        Recorder recorder = new Recorder();
+        MetricsRegistry metrics = new MetricsRegistry();
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, metrics, recorder);
+        assertEquals(2, queue.recover());
+        assertArrayEquals(picture(0, 1000), read(file(0)));
+        assertArrayEquals(picture(1, 1001), read(file(1)));
+        assertFalse(file(2).exists());
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void recoveryStopsAtACorruptRecord() throws Exception {
+        File journal = new File(mFolder.getRoot(), "journal.bin");
+        spill(journal, 2);
+        RandomAccessFile corrupt = new RandomAccessFile(journal, "rw");
+        try {
+            corrupt.seek(corrupt.length() - 1);
+            int last = corrupt.read();
+            corrupt.seek(corrupt.length() - 1);
+            corrupt.write(last ^ 0xFF);
+        } finally {
+            corrupt.close();
+        }
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, metrics,
+                new Recorder());
+        assertEquals(1, queue.recover());
+        assertArrayEquals(picture(0, 1000), read(file(0)));
+        assertFalse(file(1).exists());
+        assertEquals(1, metrics.counter("save.errors").get());
+    }
+
+    /**
+     * Journals {@code count} pictures by stopping a queue whose writer never gets to them.
+     */
+    private void spill(File journal, int count) throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        SaveQueue queue = newQueue(journal, JpegWriter.STRATEGY_CHANNEL, new MetricsRegistry(),
+                new Recorder() {
+                    @Override
+                    public void onSaved(long frameNumber, File file, long bytes) {
+                        blocked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+        queue.start();
+        for (int i = 0; i < count; i++) {
+            queue.submit(ByteBuffer.wrap(picture(i, 1000 + i)), file(i), i);
+        }
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        assertEquals(count, queue.stop(0));
+        release.countDown();
+        // Only the first picture reached its file before the writer got stuck.
+        file(0).delete();
+    }
+
+    private static SaveQueue newQueue(File journal, int strategy, MetricsRegistry metrics,
+            SaveQueue.Listener listener) {
+        return new SaveQueue(journal, new JpegWriter(strategy),
+                new BufferPool(4 * 1024 * 1024, metrics), metrics, listener);
+    }
+
+    private File file(int index) {
+        return new File(mFolder.getRoot(), "pic" + index + ".jpg");
+    }
+
+    private static byte[] picture(int seed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += input.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+        return bytes;
+    }
+
+    private static class Recorder implements SaveQueue.Listener {
+
+        final List<Long> mSaved = Collections.synchronizedList(new ArrayList<Long>());
+        final List<Long> mSpilled = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public void onSaved(long frameNumber, File file, long bytes) {
+            mSaved.add(frameNumber);
+        }
+
+        @Override
+        public void onSaveFailed(long frameNumber, File file, IOException e) {
+        }
+
+        @Override
+        public void onSpilled(long frameNumber, File file) {
+            mSpilled.add(frameNumber);
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.capture.CaptureController;
+import com.example.android.camera2basic.hal.CameraInfo;
+import com.example.android.camera2basic.hal.HalException;
+import com.example.android.camera2basic.hal.fake.FakeCameraHal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of one complete still capture, from the tap to the saved JPEG, through
+ * {@link CaptureController} on a {@link FakeCameraHal}. The fake runs on a virtual clock, so this
+ * measures the flow itself: the state machine, request building, the fake's event queue and the
+ * synthetic frames, but none of the scripted latencies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CaptureFlowBenchmark {
+
+    private static final long TIMEOUT_NS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * Padding of the synthetic JPEGs; the sink only touches their position.
+     */
+    @Param({"0"})
+    public int jpegPadding;
+
+    private FakeCameraHal mHal;
+    private CaptureController mController;
+    private long mSaved;
+    private long mTarget;
+
+    private final FakeCameraHal.Condition mSavedCondition = new FakeCameraHal.Condition() {
+        @Override
+        public boolean isMet() {
+            return mSaved >= mTarget;
+        }
+    };
+
+    @Setup
+    public void setUp() throws HalException {
+        mHal = new FakeCameraHal();
+        mHal.addCamera(new CameraInfo.Builder("0").build())
+                .setJpegSize(640, 480, jpegPadding);
+        mController = new CaptureController(mHal, new CaptureController.JpegSink() {
+            @Override
+            public void save(ByteBuffer jpeg, long frameNumber) {
+                jpeg.position(jpeg.limit());
+                mSaved++;
+            }
+        }, new CaptureController.Listener() {
+        }, null);
+        mController.open("0");
+        mHal.runFor(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Benchmark
+    public long takePicture() {
+        mTarget = mSaved + 1;
+        if (!mController.takePicture() || !mHal.runUntil(mSavedCondition, TIMEOUT_NS)) {
+            throw new IllegalStateException("Capture did not complete");
+        }
+        return mSaved;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.storage.JpegWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to write one JPEG from a direct buffer, as handed over by the camera, with each
+ * {@link JpegWriter} strategy. The file is rewritten every time, so this includes opening,
+ * truncating and closing it, but not syncing it to the storage device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JpegWriterBenchmark {
+
+    @Param({"0", "1", "2"})
+    public int strategy;
+
+    /**
+     * Size of the JPEG in KiB: a 12 MP photo is typically 3-5 MiB.
+     */
+    @Param({"512", "4096"})
+    public int kilobytes;
+
+    private JpegWriter mWriter;
+    private ByteBuffer mJpeg;
+    private File mFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mWriter = new JpegWriter(strategy);
+        mJpeg = ByteBuffer.allocateDirect(kilobytes * 1024);
+        for (int i = 0; i < mJpeg.capacity(); i++) {
+            mJpeg.put(i, (byte) (i * 31));
+        }
+        mFile = File.createTempFile("jpeg-writer", ".jpg");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return mWriter.write(mJpeg, mFile);
+    }
+
+}
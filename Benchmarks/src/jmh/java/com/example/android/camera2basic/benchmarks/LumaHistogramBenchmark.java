@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.analysis.ExposureStats;
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.analysis.LumaHistogramAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to compute luma statistics of one frame with {@link LumaHistogramAnalyzer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LumaHistogramBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String size;
+
+    @Param({"1", "4"})
+    public int step;
+
+    private Frame mFrame;
+    private LumaHistogramAnalyzer mAnalyzer;
+    private final ExposureStats mStats = new ExposureStats();
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = SyntheticFrames.parseSize(size);
+        mFrame = SyntheticFrames.create(dimensions[0], dimensions[1], 1);
+        mAnalyzer = new LumaHistogramAnalyzer(step);
+    }
+
+    @Benchmark
+    public ExposureStats analyze() {
+        mAnalyzer.analyze(mFrame);
+        return mAnalyzer.getLatest(mStats);
+    }
+
+}
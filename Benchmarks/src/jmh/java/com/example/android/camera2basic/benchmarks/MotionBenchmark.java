@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.analysis.MotionAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of {@link MotionAnalyzer} on a synthetic sequence in which a bright square
+ * moves across a noisy background. At 30 fps a single core has a budget of 33 ms per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MotionBenchmark {
+
+    private static final int SEQUENCE_LENGTH = 8;
+    private static final long FRAME_INTERVAL_NS = 33333333L;
+
+    @Param({"1920x1080"})
+    public String size;
+
+    @Param({"8"})
+    public int samples;
+
+    private final Frame[] mFrames = new Frame[SEQUENCE_LENGTH];
+    private MotionAnalyzer mAnalyzer;
+    private int mIndex;
+    private long mTimestamp;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = SyntheticFrames.parseSize(size);
+        int width = dimensions[0];
+        int height = dimensions[1];
+        int square = height / 6;
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            Frame frame = SyntheticFrames.create(width, height, i);
+            ByteBuffer y = frame.getPlane(Frame.PLANE_Y);
+            int rowStride = frame.getRowStride(Frame.PLANE_Y);
+            int left = i * (width - square) / SEQUENCE_LENGTH;
+            for (int row = height / 3; row < height / 3 + square; row++) {
+                for (int column = left; column < left + square; column++) {
+                    y.put(row * rowStride + column, (byte) 250);
+                }
+            }
+            mFrames[i] = frame;
+        }
+        mAnalyzer = new MotionAnalyzer(16, 9, samples);
+        mAnalyzer.setCooldown(0);
+    }
+
+    @Benchmark
+    public float analyze() {
+        Frame frame = mFrames[mIndex];
+        mIndex = (mIndex + 1) % SEQUENCE_LENGTH;
+        mTimestamp += FRAME_INTERVAL_NS;
+        frame.setTimestamp(mTimestamp);
+        mAnalyzer.analyze(frame);
+        return mAnalyzer.getLastFraction();
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.geometry.OrientationCalculator;
+import com.example.android.camera2basic.hal.CameraInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPEG orientation lookups of {@link OrientationCalculator} against evaluating the formula on
+ * every capture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrientationBenchmark {
+
+    private final OrientationCalculator mCalculator =
+            new OrientationCalculator(270, CameraInfo.LENS_FACING_FRONT);
+
+    private int mRotation;
+
+    @Benchmark
+    public int table() {
+        mRotation = (mRotation + 1) & 3;
+        return mCalculator.getJpegOrientation(mRotation);
+    }
+
+    @Benchmark
+    public int formula() {
+        mRotation = (mRotation + 1) & 3;
+        return OrientationCalculator.jpegOrientation(270, CameraInfo.LENS_FACING_FRONT,
+                OrientationCalculator.deviceOrientation(mRotation));
+    }
+
+}
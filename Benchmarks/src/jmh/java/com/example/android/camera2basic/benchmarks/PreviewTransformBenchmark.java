@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.geometry.PreviewTransform;
+import com.example.android.camera2basic.geometry.PreviewTransformCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing the preview transform of {@link PreviewTransform} for each display rotation,
+ * and of a layout pass that finds it unchanged in {@link PreviewTransformCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreviewTransformBenchmark {
+
+    @Param({"0", "1", "2"})
+    public int rotation;
+
+    private final float[] mValues = new float[9];
+
+    private final PreviewTransformCache mCache = new PreviewTransformCache();
+
+    @Benchmark
+    public float[] compute() {
+        PreviewTransform.compute(2220, 1080, 1440, 1080, rotation, mValues);
+        return mValues;
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return mCache.update(2220, 1080, 1440, 1080, rotation, 90, 1);
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.analysis.FrameRecorder;
+import com.example.android.camera2basic.analysis.FrameSequence;
+import com.example.android.camera2basic.analysis.LumaHistogramAnalyzer;
+import com.example.android.camera2basic.analysis.MotionAnalyzer;
+import com.example.android.camera2basic.analysis.SharpnessAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the analyzers on a recorded {@link FrameSequence}, read zero-copy from the
+ * mapped file. Pass {@code -p file=<recording.yuvs>} to run on frames pulled from a device;
+ * without it a synthetic recording is made first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecordedFramesBenchmark {
+
+    private static final int SYNTHETIC_FRAMES = 16;
+
+    /**
+     * Recording to replay, or empty for a synthetic one.
+     */
+    @Param({""})
+    public String file;
+
+    @Param({"1280x720"})
+    public String syntheticSize;
+
+    private File mFile;
+    private boolean mTemporary;
+    private FrameSequence mSequence;
+    private Frame[] mFrames;
+    private int mIndex;
+
+    private LumaHistogramAnalyzer mLuma;
+    private SharpnessAnalyzer mSharpness;
+    private MotionAnalyzer mMotion;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (file.isEmpty()) {
+            mFile = File.createTempFile("recorded-frames", ".yuvs");
+            mTemporary = true;
+            int[] dimensions = SyntheticFrames.parseSize(syntheticSize);
+            FrameRecorder recorder = new FrameRecorder(mFile, SYNTHETIC_FRAMES);
+            for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+                Frame frame = SyntheticFrames.create(dimensions[0], dimensions[1], i);
+                frame.setTimestamp(i * 33333333L);
+                recorder.analyze(frame);
+            }
+            recorder.close();
+        } else {
+            mFile = new File(file);
+        }
+        mSequence = FrameSequence.open(mFile);
+        mFrames = new Frame[mSequence.getFrameCount()];
+        for (int i = 0; i < mFrames.length; i++) {
+            mFrames[i] = mSequence.getFrame(i);
+        }
+        mLuma = new LumaHistogramAnalyzer(4);
+        mSharpness = new SharpnessAnalyzer(SharpnessAnalyzer.METHOD_TENENGRAD, 4, 4, 4);
+        mMotion = new MotionAnalyzer(16, 9, 8);
+        mMotion.setCooldown(0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mSequence.close();
+        if (mTemporary) {
+            mFile.delete();
+        }
+    }
+
+    private Frame nextFrame() {
+        Frame frame = mFrames[mIndex];
+        mIndex = (mIndex + 1) % mFrames.length;
+        return frame;
+    }
+
+    @Benchmark
+    public void luma() {
+        mLuma.analyze(nextFrame());
+    }
+
+    @Benchmark
+    public void sharpness() {
+        mSharpness.analyze(nextFrame());
+    }
+
+    @Benchmark
+    public float motion() {
+        mMotion.analyze(nextFrame());
+        return mMotion.getLastFraction();
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.geometry.Sizes;
+import com.example.android.camera2basic.hal.Resolution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preview size selection with {@link Sizes#chooseOptimalSize} over the output sizes of a typical
+ * phone, and sorting the same list by area as done for the largest JPEG size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SizeSelectionBenchmark {
+
+    private static final int[][] SIZES = {
+            {4032, 3024}, {4032, 2268}, {3264, 2448}, {3264, 1836}, {2976, 2976},
+            {2592, 1944}, {2560, 1440}, {2048, 1536}, {1920, 1440}, {1920, 1080},
+            {1600, 1200}, {1440, 1080}, {1280, 960}, {1280, 720}, {1088, 1088},
+            {1024, 768}, {960, 720}, {800, 600}, {720, 480}, {640, 480},
+            {640, 360}, {352, 288}, {320, 240}, {176, 144},
+    };
+
+    private Resolution[] mChoices;
+    private Resolution[] mScratch;
+    private Resolution mAspectRatio;
+
+    @Setup
+    public void setUp() {
+        mChoices = new Resolution[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            mChoices[i] = new Resolution(SIZES[i][0], SIZES[i][1]);
+        }
+        mScratch = new Resolution[SIZES.length];
+        mAspectRatio = new Resolution(4032, 3024);
+    }
+
+    @Benchmark
+    public Resolution chooseOptimalSize() {
+        return Sizes.chooseOptimalSize(mChoices, 1440, 1080, 1920, 1080, mAspectRatio);
+    }
+
+    @Benchmark
+    public Resolution sortByArea() {
+        System.arraycopy(mChoices, 0, mScratch, 0, mChoices.length);
+        Arrays.sort(mScratch, Sizes.BY_AREA);
+        return mScratch[mScratch.length - 1];
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.analysis.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Builds YUV_420_888 frames in direct buffers, laid out the way camera HALs typically deliver
+ * them: rows padded to 64 bytes and interleaved (semi-planar) chroma.
+ */
+final class SyntheticFrames {
+
+    private static final int ROW_ALIGNMENT = 64;
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * Parses a resolution such as {@code "1920x1080"}.
+     */
+    static int[] parseSize(String size) {
+        int x = size.indexOf('x');
+        return new int[]{Integer.parseInt(size.substring(0, x)),
+                Integer.parseInt(size.substring(x + 1))};
+    }
+
+    /**
+     * Creates a frame with a diagonal gradient plus noise in the luma plane.
+     */
+    static Frame create(int width, int height, long seed) {
+        int rowStride = align(width);
+        ByteBuffer y = ByteBuffer.allocateDirect(rowStride * height);
+        Random random = new Random(seed);
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                int value = (row + column) * 255 / (width + height) + random.nextInt(16) - 8;
+                y.put(row * rowStride + column, (byte) Math.max(0, Math.min(255, value)));
+            }
+        }
+        // NV12: one interleaved CbCr plane, exposed as two views offset by one byte.
+        int chromaStride = align(width);
+        ByteBuffer uv = ByteBuffer.allocateDirect(chromaStride * (height / 2));
+        for (int i = 0; i < uv.capacity(); i++) {
+            uv.put(i, (byte) (128 + random.nextInt(32) - 16));
+        }
+        uv.position(1);
+        ByteBuffer v = uv.slice();
+        uv.position(0);
+        Frame frame = new Frame(width, height);
+        frame.setPlane(Frame.PLANE_Y, y, rowStride, 1);
+        frame.setPlane(Frame.PLANE_U, uv, chromaStride, 2);
+        frame.setPlane(Frame.PLANE_V, v, chromaStride, 2);
+        frame.setSequence(seed);
+        return frame;
+    }
+
+    private static int align(int width) {
+        return (width + ROW_ALIGNMENT - 1) / ROW_ALIGNMENT * ROW_ALIGNMENT;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.camera2basic.benchmarks;
+
+import com.example.android.camera2basic.analysis.Frame;
+import com.example.android.camera2basic.analysis.YuvToRgbConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to convert one NV12 frame to ARGB with {@link YuvToRgbConverter}, into a heap array and
+ * into a direct buffer, across thread counts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class YuvToRgbBenchmark {
+
+    @Param({"1280x720", "1920x1080", "4000x3000"})
+    public String size;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Frame mFrame;
+    private YuvToRgbConverter mConverter;
+    private int[] mArray;
+    private IntBuffer mBuffer;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = SyntheticFrames.parseSize(size);
+        mFrame = SyntheticFrames.create(dimensions[0], dimensions[1], 1);
+        mConverter = new YuvToRgbConverter(threads);
+        int pixels = dimensions[0] * dimensions[1];
+        mArray = new int[pixels];
+        mBuffer = ByteBuffer.allocateDirect(pixels * 4).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mConverter.close();
+    }
+
+    @Benchmark
+    public int[] toArray() {
+        mConverter.convert(mFrame, mArray);
+        return mArray;
+    }
+
+    @Benchmark
+    public IntBuffer toDirectBuffer() {
+        mConverter.convert(mFrame, mBuffer);
+        return mBuffer;
+    }
+
+}